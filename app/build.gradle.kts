@@ -43,6 +43,7 @@ val fragmentKtxVersion = "1.6.2"
 val coroutinesVersion = "1.7.3"
 
 dependencies {
+    implementation(project(":core")) // Pure-Java classification, geometry and pipeline logic
     implementation(libs.appcompat) // Assuming libs.appcompat is from your version catalog
     implementation(libs.material)  // Assuming libs.material is from your version catalog
     implementation(libs.activity)   // Assuming libs.activity is from your version catalog
@@ -0,0 +1,94 @@
+package com.example.aremotionfilters;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Decodes batch images into mutable Bitmaps and writes them back as JPEGs with the effects drawn
+ * on top by the same {@link OverlayRenderer} code as the live overlay and captures.
+ *
+ * Images are decoded at the smallest power-of-two sample size that still covers
+ * {@code maxImageSize}, so large camera photos never cost a full-resolution decode. EXIF
+ * orientation is not applied; images are processed as stored. Each worker thread gets its own
+ * renderer, all drawing the overlay view's shared effect sprites.
+ */
+public class BitmapBatchIo implements BatchProcessor.ImageIo<Bitmap> {
+
+    private static final int JPEG_QUALITY = 90;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int maxImageSize;
+    private final ThreadLocal<OverlayRenderer> renderers;
+
+    public BitmapBatchIo(FaceOverlayView overlayView, int maxImageSize) {
+        this.maxImageSize = maxImageSize;
+        this.renderers = new ThreadLocal<OverlayRenderer>() {
+            @Override
+            protected OverlayRenderer initialValue() {
+                return overlayView.newEffectRenderer();
+            }
+        };
+    }
+
+    @WorkerThread
+    @Nullable
+    @Override
+    public Bitmap decode(File input) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(input.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        options.inSampleSize = ImageSampling.inSampleSize(Math.max(options.outWidth, options.outHeight), maxImageSize);
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        try {
+            return BitmapFactory.decodeFile(input.getPath(), options);
+        } catch (OutOfMemoryError e) {
+            throw new IOException("Out of memory decoding " + input.getName(), e);
+        }
+    }
+
+    @Override
+    public int getWidth(Bitmap image) {
+        return image.getWidth();
+    }
+
+    @Override
+    public int getHeight(Bitmap image) {
+        return image.getHeight();
+    }
+
+    @WorkerThread
+    @Override
+    public void writeFiltered(Bitmap image, DetectionSnapshot effects, File output) throws IOException {
+        renderers.get().drawEffects(new Canvas(image), effects, image.getWidth(), image.getHeight(), false, 0L);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output), BUFFER_SIZE)) {
+            if (!image.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out)) {
+                throw new IOException("JPEG encoding failed for " + output.getName());
+            }
+        }
+    }
+
+    @Override
+    public String getOutputExtension() {
+        return "jpg";
+    }
+
+    @Override
+    public void release(Bitmap image) {
+        image.recycle();
+    }
+}
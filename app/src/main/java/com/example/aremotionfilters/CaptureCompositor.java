@@ -0,0 +1,156 @@
+package com.example.aremotionfilters;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.camera.core.ImageProxy;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Turns a captured JPEG into the filtered photo in a single pass.
+ *
+ * The JPEG is decoded at the smallest power-of-two sample size that still covers the output size,
+ * then drawn once into the output bitmap through one matrix that applies rotation, front camera
+ * mirroring and the remaining downscale; the filters are drawn on top of the same canvas, placed
+ * from the analysis frames around the capture's sensor timestamp. When no
+ * transform is needed the decoded bitmap is mutable and used as the output directly. At most the
+ * JPEG bytes, the decoded bitmap and the output are alive at once, instead of the full-resolution
+ * decode plus rotated, mutable and mirrored copies.
+ *
+ * Not thread-safe; run every capture on the same background executor.
+ */
+public class CaptureCompositor {
+
+    private static final String TAG = "CaptureCompositor";
+
+    // Longer side of a composed photo; the photo strip shows them far smaller than this
+    public static final int DEFAULT_MAX_OUTPUT_SIZE = 2048;
+
+    /** A composed photo with what it cost to make it. */
+    public static final class Result {
+        public final Bitmap bitmap;
+        public final long latencyNanos;
+        public final long peakBytes;
+
+        Result(Bitmap bitmap, long latencyNanos, long peakBytes) {
+            this.bitmap = bitmap;
+            this.latencyNanos = latencyNanos;
+            this.peakBytes = peakBytes;
+        }
+    }
+
+    private final FaceOverlayView overlayView;
+    private final FrameMetrics frameMetrics;
+    private final int maxOutputSize;
+    private final Matrix matrix = new Matrix();
+    private final Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    public CaptureCompositor(FaceOverlayView overlayView, @Nullable FrameMetrics frameMetrics, int maxOutputSize) {
+        this.overlayView = overlayView;
+        this.frameMetrics = frameMetrics;
+        this.maxOutputSize = maxOutputSize;
+    }
+
+    /**
+     * Composes the filtered photo for a JPEG {@code image}. Does not close the image. Returns null
+     * if the JPEG could not be decoded.
+     */
+    @WorkerThread
+    @Nullable
+    public Result compose(ImageProxy image, boolean isFrontCamera) {
+        long startNanos = SystemClock.elapsedRealtimeNanos();
+        int rotationDegrees = image.getImageInfo().getRotationDegrees();
+
+        ByteBuffer buffer = image.getPlanes()[0].getBuffer();
+        byte[] jpeg;
+        int offset;
+        int length = buffer.remaining();
+        if (buffer.hasArray()) {
+            jpeg = buffer.array();
+            offset = buffer.arrayOffset() + buffer.position();
+        } else {
+            jpeg = new byte[length];
+            buffer.duplicate().get(jpeg);
+            offset = 0;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(jpeg, offset, length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            Log.e(TAG, "Captured image is not a decodable JPEG");
+            return null;
+        }
+        int jpegWidth = options.outWidth;
+        int jpegHeight = options.outHeight;
+        options.inSampleSize = ImageSampling.inSampleSize(Math.max(options.outWidth, options.outHeight), maxOutputSize);
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap decoded;
+        try {
+            decoded = BitmapFactory.decodeByteArray(jpeg, offset, length, options);
+        } catch (OutOfMemoryError e) {
+            Log.e(TAG, "Out of memory decoding capture", e);
+            return null;
+        }
+        if (decoded == null) {
+            Log.e(TAG, "Failed to decode captured image");
+            return null;
+        }
+        long peakBytes = length + decoded.getAllocationByteCount();
+
+        boolean swapSides = rotationDegrees == 90 || rotationDegrees == 270;
+        int rotatedWidth = swapSides ? decoded.getHeight() : decoded.getWidth();
+        int rotatedHeight = swapSides ? decoded.getWidth() : decoded.getHeight();
+        float scale = ImageSampling.downscaleToFit(rotatedWidth, rotatedHeight, maxOutputSize);
+
+        Bitmap output;
+        if (rotationDegrees == 0 && !isFrontCamera && scale == 1f) {
+            output = decoded; // Already upright: draw the filters straight onto the decoded bitmap
+        } else {
+            int outputWidth = Math.max(1, Math.round(rotatedWidth * scale));
+            int outputHeight = Math.max(1, Math.round(rotatedHeight * scale));
+            try {
+                output = Bitmap.createBitmap(outputWidth, outputHeight, Bitmap.Config.ARGB_8888);
+            } catch (OutOfMemoryError e) {
+                Log.e(TAG, "Out of memory allocating capture output", e);
+                decoded.recycle();
+                return null;
+            }
+            peakBytes += output.getAllocationByteCount();
+            // Rotate about the centre, mirror for the front camera (like the preview) and scale, in one pass
+            matrix.reset();
+            matrix.postTranslate(-decoded.getWidth() / 2f, -decoded.getHeight() / 2f);
+            matrix.postRotate(rotationDegrees);
+            matrix.postScale(isFrontCamera ? -scale : scale, scale);
+            matrix.postTranslate(outputWidth / 2f, outputHeight / 2f);
+            new Canvas(output).drawBitmap(decoded, matrix, bitmapPaint);
+            decoded.recycle();
+        }
+
+        Canvas canvas = new Canvas(output);
+        Log.d(TAG, "Drawing filters on canvas. Target (Canvas) W: " + canvas.getWidth() + " H: " + canvas.getHeight());
+        overlayView.drawFiltersOnCanvas(canvas, canvas.getWidth(), canvas.getHeight(), isFrontCamera,
+                image.getImageInfo().getTimestamp());
+
+        long latencyNanos = SystemClock.elapsedRealtimeNanos() - startNanos;
+        if (frameMetrics != null) {
+            frameMetrics.record(FrameMetrics.STAGE_CAPTURE_COMPOSE, latencyNanos);
+            frameMetrics.recordCapturePeakBytes(peakBytes);
+        }
+        Log.i(TAG, String.format(Locale.US, "Composed %dx%d capture (JPEG %dx%d, sample %d, rotation %d) in %.1f ms, peak %d KB",
+                output.getWidth(), output.getHeight(), jpegWidth, jpegHeight, options.inSampleSize,
+                rotationDegrees, latencyNanos / 1_000_000.0, peakBytes / 1024));
+        return new Result(output, latencyNanos, peakBytes);
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.aremotionfilters;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Captured shots for the photo strip, kept compressed instead of as full-size ARGB bitmaps.
+ *
+ * Each shot is JPEG-encoded once at capture time, together with a small thumbnail for the
+ * thumbnail row. The encoded bytes stay in memory up to a budget and are spilled to the app cache
+ * beyond it (or when the system is low on memory); full-size pixels are only decoded again, at a
+ * sample size matching the strip, while the strip is composed. Use a new store per strip: a closed
+ * store drops its files and ignores shots that finish afterwards.
+ */
+public class CaptureStore {
+
+    private static final String TAG = "CaptureStore";
+
+    private static final int JPEG_QUALITY = 95;
+
+    private final EncodedCaptureStore encoded;
+    // Guarded by itself; the UI thread reads it, so never held across encoding or file I/O
+    private final ArrayList<Bitmap> thumbnails = new ArrayList<>();
+    private boolean closed; // Guarded by thumbnails
+    // Keeps the encoded index and the thumbnail index of concurrent adds in step
+    private final Object addLock = new Object();
+    private final int thumbnailSize;
+    private final Executor ioExecutor;
+
+    /**
+     * @param spillDirectory    Cache directory for shots that do not fit the memory budget.
+     * @param memoryBudgetBytes Encoded bytes kept in memory.
+     * @param thumbnailSize     Longer side of the thumbnails, in pixels.
+     * @param ioExecutor        Background executor used for spilling on memory pressure.
+     */
+    public CaptureStore(File spillDirectory, long memoryBudgetBytes, int thumbnailSize, Executor ioExecutor) {
+        this.encoded = new EncodedCaptureStore(spillDirectory, memoryBudgetBytes);
+        this.thumbnailSize = thumbnailSize;
+        this.ioExecutor = ioExecutor;
+    }
+
+    /**
+     * Encodes {@code photo} and makes its thumbnail. The caller still owns {@code photo} and can
+     * recycle it afterwards. Returns false if the store was closed in the meantime.
+     */
+    @WorkerThread
+    public boolean add(Bitmap photo) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(photo.getWidth() * photo.getHeight() / 4);
+        if (!photo.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out)) {
+            throw new IOException("JPEG encoding failed");
+        }
+        float scale = (float) thumbnailSize / Math.max(photo.getWidth(), photo.getHeight());
+        Bitmap thumbnail = scale < 1f
+                ? Bitmap.createScaledBitmap(photo, Math.max(1, Math.round(photo.getWidth() * scale)),
+                        Math.max(1, Math.round(photo.getHeight() * scale)), true)
+                : photo.copy(Bitmap.Config.ARGB_8888, false);
+        synchronized (addLock) {
+            // May spill to disk; a failure leaves neither list changed
+            boolean added;
+            try {
+                added = encoded.add(out.toByteArray()) >= 0;
+            } catch (IOException | RuntimeException e) {
+                thumbnail.recycle();
+                throw e;
+            }
+            synchronized (thumbnails) {
+                if (!added || closed) {
+                    // Closed before or while the shot was stored; the closed store dropped it
+                    thumbnail.recycle();
+                    return false;
+                }
+                thumbnails.add(thumbnail);
+            }
+        }
+        Log.d(TAG, "Stored shot " + size() + ": " + out.size() / 1024 + " KB encoded, "
+                + encoded.getMemoryBytes() / 1024 + " KB in memory, " + encoded.getSpilledBytes() / 1024 + " KB on disk");
+        return true;
+    }
+
+    public int size() {
+        synchronized (thumbnails) {
+            return thumbnails.size();
+        }
+    }
+
+    @Nullable
+    public Bitmap getThumbnail(int index) {
+        synchronized (thumbnails) {
+            return index < thumbnails.size() ? thumbnails.get(index) : null;
+        }
+    }
+
+    /**
+     * Decodes shot {@code index} at the largest power-of-two sample size that keeps it at least
+     * {@code targetWidth} wide.
+     */
+    @WorkerThread
+    public Bitmap decode(int index, int targetWidth) throws IOException {
+        byte[] jpeg = encoded.read(index);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+        options.inSampleSize = ImageSampling.inSampleSize(options.outWidth, targetWidth);
+        options.inJustDecodeBounds = false;
+        Bitmap bitmap = BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+        if (bitmap == null) {
+            throw new IOException("Failed to decode stored shot " + index);
+        }
+        return bitmap;
+    }
+
+    /** Spills every in-memory shot to disk when the app is backgrounded or memory runs low. */
+    public void onTrimMemory(int level) {
+        if (level < ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return;
+        }
+        ioExecutor.execute(() -> {
+            try {
+                encoded.spillAll();
+                Log.d(TAG, "Trim memory (level " + level + "): " + encoded.getSpilledBytes() / 1024 + " KB on disk");
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to spill shots: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Deletes every shot and its spill file. Thumbnails are not recycled, as ImageViews may still
+     * show them.
+     */
+    public void close() {
+        synchronized (thumbnails) {
+            closed = true;
+            thumbnails.clear();
+        }
+        // Outside the thumbnail lock: may wait for a spill in progress
+        encoded.close();
+    }
+}
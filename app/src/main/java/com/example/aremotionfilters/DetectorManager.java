@@ -0,0 +1,210 @@
+package com.example.aremotionfilters;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.FaceDetection;
+import com.google.mlkit.vision.face.FaceDetector;
+import com.google.mlkit.vision.face.FaceDetectorOptions;
+import com.google.mlkit.vision.pose.PoseDetection;
+import com.google.mlkit.vision.pose.PoseDetector;
+import com.google.mlkit.vision.pose.accurate.AccuratePoseDetectorOptions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Owns the ML Kit detectors for one activity, so analyzers created on every camera bind, camera
+ * switch or resolution change share the same clients instead of each loading the models again.
+ *
+ * The face detector depends on the minimum face size. Only the one for the current size is kept:
+ * asking for another size creates a new client and retires the old one, which stays open for the
+ * analyzer still using it until {@link #closeRetiredDetectors()}. There is a single pose detector.
+ * {@link #warmUp} creates the clients on a background thread and runs them once on a blank frame,
+ * which makes ML Kit load and initialize its models before the first camera frame arrives, so
+ * warm up the new size before rebinding to it. {@link #close()} closes every client; call it and
+ * {@link #closeRetiredDetectors()} once no analyzer can submit frames to them any more, e.g. on
+ * the camera thread after the analyzer was cleared.
+ */
+public class DetectorManager {
+
+    private static final String TAG = "DetectorManager";
+
+    // Synthetic warm-up frame: mid-grey NV21, large enough for the detectors to run their full path
+    private static final int WARM_UP_WIDTH = 480;
+    private static final int WARM_UP_HEIGHT = 360;
+    private static final long WARM_UP_TIMEOUT_MS = 5_000L;
+
+    private final FrameMetrics frameMetrics;
+    private final ExecutorService warmUpExecutor = Executors.newSingleThreadExecutor();
+    // Guarded by this
+    private FaceDetector faceDetector;
+    private float faceDetectorMinSize;
+    private final List<FaceDetector> retiredFaceDetectors = new ArrayList<>();
+    private PoseDetector poseDetector;
+    private boolean closed;
+    // Warm-up thread only: the clients that already ran once
+    private FaceDetector warmFaceDetector;
+    private PoseDetector warmPoseDetector;
+
+    public DetectorManager(FrameMetrics frameMetrics) {
+        this.frameMetrics = frameMetrics;
+    }
+
+    /**
+     * Creates the face detector for {@code minFaceSize} and the pose detector in the background
+     * and runs both once on a synthetic frame. The time taken is recorded in {@link FrameMetrics}.
+     */
+    @MainThread
+    public void warmUp(float minFaceSize) {
+        warmUp(minFaceSize, null);
+    }
+
+    /**
+     * Like {@link #warmUp(float)}, then runs {@code onWarm} on the warm-up thread, also if the
+     * warm-up failed, but not once the manager is closed. Clients that already ran are skipped.
+     */
+    @MainThread
+    public void warmUp(float minFaceSize, @Nullable Runnable onWarm) {
+        warmUpExecutor.execute(() -> {
+            warmUpNow(minFaceSize);
+            if (onWarm != null && !isClosed()) {
+                onWarm.run();
+            }
+        });
+    }
+
+    private void warmUpNow(float minFaceSize) {
+        long startNanos = SystemClock.elapsedRealtimeNanos();
+        FaceDetector face;
+        PoseDetector pose;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            face = faceDetectorLocked(minFaceSize);
+            pose = poseDetectorLocked();
+        }
+        if (face == warmFaceDetector && pose == warmPoseDetector) {
+            return;
+        }
+        byte[] nv21 = new byte[WARM_UP_WIDTH * WARM_UP_HEIGHT * 3 / 2];
+        Arrays.fill(nv21, (byte) 0x80);
+        InputImage image = InputImage.fromByteArray(nv21, WARM_UP_WIDTH, WARM_UP_HEIGHT, 0,
+                InputImage.IMAGE_FORMAT_NV21);
+        try {
+            if (face != warmFaceDetector) {
+                Tasks.await(face.process(image), WARM_UP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                warmFaceDetector = face;
+            }
+            if (pose != warmPoseDetector) {
+                Tasks.await(pose.process(image), WARM_UP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                warmPoseDetector = pose;
+            }
+        } catch (ExecutionException | TimeoutException e) {
+            // Closed meanwhile or slow to load: the first real frame pays the rest
+            Log.w(TAG, "Detector warm-up did not finish: " + e);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long elapsedNanos = SystemClock.elapsedRealtimeNanos() - startNanos;
+        frameMetrics.recordDetectorWarmUp(elapsedNanos);
+        Log.i(TAG, "Detectors warmed up in " + elapsedNanos / 1_000_000 + " ms");
+    }
+
+    /**
+     * Shared face detector for {@code minFaceSize}, created on first use. A detector for another
+     * size is retired, not closed, since its analyzer may still be running.
+     */
+    public synchronized FaceDetector getFaceDetector(float minFaceSize) {
+        if (closed) {
+            throw new IllegalStateException("Detectors already closed");
+        }
+        return faceDetectorLocked(minFaceSize);
+    }
+
+    /** Shared pose detector, created on first use. */
+    public synchronized PoseDetector getPoseDetector() {
+        if (closed) {
+            throw new IllegalStateException("Detectors already closed");
+        }
+        return poseDetectorLocked();
+    }
+
+    /** Closes the face detectors retired by a size change; call once their analyzers are cleared. */
+    public synchronized void closeRetiredDetectors() {
+        for (int i = 0; i < retiredFaceDetectors.size(); i++) {
+            retiredFaceDetectors.get(i).close();
+        }
+        retiredFaceDetectors.clear();
+    }
+
+    /** Closes every detector; later warm-ups do nothing and getters throw. */
+    public void close() {
+        warmUpExecutor.shutdownNow();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            closeRetiredDetectors();
+            if (faceDetector != null) {
+                faceDetector.close();
+                faceDetector = null;
+            }
+            if (poseDetector != null) {
+                poseDetector.close();
+                poseDetector = null;
+            }
+        }
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private FaceDetector faceDetectorLocked(float minFaceSize) {
+        if (faceDetector != null && faceDetectorMinSize != minFaceSize) {
+            retiredFaceDetectors.add(faceDetector);
+            faceDetector = null;
+        }
+        if (faceDetector == null) {
+            FaceDetectorOptions faceOptions =
+                    new FaceDetectorOptions.Builder()
+                            .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_FAST)
+                            .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_NONE)
+                            .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_ALL)
+                            .setContourMode(FaceDetectorOptions.CONTOUR_MODE_NONE)
+                            .setMinFaceSize(minFaceSize)
+                            .enableTracking()
+                            .build();
+            faceDetector = FaceDetection.getClient(faceOptions);
+            faceDetectorMinSize = minFaceSize;
+        }
+        return faceDetector;
+    }
+
+    private PoseDetector poseDetectorLocked() {
+        if (poseDetector == null) {
+            AccuratePoseDetectorOptions poseOptions =
+                    new AccuratePoseDetectorOptions.Builder()
+                            .setDetectorMode(AccuratePoseDetectorOptions.STREAM_MODE)
+                            .build();
+            poseDetector = PoseDetection.getClient(poseOptions);
+        }
+        return poseDetector;
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.aremotionfilters;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+/**
+ * Feeds the device's thermal status, battery level, charging state and battery saver into a
+ * {@link QualityGovernor} and reports tier changes.
+ *
+ * Conditions are re-evaluated on every thermal or battery broadcast and on a periodic tick, so a
+ * recovery is noticed even when nothing new is broadcast. Every decision is logged with its
+ * reason and recorded in {@link FrameMetrics}. Listener calls happen on the main thread.
+ */
+public class DeviceQualityGovernor {
+
+    private static final String TAG = "QualityGovernor";
+
+    private static final long EVALUATION_INTERVAL_MS = 10_000L;
+
+    public interface Listener {
+        void onQualityTierChanged(int tier);
+    }
+
+    private final Context context;
+    private final PowerManager powerManager;
+    private final QualityGovernor governor = new QualityGovernor();
+    private final FrameMetrics frameMetrics;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private int batteryPercent = -1;
+    private boolean charging;
+    private boolean started;
+    private Object thermalListener; // PowerManager.OnThermalStatusChangedListener on API 29+
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (Intent.ACTION_BATTERY_CHANGED.equals(intent.getAction())) {
+                readBattery(intent);
+            }
+            evaluate();
+        }
+    };
+
+    private final Runnable periodicEvaluation = new Runnable() {
+        @Override
+        public void run() {
+            evaluate();
+            mainHandler.postDelayed(this, EVALUATION_INTERVAL_MS);
+        }
+    };
+
+    public DeviceQualityGovernor(Context context, @Nullable FrameMetrics frameMetrics, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        this.frameMetrics = frameMetrics;
+        this.listener = listener;
+    }
+
+    /** Starts listening; the current tier is reported right away if it is not {@code TIER_FULL}. */
+    @MainThread
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        IntentFilter filter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+        filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+        Intent battery = context.registerReceiver(receiver, filter);
+        if (battery != null) {
+            readBattery(battery); // Sticky broadcast: the current state
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            addThermalListener();
+        }
+        periodicEvaluation.run();
+    }
+
+    @MainThread
+    public void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        context.unregisterReceiver(receiver);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            removeThermalListener();
+        }
+        mainHandler.removeCallbacks(periodicEvaluation);
+    }
+
+    @MainThread
+    public int getTier() {
+        return governor.getTier();
+    }
+
+    private void readBattery(Intent intent) {
+        int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        batteryPercent = level >= 0 && scale > 0 ? level * 100 / scale : -1;
+        int status = intent.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        charging = status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL;
+    }
+
+    private void evaluate() {
+        int thermalStatus = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                ? powerManager.getCurrentThermalStatus() : QualityGovernor.THERMAL_STATUS_NONE;
+        boolean powerSave = powerManager.isPowerSaveMode();
+        int previous = governor.getTier();
+        if (!governor.update(SystemClock.elapsedRealtimeNanos(), thermalStatus, batteryPercent, charging, powerSave)) {
+            return;
+        }
+        int tier = governor.getTier();
+        Log.i(TAG, "Quality tier " + QualityGovernor.tierName(previous) + " -> " + QualityGovernor.tierName(tier)
+                + " (" + governor.getReason() + ")");
+        if (frameMetrics != null) {
+            frameMetrics.recordQualityTier(tier);
+        }
+        listener.onQualityTierChanged(tier);
+    }
+
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private void addThermalListener() {
+        PowerManager.OnThermalStatusChangedListener thermal = status -> evaluate();
+        powerManager.addThermalStatusListener(context.getMainExecutor(), thermal);
+        thermalListener = thermal;
+    }
+
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private void removeThermalListener() {
+        if (thermalListener != null) {
+            powerManager.removeThermalStatusListener((PowerManager.OnThermalStatusChangedListener) thermalListener);
+            thermalListener = null;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.aremotionfilters;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Decodes the effect sprites on a background thread so view inflation does not block on PNG
+ * decodes.
+ *
+ * Each sprite is decoded at the largest power-of-two {@code inSampleSize} that still leaves its
+ * longer side at least {@code maxSpriteSize} pixels. Density scaling is turned off: the sprites live
+ * in the density-less {@code drawable} folder, which the framework treats as mdpi and would
+ * otherwise upscale by the screen density before we scale them down again.
+ *
+ * Animated effects are built into a sprite atlas right after decoding ({@link EffectAtlasBuilder}),
+ * so playback only selects frames of an existing bitmap and never decodes or allocates.
+ */
+public class EffectAssetLoader {
+
+    private static final String TAG = "EffectAssetLoader";
+
+    public interface Callback {
+        /**
+         * Called on the loader thread as soon as one sprite is decoded. For an animated effect
+         * {@code sprite} is the atlas and {@code animation} its frame table, otherwise null.
+         */
+        void onSpriteLoaded(int effect, Bitmap sprite, @Nullable SpriteAnimation animation);
+
+        /** Called on the loader thread after the last sprite, with the totals over all sprites. */
+        void onAllLoaded(long decodeNanos, long totalBytes);
+    }
+
+    private final Resources resources;
+    private final int[] effects;
+    private final int[] resourceIds;
+    private final EffectAtlasBuilder.Motion[] motions;
+
+    /**
+     * @param effects     FaceData effect code for each sprite.
+     * @param resourceIds Drawable resource for each sprite, in the same order.
+     * @param motions     Animation for each sprite, in the same order; null entries stay static.
+     */
+    public EffectAssetLoader(Resources resources, int[] effects, int[] resourceIds, EffectAtlasBuilder.Motion[] motions) {
+        if (effects.length != resourceIds.length || effects.length != motions.length) {
+            throw new IllegalArgumentException("effects, resourceIds and motions differ in length");
+        }
+        this.resources = resources;
+        this.effects = effects.clone();
+        this.resourceIds = resourceIds.clone();
+        this.motions = motions.clone();
+    }
+
+    /** Starts decoding on a new low-priority thread that exits when all sprites are done. */
+    public void loadAsync(int maxSpriteSize, Callback callback) {
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "effect-loader"));
+        executor.execute(() -> load(maxSpriteSize, callback));
+        executor.shutdown();
+    }
+
+    private void load(int maxSpriteSize, Callback callback) {
+        long decodeNanos = 0;
+        long totalBytes = 0;
+        int atlasCount = 0;
+        Bitmap[] decoded = new Bitmap[effects.length];
+        SpriteAnimation[] animations = new SpriteAnimation[effects.length];
+        for (int i = 0; i < effects.length; i++) {
+            int shared = findDecoded(decoded, i);
+            if (shared >= 0) {
+                // Same resource and motion as an earlier effect
+                callback.onSpriteLoaded(effects[i], decoded[shared], animations[shared]);
+                continue;
+            }
+            long start = SystemClock.elapsedRealtimeNanos();
+            EffectAtlasBuilder.Motion motion = motions[i];
+            // An atlas frame is smaller than a static sprite, so decode no larger than needed
+            Bitmap sprite = decode(resourceIds[i], motion == null ? maxSpriteSize
+                    : Math.min(maxSpriteSize, EffectAtlasBuilder.MAX_FRAME_SIZE));
+            if (sprite != null && motion != null) {
+                animations[i] = EffectAtlasBuilder.layout(sprite, motion);
+                Bitmap atlas = buildAtlas(sprite, animations[i], motion);
+                sprite.recycle(); // Only the atlas is handed out
+                sprite = atlas;
+                atlasCount++;
+            }
+            decodeNanos += SystemClock.elapsedRealtimeNanos() - start;
+            if (sprite == null) {
+                Log.e(TAG, "Failed to decode sprite for " + FaceData.codeName(effects[i]));
+                continue;
+            }
+            totalBytes += sprite.getAllocationByteCount();
+            decoded[i] = sprite;
+            callback.onSpriteLoaded(effects[i], sprite, animations[i]);
+        }
+        Log.i(TAG, String.format(Locale.US, "Decoded %d effect sprites (%d animation atlases) in %.1f ms, %d KB",
+                effects.length, atlasCount, decodeNanos / 1_000_000.0, totalBytes / 1024));
+        callback.onAllLoaded(decodeNanos, totalBytes);
+    }
+
+    // Earlier effect with the same resource and motion that was decoded successfully, or -1
+    private int findDecoded(Bitmap[] decoded, int index) {
+        for (int i = 0; i < index; i++) {
+            if (resourceIds[i] == resourceIds[index] && motions[i] == motions[index] && decoded[i] != null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Bitmap buildAtlas(Bitmap sprite, SpriteAnimation animation, EffectAtlasBuilder.Motion motion) {
+        try {
+            return EffectAtlasBuilder.build(sprite, animation, motion);
+        } catch (RuntimeException | OutOfMemoryError e) {
+            Log.e(TAG, "Error building sprite atlas: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private Bitmap decode(int resourceId, int maxSpriteSize) {
+        try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inScaled = false;
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeResource(resources, resourceId, options);
+            options.inSampleSize = ImageSampling.inSampleSize(Math.max(options.outWidth, options.outHeight), maxSpriteSize);
+            options.inJustDecodeBounds = false;
+            return BitmapFactory.decodeResource(resources, resourceId, options);
+        } catch (RuntimeException | OutOfMemoryError e) {
+            Log.e(TAG, "Error decoding sprite: " + e.getMessage(), e);
+            return null;
+        }
+    }
+}
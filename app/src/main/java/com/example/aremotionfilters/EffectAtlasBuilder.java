@@ -0,0 +1,97 @@
+package com.example.aremotionfilters;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import java.util.Arrays;
+
+/**
+ * Renders an animated effect into a sprite atlas from a single static sprite, once at load time.
+ *
+ * Every frame of the loop is the sprite drawn with a slightly different scale, opacity, swing and
+ * vertical offset, as described by a {@link Motion}. The motion follows one period of a cosine
+ * over the loop, so the last frame leads smoothly back into the first. Frames are smaller than
+ * the decoded static sprites ({@link #MAX_FRAME_SIZE}) to keep an atlas of several frames in the
+ * same memory range as one full-resolution sprite.
+ */
+public final class EffectAtlasBuilder {
+
+    /** Longer side of one atlas frame, in pixels. */
+    public static final int MAX_FRAME_SIZE = 512;
+    // Transparent border around each frame, relative to the frame size; at least 2 px
+    private static final int GUTTER_DIVISOR = 64;
+
+    /** How an effect moves over one loop. Amplitudes are at the furthest point of the loop. */
+    public static final class Motion {
+        final int frameCount;
+        final int frameMillis;
+        final float shrink;      // Fraction the sprite shrinks by
+        final float fade;        // Fraction of opacity lost
+        final float swingDegrees; // Rotation to either side
+        final float rise;        // Fraction of the frame height the sprite floats up by
+
+        public Motion(int frameCount, int frameMillis, float shrink, float fade, float swingDegrees, float rise) {
+            this.frameCount = frameCount;
+            this.frameMillis = frameMillis;
+            this.shrink = shrink;
+            this.fade = fade;
+            this.swingDegrees = swingDegrees;
+            this.rise = rise;
+        }
+    }
+
+    /** Pulsing and flickering, for sparkles. */
+    public static final Motion TWINKLE = new Motion(6, 90, 0.1f, 0.35f, 5f, 0f);
+    /** Slow bobbing up and down, for the sleeping "zzz". */
+    public static final Motion FLOAT = new Motion(8, 110, 0f, 0.2f, 0f, 0.1f);
+    /** Quick pop in size with a small wobble, for burst effects. */
+    public static final Motion POP = new Motion(6, 70, 0.15f, 0f, 4f, 0f);
+
+    private EffectAtlasBuilder() {
+    }
+
+    /** Frame table for animating {@code sprite} with {@code motion}. */
+    public static SpriteAnimation layout(Bitmap sprite, Motion motion) {
+        float scale = Math.min(1f, (float) MAX_FRAME_SIZE / Math.max(sprite.getWidth(), sprite.getHeight()));
+        int frameWidth = Math.max(1, Math.round(sprite.getWidth() * scale));
+        int frameHeight = Math.max(1, Math.round(sprite.getHeight() * scale));
+        int gutter = Math.max(2, Math.max(frameWidth, frameHeight) / GUTTER_DIVISOR);
+        int[] frameMillis = new int[motion.frameCount];
+        Arrays.fill(frameMillis, motion.frameMillis);
+        return new SpriteAnimation(frameWidth, frameHeight, gutter, frameMillis);
+    }
+
+    /** Draws every frame of {@code animation} into a new atlas bitmap. */
+    public static Bitmap build(Bitmap sprite, SpriteAnimation animation, Motion motion) {
+        Bitmap atlas = Bitmap.createBitmap(animation.getAtlasWidth(), animation.getAtlasHeight(), Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(atlas);
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.ANTI_ALIAS_FLAG);
+        RectF dst = new RectF();
+        int frameWidth = animation.getFrameWidth();
+        int frameHeight = animation.getFrameHeight();
+        // Room at the top for the sprite to rise into
+        float baseWidth = frameWidth * (1f - motion.rise);
+        float baseHeight = frameHeight * (1f - motion.rise);
+        for (int i = 0; i < animation.getFrameCount(); i++) {
+            double angle = 2 * Math.PI * i / animation.getFrameCount();
+            float amount = (float) (1 - Math.cos(angle)) / 2f; // 0 at the loop start, 1 halfway
+            float width = baseWidth * (1f - motion.shrink * amount);
+            float height = baseHeight * (1f - motion.shrink * amount);
+            float centerX = animation.getFrameLeft(i) + frameWidth / 2f;
+            float bottom = animation.getFrameTop(i) + frameHeight - (frameHeight - baseHeight) * amount;
+            float centerY = bottom - baseHeight / 2f;
+            dst.set(centerX - width / 2f, centerY - height / 2f, centerX + width / 2f, centerY + height / 2f);
+
+            canvas.save();
+            canvas.clipRect(animation.getFrameLeft(i), animation.getFrameTop(i),
+                    animation.getFrameLeft(i) + frameWidth, animation.getFrameTop(i) + frameHeight);
+            canvas.rotate(motion.swingDegrees * (float) Math.sin(angle), centerX, centerY);
+            paint.setAlpha(Math.round(255 * (1f - motion.fade * amount)));
+            canvas.drawBitmap(sprite, null, dst, paint);
+            canvas.restore();
+        }
+        return atlas;
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.aremotionfilters;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.ImageDecoder;
+import android.os.Build;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pre-scaled variants of the effect sprites, so the overlay blits bitmaps that are already close
+ * to their on-screen size instead of downsampling the full-resolution PNGs on every draw.
+ *
+ * Effects are indexed by {@link FaceData} emotion/gesture code. A lookup that misses returns the
+ * full-resolution source (drawn with on-the-fly scaling as before) and queues the variant on a
+ * low-priority background thread; {@code onVariantReady} is called when it is available.
+ *
+ * An animated effect's source is its sprite atlas. Sizes then refer to one frame of the atlas, and
+ * a variant is the whole atlas scaled so that its frames have the requested size.
+ *
+ * With an {@link EffectPack} set, the effects it maps are drawn from the pack instead: there is no
+ * full-resolution source, and each variant is decoded from the pack's smallest mip level that
+ * covers its size. Until that decode lands a lookup returns the nearest variant already cached,
+ * or null on the very first draw of an effect.
+ */
+public class EffectSpriteCache {
+
+    private static final String TAG = "EffectSpriteCache";
+
+    public static final long DEFAULT_MAX_BYTES = 8L * 1024 * 1024;
+
+    private final Bitmap[] sources = new Bitmap[FaceData.CODE_COUNT];
+    private final SpriteAnimation[] animations = new SpriteAnimation[FaceData.CODE_COUNT];
+    private EffectPack pack; // Guarded by sources
+    // Cleared under the sources lock when a source or the pack changes, and filled under it after
+    // checking the variant was made from the current one.
+    // Evicted variants are only dropped, never recycled: the UI thread may still be drawing them
+    private final SpriteVariantCache<Bitmap> variants =
+            new SpriteVariantCache<>(FaceData.CODE_COUNT, DEFAULT_MAX_BYTES, null);
+    private final Runnable onVariantReady;
+    private ExecutorService scaleExecutor;
+
+    public EffectSpriteCache(Runnable onVariantReady) {
+        this.onVariantReady = onVariantReady;
+    }
+
+    /**
+     * Sets the full-resolution sprite for an effect code, with the frame table if it is an atlas;
+     * drops variants made from the old one.
+     */
+    public void setSource(int effect, @Nullable Bitmap source, @Nullable SpriteAnimation animation) {
+        synchronized (sources) {
+            sources[effect] = source;
+            animations[effect] = animation;
+            variants.clear();
+        }
+    }
+
+    @Nullable
+    public Bitmap getSource(int effect) {
+        synchronized (sources) {
+            return sources[effect];
+        }
+    }
+
+    /**
+     * Draws the effects {@code pack} maps from the pack, replacing their sources; other effects keep
+     * their sources. Null goes back to the sources only. Drops every variant.
+     */
+    public void setPack(@Nullable EffectPack pack) {
+        synchronized (sources) {
+            this.pack = pack;
+            variants.clear();
+        }
+    }
+
+    @Nullable
+    public EffectPack getPack() {
+        synchronized (sources) {
+            return pack;
+        }
+    }
+
+    /** Frame table of the effect's atlas, or null if the effect is a static sprite. */
+    @Nullable
+    public SpriteAnimation getAnimation(int effect) {
+        synchronized (sources) {
+            int sprite = pack != null ? pack.spriteFor(effect) : -1;
+            return sprite >= 0 ? pack.getAnimation(sprite) : animations[effect];
+        }
+    }
+
+    /**
+     * Full-size width of the effect's sprite or atlas, which frame tables refer to; 0 if the effect
+     * has nothing to draw. Variants returned by {@link #get} are this scaled down.
+     */
+    public int getSourceWidth(int effect) {
+        synchronized (sources) {
+            int sprite = pack != null ? pack.spriteFor(effect) : -1;
+            if (sprite >= 0) {
+                return pack.getLevelWidth(sprite, 0);
+            }
+            return sources[effect] != null ? sources[effect].getWidth() : 0;
+        }
+    }
+
+    /** Width of what one draw of the effect shows: the sprite, or one atlas frame; 0 if none. */
+    public int getFrameWidth(int effect) {
+        synchronized (sources) {
+            int sprite = pack != null ? pack.spriteFor(effect) : -1;
+            if (sprite >= 0) {
+                return pack.getFrameWidth(sprite);
+            }
+            Bitmap source = sources[effect];
+            return source == null ? 0 : animations[effect] != null ? animations[effect].getFrameWidth() : source.getWidth();
+        }
+    }
+
+    /** Height of what one draw of the effect shows; 0 if none. */
+    public int getFrameHeight(int effect) {
+        synchronized (sources) {
+            int sprite = pack != null ? pack.spriteFor(effect) : -1;
+            if (sprite >= 0) {
+                return pack.getFrameHeight(sprite);
+            }
+            Bitmap source = sources[effect];
+            return source == null ? 0 : animations[effect] != null ? animations[effect].getFrameHeight() : source.getHeight();
+        }
+    }
+
+    /**
+     * Returns a sprite for {@code effect} whose longer side (of one frame, for an atlas) is at
+     * least {@code targetSize} pixels and at most one size bucket larger, or the source if that is
+     * not cached yet (or the target is as large as the source). Returns null if the effect has no
+     * source. Effects drawn from a pack return the nearest cached variant while the exact one is
+     * decoded, and null if there is none yet.
+     */
+    @Nullable
+    public Bitmap get(int effect, float targetSize) {
+        Bitmap source;
+        SpriteAnimation animation;
+        EffectPack currentPack;
+        int packSprite;
+        synchronized (sources) {
+            source = sources[effect];
+            animation = animations[effect];
+            currentPack = pack;
+            packSprite = pack != null ? pack.spriteFor(effect) : -1;
+        }
+        if (packSprite >= 0) {
+            return getFromPack(effect, targetSize, currentPack, packSprite);
+        }
+        if (source == null) {
+            return null;
+        }
+        int bucket = SpriteVariantCache.sizeBucket(targetSize);
+        if (SpriteVariantCache.bucketSize(bucket) >= frameSize(source, animation)) {
+            return source;
+        }
+        int key = variants.key(effect, bucket);
+        Bitmap variant = variants.get(key);
+        if (variant != null) {
+            return variant;
+        }
+        if (variants.request(key)) {
+            scheduleVariant(key, source, frameSize(source, animation));
+        }
+        return source;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        variants.setMaxBytes(maxBytes);
+    }
+
+    public long getSizeBytes() {
+        return variants.getSizeBytes();
+    }
+
+    /** Drops every variant; sources are kept. */
+    public void clearVariants() {
+        variants.clear();
+    }
+
+    /** Stops the background thread and drops every variant. The cache can be used again after. */
+    public synchronized void release() {
+        if (scaleExecutor != null) {
+            scaleExecutor.shutdownNow();
+            scaleExecutor = null;
+        }
+        variants.clear();
+    }
+
+    @Nullable
+    private Bitmap getFromPack(int effect, float targetSize, EffectPack pack, int sprite) {
+        int fullSize = Math.max(pack.getFrameWidth(sprite), pack.getFrameHeight(sprite));
+        // Level 0 is the largest there is: every bucket at or above its size shares one decode of it
+        int bucket = Math.min(SpriteVariantCache.sizeBucket(targetSize), SpriteVariantCache.sizeBucket(fullSize));
+        int key = variants.key(effect, bucket);
+        Bitmap variant = variants.get(key);
+        if (variant != null) {
+            return variant;
+        }
+        if (variants.request(key)) {
+            schedulePackVariant(key, pack, sprite);
+        }
+        return variants.getNearest(effect, bucket);
+    }
+
+    // Longer side of what one draw shows: the whole sprite, or one frame of an atlas
+    private static int frameSize(Bitmap source, @Nullable SpriteAnimation animation) {
+        return animation == null ? Math.max(source.getWidth(), source.getHeight())
+                : Math.max(animation.getFrameWidth(), animation.getFrameHeight());
+    }
+
+    private synchronized ExecutorService scaleExecutor() {
+        if (scaleExecutor == null) {
+            scaleExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "effect-scaler"));
+        }
+        return scaleExecutor;
+    }
+
+    private void scheduleVariant(int key, Bitmap source, int sourceFrameSize) {
+        scaleExecutor().execute(() -> {
+            int size = SpriteVariantCache.bucketSize(SpriteVariantCache.bucketOf(key));
+            float scale = (float) size / sourceFrameSize;
+            int width = Math.max(1, Math.round(source.getWidth() * scale));
+            int height = Math.max(1, Math.round(source.getHeight() * scale));
+            Bitmap variant;
+            try {
+                variant = Bitmap.createScaledBitmap(source, width, height, true);
+            } catch (RuntimeException | OutOfMemoryError e) {
+                Log.e(TAG, "Failed to scale effect " + FaceData.codeName(SpriteVariantCache.effectOf(key)) + " to " + size + "px", e);
+                variants.cancel(key);
+                return;
+            }
+            // Checked and stored under the lock setSource() clears under, so it cannot land after clear()
+            synchronized (sources) {
+                if (sources[SpriteVariantCache.effectOf(key)] != source) {
+                    variants.cancel(key); // Source replaced while scaling
+                    return;
+                }
+                variants.put(key, variant, variant.getAllocationByteCount());
+            }
+            if (onVariantReady != null) {
+                onVariantReady.run();
+            }
+        });
+    }
+
+    // Decodes only the mip level the variant needs, straight from the mapped pack
+    private void schedulePackVariant(int key, EffectPack pack, int sprite) {
+        scaleExecutor().execute(() -> {
+            int size = SpriteVariantCache.bucketSize(SpriteVariantCache.bucketOf(key));
+            int fullSize = Math.max(pack.getFrameWidth(sprite), pack.getFrameHeight(sprite));
+            int level = pack.selectLevel(sprite, Math.min(size, fullSize));
+            Bitmap variant;
+            try {
+                Bitmap decoded = decodeLevel(pack.getLevelData(sprite, level));
+                if (decoded == null) {
+                    throw new IOException("unsupported image format");
+                }
+                // Frames of the decoded level; scale down the rest of the way to the bucket size
+                float levelFrameSize = (float) fullSize * decoded.getWidth() / pack.getLevelWidth(sprite, 0);
+                if (levelFrameSize > size) {
+                    float scale = size / levelFrameSize;
+                    variant = Bitmap.createScaledBitmap(decoded, Math.max(1, Math.round(decoded.getWidth() * scale)),
+                            Math.max(1, Math.round(decoded.getHeight() * scale)), true);
+                    if (variant != decoded) {
+                        decoded.recycle(); // Never handed out
+                    }
+                } else {
+                    variant = decoded;
+                }
+            } catch (IOException | RuntimeException | OutOfMemoryError e) {
+                Log.e(TAG, "Failed to decode " + pack.getName() + " level " + level + " for "
+                        + FaceData.codeName(SpriteVariantCache.effectOf(key)), e);
+                variants.cancel(key);
+                return;
+            }
+            synchronized (sources) {
+                if (this.pack != pack) {
+                    variants.cancel(key); // Pack switched while decoding
+                    return;
+                }
+                variants.put(key, variant, variant.getAllocationByteCount());
+            }
+            if (onVariantReady != null) {
+                onVariantReady.run();
+            }
+        });
+    }
+
+    private static Bitmap decodeLevel(ByteBuffer data) throws IOException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            // Reads the mapping directly; software memory so the result can be scaled
+            return ImageDecoder.decodeBitmap(ImageDecoder.createSource(data),
+                    (decoder, info, source) -> decoder.setAllocator(ImageDecoder.ALLOCATOR_SOFTWARE));
+        }
+        // BitmapFactory only decodes arrays: copy this one level's encoded bytes
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        return BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
+    }
+}
@@ -1,204 +1,346 @@
 package com.example.aremotionfilters; // Ganti dengan nama paket Anda yang sebenarnya
 
 import android.annotation.SuppressLint;
-import android.graphics.PointF;
-import android.graphics.Rect;
 import android.media.Image;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.ImageProxy;
 
-import com.google.android.gms.tasks.OnFailureListener;
-import com.google.android.gms.tasks.OnSuccessListener;
-import com.google.android.gms.tasks.Task;
-import com.google.android.gms.tasks.Tasks;
 import com.google.mlkit.vision.common.InputImage;
-import com.google.mlkit.vision.face.Face;
-import com.google.mlkit.vision.face.FaceDetection;
-import com.google.mlkit.vision.face.FaceDetector;
-import com.google.mlkit.vision.face.FaceDetectorOptions;
-// Import untuk Pose Detection
-import com.google.mlkit.vision.pose.Pose;
-import com.google.mlkit.vision.pose.PoseDetection;
-import com.google.mlkit.vision.pose.PoseDetector;
-import com.google.mlkit.vision.pose.PoseLandmark;
-import com.google.mlkit.vision.pose.accurate.AccuratePoseDetectorOptions;
-
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-// Executor tidak lagi digunakan dalam contoh ini, bisa dihapus jika tidak ada penggunaan lain
-// import java.util.concurrent.Executor;
-// import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FaceEmotionAnalyzer implements ImageAnalysis.Analyzer {
 
     private static final String TAG = "FaceEmotionAnalyzer";
-    private final FaceDetector faceDetector;
-    private final PoseDetector poseDetector;
+    // Backend deteksi (ML Kit atau sintetis); milik pemanggil dan tidak ditutup di sini
+    private final DetectionBackend<InputImage> detectionBackend;
     private final FaceOverlayView faceOverlayView;
     private final boolean isFrontCamera;
+    private final FrameMetrics frameMetrics;
+
+    // Penjadwalan pose: deteksi wajah tiap frame, pose hanya tiap N frame (N disesuaikan dari latensi)
+    private static final long FRAME_BUDGET_NANOS = 33_000_000L; // ~30 fps
+    private static final int MIN_POSE_INTERVAL = 1;
+    private static final int MAX_POSE_INTERVAL = 8;
+    private static final long MAX_POSE_AGE_NANOS = 500_000_000L; // Pose lama dipakai ulang maksimal 0.5 detik
+
+    // Mode kerumunan: hanya wajah terbesar/paling tengah yang diklasifikasi, dilacak dan diberi efek
+    private static final int CROWD_MAX_FACES = 5;
+    private static final long CROWD_TRACKING_BUDGET_NANOS = 6_000_000L;
+    // Rekaman deteksi di-flush tiap detik agar crash atau proses yang dimatikan hanya kehilangan sedikit frame
+    private static final long RECORDING_FLUSH_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final PoseScheduler poseScheduler =
+            new PoseScheduler(FRAME_BUDGET_NANOS, MIN_POSE_INTERVAL, MAX_POSE_INTERVAL, MAX_POSE_AGE_NANOS);
+
+    // Objek hasil dipakai ulang antar frame (hanya diakses dari thread hasil)
+    private final FaceDataPool faceDataPool = new FaceDataPool(8);
+    private final ArrayList<FaceData> frameResults = new ArrayList<>(8);
+
+    // Detect-then-track: detektor penuh tiap N frame, di antaranya wajah dilacak pada bidang Y.
+    // Wajah dan gestur diproses dari hasil mentah backend (hanya di thread hasil)
+    private final FaceTracker faceTracker;
+    private final DetectionResultProcessor resultProcessor;
+
+    // Satu frame yang sedang diproses; gambar tetap terbuka sampai hasilnya diterbitkan.
+    // Callback backend datang di thread backend; onComplete meneruskan frame ke thread hasil
+    private final class FrameJob implements DetectionBackend.Callback {
+        final LumaFrame lumaFrame = new LumaFrame();
+        final RawDetections detections = new RawDetections();
+        ImageProxy imageProxy;
+        long sequence = -1L;
+        long startNanos;
+        long timestampNanos;
+        int imageWidth;
+        int imageHeight;
+        boolean poseEnabled;
+        int faceStatus;
+        int poseStatus;
+        volatile long completedNanos; // Ditulis di thread backend saat semua bagian selesai
+        boolean complete; // Hanya thread hasil
+        // Slot backend dan Runnable ke thread hasil dibuat sekali, seperti job itu sendiri
+        final DetectionBackend.Frame<InputImage> backendFrame = detectionBackend.newFrame(detections, this);
+        private final Runnable completeTask = () -> onFrameComplete(this);
+
+        @Override
+        public void onFacesDone(boolean success) {
+            faceStatus = success ? DetectionResultProcessor.STATUS_OK : DetectionResultProcessor.STATUS_FAILED;
+            long latency = SystemClock.elapsedRealtimeNanos() - startNanos;
+            poseScheduler.onFaceLatency(latency);
+            frameMetrics.record(FrameMetrics.STAGE_FACE_DETECTION, latency);
+        }
 
-    // Ambang batas untuk klasifikasi wajah
-    private static final float SMILING_THRESHOLD = 0.7f;
-    private static final float EYE_OPEN_THRESHOLD = 0.6f;
-    private static final float EYE_CLOSED_THRESHOLD = 0.4f;
+        @Override
+        public void onPoseDone(boolean success) {
+            if (success) {
+                poseStatus = DetectionResultProcessor.STATUS_OK;
+                long latency = SystemClock.elapsedRealtimeNanos() - startNanos;
+                poseScheduler.onPoseLatency(latency);
+                frameMetrics.record(FrameMetrics.STAGE_POSE_DETECTION, latency);
+            } else {
+                poseStatus = DetectionResultProcessor.STATUS_FAILED;
+                poseScheduler.onPoseFailed();
+            }
+        }
 
-    // Ambang batas untuk gestur thumbs up yang disederhanakan
-    // Jarak Y antara jempol dan pergelangan tangan, dinormalisasi dengan tinggi bounding box pose (jika ada)
-    // atau jarak absolut. Anda perlu menyesuaikan ini.
-    private static final float THUMBS_UP_WRIST_Y_DIFFERENCE_THRESHOLD = 50; // Contoh nilai absolut dalam piksel gambar
+        @Override
+        public void onComplete() {
+            completedNanos = SystemClock.elapsedRealtimeNanos();
+            resultExecutor.execute(completeTask);
+        }
 
+        void release() {
+            lumaFrame.clear();
+            imageProxy.close();
+            imageProxy = null;
+            complete = false;
+        }
+    }
 
-    public FaceEmotionAnalyzer(FaceOverlayView overlayView, boolean isFrontCamera) {
+    // Pipeline: paling banyak jobs.length frame diproses bersamaan. Frame masuk di thread kamera,
+    // hasilnya diproses di resultExecutor dengan urutan yang sama seperti frame masuk, sehingga
+    // tracker dan overlay tidak pernah melihat hasil yang mundur.
+    private final FrameJob[] jobs;
+    private final AtomicInteger framesInFlight = new AtomicInteger();
+    private final Executor resultExecutor;
+    private long nextSequence; // Hanya thread kamera
+    private long nextSequenceToProcess; // Hanya thread hasil
+
+    public static final int MIN_FRAMES_IN_FLIGHT = 1;
+    public static final int MAX_FRAMES_IN_FLIGHT = 3;
+
+    /** Dipanggil di thread hasil setelah hasil tiap frame diterbitkan ke overlay. */
+    public interface FrameListener {
+        /**
+         * @param latencyNanos         Waktu dari frame masuk sampai hasilnya diterbitkan.
+         * @param smallestFaceFraction Lebar wajah terkecil relatif terhadap sisi pendek gambar
+         *                             analisis, atau negatif jika tidak ada wajah.
+         */
+        void onFrameAnalyzed(long latencyNanos, float smallestFaceFraction);
+    }
+
+    private volatile FrameListener frameListener;
+    // Perekam aliran deteksi untuk diputar ulang offline; null jika tidak merekam
+    private volatile DetectionRecorder detectionRecorder;
+    private long lastRecordingFlushNanos = Long.MIN_VALUE; // Hanya thread hasil
+
+    // Tingkat kualitas dari QualityGovernor; ditulis dari main thread, dibaca di thread kamera
+    private volatile int qualityTier = QualityGovernor.TIER_FULL;
+    // Hanya diakses dari thread kamera
+    private long lastAnalyzedTimestampNanos = -1L;
+    // Toleransi jitter timestamp saat membatasi frame rate
+    private static final float FRAME_RATE_CAP_TOLERANCE = 0.9f;
+
+    /**
+     * @param detectionBackend      Backend deteksi wajah dan pose, biasanya {@link MlKitDetectionBackend}
+     *                              dengan detektor bersama dari {@link DetectorManager}.
+     * @param faceDetectionInterval Jalankan detektor wajah ML Kit sekali tiap sekian frame; 1 berarti
+     *                              setiap frame (pelacakan template dimatikan).
+     * @param maxFramesInFlight     Frame yang boleh diproses bersamaan ({@value #MIN_FRAMES_IN_FLIGHT}..
+     *                              {@value #MAX_FRAMES_IN_FLIGHT}); frame yang datang saat penuh dibuang.
+     * @param resultExecutor        Executor satu thread untuk memproses hasil. Gunakan executor yang
+     *                              sama untuk setiap analyzer yang menulis ke overlay yang sama.
+     */
+    public FaceEmotionAnalyzer(FaceOverlayView overlayView, boolean isFrontCamera, FrameMetrics frameMetrics,
+                               DetectionBackend<InputImage> detectionBackend,
+                               int faceDetectionInterval, int maxFramesInFlight, Executor resultExecutor) {
+        if (maxFramesInFlight < MIN_FRAMES_IN_FLIGHT || maxFramesInFlight > MAX_FRAMES_IN_FLIGHT) {
+            throw new IllegalArgumentException("Frames in flight must be " + MIN_FRAMES_IN_FLIGHT + ".."
+                    + MAX_FRAMES_IN_FLIGHT + ": " + maxFramesInFlight);
+        }
+        this.detectionBackend = detectionBackend; // Sebelum job dibuat: tiap job mengambil slot backend
+        this.jobs = new FrameJob[maxFramesInFlight];
+        for (int i = 0; i < jobs.length; i++) {
+            jobs[i] = new FrameJob();
+        }
+        // Setelah executor dimatikan (activity dihancurkan) hasil yang masih datang diabaikan saja
+        this.resultExecutor = command -> {
+            try {
+                resultExecutor.execute(command);
+            } catch (RejectedExecutionException e) {
+                Log.w(TAG, "Result executor shut down; dropping frame results");
+            }
+        };
         this.faceOverlayView = overlayView;
         this.isFrontCamera = isFrontCamera;
+        this.frameMetrics = frameMetrics;
+        this.faceTracker = new FaceTracker(faceDetectionInterval);
+        faceTracker.setCrowdLimits(CROWD_MAX_FACES, CROWD_TRACKING_BUDGET_NANOS);
+        this.resultProcessor = new DetectionResultProcessor(faceTracker, poseScheduler);
+    }
+
+    public void setFrameListener(FrameListener frameListener) {
+        this.frameListener = frameListener;
+    }
 
-        // Konfigurasi Face Detector
-        FaceDetectorOptions faceOptions =
-                new FaceDetectorOptions.Builder()
-                        .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_FAST)
-                        .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_NONE)
-                        .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_ALL)
-                        .setContourMode(FaceDetectorOptions.CONTOUR_MODE_NONE)
-                        .setMinFaceSize(0.15f)
-                        .build();
-        faceDetector = FaceDetection.getClient(faceOptions);
-
-        // Konfigurasi Pose Detector
-        AccuratePoseDetectorOptions poseOptions =
-                new AccuratePoseDetectorOptions.Builder()
-                        .setDetectorMode(AccuratePoseDetectorOptions.STREAM_MODE)
-                        .build();
-        poseDetector = PoseDetection.getClient(poseOptions);
+    /**
+     * Merekam setiap frame hasil yang dikirim ke overlay. Perekam ditulis dari thread hasil dan
+     * tetap milik pemanggil, yang menutupnya di thread yang sama.
+     */
+    public void setDetectionRecorder(DetectionRecorder detectionRecorder) {
+        this.detectionRecorder = detectionRecorder;
+    }
+
+    /**
+     * Menerapkan tingkat kualitas {@code QualityGovernor.TIER_*}: batas frame rate analisis dan
+     * pose on/off berlaku mulai frame berikutnya. Ukuran wajah minimum ikut ditentukan oleh
+     * backend deteksi yang diberikan, jadi perubahan itu memerlukan analyzer baru.
+     */
+    public void setQualityTier(int tier) {
+        this.qualityTier = tier;
+    }
+
+    public int getQualityTier() {
+        return qualityTier;
     }
 
     @Override
     public void analyze(@NonNull ImageProxy imageProxy) {
         @SuppressLint("UnsafeOptInUsageError")
         Image mediaImage = imageProxy.getImage();
-        if (mediaImage != null) {
-            InputImage image = InputImage.fromMediaImage(mediaImage, imageProxy.getImageInfo().getRotationDegrees());
-
-            Task<List<Face>> faceTask = faceDetector.process(image);
-            Task<Pose> poseTask = poseDetector.process(image);
-
-            Tasks.whenAllComplete(faceTask, poseTask)
-                    .addOnCompleteListener(task -> {
-                        List<FaceData> allDetectionData = new ArrayList<>();
-                        try {
-                            // Proses hasil deteksi wajah
-                            List<Face> faces = faceTask.isSuccessful() ? faceTask.getResult() : null;
-                            if (faces != null) {
-                                for (Face face : faces) {
-                                    Rect boundingBox = face.getBoundingBox();
-                                    String emotion = FaceData.EMOTION_NEUTRAL;
-
-                                    Float leftEyeOpenProb = face.getLeftEyeOpenProbability();
-                                    Float rightEyeOpenProb = face.getRightEyeOpenProbability();
-                                    Float smilingProb = face.getSmilingProbability();
-
-                                    boolean isSmiling = (smilingProb != null && smilingProb > SMILING_THRESHOLD);
-                                    boolean isLeftEyeLikelyOpen = (leftEyeOpenProb != null && leftEyeOpenProb > EYE_OPEN_THRESHOLD);
-                                    boolean isLeftEyeLikelyClosed = (leftEyeOpenProb != null && leftEyeOpenProb < EYE_CLOSED_THRESHOLD);
-                                    boolean isRightEyeLikelyOpen = (rightEyeOpenProb != null && rightEyeOpenProb > EYE_OPEN_THRESHOLD);
-                                    boolean isRightEyeLikelyClosed = (rightEyeOpenProb != null && rightEyeOpenProb < EYE_CLOSED_THRESHOLD);
-
-                                    if (isSmiling) {
-                                        emotion = FaceData.EMOTION_SMILING;
-                                    } else if (isLeftEyeLikelyClosed && isRightEyeLikelyClosed) {
-                                        emotion = FaceData.EMOTION_EYES_CLOSED;
-                                    } else if (isLeftEyeLikelyClosed && isRightEyeLikelyOpen) {
-                                        emotion = FaceData.EMOTION_LEFT_WINK;
-                                    } else if (isRightEyeLikelyClosed && isLeftEyeLikelyOpen) {
-                                        emotion = FaceData.EMOTION_RIGHT_WINK;
-                                    }
-                                    float headEulerAngleZ = face.getHeadEulerAngleZ();
-                                    allDetectionData.add(new FaceData(boundingBox, emotion, headEulerAngleZ));
-                                }
-                            }
-
-                            // Proses hasil deteksi pose
-                            Pose pose = poseTask.isSuccessful() ? poseTask.getResult() : null;
-                            if (pose != null) {
-                                PointF thumbsUpAnchor = checkForThumbsUpSimplified(pose, image.getHeight()); // Kirim tinggi gambar untuk normalisasi potensial
-                                if (thumbsUpAnchor != null) {
-                                    PoseLandmark wrist = pose.getPoseLandmark(PoseLandmark.RIGHT_WRIST); // Atau LEFT_WRIST
-                                    PoseLandmark elbow = pose.getPoseLandmark(PoseLandmark.RIGHT_ELBOW);
-                                    float gestureRotation = 0f;
-                                    if (wrist != null && elbow != null) {
-                                        gestureRotation = (float) Math.toDegrees(Math.atan2(
-                                                wrist.getPosition().y - elbow.getPosition().y,
-                                                wrist.getPosition().x - elbow.getPosition().x
-                                        ));
-                                        gestureRotation += 90; // Sesuaikan orientasi
-                                    }
-                                    allDetectionData.add(new FaceData(FaceData.GESTURE_THUMBS_UP, thumbsUpAnchor, gestureRotation));
-                                }
-                            }
-
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error processing detection results: " + e.getMessage());
-                        } finally {
-                            faceOverlayView.updateFaces(allDetectionData, image.getWidth(), image.getHeight(), isFrontCamera);
-                            imageProxy.close();
-                        }
-                    });
-        } else {
+        if (mediaImage == null) {
             imageProxy.close();
+            return;
         }
+        final long frameStartNanos = SystemClock.elapsedRealtimeNanos();
+        final long frameTimestampNanos = imageProxy.getImageInfo().getTimestamp();
+        final int tier = qualityTier;
+        int maxFps = QualityGovernor.maxAnalysisFps(tier);
+        if (maxFps > 0 && lastAnalyzedTimestampNanos >= 0
+                && frameTimestampNanos - lastAnalyzedTimestampNanos < FRAME_RATE_CAP_TOLERANCE * 1_000_000_000L / maxFps) {
+            // Lewati frame ini agar analisis tetap di bawah batas frame rate tingkat kualitas
+            frameMetrics.onFrameThrottled(frameTimestampNanos);
+            imageProxy.close();
+            return;
+        }
+        if (framesInFlight.get() >= jobs.length) {
+            // Pipeline penuh: buang frame ini (terhitung sebagai drop) daripada mengantre di ML Kit
+            imageProxy.close();
+            return;
+        }
+        lastAnalyzedTimestampNanos = frameTimestampNanos;
+        frameMetrics.onFrameTimestamp(frameTimestampNanos);
+
+        // Slot ini bebas: frame yang sedang diproses selalu berurutan dan jumlahnya < jobs.length
+        final FrameJob job = jobs[(int) (nextSequence % jobs.length)];
+        job.sequence = nextSequence++;
+        job.imageProxy = imageProxy;
+        job.startNanos = frameStartNanos;
+        job.timestampNanos = frameTimestampNanos;
+        job.poseEnabled = QualityGovernor.isPoseEnabled(tier);
+        job.completedNanos = 0L;
+        framesInFlight.incrementAndGet();
+
+        int rotationDegrees = imageProxy.getImageInfo().getRotationDegrees();
+        InputImage image = InputImage.fromMediaImage(mediaImage, rotationDegrees);
+        job.imageWidth = image.getWidth();
+        job.imageHeight = image.getHeight();
+        ImageProxy.PlaneProxy yPlane = imageProxy.getPlanes()[0];
+        job.lumaFrame.set(yPlane.getBuffer(), imageProxy.getWidth(), imageProxy.getHeight(),
+                yPlane.getRowStride(), yPlane.getPixelStride(), rotationDegrees);
+
+        // Deteksi wajah penuh hanya pada frame deteksi; frame lain dilacak saat hasilnya diproses.
+        // Pose hanya dijalankan jika scheduler mengizinkan; selain itu pose terakhir dipakai ulang
+        boolean detectFaces = faceTracker.onFrame();
+        boolean detectPose = job.poseEnabled && poseScheduler.shouldRunPose();
+        job.faceStatus = DetectionResultProcessor.STATUS_NOT_RUN;
+        job.poseStatus = DetectionResultProcessor.STATUS_NOT_RUN;
+        job.detections.clear();
+        // Tanpa deteksi sama sekali (frame pelacakan tanpa pose) hasil tetap diproses lewat jalur yang sama
+        job.backendFrame.process(image, job.imageWidth, job.imageHeight, frameTimestampNanos, detectFaces, detectPose);
     }
 
-    // Metode untuk memeriksa gestur "thumbs up" yang disederhanakan
-    private PointF checkForThumbsUpSimplified(Pose pose, int imageHeight) {
-        // Coba deteksi untuk tangan kanan
-        PoseLandmark thumbTip = pose.getPoseLandmark(PoseLandmark.RIGHT_THUMB);
-        PoseLandmark wrist = pose.getPoseLandmark(PoseLandmark.RIGHT_WRIST);
-        PoseLandmark elbow = pose.getPoseLandmark(PoseLandmark.RIGHT_ELBOW); // Opsional, untuk konteks
-
-        if (thumbTip == null || wrist == null) {
-            return null; // Landmark penting tidak terdeteksi
+    // Thread hasil: tandai frame selesai lalu proses semua frame yang sudah siap, sesuai urutan masuk
+    private void onFrameComplete(FrameJob job) {
+        job.complete = true;
+        while (true) {
+            FrameJob next = jobs[(int) (nextSequenceToProcess % jobs.length)];
+            if (!next.complete || next.sequence != nextSequenceToProcess) {
+                return; // Frame sebelumnya masih diproses ML Kit
+            }
+            processResults(next);
+            nextSequenceToProcess++;
         }
+    }
 
-        PointF thumbPos = thumbTip.getPosition();
-        PointF wristPos = wrist.getPosition();
-
-        // Logika yang sangat sederhana:
-        // 1. Ujung jempol (thumbPos.y) harus secara signifikan lebih kecil (di atas) dari pergelangan tangan (wristPos.y).
-        //    Karena koordinat Y meningkat ke bawah.
-        // 2. Mungkin, pergelangan tangan (wristPos.y) harus di atas siku (elbowPos.y) untuk gestur yang lebih jelas.
-
-        float yDifference = wristPos.y - thumbPos.y; // Harus positif dan besar jika jempol di atas pergelangan tangan
-
-        // Normalisasi sederhana: bandingkan perbedaan Y dengan persentase tinggi gambar
-        // float normalizedThreshold = imageHeight * 0.05f; // Misalnya, 5% dari tinggi gambar
-        // boolean thumbIsSignificantlyUp = yDifference > normalizedThreshold;
-
-        // Atau gunakan ambang batas absolut (perlu disesuaikan berdasarkan resolusi gambar analisis)
-        boolean thumbIsSignificantlyUp = yDifference > THUMBS_UP_WRIST_Y_DIFFERENCE_THRESHOLD;
-
-
-        // Kondisi tambahan (opsional): Siku di bawah pergelangan tangan
-        boolean armOrientedCorrectly = true; // Default true jika siku tidak terdeteksi
-        if (elbow != null) {
-            PointF elbowPos = elbow.getPosition();
-            if (elbowPos.y < wristPos.y) { // Jika siku di atas pergelangan tangan, mungkin bukan thumbs up yang jelas
-                armOrientedCorrectly = false;
+    private void processResults(FrameJob job) {
+        long resultStartNanos = SystemClock.elapsedRealtimeNanos();
+        long completedNanos = job.completedNanos;
+        frameMetrics.record(FrameMetrics.STAGE_QUEUE_DELAY,
+                completedNanos > 0 ? Math.max(0L, resultStartNanos - completedNanos) : 0L);
+        // Kembalikan hasil frame sebelumnya ke pool; overlay sudah menyalin nilainya
+        faceDataPool.releaseAll(frameResults);
+        try {
+            // Wajah: perbarui tracker dari hasil detektor, atau lacak wajah pada frame ini.
+            // Pose: fitur kedua tangan dihitung sekali, lalu semua aturan gestur dievaluasi
+            // terhadap vektor yang sama (tanpa pose, gestur yang aktif akan padam)
+            long trackingNanos = resultProcessor.process(job.detections, job.faceStatus, job.lumaFrame,
+                    job.poseEnabled, job.poseStatus, job.timestampNanos, faceDataPool, frameResults);
+            if (trackingNanos >= 0) {
+                poseScheduler.onFaceLatency(trackingNanos);
+                frameMetrics.record(FrameMetrics.STAGE_FACE_TRACKING, trackingNanos);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error processing detection results: " + e.getMessage());
+        } finally {
+            long updateStartNanos = SystemClock.elapsedRealtimeNanos();
+            frameMetrics.record(FrameMetrics.STAGE_RESULT_PROCESSING, updateStartNanos - resultStartNanos);
+            recordFrame(job);
+            faceOverlayView.updateFaces(frameResults, job.imageWidth, job.imageHeight, isFrontCamera,
+                    job.timestampNanos);
+            long closeStartNanos = SystemClock.elapsedRealtimeNanos();
+            frameMetrics.record(FrameMetrics.STAGE_OVERLAY_UPDATE, closeStartNanos - updateStartNanos);
+            job.release();
+            framesInFlight.decrementAndGet();
+            long frameEndNanos = SystemClock.elapsedRealtimeNanos();
+            frameMetrics.record(FrameMetrics.STAGE_IMAGE_CLOSE, frameEndNanos - closeStartNanos);
+            frameMetrics.record(FrameMetrics.STAGE_FRAME_TOTAL, frameEndNanos - job.startNanos);
+            FrameListener listener = frameListener;
+            if (listener != null) {
+                listener.onFrameAnalyzed(updateStartNanos - job.startNanos,
+                        smallestFaceFraction(frameResults, job.imageWidth, job.imageHeight));
             }
         }
+    }
 
-        if (thumbIsSignificantlyUp && armOrientedCorrectly) {
-            Log.d(TAG, "Thumbs up (simplified) terdeteksi pada tangan kanan!");
-            return wristPos; // Kembalikan posisi pergelangan tangan sebagai acuan
+    private void recordFrame(FrameJob job) {
+        DetectionRecorder recorder = detectionRecorder;
+        if (recorder == null) {
+            return;
         }
+        try {
+            recorder.record(frameResults, job.imageWidth, job.imageHeight, isFrontCamera, job.timestampNanos);
+            // Flush hanya di antara frame, sehingga file selalu berakhir di frame utuh
+            if (lastRecordingFlushNanos == Long.MIN_VALUE) {
+                lastRecordingFlushNanos = job.timestampNanos;
+            } else if (job.timestampNanos - lastRecordingFlushNanos >= RECORDING_FLUSH_INTERVAL_NANOS) {
+                recorder.flush();
+                lastRecordingFlushNanos = job.timestampNanos;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Recording detections failed, stopping: " + e.getMessage());
+            detectionRecorder = null;
+        }
+    }
 
-        // Anda bisa menambahkan logika untuk tangan kiri di sini dengan cara yang sama
-        // PoseLandmark leftThumbTip = pose.getPoseLandmark(PoseLandmark.LEFT_THUMB);
-        // PoseLandmark leftWrist = pose.getPoseLandmark(PoseLandmark.LEFT_WRIST);
-        // ... (logika serupa)
-
-        return null;
+    // Lebar wajah terkecil relatif terhadap sisi pendek gambar; -1 jika tidak ada wajah
+    private static float smallestFaceFraction(List<FaceData> results, int imageWidth, int imageHeight) {
+        float smallest = Float.MAX_VALUE;
+        for (int i = 0, n = results.size(); i < n; i++) {
+            FaceData face = results.get(i);
+            if (face.hasBoundingBox()) {
+                smallest = Math.min(smallest, face.getBoxRight() - face.getBoxLeft());
+            }
+        }
+        return smallest == Float.MAX_VALUE ? -1f : smallest / Math.min(imageWidth, imageHeight);
     }
 }
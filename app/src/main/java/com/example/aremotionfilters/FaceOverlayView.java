@@ -1,22 +1,21 @@
 package com.example.aremotionfilters; // Ganti dengan nama paket Anda yang sebenarnya
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Matrix;
 import android.graphics.Paint;
-import android.graphics.PointF;
-import android.graphics.Rect;
-import android.graphics.RectF;
+import android.graphics.PixelFormat;
+import android.os.SystemClock;
 import android.util.AttributeSet;
+import android.util.DisplayMetrics;
 import android.util.Log;
+import android.view.SurfaceView;
 import android.view.View;
 
 import androidx.annotation.Nullable;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class FaceOverlayView extends View {
@@ -24,26 +23,58 @@ public class FaceOverlayView extends View {
     private final Paint boxPaint;
     // private final Paint textPaint;
 
-    private List<FaceData> allDetectionData = new ArrayList<>();
-    private int imageWidth; // Width of the image from ImageAnalysis
-    private int imageHeight; // Height of the image from ImageAnalysis
-    private boolean isFrontCameraForOverlay = true; // Status for drawing logic
+    // Latest detection results, copied by value so the analyzer can recycle its FaceData objects.
+    // Published once per analyzed frame into a lock-free mailbox for the live overlay (this View's
+    // onDraw, or the render thread) and into a history of recent frames for the capture path,
+    // which looks up the frame matching the captured image's sensor timestamp.
+    private final DetectionMailbox liveDetections = new DetectionMailbox();
+    private final DetectionHistory detectionHistory = new DetectionHistory(DETECTION_HISTORY_SIZE);
+    private final DetectionSnapshot captureDetections = new DetectionSnapshot(); // Capture thread only
+
+    // Result thread only: whether a new result looks different from what was last redrawn for
+    private final DetectionSnapshot changeDetections = new DetectionSnapshot();
+    private final OverlayChangeDetector changeDetector = new OverlayChangeDetector();
+    private volatile boolean fullRedrawPending;
+
+    // Effect sprites indexed by FaceData emotion/gesture code, plus pre-scaled variants of them
+    private final EffectSpriteCache spriteCache = new EffectSpriteCache(this::redraw);
+
+    private static final int[] EFFECT_CODES = {
+            FaceData.EMOTION_SMILING, FaceData.EMOTION_EYES_CLOSED, FaceData.EMOTION_LEFT_WINK,
+            FaceData.EMOTION_RIGHT_WINK, FaceData.GESTURE_THUMBS_UP, FaceData.GESTURE_PEACE,
+            FaceData.GESTURE_WAVE
+    };
+    // Gestures without artwork of their own reuse a sprite; the loader decodes it only once
+    private static final int[] EFFECT_RESOURCES = {
+            R.drawable.sparkles, R.drawable.zzz, R.drawable.left_wink_effect,
+            R.drawable.right_wink_effect, R.drawable.thumbs_up_effect, R.drawable.sparkles,
+            R.drawable.mouth_open_effect
+    };
+    // Effects with a motion are played from a sprite atlas built at load time; null stays static
+    private static final EffectAtlasBuilder.Motion[] EFFECT_MOTIONS = {
+            EffectAtlasBuilder.TWINKLE, EffectAtlasBuilder.FLOAT, null,
+            null, null, EffectAtlasBuilder.TWINKLE,
+            EffectAtlasBuilder.POP
+    };
+    // Written by the loader thread once all sprites are decoded; -1 until then
+    private volatile long assetDecodeNanos = -1L;
+    private volatile long assetBytes = -1L;
+
+    // One renderer per drawing thread; they share the sprite cache
+    private final OverlayRenderer liveRenderer;
+    private final OverlayRenderer captureRenderer;
+    private final OverlayRenderer changeRenderer; // Places effects for the change check; never draws
+    // Set when the overlay is drawn by a dedicated thread onto a SurfaceView instead of onDraw
+    private volatile OverlayRenderThread renderThread;
 
-    private Bitmap sparklesBitmap;
-    private Bitmap zzzBitmap;
-    private Bitmap leftWinkBitmap;
-    private Bitmap rightWinkBitmap;
-    private Bitmap thumbsUpBitmap;
-
-    private final Matrix matrix = new Matrix();
+    private static final String TAG = "FaceOverlayView";
 
-    private static final float FACE_EFFECT_WIDTH_PERCENTAGE_OF_FACE = 0.9f;
-    private static final float FACE_EFFECT_HORIZONTAL_OFFSET_FACTOR = 0.1f;
-    private static final float FACE_EFFECT_VERTICAL_OFFSET_FACTOR = 0.6f;
-    private static final float GESTURE_EFFECT_HEIGHT_PERCENTAGE_OF_VIEW = 0.15f; // This might need to be relative to image if used in drawFiltersOnCanvas
-    private static final float GESTURE_EFFECT_VERTICAL_OFFSET_PIXELS = -20;
+    private static final float HUD_TEXT_SIZE_SP = 11f;
+    // Analyzed frames kept for capture lookups; about a second of analysis at 15-30 fps
+    private static final int DETECTION_HISTORY_SIZE = 16;
 
-    private static final String TAG = "FaceOverlayView";
+    private volatile FrameMetrics frameMetrics;
+    private boolean debugHudEnabled;
 
     public FaceOverlayView(Context context, @Nullable AttributeSet attrs) {
         super(context, attrs);
@@ -57,159 +88,226 @@ public class FaceOverlayView extends View {
         // textPaint.setColor(Color.CYAN);
         // textPaint.setTextSize(30.0f);
 
-        try {
-            sparklesBitmap = BitmapFactory.decodeResource(getResources(), R.drawable.sparkles);
-            zzzBitmap = BitmapFactory.decodeResource(getResources(), R.drawable.zzz);
-            leftWinkBitmap = BitmapFactory.decodeResource(getResources(), R.drawable.left_wink_effect);
-            rightWinkBitmap = BitmapFactory.decodeResource(getResources(), R.drawable.right_wink_effect);
-            thumbsUpBitmap = BitmapFactory.decodeResource(getResources(), R.drawable.thumbs_up_effect);
-        } catch (Exception e) {
-            Log.e(TAG, "Error loading bitmaps: " + e.getMessage(), e);
+        float hudTextSize = HUD_TEXT_SIZE_SP * getResources().getDisplayMetrics().scaledDensity;
+        liveRenderer = new OverlayRenderer(spriteCache, hudTextSize);
+        captureRenderer = new OverlayRenderer(spriteCache, hudTextSize);
+        changeRenderer = new OverlayRenderer(spriteCache, hudTextSize);
+
+        // Decode the sprites off the UI thread; effects without a sprite yet are simply not drawn.
+        // The largest sprite needed is about the width of a face filling the screen.
+        DisplayMetrics displayMetrics = getResources().getDisplayMetrics();
+        int maxSpriteSize = Math.min(displayMetrics.widthPixels, displayMetrics.heightPixels);
+        new EffectAssetLoader(getResources(), EFFECT_CODES, EFFECT_RESOURCES, EFFECT_MOTIONS).loadAsync(maxSpriteSize, new EffectAssetLoader.Callback() {
+            @Override
+            public void onSpriteLoaded(int effect, Bitmap sprite, @Nullable SpriteAnimation animation) {
+                spriteCache.setSource(effect, sprite, animation);
+                redraw();
+            }
+
+            @Override
+            public void onAllLoaded(long decodeNanos, long totalBytes) {
+                assetDecodeNanos = decodeNanos;
+                assetBytes = totalBytes;
+                FrameMetrics metrics = frameMetrics;
+                if (metrics != null) {
+                    metrics.recordEffectAssetLoad(decodeNanos, totalBytes);
+                }
+            }
+        });
+    }
+
+    /**
+     * Publishes the results of the analyzed frame with sensor timestamp {@code timestampNanos}
+     * ({@code ImageInfo.getTimestamp()}). Must always be called from the same thread.
+     *
+     * The live overlay is only redrawn when the effects would visibly move, turn, change or
+     * appear compared to the last redraw (see {@link #setRedrawTolerance}). Skipped and performed
+     * redraws are counted in the frame metrics.
+     */
+    public void updateFaces(List<FaceData> detectionData, int imageWidth, int imageHeight, boolean isFrontCamera,
+                            long timestampNanos) {
+        liveDetections.publish(detectionData, imageWidth, imageHeight, isFrontCamera); // Copy values into our own instances
+        detectionHistory.record(timestampNanos, detectionData, imageWidth, imageHeight, isFrontCamera);
+
+        changeDetections.set(detectionData, imageWidth, imageHeight, isFrontCamera);
+        changeDetector.begin();
+        changeRenderer.collectEffectBounds(changeDetections, getWidth(), getHeight(), isFrontCamera, changeDetector);
+        boolean changed = changeDetector.commit();
+        FrameMetrics metrics = frameMetrics;
+        if (fullRedrawPending || changed) {
+            // Sprites or the view changed since the last check: redraw even if the placements did not
+            fullRedrawPending = false;
+            redraw();
+        } else {
+            if (metrics != null) {
+                metrics.onOverlayRedrawSkipped();
+            }
+            return;
+        }
+        if (metrics != null) {
+            metrics.onOverlayRedraw();
         }
     }
 
-    public void updateFaces(List<FaceData> detectionData, int imageWidth, int imageHeight, boolean isFrontCamera) {
-        this.allDetectionData = new ArrayList<>(detectionData); // Use a copy
-        this.imageWidth = imageWidth; // This is from ImageAnalysis
-        this.imageHeight = imageHeight; // This is from ImageAnalysis
-        this.isFrontCameraForOverlay = isFrontCamera;
-        postInvalidate();
+    /**
+     * Sets how far, in view pixels, and how many degrees an effect may move or turn between
+     * analyzed frames before the overlay is redrawn. Defaults to
+     * {@link OverlayChangeDetector#DEFAULT_POSITION_TOLERANCE_PX} and
+     * {@link OverlayChangeDetector#DEFAULT_ROTATION_TOLERANCE_DEGREES}; 0 redraws on any change.
+     */
+    public void setRedrawTolerance(float positionPx, float rotationDegrees) {
+        changeDetector.setTolerance(positionPx, rotationDegrees);
     }
 
-    @Override
-    protected void onDraw(Canvas canvas) {
-        super.onDraw(canvas);
-        // Call the common drawing logic, using View's dimensions as target
-        drawOverlayLogic(canvas, getWidth(), getHeight(), this.isFrontCameraForOverlay, true);
+    /**
+     * Moves live overlay drawing from this View's onDraw to a dedicated render thread that draws
+     * onto {@code surfaceView}, paced by vsync, so UI-thread stalls no longer delay overlay frames.
+     * The surface view should cover this view; call before its surface is created (e.g. in onCreate).
+     * This view stays responsible for capture drawing and the sprite cache.
+     */
+    public void attachRenderSurface(SurfaceView surfaceView) {
+        surfaceView.setZOrderMediaOverlay(true); // Above the camera preview surface
+        surfaceView.getHolder().setFormat(PixelFormat.TRANSLUCENT);
+        OverlayRenderThread thread = new OverlayRenderThread(liveDetections, liveRenderer);
+        thread.setFrameMetrics(frameMetrics);
+        thread.setDebugHudEnabled(debugHudEnabled);
+        surfaceView.getHolder().addCallback(thread);
+        renderThread = thread;
+        postInvalidate(); // Clears whatever onDraw drew last
     }
 
     /**
-     * New method to draw filters directly onto a provided canvas (e.g., for a captured bitmap).
-     * @param canvas The canvas to draw on.
-     * @param targetCanvasWidth The width of the target canvas/bitmap.
-     * @param targetCanvasHeight The height of the target canvas/bitmap.
-     * @param isFrontCamera True if the context is for a front camera image.
+     * Attaches the metrics sink that draw timings are recorded into and that the debug HUD reads.
      */
-    public void drawFiltersOnCanvas(Canvas canvas, int targetCanvasWidth, int targetCanvasHeight, boolean isFrontCamera) {
-        Log.d(TAG, "drawFiltersOnCanvas called. Target W: " + targetCanvasWidth + " H: " + targetCanvasHeight +
-                ". Analysis W: " + this.imageWidth + " H: " + this.imageHeight + ". Data size: " + allDetectionData.size());
-        if (this.imageWidth == 0 || this.imageHeight == 0) {
-            Log.w(TAG, "ImageAnalysis dimensions not set in FaceOverlayView, cannot draw filters on canvas.");
-            return;
+    public void setFrameMetrics(@Nullable FrameMetrics frameMetrics) {
+        this.frameMetrics = frameMetrics;
+        OverlayRenderThread thread = renderThread;
+        if (thread != null) {
+            thread.setFrameMetrics(frameMetrics);
+        }
+        if (frameMetrics != null && assetDecodeNanos >= 0) {
+            frameMetrics.recordEffectAssetLoad(assetDecodeNanos, assetBytes);
         }
-        // Call the common drawing logic, using the provided canvas and its dimensions
-        drawOverlayLogic(canvas, targetCanvasWidth, targetCanvasHeight, isFrontCamera, false);
     }
 
     /**
-     * Common logic for drawing overlays, used by both onDraw and drawFiltersOnCanvas.
-     * @param canvas The canvas to draw on.
-     * @param effectiveViewWidth The width of the target drawing area (View width or captured image width).
-     * @param effectiveViewHeight The height of the target drawing area (View height or captured image height).
-     * @param isFrontCam True if the context is for a front camera image.
-     * @param isLivePreview True if this is for live preview (onDraw), false if for static bitmap (drawFiltersOnCanvas).
+     * Shows or hides the latency HUD (p50/p95/p99 per pipeline stage, analyzed and dropped frames).
+     * Has no effect until {@link #setFrameMetrics(FrameMetrics)} has been called.
      */
-    private void drawOverlayLogic(Canvas canvas, int effectiveViewWidth, int effectiveViewHeight, boolean isFrontCam, boolean isLivePreview) {
-        boolean noFaceBitmaps = sparklesBitmap == null && zzzBitmap == null && leftWinkBitmap == null && rightWinkBitmap == null;
-        boolean noGestureBitmaps = thumbsUpBitmap == null;
-
-        if (allDetectionData == null || allDetectionData.isEmpty() || this.imageWidth == 0 || this.imageHeight == 0) {
-            if (isLivePreview) { // Only clear canvas if it's the live preview view's onDraw
-                // canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR); // Clear previous drawings if needed
-            }
-            return;
+    public void setDebugHudEnabled(boolean enabled) {
+        this.debugHudEnabled = enabled;
+        OverlayRenderThread thread = renderThread;
+        if (thread != null) {
+            thread.setDebugHudEnabled(enabled);
         }
+        postInvalidate();
+    }
 
-        // Scale factor from ImageAnalysis coordinates to the target canvas coordinates
-        float scaleX = (float) effectiveViewWidth / this.imageWidth;
-        float scaleY = (float) effectiveViewHeight / this.imageHeight;
-
-        // Log.d(TAG, "Drawing overlay. EffectiveW: " + effectiveViewWidth + " EffectiveH: " + effectiveViewHeight +
-        //         " AnalysisW: " + this.imageWidth + " AnalysisH: " + this.imageHeight +
-        //         " ScaleX: " + scaleX + " ScaleY: " + scaleY);
-
-
-        for (FaceData data : allDetectionData) {
-            String dataTypeOrEmotion = data.getEmotion();
-
-            if (FaceData.GESTURE_THUMBS_UP.equals(dataTypeOrEmotion) && thumbsUpBitmap != null) {
-                PointF anchor = data.getGestureAnchorPoint();
-                if (anchor != null) {
-                    // Transform gesture anchor from ImageAnalysis coordinates to target canvas coordinates
-                    float anchorXInView = isFrontCam ? effectiveViewWidth - (anchor.x * scaleX) : anchor.x * scaleX;
-                    float anchorYInView = anchor.y * scaleY;
-
-                    // Use a fixed percentage of the *target canvas height* for gesture effect size
-                    float desiredEffectHeight = effectiveViewHeight * GESTURE_EFFECT_HEIGHT_PERCENTAGE_OF_VIEW;
-                    float aspectRatio = (float) thumbsUpBitmap.getWidth() / (float) thumbsUpBitmap.getHeight();
-                    float desiredEffectWidth = desiredEffectHeight * aspectRatio;
-
-                    if (desiredEffectWidth <= 0 || desiredEffectHeight <= 0) continue;
-
-                    float targetEffectX = anchorXInView - (desiredEffectWidth / 2f);
-                    float targetEffectY = anchorYInView - desiredEffectHeight + GESTURE_EFFECT_VERTICAL_OFFSET_PIXELS;
-
-                    RectF srcRectF = new RectF(0, 0, thumbsUpBitmap.getWidth(), thumbsUpBitmap.getHeight());
-                    RectF dstRectF = new RectF(targetEffectX, targetEffectY, targetEffectX + desiredEffectWidth, targetEffectY + desiredEffectHeight);
+    /**
+     * Sets the memory budget for pre-scaled effect sprites; least recently used sizes are evicted
+     * first. Defaults to {@link EffectSpriteCache#DEFAULT_MAX_BYTES}.
+     */
+    public void setEffectCacheMaxBytes(long maxBytes) {
+        spriteCache.setMaxBytes(maxBytes);
+    }
 
-                    matrix.reset();
-                    matrix.setRectToRect(srcRectF, dstRectF, Matrix.ScaleToFit.CENTER);
-                    matrix.postRotate(data.getGestureRotation(), dstRectF.centerX(), dstRectF.centerY());
-                    canvas.drawBitmap(thumbsUpBitmap, matrix, null);
-                }
-            } else if (data.getBoundingBox() != null) { // Face data
-                Rect originalBox = data.getBoundingBox(); // In ImageAnalysis coordinates
-                RectF scaledBox = new RectF(); // Will be in target canvas coordinates
-
-                if (isFrontCam) {
-                    scaledBox.left = effectiveViewWidth - (originalBox.right * scaleX);
-                    scaledBox.right = effectiveViewWidth - (originalBox.left * scaleX);
-                } else {
-                    scaledBox.left = originalBox.left * scaleX;
-                    scaledBox.right = originalBox.right * scaleX;
-                }
-                scaledBox.top = originalBox.top * scaleY;
-                scaledBox.bottom = originalBox.bottom * scaleY;
-
-                Bitmap effectBitmap = null;
-                if (FaceData.EMOTION_SMILING.equals(dataTypeOrEmotion) && sparklesBitmap != null) {
-                    effectBitmap = sparklesBitmap;
-                } else if (FaceData.EMOTION_EYES_CLOSED.equals(dataTypeOrEmotion) && zzzBitmap != null) {
-                    effectBitmap = zzzBitmap;
-                } else if (FaceData.EMOTION_LEFT_WINK.equals(dataTypeOrEmotion) && leftWinkBitmap != null) {
-                    effectBitmap = leftWinkBitmap;
-                } else if (FaceData.EMOTION_RIGHT_WINK.equals(dataTypeOrEmotion) && rightWinkBitmap != null) {
-                    effectBitmap = rightWinkBitmap;
-                }
+    /**
+     * Draws the effects {@code pack} maps from it instead of the built-in sprites; null goes back to
+     * the built-in sprites. Switching packs drops the pre-scaled sprites of the previous one; nothing
+     * of a pack is decoded until an effect from it is drawn.
+     */
+    public void setEffectPack(@Nullable EffectPack pack) {
+        spriteCache.setPack(pack);
+        fullRedrawPending = true;
+        redraw();
+    }
 
-                if (effectBitmap != null) {
-                    float faceActualWidthInView = scaledBox.width();
-                    if (faceActualWidthInView <= 0) continue;
+    /** Drops pre-scaled sprite variants when the system is low on memory; they are rebuilt on demand. */
+    public void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            spriteCache.clearVariants();
+        }
+    }
 
-                    float desiredEffectWidth = faceActualWidthInView * FACE_EFFECT_WIDTH_PERCENTAGE_OF_FACE;
-                    float effectAspectRatio = (float) effectBitmap.getHeight() / (float) effectBitmap.getWidth(); // Corrected aspect ratio
-                    float desiredEffectHeight = desiredEffectWidth * effectAspectRatio;
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        spriteCache.release();
+    }
 
-                    if (desiredEffectWidth <= 0 || desiredEffectHeight <= 0) continue;
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        fullRedrawPending = true; // Placements from the old size no longer apply
+    }
 
-                    // Calculate center for effect placement relative to the scaled face box
-                    // Note: Original logic for offset might need review if it was based on View properties not general face box
-                    float effectCenterX = scaledBox.right + (faceActualWidthInView * FACE_EFFECT_HORIZONTAL_OFFSET_FACTOR); // Example: to the right of the face
-                    float effectCenterY = scaledBox.top - (desiredEffectHeight * FACE_EFFECT_VERTICAL_OFFSET_FACTOR);     // Example: above the face
+    /** Asks whichever thread draws the live overlay to draw the newest results. */
+    private void redraw() {
+        OverlayRenderThread thread = renderThread;
+        if (thread != null) {
+            thread.requestFrame();
+        } else {
+            postInvalidate();
+        }
+    }
 
-                    float targetEffectX = effectCenterX - (desiredEffectWidth / 2f);
-                    float targetEffectY = effectCenterY - (desiredEffectHeight / 2f);
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (renderThread != null) {
+            return; // The render thread owns the live overlay and its mailbox
+        }
+        long drawStartNanos = SystemClock.elapsedRealtimeNanos();
+        liveDetections.update();
+        DetectionSnapshot detections = liveDetections.current();
+        // Call the common drawing logic, using View's dimensions as target. Animated effects are
+        // timed by the frame's drawing time and keep drawing on vsync between analyzer results.
+        if (liveRenderer.drawEffects(canvas, detections, getWidth(), getHeight(), detections.isFrontCamera(),
+                getDrawingTime() * 1_000_000L)) {
+            postInvalidateOnAnimation();
+        }
+        FrameMetrics metrics = frameMetrics;
+        if (metrics != null) {
+            metrics.record(FrameMetrics.STAGE_DRAW, SystemClock.elapsedRealtimeNanos() - drawStartNanos);
+            if (debugHudEnabled) {
+                liveRenderer.drawDebugHud(canvas, metrics);
+            }
+        }
+    }
 
-                    RectF srcRectF = new RectF(0, 0, effectBitmap.getWidth(), effectBitmap.getHeight());
-                    RectF dstRectF = new RectF(targetEffectX, targetEffectY, targetEffectX + desiredEffectWidth, targetEffectY + desiredEffectHeight);
+    /**
+     * A new renderer drawing this view's effect sprites, for drawing effects outside the view,
+     * e.g. onto batch-processed photos. Renderers are not thread-safe: use one per thread.
+     */
+    public OverlayRenderer newEffectRenderer() {
+        return new OverlayRenderer(spriteCache, 0f); // Never draws the HUD
+    }
 
-                    matrix.reset();
-                    matrix.setRectToRect(srcRectF, dstRectF, Matrix.ScaleToFit.CENTER);
-                    // Rotate effect around its own center on the target canvas
-                    matrix.postRotate(data.getHeadEulerAngleZ(), dstRectF.centerX(), dstRectF.centerY());
-                    canvas.drawBitmap(effectBitmap, matrix, null);
-                }
-            }
+    /**
+     * New method to draw filters directly onto a provided canvas (e.g., for a captured bitmap).
+     * Uses the results of the analyzed frames around {@code timestampNanos}, interpolated between
+     * them; call from one thread at a time.
+     * @param canvas The canvas to draw on.
+     * @param targetCanvasWidth The width of the target canvas/bitmap.
+     * @param targetCanvasHeight The height of the target canvas/bitmap.
+     * @param isFrontCamera True if the context is for a front camera image.
+     * @param timestampNanos Sensor timestamp of the captured image.
+     */
+    public void drawFiltersOnCanvas(Canvas canvas, int targetCanvasWidth, int targetCanvasHeight, boolean isFrontCamera,
+                                    long timestampNanos) {
+        DetectionSnapshot detections = captureDetections;
+        if (!detectionHistory.lookup(timestampNanos, detections)) {
+            Log.w(TAG, "No detection results recorded near capture timestamp " + timestampNanos);
+            return;
+        }
+        Log.d(TAG, "drawFiltersOnCanvas called. Target W: " + targetCanvasWidth + " H: " + targetCanvasHeight +
+                ". Analysis W: " + detections.getImageWidth() + " H: " + detections.getImageHeight() + ". Data size: " + detections.size());
+        if (detections.getImageWidth() == 0 || detections.getImageHeight() == 0) {
+            Log.w(TAG, "ImageAnalysis dimensions not set in FaceOverlayView, cannot draw filters on canvas.");
+            return;
         }
+        // Call the common drawing logic, using the provided canvas and its dimensions. Animated
+        // effects show the frame due at the capture's timestamp.
+        captureRenderer.drawEffects(canvas, detections, targetCanvasWidth, targetCanvasHeight, isFrontCamera, timestampNanos);
     }
 }
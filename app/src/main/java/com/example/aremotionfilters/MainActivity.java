@@ -2,18 +2,14 @@ package com.example.aremotionfilters; // Replace with your actual package name
 
 import android.Manifest;
 import android.annotation.SuppressLint;
-import android.content.ContentValues;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Matrix;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Environment;
-import android.provider.MediaStore;
+import android.os.SystemClock;
 import android.util.Log;
 import android.util.Size;
 import android.view.View;
@@ -23,6 +19,7 @@ import android.widget.ImageView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.camera.core.CameraSelector;
 import androidx.camera.core.ImageAnalysis;
@@ -35,22 +32,26 @@ import androidx.camera.view.PreviewView;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
 
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.mlkit.vision.common.InputImage;
 import com.example.aremotionfilters.databinding.ActivityMainBinding;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.ByteBuffer;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -70,27 +71,102 @@ public class MainActivity extends AppCompatActivity {
 
     private static final String FILENAME_FORMAT = "yyyyMMdd_HHmmss_SSS";
     private static final int MAX_PHOTOS = 4;
+    private static final int PHOTO_STRIP_COLUMN_WIDTH = 300;
+    private static final int PHOTO_STRIP_JPEG_QUALITY = 90;
+    // Animated strip: every shot as one GIF frame
+    private static final int ANIMATED_STRIP_WIDTH = 480;
+    private static final int ANIMATED_STRIP_FRAME_DELAY_MS = 700;
+    // Encoded shots kept in memory; beyond this they are spilled to the app cache
+    private static final long CAPTURE_MEMORY_BUDGET_BYTES = 4L * 1024 * 1024;
+    private static final int THUMBNAIL_SIZE_PX = 256;
+    private static final String CAPTURE_CACHE_DIR = "captures";
+    private static final String FRAME_METRICS_FILE_NAME = "frame_metrics.txt";
+    // Debug builds only: record the detection stream, or replay a recording instead of analyzing, e.g.
+    // adb shell am start -n com.example.aremotionfilters/.MainActivity --ez record_detections true
+    // adb shell am start -n com.example.aremotionfilters/.MainActivity --es replay_detections detections_<time>.ardt
+    private static final String EXTRA_RECORD_DETECTIONS = "record_detections";
+    private static final String EXTRA_REPLAY_DETECTIONS = "replay_detections";
+    private static final String DETECTION_RECORDING_PREFIX = "detections_";
+    private static final String DETECTION_RECORDING_SUFFIX = ".ardt";
+    // Debug builds only: draw effects from a pack file in the app's external files dir, e.g.
+    // adb shell am start -n com.example.aremotionfilters/.MainActivity --es effect_pack party.arep
+    private static final String EXTRA_EFFECT_PACK = "effect_pack";
+    // Debug builds only: filter every image in a folder of the app's external files dir, e.g.
+    // adb shell am start -n com.example.aremotionfilters/.MainActivity --es batch_dir event_photos
+    // Add --ez batch_synthetic true to measure the pipeline without ML Kit.
+    private static final String EXTRA_BATCH_DIR = "batch_dir";
+    private static final String EXTRA_BATCH_SYNTHETIC = "batch_synthetic";
+    private static final String BATCH_OUTPUT_DIR = "filtered";
+    private static final String BATCH_RESULTS_FILE = "batch_results.tsv";
+    private static final int BATCH_MAX_IMAGE_SIZE = 2048;
+    // Debug builds only: replace ML Kit with a synthetic load of N faces (0-100) to stress the
+    // result path and overlay, e.g.
+    // adb shell am start -n com.example.aremotionfilters/.MainActivity --ei synthetic_faces 50
+    private static final String EXTRA_SYNTHETIC_FACES = "synthetic_faces";
+    private static final long SYNTHETIC_DETECTION_LATENCY_NANOS = 15_000_000L;
+    // Run the full face detector on one frame out of three and track faces in between
+    private static final int FACE_DETECTION_INTERVAL = 3;
+    // Analysis frame budget the resolution controller steps the analysis size against (~30 fps)
+    private static final long ANALYSIS_FRAME_BUDGET_NANOS = 33_000_000L;
+    // Frames the analyzer works on at once (1-3): one can be in the detectors while the previous
+    // one's results are processed
+    private static final int ANALYSIS_FRAMES_IN_FLIGHT = 2;
+    // Debug builds only: draw the overlay on a dedicated vsync-paced thread onto a SurfaceView
+    // instead of in onDraw, to compare the two, e.g.
+    // adb shell am start -n com.example.aremotionfilters/.MainActivity --ez overlay_render_thread true
+    private static final String EXTRA_OVERLAY_RENDER_THREAD = "overlay_render_thread";
 
     private PreviewView previewView;
     private FaceOverlayView faceOverlayView;
     private ActivityMainBinding binding;
 
     private ExecutorService cameraExecutor;
+    // Processes analysis results for every analyzer in turn, so the overlay always has one producer
+    private ExecutorService resultExecutor;
+    private ExecutorService captureExecutor;
+    // Debug batch processing of an image folder; null unless requested
+    private ExecutorService batchExecutor;
+    private CaptureCompositor captureCompositor;
+    private boolean captureInProgress;
+    private FrameMetrics frameMetrics;
     private ProcessCameraProvider cameraProvider;
+    private CameraSelector cameraSelector;
+    private ImageAnalysis imageAnalysis;
+    private FaceEmotionAnalyzer faceEmotionAnalyzer;
+    // ML Kit clients shared by every analyzer this activity creates; closed in onDestroy
+    private DetectorManager detectorManager;
+    // Debug synthetic load replacing ML Kit, with the threads it "detects" on; null unless requested
+    private SyntheticDetectionBackend<InputImage> syntheticBackend;
+    private ExecutorService syntheticDetectionExecutor;
+    private long createStartNanos;
+    private AnalysisResolutionController resolutionController;
+    private DeviceQualityGovernor qualityGovernor;
     private boolean isFrontCamera = true;
+    // Written on the result thread, closed there in onDestroy
+    private DetectionRecorder detectionRecorder;
+    // Recording replayed into the overlay in place of live analysis; null for the live pipeline
+    private File detectionReplayFile;
+    private Future<?> detectionReplay;
 
     private Button captureButton;
     private ImageView photoStripImageView;
     private Button downloadButton;
+    private Button downloadGifButton;
+    // Which export the storage permission request was made for, and which one is running
+    private boolean animatedSaveRequested;
+    private boolean animatedSaveInProgress;
     private ImageView[] thumbnailImageViews = new ImageView[MAX_PHOTOS];
 
+    private PhotoStripPipeline photoStripPipeline;
+
     private ImageCapture imageCapture;
-    private List<Bitmap> capturedImages = new ArrayList<>();
+    private CaptureStore captureStore;
     private Bitmap currentPhotoStripBitmap;
 
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        createStartNanos = SystemClock.elapsedRealtimeNanos();
         super.onCreate(savedInstanceState);
         binding = ActivityMainBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
@@ -100,12 +176,37 @@ public class MainActivity extends AppCompatActivity {
         captureButton = binding.captureButton;
         photoStripImageView = binding.photoStripImageView;
         downloadButton = binding.downloadButton;
+        downloadGifButton = binding.downloadGifButton;
         thumbnailImageViews[0] = binding.thumbnail1;
         thumbnailImageViews[1] = binding.thumbnail2;
         thumbnailImageViews[2] = binding.thumbnail3;
         thumbnailImageViews[3] = binding.thumbnail4;
 
         cameraExecutor = Executors.newSingleThreadExecutor();
+        resultExecutor = Executors.newSingleThreadExecutor();
+        frameMetrics = new FrameMetrics();
+        resolutionController = new AnalysisResolutionController(ANALYSIS_FRAME_BUDGET_NANOS);
+        qualityGovernor = new DeviceQualityGovernor(this, frameMetrics, this::onQualityTierChanged);
+        // Load the models while the camera opens so the first analyzed frame does not pay for it
+        detectorManager = new DetectorManager(frameMetrics);
+        detectorManager.warmUp(currentMinFaceSize(qualityGovernor.getTier()));
+        faceOverlayView.setFrameMetrics(frameMetrics);
+        captureExecutor = Executors.newSingleThreadExecutor();
+        photoStripPipeline = new PhotoStripPipeline(photoStripListener);
+        captureStore = newCaptureStore();
+        captureCompositor = new CaptureCompositor(faceOverlayView, frameMetrics, CaptureCompositor.DEFAULT_MAX_OUTPUT_SIZE);
+        faceOverlayView.setDebugHudEnabled(isDebuggable());
+        if (isDebuggable()) {
+            setUpDetectionRecording();
+            setUpSyntheticDetection();
+            loadEffectPack();
+            startBatchProcessing();
+            if (getIntent().getBooleanExtra(EXTRA_OVERLAY_RENDER_THREAD, false)) {
+                binding.overlaySurfaceView.setVisibility(View.VISIBLE);
+                faceOverlayView.attachRenderSurface(binding.overlaySurfaceView);
+            }
+        }
+        observeFirstPreviewFrame(createStartNanos);
 
         if (allRequiredPermissionsGranted()) {
             startCamera();
@@ -114,10 +215,27 @@ public class MainActivity extends AppCompatActivity {
         }
 
         captureButton.setOnClickListener(v -> takePhoto());
-        downloadButton.setOnClickListener(v -> downloadPhotoStrip());
+        downloadButton.setOnClickListener(v -> downloadPhotoStrip(false));
+        downloadGifButton.setOnClickListener(v -> downloadPhotoStrip(true));
         updateCaptureButtonText();
     }
 
+    /** Records the time from onCreate until the preview first starts streaming. */
+    private void observeFirstPreviewFrame(long createStartNanos) {
+        LiveData<PreviewView.StreamState> streamState = previewView.getPreviewStreamState();
+        streamState.observe(this, new Observer<PreviewView.StreamState>() {
+            @Override
+            public void onChanged(PreviewView.StreamState state) {
+                if (state == PreviewView.StreamState.STREAMING) {
+                    long elapsedNanos = SystemClock.elapsedRealtimeNanos() - createStartNanos;
+                    frameMetrics.recordTimeToFirstPreview(elapsedNanos);
+                    Log.i(TAG, "Time to first preview: " + elapsedNanos / 1_000_000 + " ms");
+                    streamState.removeObserver(this);
+                }
+            }
+        });
+    }
+
     private void startCamera() {
         ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ProcessCameraProvider.getInstance(this);
         cameraProviderFuture.addListener(() -> {
@@ -138,20 +256,22 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
         cameraProvider.unbindAll();
-        CameraSelector cameraSelector = new CameraSelector.Builder()
+        cameraSelector = new CameraSelector.Builder()
                 .requireLensFacing(isFrontCamera ? CameraSelector.LENS_FACING_FRONT : CameraSelector.LENS_FACING_BACK)
                 .build();
         Preview preview = new Preview.Builder().build();
         preview.setSurfaceProvider(previewView.getSurfaceProvider());
-        ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
-                .setTargetResolution(new Size(640, 480))
-                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
-                .build();
-        imageAnalysis.setAnalyzer(cameraExecutor, new FaceEmotionAnalyzer(faceOverlayView, isFrontCamera));
+        releaseImageAnalysis();
         imageCapture = new ImageCapture.Builder()
                 .setTargetRotation(previewView.getDisplay().getRotation())
                 .build();
         try {
+            if (detectionReplayFile != null) {
+                cameraProvider.bindToLifecycle(this, cameraSelector, preview, imageCapture);
+                startDetectionReplay();
+                return;
+            }
+            imageAnalysis = newImageAnalysis();
             cameraProvider.bindToLifecycle(this, cameraSelector, preview, imageAnalysis, imageCapture);
             Log.d(TAG, "Camera use cases bound successfully.");
         } catch (Exception e) {
@@ -160,73 +280,338 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Analysis use case at the resolution the controller currently picks, with an analyzer
+     * configured for the governor's current quality tier.
+     */
+    private ImageAnalysis newImageAnalysis() {
+        int tier = qualityGovernor.getTier();
+        ImageAnalysis.Builder builder = new ImageAnalysis.Builder()
+                .setTargetResolution(new Size(resolutionController.getWidth(), resolutionController.getHeight()));
+        if (ANALYSIS_FRAMES_IN_FLIGHT == 1) {
+            // CameraX holds back the next frame until the current one is closed and then delivers the newest
+            builder.setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST);
+        } else {
+            // Every in-flight frame keeps its image open, plus one so a fresh frame is ready as soon as a
+            // slot frees up; the analyzer closes frames that arrive while the pipeline is full
+            builder.setBackpressureStrategy(ImageAnalysis.STRATEGY_BLOCK_PRODUCER)
+                    .setImageQueueDepth(ANALYSIS_FRAMES_IN_FLIGHT + 1);
+        }
+        ImageAnalysis analysis = builder.build();
+        DetectionBackend<InputImage> backend = syntheticBackend != null ? syntheticBackend
+                : new MlKitDetectionBackend(detectorManager.getFaceDetector(currentMinFaceSize(tier)),
+                detectorManager.getPoseDetector());
+        faceEmotionAnalyzer = new FaceEmotionAnalyzer(faceOverlayView, isFrontCamera, frameMetrics, backend,
+                FACE_DETECTION_INTERVAL, ANALYSIS_FRAMES_IN_FLIGHT, resultExecutor);
+        faceEmotionAnalyzer.setQualityTier(tier);
+        faceEmotionAnalyzer.setDetectionRecorder(detectionRecorder);
+        long bindStartNanos = SystemClock.elapsedRealtimeNanos();
+        boolean[] firstResult = {true}; // Result thread only
+        // Called on the result thread; only the rebind itself has to happen on the main thread
+        faceEmotionAnalyzer.setFrameListener((latencyNanos, smallestFaceFraction) -> {
+            long nowNanos = SystemClock.elapsedRealtimeNanos();
+            if (firstResult[0]) {
+                firstResult[0] = false;
+                frameMetrics.recordBindToFirstResult(nowNanos - bindStartNanos);
+            }
+            if (smallestFaceFraction >= 0f && frameMetrics.getTimeToFirstEffectNanos() < 0) {
+                frameMetrics.recordTimeToFirstEffect(nowNanos - createStartNanos);
+                Log.i(TAG, "Time to first effect: " + (nowNanos - createStartNanos) / 1_000_000 + " ms");
+            }
+            if (resolutionController.onFrame(latencyNanos, smallestFaceFraction)) {
+                runOnUiThread(this::warmUpAndRebindImageAnalysis);
+            }
+        });
+        analysis.setAnalyzer(cameraExecutor, faceEmotionAnalyzer);
+        return analysis;
+    }
+
+    /** Minimum face size for the detector at the current analysis resolution and quality {@code tier}. */
+    private float currentMinFaceSize(int tier) {
+        return resolutionController.getMinFaceSize() * QualityGovernor.minFaceSizeScale(tier);
+    }
+
+    /**
+     * Loads the face detector for the new minimum face size while the current analyzer keeps
+     * running, then rebinds, so the first frames of the new analyzer do not pay for model init.
+     */
+    private void warmUpAndRebindImageAnalysis() {
+        if (syntheticBackend != null) {
+            rebindImageAnalysis();
+            return;
+        }
+        detectorManager.warmUp(currentMinFaceSize(qualityGovernor.getTier()),
+                () -> runOnUiThread(this::rebindImageAnalysis));
+    }
+
+    /** Swaps only the analysis use case for one at the new resolution; preview and capture keep running. */
+    private void rebindImageAnalysis() {
+        // May arrive from a warm-up that finished after the activity was destroyed
+        if (cameraProvider == null || imageAnalysis == null || isDestroyed()) {
+            return;
+        }
+        Log.i(TAG, "Rebinding analysis at " + resolutionController.getWidth() + "x" + resolutionController.getHeight()
+                + ", quality tier " + QualityGovernor.tierName(qualityGovernor.getTier())
+                + " (avg latency was " + resolutionController.getAverageLatencyMillis() + " ms)");
+        cameraProvider.unbind(imageAnalysis);
+        releaseImageAnalysis();
+        imageAnalysis = newImageAnalysis();
+        // After the frame the released analyzer may still be submitting on the camera thread
+        cameraExecutor.execute(detectorManager::closeRetiredDetectors);
+        try {
+            cameraProvider.bindToLifecycle(this, cameraSelector, imageAnalysis);
+        } catch (Exception e) {
+            Log.e(TAG, "Analysis use case rebinding failed", e);
+        }
+    }
+
+    /**
+     * Applies a governor decision: the frame-rate cap and pose switch take effect on the running
+     * analyzer, a different face detector configuration needs a new analysis use case.
+     */
+    private void onQualityTierChanged(int tier) {
+        FaceEmotionAnalyzer analyzer = faceEmotionAnalyzer;
+        if (analyzer == null) {
+            return; // Applied when the camera is bound
+        }
+        int previous = analyzer.getQualityTier();
+        analyzer.setQualityTier(tier);
+        if (QualityGovernor.minFaceSizeScale(tier) != QualityGovernor.minFaceSizeScale(previous)) {
+            warmUpAndRebindImageAnalysis();
+        }
+    }
+
+    /** Detaches the current analyzer; its detectors stay open in the manager for the next one. */
+    private void releaseImageAnalysis() {
+        if (imageAnalysis != null) {
+            imageAnalysis.clearAnalyzer();
+        }
+        FaceEmotionAnalyzer analyzer = faceEmotionAnalyzer;
+        if (analyzer != null) {
+            analyzer.setFrameListener(null);
+            faceEmotionAnalyzer = null;
+        }
+    }
+
+    /** Opens the recording or replay requested by the launch intent's extras. */
+    private void setUpDetectionRecording() {
+        File dir = getExternalFilesDir(null);
+        if (dir == null) {
+            dir = getFilesDir();
+        }
+        String replayName = getIntent().getStringExtra(EXTRA_REPLAY_DETECTIONS);
+        if (replayName != null) {
+            detectionReplayFile = new File(dir, replayName);
+            return;
+        }
+        if (!getIntent().getBooleanExtra(EXTRA_RECORD_DETECTIONS, false)) {
+            return;
+        }
+        File file = new File(dir, DETECTION_RECORDING_PREFIX
+                + new SimpleDateFormat(FILENAME_FORMAT, Locale.US).format(System.currentTimeMillis())
+                + DETECTION_RECORDING_SUFFIX);
+        try {
+            detectionRecorder = new DetectionRecorder(new FileOutputStream(file));
+            Log.i(TAG, "Recording detections to " + file.getAbsolutePath());
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to start recording detections: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Swaps ML Kit for the synthetic load requested by the launch intent: faces orbiting their
+     * grid cells, changing emotion every two seconds on average and a gesture burst every four
+     * seconds, "detected" with a fixed latency on two threads of their own.
+     */
+    private void setUpSyntheticDetection() {
+        int faces = getIntent().getIntExtra(EXTRA_SYNTHETIC_FACES, -1);
+        if (faces < 0) {
+            return;
+        }
+        syntheticBackend = new SyntheticDetectionBackend<>(1L);
+        syntheticBackend.setFaceCount(Math.min(faces, SyntheticDetectionBackend.MAX_FACES));
+        syntheticBackend.setMotion(SyntheticDetectionBackend.MOTION_ORBIT, 20f, 3_000_000_000L);
+        syntheticBackend.setEmotionChangeRate(0.5f);
+        syntheticBackend.setGestureBursts(4_000_000_000L, 1_500_000_000L);
+        syntheticDetectionExecutor = Executors.newFixedThreadPool(2);
+        syntheticBackend.setExecutor(syntheticDetectionExecutor, SYNTHETIC_DETECTION_LATENCY_NANOS);
+        Log.i(TAG, "Synthetic detection load: " + syntheticBackend.getFaceCount() + " faces");
+    }
+
+    /** Opens the effect pack named by the launch intent, off the UI thread, and switches the overlay to it. */
+    private void loadEffectPack() {
+        String packName = getIntent().getStringExtra(EXTRA_EFFECT_PACK);
+        if (packName == null) {
+            return;
+        }
+        File dir = getExternalFilesDir(null);
+        File file = new File(dir != null ? dir : getFilesDir(), packName);
+        resultExecutor.execute(() -> {
+            long start = SystemClock.elapsedRealtimeNanos();
+            try {
+                EffectPack pack = EffectPack.open(file);
+                Log.i(TAG, String.format(Locale.US, "Opened effect pack %s (%d sprites, %d KB) in %.1f ms",
+                        pack.getName(), pack.getSpriteCount(), file.length() / 1024,
+                        (SystemClock.elapsedRealtimeNanos() - start) / 1_000_000.0));
+                faceOverlayView.setEffectPack(pack);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to open effect pack " + file + ": " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Filters every image in the requested folder on all cores, writing the outputs and a results
+     * file into a subfolder, so a later run does not take them for inputs, and logs the throughput.
+     * Runs alongside the live camera.
+     */
+    private void startBatchProcessing() {
+        String dirName = getIntent().getStringExtra(EXTRA_BATCH_DIR);
+        if (dirName == null) {
+            return;
+        }
+        File dir = getExternalFilesDir(null);
+        File inputDir = new File(dir != null ? dir : getFilesDir(), dirName);
+        File[] files = inputDir.listFiles(File::isFile);
+        if (files == null) {
+            Log.e(TAG, "Batch folder " + inputDir + " not found");
+            return;
+        }
+        Arrays.sort(files);
+        boolean synthetic = getIntent().getBooleanExtra(EXTRA_BATCH_SYNTHETIC, false);
+        int threads = Runtime.getRuntime().availableProcessors();
+        File outputDir = new File(inputDir, BATCH_OUTPUT_DIR);
+        File resultsFile = new File(outputDir, BATCH_RESULTS_FILE);
+        batchExecutor = Executors.newFixedThreadPool(threads);
+        // The submitting thread blocks on backpressure, so it gets a thread of its own
+        new Thread(() -> {
+            if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+                Log.e(TAG, "Batch processing failed: cannot create " + outputDir);
+                batchExecutor.shutdown();
+                return;
+            }
+            MlKitStillDetector mlKitDetector = synthetic ? null : new MlKitStillDetector();
+            StillImageDetector<Bitmap> detector = synthetic
+                    ? new SyntheticStillDetector<Bitmap>(1L, 4, 0.3f, 0L) : mlKitDetector;
+            BatchProcessor<Bitmap> processor = new BatchProcessor<>(
+                    new BitmapBatchIo(faceOverlayView, BATCH_MAX_IMAGE_SIZE), detector, batchExecutor, 2 * threads);
+            try (Writer results = new OutputStreamWriter(new FileOutputStream(resultsFile), StandardCharsets.UTF_8)) {
+                BatchProcessor.Summary summary = processor.process(Arrays.asList(files), outputDir, results);
+                Log.i(TAG, "Batch " + inputDir.getName() + (synthetic ? " (synthetic detector)" : "")
+                        + " on " + threads + " threads:\n" + summary.format());
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Batch processing failed: " + e.getMessage(), e);
+            } catch (InterruptedException e) {
+                Log.w(TAG, "Batch processing interrupted");
+            } finally {
+                batchExecutor.shutdown();
+                if (mlKitDetector != null) {
+                    mlKitDetector.close();
+                }
+            }
+        }, "BatchProcessing").start();
+    }
+
+    /** Feeds the recording into the overlay at recorded speed on the result thread. */
+    private void startDetectionReplay() {
+        if (detectionReplay != null) {
+            detectionReplay.cancel(true);
+        }
+        File file = detectionReplayFile;
+        detectionReplay = resultExecutor.submit(() -> {
+            try (DetectionReplayer replayer = new DetectionReplayer(new FileInputStream(file))) {
+                int frames = replayer.replay(faceOverlayView::updateFaces, true);
+                Log.i(TAG, "Replayed " + frames + " frames from " + file.getName()
+                        + (replayer.isTruncated() ? " (recording truncated)" : ""));
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to replay detections: " + e.getMessage(), e);
+            } catch (InterruptedException e) {
+                Log.d(TAG, "Detection replay stopped");
+            }
+        });
+    }
+
     private void takePhoto() {
         if (imageCapture == null) {
             Log.e(TAG, "ImageCapture use case is not initialized.");
             Toast.makeText(this, getString(R.string.camera_not_ready_toast), Toast.LENGTH_SHORT).show();
             return;
         }
-        if (capturedImages.size() >= MAX_PHOTOS) {
+        if (captureStore.size() >= MAX_PHOTOS) {
             resetPhotoStrip();
             return;
         }
+        if (captureInProgress) {
+            return; // One shot at a time; the strip has room for exactly MAX_PHOTOS
+        }
+        captureInProgress = true;
+        final boolean frontCamera = isFrontCamera;
+        final CaptureStore store = captureStore;
+        // The callback, composing and encoding run on captureExecutor; the UI thread is only told the outcome
         imageCapture.takePicture(
-                ContextCompat.getMainExecutor(this),
+                captureExecutor,
                 new ImageCapture.OnImageCapturedCallback() {
                     @Override
                     public void onCaptureSuccess(@NonNull ImageProxy imageProxy) {
                         Log.d(TAG, "Photo capture succeeded. Image dimensions: " + imageProxy.getWidth() + "x" + imageProxy.getHeight() + ", Rotation: " + imageProxy.getImageInfo().getRotationDegrees());
-                        Bitmap cameraBitmap = imageProxyToBitmap(imageProxy);
-                        if (cameraBitmap != null) {
-                            Bitmap finalBitmapWithFilter;
-                            Bitmap mutableCameraBitmap = cameraBitmap.copy(Bitmap.Config.ARGB_8888, true);
-                            Canvas canvas = new Canvas(mutableCameraBitmap);
-                            Bitmap baseBitmapForOverlay = mutableCameraBitmap;
-                            if (isFrontCamera) {
-                                Matrix matrix = new Matrix();
-                                matrix.preScale(-1.0f, 1.0f);
-                                baseBitmapForOverlay = Bitmap.createBitmap(mutableCameraBitmap, 0, 0, mutableCameraBitmap.getWidth(), mutableCameraBitmap.getHeight(), matrix, true);
-                                canvas.setBitmap(baseBitmapForOverlay);
-                            }
-                            Log.d(TAG, "Drawing filters on canvas. Target (Canvas) W: " + canvas.getWidth() + " H: " + canvas.getHeight());
-                            faceOverlayView.drawFiltersOnCanvas(canvas, canvas.getWidth(), canvas.getHeight(), isFrontCamera);
-                            finalBitmapWithFilter = baseBitmapForOverlay;
-                            capturedImages.add(finalBitmapWithFilter);
-                            updateThumbnails();
-                            updateCaptureButtonText();
-                            if (capturedImages.size() == MAX_PHOTOS) {
-                                generateAndDisplayPhotoStrip();
+                        CaptureCompositor.Result result;
+                        try {
+                            result = captureCompositor.compose(imageProxy, frontCamera);
+                        } finally {
+                            imageProxy.close();
+                        }
+                        boolean stored = false;
+                        if (result != null) {
+                            try {
+                                stored = store.add(result.bitmap);
+                            } catch (IOException | RuntimeException e) {
+                                Log.e(TAG, "Failed to store captured photo: " + e.getMessage(), e);
+                            } finally {
+                                result.bitmap.recycle(); // Only the encoded shot and its thumbnail are kept
                             }
-                        } else {
-                            Log.e(TAG, "Failed to convert ImageProxy to Bitmap.");
-                            Toast.makeText(MainActivity.this, getString(R.string.failed_to_process_image_toast), Toast.LENGTH_SHORT).show();
                         }
-                        imageProxy.close();
+                        boolean success = stored;
+                        runOnUiThread(() -> onPhotoStored(store, success));
                     }
                     @Override
                     public void onError(@NonNull ImageCaptureException exception) {
                         Log.e(TAG, "Photo capture failed: " + exception.getMessage(), exception);
-                        Toast.makeText(MainActivity.this, String.format(getString(R.string.photo_capture_failed_toast), exception.getMessage()), Toast.LENGTH_SHORT).show();
+                        runOnUiThread(() -> {
+                            captureInProgress = false;
+                            Toast.makeText(MainActivity.this, String.format(getString(R.string.photo_capture_failed_toast), exception.getMessage()), Toast.LENGTH_SHORT).show();
+                        });
                     }
                 }
         );
     }
 
-    private Bitmap imageProxyToBitmap(ImageProxy image) {
-        ImageProxy.PlaneProxy planeProxy = image.getPlanes()[0];
-        ByteBuffer buffer = planeProxy.getBuffer();
-        byte[] bytes = new byte[buffer.remaining()];
-        buffer.get(bytes);
-        Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-        Matrix matrix = new Matrix();
-        matrix.postRotate(image.getImageInfo().getRotationDegrees());
-        return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+    private void onPhotoStored(CaptureStore store, boolean stored) {
+        captureInProgress = false;
+        if (isDestroyed() || store != captureStore) {
+            return; // Strip was reset while this shot was being processed
+        }
+        if (!stored) {
+            Log.e(TAG, "Failed to process captured photo.");
+            Toast.makeText(this, getString(R.string.failed_to_process_image_toast), Toast.LENGTH_SHORT).show();
+            return;
+        }
+        updateThumbnails();
+        updateCaptureButtonText();
+        if (captureStore.size() == MAX_PHOTOS) {
+            generateAndDisplayPhotoStrip();
+        }
+    }
+
+    private CaptureStore newCaptureStore() {
+        return new CaptureStore(new File(getCacheDir(), CAPTURE_CACHE_DIR), CAPTURE_MEMORY_BUDGET_BYTES,
+                THUMBNAIL_SIZE_PX, captureExecutor);
     }
 
     private void updateThumbnails() {
         for (int i = 0; i < MAX_PHOTOS; i++) {
-            if (i < capturedImages.size()) {
-                thumbnailImageViews[i].setImageBitmap(capturedImages.get(i));
+            Bitmap thumbnail = captureStore.getThumbnail(i);
+            if (thumbnail != null) {
+                thumbnailImageViews[i].setImageBitmap(thumbnail);
                 thumbnailImageViews[i].setVisibility(View.VISIBLE);
             } else {
                 thumbnailImageViews[i].setImageBitmap(null);
@@ -236,7 +621,7 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void updateCaptureButtonText() {
-        int count = capturedImages.size();
+        int count = captureStore.size();
         if (count < MAX_PHOTOS) {
             captureButton.setText(getString(R.string.take_picture_count, count, MAX_PHOTOS));
         } else {
@@ -245,60 +630,76 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void generateAndDisplayPhotoStrip() {
-        if (capturedImages.size() != MAX_PHOTOS) {
-            return;
-        }
-        int stripWidth = 0;
-        int totalHeight = 0;
-        int singleImageDisplayWidth = 300;
-        List<Bitmap> scaledImages = new ArrayList<>();
-        for (Bitmap originalBitmap : capturedImages) {
-            if (originalBitmap == null) continue;
-            int originalWidth = originalBitmap.getWidth();
-            int originalHeight = originalBitmap.getHeight();
-            float aspectRatio = (float) originalHeight / originalWidth;
-            int scaledWidth = singleImageDisplayWidth;
-            int scaledHeight = (int) (scaledWidth * aspectRatio);
-            Bitmap scaledBitmap = Bitmap.createScaledBitmap(originalBitmap, scaledWidth, scaledHeight, true);
-            scaledImages.add(scaledBitmap);
-            if (scaledBitmap.getWidth() > stripWidth) {
-                stripWidth = scaledBitmap.getWidth();
-            }
-            totalHeight += scaledBitmap.getHeight();
-        }
-        if (scaledImages.isEmpty()) {
-            Log.e(TAG, "No images to create photostrip");
-            currentPhotoStripBitmap = null;
-            downloadButton.setVisibility(View.GONE);
+        if (captureStore.size() != MAX_PHOTOS) {
             return;
         }
-        currentPhotoStripBitmap = Bitmap.createBitmap(stripWidth, totalHeight, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(currentPhotoStripBitmap);
-        canvas.drawColor(Color.WHITE);
-        int currentY = 0;
-        for (Bitmap img : scaledImages) {
-            if (img == null) continue;
-            float leftOffset = (stripWidth - img.getWidth()) / 2f;
-            canvas.drawBitmap(img, leftOffset, currentY, null);
-            currentY += img.getHeight();
-        }
-        photoStripImageView.setImageBitmap(currentPhotoStripBitmap);
-        photoStripImageView.setVisibility(View.VISIBLE);
+        downloadButton.setEnabled(false);
         downloadButton.setVisibility(View.VISIBLE);
-        Toast.makeText(this, getString(R.string.photostrip_created_toast), Toast.LENGTH_SHORT).show();
+        downloadGifButton.setEnabled(false);
+        downloadGifButton.setVisibility(View.VISIBLE);
+        photoStripPipeline.build(captureStore, PHOTO_STRIP_COLUMN_WIDTH);
     }
 
-    private void resetPhotoStrip() {
-        for (Bitmap bmp : capturedImages) {
-            if (bmp != null && !bmp.isRecycled()) {
-                bmp.recycle();
+    /** Receives photo strip progress and results; always called on the main thread. */
+    private final PhotoStripPipeline.Listener photoStripListener = new PhotoStripPipeline.Listener() {
+        @Override
+        public void onProgress(int stage, long done, long total) {
+            if (animatedSaveInProgress) {
+                downloadGifButton.setText(stage == PhotoStripPipeline.STAGE_DOWNSCALE
+                        ? getString(R.string.photostrip_animating_progress, (int) done, (int) total)
+                        : getString(R.string.photostrip_saving_progress, (int) (done / 1024)));
+            } else if (stage == PhotoStripPipeline.STAGE_DOWNSCALE) {
+                downloadButton.setText(getString(R.string.photostrip_scaling_progress, (int) done, (int) total));
+            } else if (stage == PhotoStripPipeline.STAGE_COMPOSE) {
+                downloadButton.setText(getString(R.string.photostrip_composing));
+            } else {
+                downloadButton.setText(getString(R.string.photostrip_saving_progress, (int) (done / 1024)));
             }
         }
-        capturedImages.clear();
-        if (currentPhotoStripBitmap != null && !currentPhotoStripBitmap.isRecycled()) {
-            currentPhotoStripBitmap.recycle();
+
+        @Override
+        public void onStripReady(@NonNull Bitmap strip) {
+            currentPhotoStripBitmap = strip;
+            photoStripImageView.setImageBitmap(currentPhotoStripBitmap);
+            photoStripImageView.setVisibility(View.VISIBLE);
+            resetDownloadButton();
+            Toast.makeText(MainActivity.this, getString(R.string.photostrip_created_toast), Toast.LENGTH_SHORT).show();
         }
-        currentPhotoStripBitmap = null;
+
+        @Override
+        public void onSaved(@NonNull Uri uri) {
+            resetDownloadButton();
+            Log.d(TAG, "Photostrip saved to " + uri);
+            Toast.makeText(MainActivity.this, getString(R.string.photostrip_saved_success), Toast.LENGTH_LONG).show();
+        }
+
+        @Override
+        public void onFailed(int stage, @Nullable Exception e) {
+            if (stage == PhotoStripPipeline.STAGE_ENCODE) {
+                resetDownloadButton();
+                Toast.makeText(MainActivity.this, getString(R.string.photostrip_saved_failed), Toast.LENGTH_LONG).show();
+            } else {
+                currentPhotoStripBitmap = null;
+                downloadButton.setVisibility(View.GONE);
+                downloadGifButton.setVisibility(View.GONE);
+                Toast.makeText(MainActivity.this, getString(R.string.failed_to_process_image_toast), Toast.LENGTH_SHORT).show();
+            }
+        }
+    };
+
+    private void resetDownloadButton() {
+        downloadButton.setText(getString(R.string.download_photostrip));
+        downloadButton.setEnabled(true);
+        downloadGifButton.setText(getString(R.string.download_animated_photostrip));
+        downloadGifButton.setEnabled(true);
+        animatedSaveInProgress = false;
+    }
+
+    private void resetPhotoStrip() {
+        // Stop any build or save first; the bitmaps are recycled once the pipeline has let go of them
+        photoStripPipeline.cancel();
+        releaseCaptures();
+        captureStore = newCaptureStore();
         for(ImageView iv : thumbnailImageViews) {
             iv.setImageBitmap(null);
             iv.setBackgroundColor(ContextCompat.getColor(this, android.R.color.darker_gray));
@@ -306,18 +707,36 @@ public class MainActivity extends AppCompatActivity {
         photoStripImageView.setImageBitmap(null);
         photoStripImageView.setVisibility(View.GONE);
         downloadButton.setVisibility(View.GONE);
+        downloadGifButton.setVisibility(View.GONE);
+        resetDownloadButton();
         updateCaptureButtonText();
         Log.d(TAG, "Photostrip reset.");
     }
 
-    private void downloadPhotoStrip() {
+    /** Drops the shots and the strip once the pipeline can no longer be reading them. */
+    private void releaseCaptures() {
+        CaptureStore store = captureStore;
+        Bitmap strip = currentPhotoStripBitmap;
+        photoStripPipeline.runWhenIdle(() -> {
+            store.close();
+            if (strip != null && !strip.isRecycled()) {
+                strip.recycle();
+            }
+        });
+        currentPhotoStripBitmap = null;
+    }
+
+    private void downloadPhotoStrip(boolean animated) {
         if (currentPhotoStripBitmap == null) {
             Toast.makeText(this, getString(R.string.photostrip_saved_failed) + " (No image)", Toast.LENGTH_SHORT).show();
             return;
         }
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q &&
                 ContextCompat.checkSelfPermission(this, Manifest.permission.WRITE_EXTERNAL_STORAGE) != PackageManager.PERMISSION_GRANTED) {
+            animatedSaveRequested = animated;
             ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.WRITE_EXTERNAL_STORAGE}, REQUEST_CODE_STORAGE_PERMISSION);
+        } else if (animated) {
+            saveAnimatedPhotoStripToGallery();
         } else {
             savePhotoStripToGallery();
         }
@@ -329,42 +748,23 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
         String imageFileName = "PhotoStrip_" + new SimpleDateFormat(FILENAME_FORMAT, Locale.US).format(System.currentTimeMillis()) + ".jpg";
-        ContentValues values = new ContentValues();
-        values.put(MediaStore.Images.Media.DISPLAY_NAME, imageFileName);
-        values.put(MediaStore.Images.Media.MIME_TYPE, "image/jpeg");
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-            values.put(MediaStore.Images.Media.RELATIVE_PATH, Environment.DIRECTORY_PICTURES + File.separator + "AREmotionFilters");
-            values.put(MediaStore.Images.Media.IS_PENDING, 1);
-        }
-        Uri imageUri = getContentResolver().insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
-        if (imageUri != null) {
-            try (OutputStream outputStream = getContentResolver().openOutputStream(imageUri)) {
-                if (outputStream != null) {
-                    currentPhotoStripBitmap.compress(Bitmap.CompressFormat.JPEG, 90, outputStream);
-                    Toast.makeText(this, getString(R.string.photostrip_saved_success), Toast.LENGTH_LONG).show();
-                } else {
-                    throw new IOException("Failed to get output stream.");
-                }
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-                    values.clear();
-                    values.put(MediaStore.Images.Media.IS_PENDING, 0);
-                    getContentResolver().update(imageUri, values, null, null);
-                }
-            } catch (IOException e) {
-                Log.e(TAG, "Failed to save photostrip: " + e.getMessage(), e);
-                Toast.makeText(this, getString(R.string.photostrip_saved_failed), Toast.LENGTH_LONG).show();
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-                    try {
-                        getContentResolver().delete(imageUri, null, null);
-                    } catch (Exception ex) {
-                        Log.e(TAG, "Failed to delete pending image entry: " + ex.getMessage());
-                    }
-                }
-            }
-        } else {
-            Log.e(TAG, "Failed to create MediaStore entry.");
-            Toast.makeText(this, getString(R.string.photostrip_saved_failed), Toast.LENGTH_LONG).show();
+        downloadButton.setEnabled(false);
+        downloadGifButton.setEnabled(false);
+        photoStripPipeline.save(currentPhotoStripBitmap, getContentResolver(), imageFileName,
+                Environment.DIRECTORY_PICTURES + File.separator + "AREmotionFilters", PHOTO_STRIP_JPEG_QUALITY);
+    }
+
+    /** Streams the shots, one GIF frame each, into the gallery; the shots stay in the store meanwhile. */
+    private void saveAnimatedPhotoStripToGallery() {
+        if (captureStore.size() != MAX_PHOTOS) {
+            return;
         }
+        String imageFileName = "PhotoStrip_" + new SimpleDateFormat(FILENAME_FORMAT, Locale.US).format(System.currentTimeMillis()) + ".gif";
+        downloadButton.setEnabled(false);
+        downloadGifButton.setEnabled(false);
+        animatedSaveInProgress = true;
+        photoStripPipeline.saveAnimated(captureStore, ANIMATED_STRIP_WIDTH, ANIMATED_STRIP_FRAME_DELAY_MS,
+                getContentResolver(), imageFileName, Environment.DIRECTORY_PICTURES + File.separator + "AREmotionFilters");
     }
 
     private boolean allRequiredPermissionsGranted() {
@@ -391,29 +791,113 @@ public class MainActivity extends AppCompatActivity {
             }
         } else if (requestCode == REQUEST_CODE_STORAGE_PERMISSION) {
             if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
-                savePhotoStripToGallery();
+                if (animatedSaveRequested) {
+                    saveAnimatedPhotoStripToGallery();
+                } else {
+                    savePhotoStripToGallery();
+                }
             } else {
                 Toast.makeText(this, getString(R.string.storage_permission_required), Toast.LENGTH_LONG).show();
             }
         }
     }
 
+    private boolean isDebuggable() {
+        return (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+    }
+
+    /**
+     * Writes the pipeline latency report to app-specific storage so runs can be compared, e.g.
+     * adb pull /sdcard/Android/data/com.example.aremotionfilters/files/frame_metrics.txt
+     */
+    private void dumpFrameMetrics() {
+        File dir = getExternalFilesDir(null);
+        if (dir == null) {
+            dir = getFilesDir();
+        }
+        File file = new File(dir, FRAME_METRICS_FILE_NAME);
+        String header = Build.MANUFACTURER + " " + Build.MODEL + " (API " + Build.VERSION.SDK_INT + ") "
+                + new SimpleDateFormat(FILENAME_FORMAT, Locale.US).format(System.currentTimeMillis());
+        cameraExecutor.execute(() -> {
+            try {
+                frameMetrics.dump(file, header);
+                Log.d(TAG, "Frame metrics written to " + file.getAbsolutePath());
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to write frame metrics: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        qualityGovernor.start();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        qualityGovernor.stop();
+        if (isDebuggable()) {
+            dumpFrameMetrics();
+        }
+        DetectionRecorder recorder = detectionRecorder;
+        if (recorder != null) {
+            // The process may be killed in the background without onDestroy; flush on the result thread,
+            // between frames, so the file ends at a whole frame
+            resultExecutor.execute(() -> {
+                try {
+                    recorder.flush();
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to flush detection recording: " + e.getMessage(), e);
+                }
+            });
+        }
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        releaseImageAnalysis();
+        // After the frame the released analyzer may still be submitting on the camera thread
+        cameraExecutor.execute(detectorManager::close);
+        if (detectionReplay != null) {
+            detectionReplay.cancel(true);
+        }
+        DetectionRecorder recorder = detectionRecorder;
+        if (recorder != null) {
+            // After any frame the released analyzer still has queued on the result thread
+            resultExecutor.execute(() -> {
+                try {
+                    recorder.close();
+                    Log.i(TAG, "Recorded " + recorder.getFrameCount() + " frames, " + recorder.getSizeBytes() + " bytes");
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to finish detection recording: " + e.getMessage(), e);
+                }
+            });
+        }
         cameraExecutor.shutdown();
-        if (cameraProvider != null) {
-            cameraProvider.unbindAll();
+        resultExecutor.shutdown();
+        captureExecutor.shutdown();
+        if (syntheticDetectionExecutor != null) {
+            syntheticDetectionExecutor.shutdown();
         }
-        for (Bitmap bmp : capturedImages) {
-            if (bmp != null && !bmp.isRecycled()) {
-                bmp.recycle();
-            }
+        if (batchExecutor != null) {
+            // Queued images still finish (at most the in-flight bound); the batch stops submitting
+            batchExecutor.shutdown();
         }
-        capturedImages.clear();
-        if (currentPhotoStripBitmap != null && !currentPhotoStripBitmap.isRecycled()) {
-            currentPhotoStripBitmap.recycle();
+        if (cameraProvider != null) {
+            cameraProvider.unbindAll();
         }
-        currentPhotoStripBitmap = null;
+        photoStripPipeline.cancel();
+        releaseCaptures();
+        photoStripPipeline.shutdown();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        captureStore.onTrimMemory(level);
+        faceOverlayView.onTrimMemory(level);
     }
 }
@@ -0,0 +1,112 @@
+package com.example.aremotionfilters;
+
+import android.graphics.PointF;
+import android.graphics.Rect;
+
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+import com.google.mlkit.vision.face.FaceDetector;
+import com.google.mlkit.vision.pose.Pose;
+import com.google.mlkit.vision.pose.PoseDetector;
+import com.google.mlkit.vision.pose.PoseLandmark;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Live detection with the shared ML Kit clients of a {@link DetectorManager}. Faces and pose run
+ * in parallel; their results are copied into the frame's {@link RawDetections} on ML Kit's
+ * callback thread, so the frame's image may be closed as soon as the callback completes. Each
+ * {@link DetectionBackend.Frame} reuses its two completion listeners.
+ */
+public class MlKitDetectionBackend implements DetectionBackend<InputImage> {
+
+    // Results are copied right on the ML Kit thread rather than queueing behind the result thread
+    private static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+    // Owned by the DetectorManager and shared between analyzers; not closed here
+    private final FaceDetector faceDetector;
+    private final PoseDetector poseDetector;
+
+    /**
+     * @param faceDetector Detector with the minimum face size that suits the analysis resolution.
+     */
+    public MlKitDetectionBackend(FaceDetector faceDetector, PoseDetector poseDetector) {
+        this.faceDetector = faceDetector;
+        this.poseDetector = poseDetector;
+    }
+
+    @Override
+    public Frame<InputImage> newFrame(RawDetections out, Callback callback) {
+        return new MlKitFrame(out, callback);
+    }
+
+    // Listeners are created once per slot and reused for every frame
+    private final class MlKitFrame extends Frame<InputImage> {
+        private final OnCompleteListener<List<Face>> faceListener = t -> {
+            List<Face> faces = t.isSuccessful() ? t.getResult() : null;
+            if (faces != null) {
+                copyFaces(faces, out);
+            }
+            callback.onFacesDone(faces != null);
+            partDone();
+        };
+        private final OnCompleteListener<Pose> poseListener = t -> {
+            Pose pose = t.isSuccessful() ? t.getResult() : null;
+            if (pose != null) {
+                copyPose(pose, out);
+            }
+            callback.onPoseDone(pose != null);
+            partDone();
+        };
+
+        MlKitFrame(RawDetections out, Callback callback) {
+            super(out, callback);
+        }
+
+        @Override
+        public void process(InputImage image, int width, int height, long timestampNanos, boolean detectFaces,
+                            boolean detectPose) {
+            // Tracking frame without pose: begin() reports completion through the same result path
+            if (!begin(detectFaces, detectPose)) {
+                return;
+            }
+            if (detectFaces) {
+                faceDetector.process(image).addOnCompleteListener(DIRECT_EXECUTOR, faceListener);
+            }
+            if (detectPose) {
+                poseDetector.process(image).addOnCompleteListener(DIRECT_EXECUTOR, poseListener);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        // The detectors are closed by the DetectorManager
+    }
+
+    private static void copyFaces(List<Face> faces, RawDetections out) {
+        // Indexed loop so no Iterator is allocated per frame
+        for (int i = 0, n = faces.size(); i < n; i++) {
+            Face face = faces.get(i);
+            Rect boundingBox = face.getBoundingBox();
+            Integer trackingId = face.getTrackingId();
+            out.addFace(trackingId != null ? trackingId : -1,
+                    boundingBox.left, boundingBox.top, boundingBox.right, boundingBox.bottom,
+                    EmotionClassifier.probability(face.getSmilingProbability()),
+                    EmotionClassifier.probability(face.getLeftEyeOpenProbability()),
+                    EmotionClassifier.probability(face.getRightEyeOpenProbability()),
+                    face.getHeadEulerAngleZ());
+        }
+    }
+
+    private static void copyPose(Pose pose, RawDetections out) {
+        List<PoseLandmark> landmarks = pose.getAllPoseLandmarks();
+        for (int i = 0, n = landmarks.size(); i < n; i++) {
+            PoseLandmark landmark = landmarks.get(i);
+            PointF position = landmark.getPosition();
+            out.setLandmark(landmark.getLandmarkType(), position.x, position.y, landmark.getInFrameLikelihood());
+        }
+    }
+}
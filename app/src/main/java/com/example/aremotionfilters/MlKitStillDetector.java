@@ -0,0 +1,79 @@
+package com.example.aremotionfilters;
+
+import android.graphics.Bitmap;
+import android.graphics.PointF;
+import android.graphics.Rect;
+
+import androidx.annotation.WorkerThread;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+import com.google.mlkit.vision.face.FaceDetection;
+import com.google.mlkit.vision.face.FaceDetector;
+import com.google.mlkit.vision.face.FaceDetectorOptions;
+import com.google.mlkit.vision.pose.Pose;
+import com.google.mlkit.vision.pose.PoseDetection;
+import com.google.mlkit.vision.pose.PoseDetector;
+import com.google.mlkit.vision.pose.PoseLandmark;
+import com.google.mlkit.vision.pose.accurate.AccuratePoseDetectorOptions;
+
+import java.util.List;
+
+/**
+ * ML Kit face and pose detection for batch processing of still images.
+ *
+ * Unlike the live analyzer's detectors these run in single-image mode with the accurate face
+ * model and without tracking: every photo is unrelated to the one before, and throughput comes
+ * from running several images at once rather than from per-frame latency. Both detectors are
+ * submitted before either is awaited, so they work on an image concurrently.
+ */
+public class MlKitStillDetector implements StillImageDetector<Bitmap>, AutoCloseable {
+
+    private final FaceDetector faceDetector;
+    private final PoseDetector poseDetector;
+
+    public MlKitStillDetector() {
+        faceDetector = FaceDetection.getClient(new FaceDetectorOptions.Builder()
+                .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_ACCURATE)
+                .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_NONE)
+                .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_ALL)
+                .setContourMode(FaceDetectorOptions.CONTOUR_MODE_NONE)
+                .build());
+        poseDetector = PoseDetection.getClient(new AccuratePoseDetectorOptions.Builder()
+                .setDetectorMode(AccuratePoseDetectorOptions.SINGLE_IMAGE_MODE)
+                .build());
+    }
+
+    @WorkerThread
+    @Override
+    public void detect(int index, Bitmap image, int width, int height, RawDetections out) throws Exception {
+        InputImage input = InputImage.fromBitmap(image, 0);
+        Task<List<Face>> faceTask = faceDetector.process(input);
+        Task<Pose> poseTask = poseDetector.process(input);
+        List<Face> faces = Tasks.await(faceTask);
+        for (int i = 0, n = faces.size(); i < n; i++) {
+            Face face = faces.get(i);
+            Rect box = face.getBoundingBox();
+            out.addFace(box.left, box.top, box.right, box.bottom,
+                    EmotionClassifier.probability(face.getSmilingProbability()),
+                    EmotionClassifier.probability(face.getLeftEyeOpenProbability()),
+                    EmotionClassifier.probability(face.getRightEyeOpenProbability()),
+                    face.getHeadEulerAngleZ());
+        }
+        Pose pose = Tasks.await(poseTask);
+        List<PoseLandmark> landmarks = pose != null ? pose.getAllPoseLandmarks() : null;
+        for (int i = 0, n = landmarks != null ? landmarks.size() : 0; i < n; i++) {
+            PoseLandmark landmark = landmarks.get(i);
+            PointF position = landmark.getPosition();
+            out.setLandmark(landmark.getLandmarkType(), position.x, position.y, landmark.getInFrameLikelihood());
+        }
+    }
+
+    @Override
+    public void close() {
+        faceDetector.close();
+        poseDetector.close();
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.aremotionfilters;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.SurfaceHolder;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Renders the overlay on its own thread onto a transparent surface, paced by Choreographer vsync.
+ *
+ * The analyzer side calls {@link #requestFrame()} after publishing to the {@link DetectionMailbox};
+ * at most one frame callback is pending at a time and each frame draws the newest snapshot, so
+ * results that arrive faster than the display refresh are skipped rather than queued. While an
+ * animated effect is on screen the thread also asks for the next vsync itself, timing the
+ * animation by the vsync frame time, so it keeps moving between analyzer results. The thread
+ * runs while the surface exists and is stopped, synchronously, in {@code surfaceDestroyed}.
+ */
+public class OverlayRenderThread implements SurfaceHolder.Callback, Choreographer.FrameCallback {
+
+    private static final String TAG = "OverlayRenderThread";
+    private static final long STOP_TIMEOUT_MILLIS = 500;
+
+    private final DetectionMailbox mailbox;
+    private final OverlayRenderer renderer;
+    private final AtomicBoolean frameRequested = new AtomicBoolean();
+
+    private volatile FrameMetrics frameMetrics;
+    private volatile boolean debugHudEnabled;
+    private volatile Handler handler;
+    private HandlerThread thread;
+
+    // Render thread only
+    private SurfaceHolder surfaceHolder;
+    private Choreographer choreographer;
+    private int surfaceWidth;
+    private int surfaceHeight;
+
+    /** @param mailbox Mailbox this thread is the (only) consumer of. */
+    public OverlayRenderThread(DetectionMailbox mailbox, OverlayRenderer renderer) {
+        this.mailbox = mailbox;
+        this.renderer = renderer;
+    }
+
+    public void setFrameMetrics(@Nullable FrameMetrics frameMetrics) {
+        this.frameMetrics = frameMetrics;
+    }
+
+    public void setDebugHudEnabled(boolean enabled) {
+        this.debugHudEnabled = enabled;
+        requestFrame();
+    }
+
+    /** Schedules a draw of the newest snapshot on the next vsync. Safe to call from any thread. */
+    public void requestFrame() {
+        Handler h = handler;
+        if (h != null && frameRequested.compareAndSet(false, true)) {
+            h.post(() -> {
+                if (choreographer != null) {
+                    choreographer.postFrameCallback(this);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void surfaceCreated(@NonNull SurfaceHolder holder) {
+        thread = new HandlerThread("overlay-render", Process.THREAD_PRIORITY_DISPLAY);
+        thread.start();
+        Handler h = new Handler(thread.getLooper());
+        // Choreographer.getInstance() is per Looper, so it has to be fetched on the render thread
+        h.post(() -> {
+            surfaceHolder = holder;
+            choreographer = Choreographer.getInstance();
+        });
+        handler = h;
+    }
+
+    @Override
+    public void surfaceChanged(@NonNull SurfaceHolder holder, int format, int width, int height) {
+        Handler h = handler;
+        if (h == null) {
+            return;
+        }
+        h.post(() -> {
+            surfaceWidth = width;
+            surfaceHeight = height;
+        });
+        frameRequested.set(false);
+        requestFrame();
+    }
+
+    @Override
+    public void surfaceDestroyed(@NonNull SurfaceHolder holder) {
+        Handler h = handler;
+        handler = null;
+        if (h == null) {
+            return;
+        }
+        // The surface is only valid until this returns, so wait for the render thread to let go of it
+        CountDownLatch stopped = new CountDownLatch(1);
+        h.post(() -> {
+            if (choreographer != null) {
+                choreographer.removeFrameCallback(this);
+            }
+            surfaceHolder = null;
+            stopped.countDown();
+        });
+        try {
+            if (!stopped.await(STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "Render thread did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread.quitSafely();
+        thread = null;
+        frameRequested.set(false);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameRequested.set(false);
+        SurfaceHolder holder = surfaceHolder;
+        if (holder == null || surfaceWidth == 0 || surfaceHeight == 0) {
+            return;
+        }
+        mailbox.update();
+        long drawStartNanos = SystemClock.elapsedRealtimeNanos();
+        Canvas canvas = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O ? holder.lockHardwareCanvas() : holder.lockCanvas();
+        if (canvas == null) {
+            return;
+        }
+        try {
+            canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            DetectionSnapshot snapshot = mailbox.current();
+            if (renderer.drawEffects(canvas, snapshot, surfaceWidth, surfaceHeight, snapshot.isFrontCamera(), frameTimeNanos)) {
+                requestFrame();
+            }
+            FrameMetrics metrics = frameMetrics;
+            if (metrics != null) {
+                metrics.record(FrameMetrics.STAGE_DRAW, SystemClock.elapsedRealtimeNanos() - drawStartNanos);
+                if (debugHudEnabled) {
+                    renderer.drawDebugHud(canvas, metrics);
+                }
+            }
+        } finally {
+            holder.unlockCanvasAndPost(canvas);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.aremotionfilters;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.os.SystemClock;
+
+/**
+ * Draws effect sprites for a {@link DetectionSnapshot}, plus the optional latency HUD, onto any
+ * canvas: the overlay View, the overlay render thread's surface or a captured photo.
+ *
+ * Holds scratch state so the draw loop does not allocate; use one instance per drawing thread.
+ * The sprite cache can be shared.
+ *
+ * Every effect is a single source-rect blit: the whole bitmap for a static sprite, the current
+ * frame's cell for an animated one, whose frame is picked from the caller's animation clock. An
+ * animated effect therefore costs the same per face as a static one.
+ */
+public class OverlayRenderer {
+
+    // Debug HUD with per-stage latency percentiles; the text is re-formatted at most twice a second
+    private static final long HUD_REFRESH_INTERVAL_NANOS = 500_000_000L;
+
+    private final EffectSpriteCache spriteCache;
+
+    private final Paint spritePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    // Scratch storage reused by every draw so the draw loop does not allocate
+    private final float[] placement = new float[4];
+    private final Rect srcRect = new Rect();
+    private final RectF dstRectF = new RectF();
+
+    private final Paint hudTextPaint;
+    private final Paint hudBackgroundPaint;
+    private final String[] hudLines = new String[FrameMetrics.STAGE_COUNT + 3];
+    private int hudLineCount;
+    private long lastHudRefreshNanos;
+
+    public OverlayRenderer(EffectSpriteCache spriteCache, float hudTextSizePx) {
+        this.spriteCache = spriteCache;
+        hudTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        hudTextPaint.setColor(Color.GREEN);
+        hudTextPaint.setTypeface(Typeface.MONOSPACE);
+        hudTextPaint.setTextSize(hudTextSizePx);
+        hudBackgroundPaint = new Paint();
+        hudBackgroundPaint.setColor(0xAA000000);
+    }
+
+    /**
+     * Draws the effects for every face and gesture in {@code detections}.
+     * @param canvas The canvas to draw on.
+     * @param targetWidth The width of the target drawing area (View width or captured image width).
+     * @param targetHeight The height of the target drawing area (View height or captured image height).
+     * @param isFrontCam True if the context is for a front camera image.
+     * @param animationTimeNanos Clock that selects the frame of animated effects; any time base.
+     * @return Whether an animated effect was drawn, i.e. the next frame will look different even
+     *         without new detection results.
+     */
+    public boolean drawEffects(Canvas canvas, DetectionSnapshot detections, int targetWidth, int targetHeight,
+                               boolean isFrontCam, long animationTimeNanos) {
+        boolean animated = false;
+        int imageWidth = detections.getImageWidth();
+        int imageHeight = detections.getImageHeight();
+        if (detections.isEmpty() || imageWidth == 0 || imageHeight == 0) {
+            return false;
+        }
+
+        // Scale factor from ImageAnalysis coordinates to the target canvas coordinates
+        float scaleX = (float) targetWidth / imageWidth;
+        float scaleY = (float) targetHeight / imageHeight;
+
+        for (int i = 0, count = detections.size(); i < count; i++) {
+            FaceData data = detections.get(i);
+            int dataTypeOrEmotion = data.getEmotion();
+            float rotationDegrees = placeEffect(data, scaleX, scaleY, targetWidth, targetHeight, isFrontCam);
+            if (Float.isNaN(rotationDegrees)) {
+                continue;
+            }
+            float targetSize = Math.max(placement[OverlayGeometry.RIGHT] - placement[OverlayGeometry.LEFT],
+                    placement[OverlayGeometry.BOTTOM] - placement[OverlayGeometry.TOP]);
+            Bitmap sprite = spriteCache.get(dataTypeOrEmotion, targetSize);
+            if (sprite == null) {
+                continue;
+            }
+            SpriteAnimation animation = spriteCache.getAnimation(dataTypeOrEmotion);
+            if (animation != null) {
+                // The drawn atlas may be a scaled variant of the full-size one the frame table describes
+                int frame = animation.frameAt(animationTimeNanos);
+                float scale = (float) sprite.getWidth() / spriteCache.getSourceWidth(dataTypeOrEmotion);
+                int left = animation.getFrameLeft(frame);
+                int top = animation.getFrameTop(frame);
+                srcRect.set(Math.round(left * scale), Math.round(top * scale),
+                        Math.round((left + animation.getFrameWidth()) * scale),
+                        Math.round((top + animation.getFrameHeight()) * scale));
+                animated = true;
+            } else {
+                srcRect.set(0, 0, sprite.getWidth(), sprite.getHeight());
+            }
+            drawEffect(canvas, sprite, rotationDegrees);
+        }
+        return animated;
+    }
+
+    /**
+     * Adds where {@link #drawEffects} would draw each effect of {@code detections} to
+     * {@code detector}, without drawing anything. Effects are added as placed, even before their
+     * sprite has finished loading. Call {@link OverlayChangeDetector#begin()} first.
+     */
+    public void collectEffectBounds(DetectionSnapshot detections, int targetWidth, int targetHeight, boolean isFrontCam,
+                                    OverlayChangeDetector detector) {
+        int imageWidth = detections.getImageWidth();
+        int imageHeight = detections.getImageHeight();
+        if (detections.isEmpty() || imageWidth == 0 || imageHeight == 0) {
+            return;
+        }
+        float scaleX = (float) targetWidth / imageWidth;
+        float scaleY = (float) targetHeight / imageHeight;
+        for (int i = 0, count = detections.size(); i < count; i++) {
+            FaceData data = detections.get(i);
+            float rotationDegrees = placeEffect(data, scaleX, scaleY, targetWidth, targetHeight, isFrontCam);
+            if (!Float.isNaN(rotationDegrees)) {
+                detector.add(data.getEmotion(), data.getTrackingId(), placement[OverlayGeometry.LEFT],
+                        placement[OverlayGeometry.TOP], placement[OverlayGeometry.RIGHT],
+                        placement[OverlayGeometry.BOTTOM], rotationDegrees);
+            }
+        }
+    }
+
+    /**
+     * Places the effect for {@code data} into {@link #placement} and returns its rotation in degrees,
+     * or NaN if it has no effect or cannot be placed.
+     */
+    private float placeEffect(FaceData data, float scaleX, float scaleY, int targetWidth, int targetHeight,
+                              boolean isFrontCam) {
+        int dataTypeOrEmotion = data.getEmotion();
+        // Placement follows the full-size sprite or frame; the drawn variant has the same aspect ratio
+        int frameWidth = spriteCache.getFrameWidth(dataTypeOrEmotion);
+        int frameHeight = spriteCache.getFrameHeight(dataTypeOrEmotion);
+        if (frameWidth == 0 || frameHeight == 0) {
+            return Float.NaN; // Neutral, or no sprite for this effect
+        }
+        if (FaceData.isGesture(dataTypeOrEmotion)) {
+            if (!data.hasGestureAnchor()) {
+                return Float.NaN;
+            }
+            // Gesture effect size is a fixed percentage of the *target canvas height*
+            float aspectRatio = (float) frameWidth / (float) frameHeight;
+            if (!OverlayGeometry.placeGestureEffect(data.getGestureAnchorX(), data.getGestureAnchorY(),
+                    scaleX, scaleY, targetWidth, targetHeight, isFrontCam, aspectRatio, placement)) {
+                return Float.NaN;
+            }
+            return data.getGestureRotation();
+        } else if (data.hasBoundingBox()) { // Face data
+            // Bounding box is in ImageAnalysis coordinates, placement in target canvas coordinates
+            float effectAspectRatio = (float) frameHeight / (float) frameWidth;
+            if (!OverlayGeometry.placeFaceEffect(data.getBoxLeft(), data.getBoxTop(), data.getBoxRight(), data.getBoxBottom(),
+                    scaleX, scaleY, targetWidth, isFrontCam, effectAspectRatio, placement)) {
+                return Float.NaN;
+            }
+            // Rotate effect around its own center on the target canvas
+            return data.getHeadEulerAngleZ();
+        }
+        return Float.NaN;
+    }
+
+    /** Draws the latency HUD (p50/p95/p99 per pipeline stage, analyzed and dropped frames) top-left. */
+    public void drawDebugHud(Canvas canvas, FrameMetrics frameMetrics) {
+        long now = SystemClock.elapsedRealtimeNanos();
+        if (hudLineCount == 0 || now - lastHudRefreshNanos >= HUD_REFRESH_INTERVAL_NANOS) {
+            hudLines[0] = "stage               p50    p95    p99 (ms)";
+            hudLineCount = 1 + frameMetrics.formatHudLines(hudLines, 1);
+            lastHudRefreshNanos = now;
+        }
+        float lineHeight = hudTextPaint.getFontSpacing();
+        float padding = lineHeight / 2f;
+        float maxWidth = 0f;
+        for (int i = 0; i < hudLineCount; i++) {
+            maxWidth = Math.max(maxWidth, hudTextPaint.measureText(hudLines[i]));
+        }
+        canvas.drawRect(0, 0, maxWidth + 2 * padding, hudLineCount * lineHeight + 2 * padding, hudBackgroundPaint);
+        for (int i = 0; i < hudLineCount; i++) {
+            canvas.drawText(hudLines[i], padding, padding + (i + 1) * lineHeight - hudTextPaint.descent(), hudTextPaint);
+        }
+    }
+
+    /**
+     * Draws the {@link #srcRect} part of {@code bitmap} into the rect held in {@link #placement},
+     * rotated around its centre. The placement already has the sprite's aspect ratio.
+     */
+    private void drawEffect(Canvas canvas, Bitmap bitmap, float rotationDegrees) {
+        dstRectF.set(placement[OverlayGeometry.LEFT], placement[OverlayGeometry.TOP],
+                placement[OverlayGeometry.RIGHT], placement[OverlayGeometry.BOTTOM]);
+        canvas.save();
+        canvas.rotate(rotationDegrees, dstRectF.centerX(), dstRectF.centerY());
+        canvas.drawBitmap(bitmap, srcRect, dstRectF, spritePaint);
+        canvas.restore();
+    }
+}
@@ -0,0 +1,401 @@
+package com.example.aremotionfilters;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds and saves the photo strip on a background thread.
+ *
+ * Building runs two stages (downscale each shot, compose the strip) and saving a third (stream
+ * the JPEG encode straight into the MediaStore output stream). The animated export instead scales
+ * and GIF-encodes one shot at a time into the output stream. Every stage reports progress, and
+ * {@link #cancel()} abandons whatever is running at the next checkpoint: between shots, before
+ * composing, or on the next write of the encoder. The listener is only ever called on the main
+ * thread, and never for work that was cancelled.
+ *
+ * All work runs on one thread, so resources released through {@link #runWhenIdle(Runnable)} are
+ * only released once no stage can still be reading them.
+ */
+public class PhotoStripPipeline {
+
+    private static final String TAG = "PhotoStripPipeline";
+
+    public static final int STAGE_DOWNSCALE = 0;
+    public static final int STAGE_COMPOSE = 1;
+    public static final int STAGE_ENCODE = 2;
+
+    private static final int ENCODE_BUFFER_BYTES = 64 * 1024;
+    // Encode progress is reported at most every this many bytes
+    private static final int ENCODE_PROGRESS_STEP_BYTES = 256 * 1024;
+    // Threads for GIF palette quantization of the animated strip
+    private static final int MAX_QUANTIZER_THREADS = 4;
+
+    /** Called on the main thread. */
+    public interface Listener {
+        /**
+         * @param done  Shots scaled for {@link #STAGE_DOWNSCALE}, 0 or 1 for {@link #STAGE_COMPOSE},
+         *              bytes written for {@link #STAGE_ENCODE}.
+         * @param total Shot count, 1, or -1 when the encoded size is not known yet.
+         */
+        void onProgress(int stage, long done, long total);
+
+        void onStripReady(@NonNull Bitmap strip);
+
+        void onSaved(@NonNull Uri uri);
+
+        void onFailed(int stage, @Nullable Exception e);
+    }
+
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        runnable.run();
+    }, "photo-strip"));
+    // Bumped by cancel(); work started under an older generation is abandoned
+    private final AtomicInteger generation = new AtomicInteger();
+
+    public PhotoStripPipeline(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Decodes each shot in {@code shots} at a sample size close to {@code columnWidth}, scales it
+     * to that width and stacks them into one strip. The store must stay open until the strip is
+     * ready or the build is cancelled.
+     */
+    @MainThread
+    public void build(CaptureStore shots, int columnWidth) {
+        int gen = generation.get();
+        int count = shots.size();
+        executor.execute(() -> {
+            List<Bitmap> scaledImages = new ArrayList<>(count);
+            try {
+                for (int i = 0; i < count; i++) {
+                    if (isCancelled(gen)) {
+                        return;
+                    }
+                    Bitmap original = shots.decode(i, columnWidth);
+                    float aspectRatio = (float) original.getHeight() / original.getWidth();
+                    int scaledHeight = Math.max(1, (int) (columnWidth * aspectRatio));
+                    Bitmap scaled = Bitmap.createScaledBitmap(original, columnWidth, scaledHeight, true);
+                    if (scaled != original) {
+                        original.recycle();
+                    }
+                    scaledImages.add(scaled);
+                    postProgress(gen, STAGE_DOWNSCALE, i + 1, count);
+                }
+                if (isCancelled(gen)) {
+                    return;
+                }
+                if (scaledImages.isEmpty()) {
+                    Log.e(TAG, "No images to create photostrip");
+                    postFailure(gen, STAGE_COMPOSE, null);
+                    return;
+                }
+                postProgress(gen, STAGE_COMPOSE, 0, 1);
+                Bitmap strip = compose(scaledImages, columnWidth);
+                postProgress(gen, STAGE_COMPOSE, 1, 1);
+                mainHandler.post(() -> {
+                    if (isCancelled(gen)) {
+                        strip.recycle();
+                    } else {
+                        listener.onStripReady(strip);
+                    }
+                });
+            } catch (IOException | RuntimeException | OutOfMemoryError e) {
+                if (!isCancelled(gen)) {
+                    Log.e(TAG, "Failed to build photostrip: " + e.getMessage(), e);
+                }
+                postFailure(gen, STAGE_COMPOSE, e instanceof Exception ? (Exception) e : null);
+            } finally {
+                for (Bitmap scaled : scaledImages) {
+                    scaled.recycle();
+                }
+            }
+        });
+    }
+
+    /**
+     * Encodes {@code strip} as JPEG straight into a new MediaStore image entry. On failure or
+     * cancellation the pending entry is deleted again.
+     */
+    @MainThread
+    public void save(Bitmap strip, ContentResolver resolver, String displayName, String relativePath, int quality) {
+        int gen = generation.get();
+        executor.execute(() -> saveToMediaStore(gen, resolver, displayName, relativePath, "image/jpeg", outputStream -> {
+            if (!strip.compress(Bitmap.CompressFormat.JPEG, quality, outputStream) || isCancelled(gen)) {
+                throw new InterruptedIOException(isCancelled(gen) ? "Cancelled" : "JPEG encoding failed");
+            }
+        }));
+    }
+
+    /**
+     * Encodes the shots in {@code shots} as an animated GIF that cycles through them, straight into
+     * a new MediaStore image entry. Shots are decoded, scaled to {@code frameWidth} (letterboxed to
+     * the first shot's aspect ratio) and encoded one at a time, so only one frame is ever held,
+     * whatever the shot count. Per-frame progress is reported as {@link #STAGE_DOWNSCALE}. The store
+     * must stay open until the save finishes or is cancelled.
+     */
+    @MainThread
+    public void saveAnimated(CaptureStore shots, int frameWidth, int frameDelayMillis, ContentResolver resolver,
+                             String displayName, String relativePath) {
+        int gen = generation.get();
+        int count = shots.size();
+        executor.execute(() -> saveToMediaStore(gen, resolver, displayName, relativePath, "image/gif",
+                outputStream -> encodeAnimated(gen, shots, count, frameWidth, frameDelayMillis, outputStream)));
+    }
+
+    /** Abandons any running or queued build or save. */
+    @MainThread
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    /** Runs {@code task} on the pipeline thread once every stage queued so far has finished. */
+    @MainThread
+    public void runWhenIdle(Runnable task) {
+        executor.execute(task);
+    }
+
+    /** Cancels outstanding work and lets the background thread exit after the recycle queue. */
+    @MainThread
+    public void shutdown() {
+        cancel();
+        executor.shutdown();
+    }
+
+    /** Writes an encoded image to the stream it is given. */
+    private interface StreamWriter {
+        void write(OutputStream outputStream) throws IOException;
+    }
+
+    // Pipeline thread: creates a pending MediaStore entry, streams the encoder into it and publishes
+    // it, or deletes it again on failure or cancellation
+    private void saveToMediaStore(int gen, ContentResolver resolver, String displayName, String relativePath,
+                                  String mimeType, StreamWriter writer) {
+        if (isCancelled(gen)) {
+            return;
+        }
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.Images.Media.DISPLAY_NAME, displayName);
+        values.put(MediaStore.Images.Media.MIME_TYPE, mimeType);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            values.put(MediaStore.Images.Media.RELATIVE_PATH, relativePath);
+            values.put(MediaStore.Images.Media.IS_PENDING, 1);
+        }
+        Uri imageUri = resolver.insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
+        if (imageUri == null) {
+            Log.e(TAG, "Failed to create MediaStore entry.");
+            postFailure(gen, STAGE_ENCODE, null);
+            return;
+        }
+        try {
+            OutputStream target = resolver.openOutputStream(imageUri);
+            if (target == null) {
+                throw new IOException("Failed to get output stream.");
+            }
+            try (OutputStream outputStream = new BufferedOutputStream(new ProgressOutputStream(target, gen), ENCODE_BUFFER_BYTES)) {
+                writer.write(outputStream);
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                values.clear();
+                values.put(MediaStore.Images.Media.IS_PENDING, 0);
+                resolver.update(imageUri, values, null, null);
+            }
+            mainHandler.post(() -> {
+                if (!isCancelled(gen)) {
+                    listener.onSaved(imageUri);
+                }
+            });
+        } catch (IOException | RuntimeException | OutOfMemoryError e) {
+            if (!isCancelled(gen)) {
+                Log.e(TAG, "Failed to save photostrip: " + e.getMessage(), e);
+            }
+            try {
+                resolver.delete(imageUri, null, null);
+            } catch (Exception ex) {
+                Log.e(TAG, "Failed to delete pending image entry: " + ex.getMessage());
+            }
+            postFailure(gen, STAGE_ENCODE, e instanceof Exception ? (Exception) e : null);
+        }
+    }
+
+    private void encodeAnimated(int gen, CaptureStore shots, int count, int frameWidth, int frameDelayMillis,
+                                OutputStream outputStream) throws IOException {
+        if (count == 0) {
+            throw new IOException("No shots to animate");
+        }
+        long startNanos = SystemClock.elapsedRealtimeNanos();
+        int threads = Math.min(MAX_QUANTIZER_THREADS, Runtime.getRuntime().availableProcessors());
+        ExecutorService quantizerExecutor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        Bitmap frame = null;
+        // Decoded early for the frame size; recycled in finally until the loop takes it over
+        Bitmap first = null;
+        Runtime runtime = Runtime.getRuntime();
+        long peakHeapBytes = 0;
+        try {
+            first = shots.decode(0, frameWidth);
+            int frameHeight = Math.max(1, Math.round((float) frameWidth * first.getHeight() / first.getWidth()));
+            frame = Bitmap.createBitmap(frameWidth, frameHeight, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(frame);
+            Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+            RectF destination = new RectF();
+            int[] pixels = new int[frameWidth * frameHeight];
+            GifEncoder encoder = new GifEncoder(outputStream, frameWidth, frameHeight, GifEncoder.LOOP_FOREVER,
+                    new PaletteQuantizer(quantizerExecutor, threads));
+            for (int i = 0; i < count; i++) {
+                if (isCancelled(gen)) {
+                    throw new InterruptedIOException("Cancelled");
+                }
+                Bitmap shot;
+                if (i == 0) {
+                    shot = first;
+                    first = null;
+                } else {
+                    shot = shots.decode(i, frameWidth);
+                }
+                // Letterbox into the frame at the first shot's aspect ratio
+                float scale = Math.min((float) frameWidth / shot.getWidth(), (float) frameHeight / shot.getHeight());
+                float drawnWidth = shot.getWidth() * scale;
+                float drawnHeight = shot.getHeight() * scale;
+                destination.set((frameWidth - drawnWidth) / 2f, (frameHeight - drawnHeight) / 2f,
+                        (frameWidth + drawnWidth) / 2f, (frameHeight + drawnHeight) / 2f);
+                canvas.drawColor(Color.WHITE);
+                canvas.drawBitmap(shot, null, destination, paint);
+                shot.recycle();
+                frame.getPixels(pixels, 0, frameWidth, 0, 0, frameWidth, frameHeight);
+                encoder.addFrame(pixels, frameDelayMillis);
+                peakHeapBytes = Math.max(peakHeapBytes, runtime.totalMemory() - runtime.freeMemory());
+                postProgress(gen, STAGE_DOWNSCALE, i + 1, count);
+            }
+            encoder.finish();
+            long workingBytes = encoder.getWorkingBytes() + frame.getAllocationByteCount() + pixels.length * 4L;
+            Log.i(TAG, String.format(Locale.US,
+                    "Animated strip: %d frames %dx%d in %.1f ms (quantize %.1f ms on %d threads, compress %.1f ms), "
+                            + "encoder working set %d KB, peak heap %d KB",
+                    count, frameWidth, frameHeight, (SystemClock.elapsedRealtimeNanos() - startNanos) / 1_000_000.0,
+                    encoder.getQuantizeNanos() / 1_000_000.0, threads, encoder.getCompressNanos() / 1_000_000.0,
+                    workingBytes / 1024, peakHeapBytes / 1024));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while quantizing");
+        } finally {
+            if (first != null) {
+                first.recycle();
+            }
+            if (frame != null) {
+                frame.recycle();
+            }
+            if (quantizerExecutor != null) {
+                quantizerExecutor.shutdown();
+            }
+        }
+    }
+
+    private static Bitmap compose(List<Bitmap> scaledImages, int stripWidth) {
+        int totalHeight = 0;
+        for (Bitmap img : scaledImages) {
+            totalHeight += img.getHeight();
+        }
+        Bitmap strip = Bitmap.createBitmap(stripWidth, totalHeight, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(strip);
+        canvas.drawColor(Color.WHITE);
+        int currentY = 0;
+        for (Bitmap img : scaledImages) {
+            float leftOffset = (stripWidth - img.getWidth()) / 2f;
+            canvas.drawBitmap(img, leftOffset, currentY, null);
+            currentY += img.getHeight();
+        }
+        return strip;
+    }
+
+    private boolean isCancelled(int gen) {
+        return generation.get() != gen;
+    }
+
+    private void postProgress(int gen, int stage, long done, long total) {
+        mainHandler.post(() -> {
+            if (!isCancelled(gen)) {
+                listener.onProgress(stage, done, total);
+            }
+        });
+    }
+
+    private void postFailure(int gen, int stage, @Nullable Exception e) {
+        mainHandler.post(() -> {
+            if (!isCancelled(gen)) {
+                listener.onFailed(stage, e);
+            }
+        });
+    }
+
+    /** Counts encoded bytes for progress and aborts the encoder once the save is cancelled. */
+    private final class ProgressOutputStream extends FilterOutputStream {
+        private final int gen;
+        private long written;
+        private long lastReported;
+
+        ProgressOutputStream(OutputStream out, int gen) {
+            super(out);
+            this.gen = gen;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            checkCancelled();
+            out.write(b);
+            onWritten(1);
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            checkCancelled();
+            out.write(b, off, len);
+            onWritten(len);
+        }
+
+        private void checkCancelled() throws InterruptedIOException {
+            if (isCancelled(gen)) {
+                throw new InterruptedIOException("Cancelled");
+            }
+        }
+
+        private void onWritten(int len) {
+            written += len;
+            if (written - lastReported >= ENCODE_PROGRESS_STEP_BYTES) {
+                lastReported = written;
+                postProgress(gen, STAGE_ENCODE, written, -1);
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+// Pure-Java core of the filter pipeline: no Android or ML Kit dependencies, so it can be
+// unit-tested and benchmarked on a plain JVM (e.g. on Linux CI).
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
+
+// Benchmarks live in src/jmh/java. Run with: ./gradlew :core:jmh
+// Results are written as JSON so CI can compare them against a previous run.
+jmh {
+    jmhVersion.set(libs.versions.jmh.get())
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+}
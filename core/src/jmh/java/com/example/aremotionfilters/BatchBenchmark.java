@@ -0,0 +1,108 @@
+package com.example.aremotionfilters;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Images per second through the batch path as the worker count grows, with the synthetic
+ * detector standing in for a 5 ms ML Kit call and no real decoding or encoding: what the
+ * executor, backpressure, classification and results file cost around the detector.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BatchBenchmark {
+
+    private static final int IMAGES = 64;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private ExecutorService executor;
+    private BatchProcessor<int[]> processor;
+    private final List<File> inputs = new ArrayList<>();
+    private final File outputDir = new File(System.getProperty("java.io.tmpdir"));
+
+    // Sizes derived from the file name so the synthetic detector sees different images
+    private static final class InMemoryIo implements BatchProcessor.ImageIo<int[]> {
+        @Override
+        public int[] decode(File input) {
+            int n = Integer.parseInt(input.getName());
+            return new int[]{640 + n, 480 + n};
+        }
+
+        @Override
+        public int getWidth(int[] image) {
+            return image[0];
+        }
+
+        @Override
+        public int getHeight(int[] image) {
+            return image[1];
+        }
+
+        @Override
+        public void writeFiltered(int[] image, DetectionSnapshot effects, File output) {
+        }
+
+        @Override
+        public String getOutputExtension() {
+            return "jpg";
+        }
+
+        @Override
+        public void release(int[] image) {
+        }
+    }
+
+    private static final class NullWriter extends Writer {
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < IMAGES; i++) {
+            inputs.add(new File(Integer.toString(i)));
+        }
+        executor = Executors.newFixedThreadPool(threads);
+        processor = new BatchProcessor<>(new InMemoryIo(),
+                new SyntheticStillDetector<int[]>(42L, 4, 0.3f, 5_000_000L), executor, 2 * threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IMAGES)
+    public BatchProcessor.Summary processImages() throws Exception {
+        return processor.process(inputs, outputDir, new NullWriter());
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.aremotionfilters;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the per-frame emotion rules for a growing number of faces, and of the gesture
+ * path (pose features of both hands, then every registered rule) as rules are added: the features
+ * are computed once per frame, so the cost should stay nearly flat with the rule count.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ClassificationBenchmark {
+
+    @State(Scope.Thread)
+    public static class Faces {
+        @Param({"1", "5", "10", "25", "50"})
+        public int faceCount;
+
+        float[] smiling;
+        float[] leftEye;
+        float[] rightEye;
+        int[] previousEmotion;
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(42);
+            smiling = new float[faceCount];
+            leftEye = new float[faceCount];
+            rightEye = new float[faceCount];
+            previousEmotion = new int[faceCount];
+            for (int i = 0; i < faceCount; i++) {
+                // Keep probabilities around the thresholds so every rule branch is exercised
+                smiling[i] = 0.4f + random.nextFloat() * 0.5f;
+                leftEye[i] = 0.2f + random.nextFloat() * 0.6f;
+                rightEye[i] = 0.2f + random.nextFloat() * 0.6f;
+                previousEmotion[i] = random.nextInt(FaceData.GESTURE_THUMBS_UP);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Gestures implements DetectionBackend.Callback {
+        private static final int FRAMES = 64;
+        private static final long FRAME_NANOS = 33_333_333L;
+
+        // Rules in the analyzer's priority order; the first ruleCount are registered
+        @Param({"1", "2", "3"})
+        public int ruleCount;
+
+        final RawDetections[] poses = new RawDetections[FRAMES];
+        final PoseFeatures features = new PoseFeatures();
+        final GestureEngine engine = new GestureEngine();
+        final FaceDataPool pool = new FaceDataPool(4);
+        final ArrayList<FaceData> results = new ArrayList<>(4);
+        int frame;
+        long timestampNanos;
+
+        @Setup
+        public void setUp() {
+            GestureRule[] rules = {
+                    GestureClassifier.waveRule(), GestureClassifier.peaceRule(), GestureClassifier.thumbsUpRule()
+            };
+            for (int i = 0; i < ruleCount; i++) {
+                engine.register(rules[i]);
+            }
+            // Two seconds of poses with a gesture burst in the middle
+            SyntheticDetectionBackend<Object> backend = new SyntheticDetectionBackend<>(42L);
+            backend.setGestureBursts(FRAMES * FRAME_NANOS, FRAMES * FRAME_NANOS / 2);
+            for (int i = 0; i < FRAMES; i++) {
+                poses[i] = new RawDetections();
+                backend.process(null, 640, 480, (i + FRAMES / 4) * FRAME_NANOS, false, true, poses[i], this);
+            }
+        }
+
+        @Override
+        public void onFacesDone(boolean success) {
+        }
+
+        @Override
+        public void onPoseDone(boolean success) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    @Benchmark
+    public void classifyEmotions(Faces faces, Blackhole blackhole) {
+        for (int i = 0; i < faces.faceCount; i++) {
+            blackhole.consume(EmotionClassifier.classify(faces.smiling[i], faces.leftEye[i], faces.rightEye[i]));
+        }
+    }
+
+    @Benchmark
+    public void classifyEmotionsWithHysteresis(Faces faces, Blackhole blackhole) {
+        for (int i = 0; i < faces.faceCount; i++) {
+            blackhole.consume(EmotionClassifier.classify(faces.previousEmotion[i], faces.smiling[i],
+                    faces.leftEye[i], faces.rightEye[i]));
+        }
+    }
+
+    @Benchmark
+    public int evaluateGestures(Gestures g) {
+        g.poses[g.frame].applyPose(g.features);
+        g.frame = (g.frame + 1) % Gestures.FRAMES;
+        g.engine.evaluate(g.features, g.timestampNanos);
+        g.timestampNanos += Gestures.FRAME_NANOS;
+        g.pool.releaseAll(g.results);
+        return g.engine.collect(g.pool, g.results);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.aremotionfilters;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame cost of the face pipeline as the number of faces grows, with and without crowd
+ * limits: one detection frame (matching, classification, template capture) and one tracking
+ * frame, each followed by collecting the results and placing an effect for every reported face.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CrowdBenchmark {
+
+    private static final int IMAGE_WIDTH = 480;
+    private static final int IMAGE_HEIGHT = 640;
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 1920;
+
+    @Param({"1", "5", "10", "15", "25"})
+    public int faceCount;
+
+    // 0 = crowd mode off
+    @Param({"0", "5"})
+    public int maxFaces;
+
+    private final LumaFrame frame = new LumaFrame();
+    private final FaceDataPool pool = new FaceDataPool(32);
+    private final ArrayList<FaceData> results = new ArrayList<>();
+    private final float[] placement = new float[4];
+    private FaceTracker tracker;
+    private float[] boxes;
+    private float[] probabilities;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        byte[] luma = new byte[IMAGE_WIDTH * IMAGE_HEIGHT];
+        random.nextBytes(luma);
+        frame.set(ByteBuffer.wrap(luma), IMAGE_WIDTH, IMAGE_HEIGHT, IMAGE_WIDTH, 1, 0);
+
+        tracker = new FaceTracker(2);
+        tracker.setCrowdLimits(maxFaces, FaceTracker.UNLIMITED);
+        boxes = new float[faceCount * 4];
+        probabilities = new float[faceCount * 3];
+        for (int i = 0; i < faceCount; i++) {
+            // A few large faces in front, the rest smaller and spread out as in an audience
+            float size = i < 3 ? 140 + random.nextFloat() * 60 : 30 + random.nextFloat() * 50;
+            float x = random.nextFloat() * (IMAGE_WIDTH - size);
+            float y = random.nextFloat() * (IMAGE_HEIGHT - size);
+            boxes[i * 4] = x;
+            boxes[i * 4 + 1] = y;
+            boxes[i * 4 + 2] = x + size;
+            boxes[i * 4 + 3] = y + size;
+            for (int j = 0; j < 3; j++) {
+                probabilities[i * 3 + j] = random.nextFloat();
+            }
+        }
+        detect(); // Tracking frames need tracks
+    }
+
+    @Benchmark
+    public void detectionFrame(Blackhole blackhole) {
+        detect();
+        publish(blackhole);
+    }
+
+    @Benchmark
+    public void trackingFrame(Blackhole blackhole) {
+        tracker.track(frame);
+        publish(blackhole);
+    }
+
+    private void detect() {
+        tracker.beginDetections(IMAGE_WIDTH, IMAGE_HEIGHT);
+        for (int i = 0; i < faceCount; i++) {
+            tracker.addDetection(i, boxes[i * 4], boxes[i * 4 + 1], boxes[i * 4 + 2], boxes[i * 4 + 3],
+                    probabilities[i * 3], probabilities[i * 3 + 1], probabilities[i * 3 + 2], 0f);
+        }
+        tracker.endDetections(frame);
+    }
+
+    // Collect the reported faces and place their effects, as the analyzer and overlay do
+    private void publish(Blackhole blackhole) {
+        pool.releaseAll(results);
+        tracker.collectResults(pool, results);
+        float scaleX = (float) VIEW_WIDTH / IMAGE_WIDTH;
+        float scaleY = (float) VIEW_HEIGHT / IMAGE_HEIGHT;
+        for (int i = 0, n = results.size(); i < n; i++) {
+            FaceData data = results.get(i);
+            blackhole.consume(OverlayGeometry.placeFaceEffect(data.getBoxLeft(), data.getBoxTop(),
+                    data.getBoxRight(), data.getBoxBottom(), scaleX, scaleY, VIEW_WIDTH, true, 1.2f, placement));
+        }
+        blackhole.consume(results.size());
+    }
+}
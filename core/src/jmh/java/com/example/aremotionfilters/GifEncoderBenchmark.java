@@ -0,0 +1,80 @@
+package com.example.aremotionfilters;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to quantize and compress one photo-strip frame into an animated GIF, for a growing number
+ * of quantizer threads. The encoded bytes are discarded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GifEncoderBenchmark {
+
+    // A photo-strip column (PHOTO_STRIP_COLUMN_WIDTH) and a larger export
+    @Param({"300x400", "720x960"})
+    public String size;
+
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    private ExecutorService executor;
+    private GifEncoder encoder;
+    private int[] argb;
+
+    @Setup
+    public void setUp() throws IOException {
+        int width = Integer.parseInt(size.substring(0, size.indexOf('x')));
+        int height = Integer.parseInt(size.substring(size.indexOf('x') + 1));
+        // Smooth shading with sensor-like noise, as in a camera shot
+        Random random = new Random(42);
+        argb = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = Math.min(255, x * 200 / width + random.nextInt(24));
+                int g = Math.min(255, y * 180 / height + random.nextInt(24));
+                int b = Math.min(255, (x + y) * 120 / (width + height) + 60 + random.nextInt(24));
+                argb[y * width + x] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+        executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        OutputStream discard = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+        encoder = new GifEncoder(discard, width, height, GifEncoder.LOOP_FOREVER, new PaletteQuantizer(executor, threads));
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public int encodeFrame() throws IOException, InterruptedException {
+        encoder.addFrame(argb, 500);
+        return encoder.getFrameCount();
+    }
+}
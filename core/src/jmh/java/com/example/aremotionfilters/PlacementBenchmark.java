@@ -0,0 +1,81 @@
+package com.example.aremotionfilters;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of effect placement (analysis -> view mapping, sizing, offsets) for a growing number
+ * of faces, plus the snapshot copy the overlay does for every analyzed frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PlacementBenchmark {
+
+    private static final int IMAGE_WIDTH = 640;
+    private static final int IMAGE_HEIGHT = 480;
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 1920;
+
+    @Param({"1", "5", "10", "25", "50"})
+    public int faceCount;
+
+    private final ArrayList<FaceData> results = new ArrayList<>();
+    private final DetectionSnapshot snapshot = new DetectionSnapshot();
+    private final float[] placement = new float[4];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        results.clear();
+        for (int i = 0; i < faceCount; i++) {
+            float size = 40 + random.nextFloat() * 120;
+            float x = random.nextFloat() * (IMAGE_WIDTH - size);
+            float y = random.nextFloat() * (IMAGE_HEIGHT - size);
+            FaceData data = new FaceData();
+            if (i % 10 == 9) {
+                data.setGesture(FaceData.GESTURE_THUMBS_UP, x, y, random.nextFloat() * 90f);
+            } else {
+                data.setFace(x, y, x + size, y + size, 1 + i % 4, random.nextFloat() * 30f - 15f);
+            }
+            results.add(data);
+        }
+        snapshot.set(results, IMAGE_WIDTH, IMAGE_HEIGHT, true);
+    }
+
+    @Benchmark
+    public void placeEffects(Blackhole blackhole) {
+        float scaleX = (float) VIEW_WIDTH / IMAGE_WIDTH;
+        float scaleY = (float) VIEW_HEIGHT / IMAGE_HEIGHT;
+        for (int i = 0, n = snapshot.size(); i < n; i++) {
+            FaceData data = snapshot.get(i);
+            boolean placed;
+            if (data.hasGestureAnchor()) {
+                placed = OverlayGeometry.placeGestureEffect(data.getGestureAnchorX(), data.getGestureAnchorY(),
+                        scaleX, scaleY, VIEW_WIDTH, VIEW_HEIGHT, snapshot.isFrontCamera(), 0.8f, placement);
+            } else {
+                placed = OverlayGeometry.placeFaceEffect(data.getBoxLeft(), data.getBoxTop(), data.getBoxRight(),
+                        data.getBoxBottom(), scaleX, scaleY, VIEW_WIDTH, snapshot.isFrontCamera(), 1.2f, placement);
+            }
+            blackhole.consume(placed);
+            blackhole.consume(placement[OverlayGeometry.LEFT] + placement[OverlayGeometry.BOTTOM]);
+        }
+    }
+
+    @Benchmark
+    public void copySnapshot(Blackhole blackhole) {
+        snapshot.set(results, IMAGE_WIDTH, IMAGE_HEIGHT, true);
+        blackhole.consume(snapshot.size());
+    }
+}
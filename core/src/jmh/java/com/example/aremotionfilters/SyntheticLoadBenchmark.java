@@ -0,0 +1,110 @@
+package com.example.aremotionfilters;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame cost of the live result path under synthetic load, from 0 to 100 moving faces with
+ * changing emotions and gesture bursts, with and without crowd limits: raw detections through the
+ * tracker and gesture rules, handed over through the mailbox, and checked for a visible change as
+ * the overlay does before drawing. One detection frame out of three, pose every other frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SyntheticLoadBenchmark implements DetectionBackend.Callback {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final long FRAME_NANOS = 33_333_333L;
+
+    @Param({"0", "1", "10", "50", "100"})
+    public int faceCount;
+
+    // 0 = crowd mode off
+    @Param({"0", "5"})
+    public int maxFaces;
+
+    @Param({"0", "1", "3"}) // SyntheticDetectionBackend.MOTION_*
+    public int motion;
+
+    private final SyntheticDetectionBackend<Object> backend = new SyntheticDetectionBackend<>(42L);
+    private final LumaFrame luma = new LumaFrame();
+    private final RawDetections detections = new RawDetections();
+    private final FaceDataPool pool = new FaceDataPool(128);
+    private final ArrayList<FaceData> results = new ArrayList<>();
+    private final DetectionMailbox mailbox = new DetectionMailbox();
+    private final OverlayChangeDetector changeDetector = new OverlayChangeDetector();
+    private DetectionBackend.Frame<Object> frame;
+    private FaceTracker tracker;
+    private PoseScheduler scheduler;
+    private DetectionResultProcessor processor;
+    private int faceStatus;
+    private int poseStatus;
+    private long timestampNanos;
+
+    @Setup
+    public void setUp() {
+        byte[] plane = new byte[WIDTH * HEIGHT];
+        new Random(42).nextBytes(plane);
+        luma.set(ByteBuffer.wrap(plane), WIDTH, HEIGHT, WIDTH, 1, 0);
+        backend.setFaceCount(faceCount);
+        backend.setMotion(motion, 10f, 2_000_000_000L);
+        backend.setEmotionChangeRate(1f);
+        backend.setGestureBursts(3_000_000_000L, 1_500_000_000L);
+        tracker = new FaceTracker(3);
+        tracker.setCrowdLimits(maxFaces, FaceTracker.UNLIMITED);
+        scheduler = new PoseScheduler(FRAME_NANOS, 2, 2, 500_000_000L);
+        processor = new DetectionResultProcessor(tracker, scheduler);
+        frame = backend.newFrame(detections, this);
+    }
+
+    @Benchmark
+    public boolean frame(Blackhole blackhole) {
+        faceStatus = DetectionResultProcessor.STATUS_NOT_RUN;
+        poseStatus = DetectionResultProcessor.STATUS_NOT_RUN;
+        detections.clear();
+        frame.process(null, WIDTH, HEIGHT, timestampNanos, tracker.onFrame(), scheduler.shouldRunPose());
+        pool.releaseAll(results);
+        processor.process(detections, faceStatus, luma, true, poseStatus, timestampNanos, pool, results);
+        timestampNanos += FRAME_NANOS;
+        mailbox.publish(results, WIDTH, HEIGHT, false);
+        mailbox.update();
+        DetectionSnapshot snapshot = mailbox.current();
+        changeDetector.begin();
+        for (int i = 0, n = snapshot.size(); i < n; i++) {
+            FaceData data = snapshot.get(i);
+            changeDetector.add(data.getEmotion(), data.getTrackingId(), data.getBoxLeft(), data.getBoxTop(),
+                    data.getBoxRight(), data.getBoxBottom(), data.getHeadEulerAngleZ());
+        }
+        blackhole.consume(snapshot.size());
+        return changeDetector.commit();
+    }
+
+    @Override
+    public void onFacesDone(boolean success) {
+        faceStatus = success ? DetectionResultProcessor.STATUS_OK : DetectionResultProcessor.STATUS_FAILED;
+    }
+
+    @Override
+    public void onPoseDone(boolean success) {
+        poseStatus = success ? DetectionResultProcessor.STATUS_OK : DetectionResultProcessor.STATUS_FAILED;
+        scheduler.onPoseLatency(10_000_000L);
+    }
+
+    @Override
+    public void onComplete() {
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.aremotionfilters;
+
+/**
+ * Picks the camera analysis resolution from a ladder of sizes based on measured frame latency and
+ * how large the detected faces are.
+ *
+ * The controller steps down when the average frame latency exceeds the frame budget, or when every
+ * face is so large that a smaller image finds it just as well. It steps up when faces are small (or
+ * none were found) and the latency, scaled by the pixel count of the next level, would still fit
+ * comfortably inside the budget. Either condition has to hold for a number of consecutive frames,
+ * and after each change the first frames at the new resolution are ignored while the detector warms
+ * up, so a single slow frame or a face briefly moving closer does not make it oscillate.
+ *
+ * The detector's minimum face size, defined in analysis pixels ({@link #getMinFaceSize()}),
+ * scales with the chosen size; gesture rules work on {@link PoseFeatures} normalized by forearm
+ * length and need no scaling.
+ *
+ * Report frames from one thread (the analyzer's result thread); the current level and the values
+ * derived from it may be read from any thread.
+ */
+public class AnalysisResolutionController {
+
+    public static final int[] DEFAULT_WIDTHS = {320, 480, 640, 960};
+    public static final int[] DEFAULT_HEIGHTS = {240, 360, 480, 720};
+    public static final int DEFAULT_LEVEL = 2; // 640x480
+
+    // Weight of a new sample in the exponentially weighted latency average
+    private static final float LATENCY_SMOOTHING = 0.1f;
+    // Step down above this fraction of the frame budget; step up only if the next level is
+    // predicted to stay below the lower one
+    private static final float STEP_DOWN_LATENCY_RATIO = 1.0f;
+    private static final float STEP_UP_LATENCY_RATIO = 0.7f;
+    // Smallest face relative to the shorter image side: below SMALL faces benefit from more pixels,
+    // above LARGE they are found just as well at a lower resolution
+    private static final float SMALL_FACE_FRACTION = 0.2f;
+    private static final float LARGE_FACE_FRACTION = 0.4f;
+    // Smallest face the detector should report, in analysis pixels of the shorter side (which is the
+    // upright image width in portrait): 0.15 at 480, the fixed value used before this controller
+    private static final float MIN_FACE_SIZE_PX = 72f;
+    private static final float MIN_FACE_SIZE_LIMIT = 0.05f;
+    private static final float MAX_FACE_SIZE_LIMIT = 0.5f;
+
+    public static final int DEFAULT_HOLD_FRAMES = 30;
+    public static final int DEFAULT_WARMUP_FRAMES = 15;
+
+    private final int[] widths;
+    private final int[] heights;
+    private final long frameBudgetNanos;
+    private final int holdFrames;
+    private final int warmupFrames;
+
+    private volatile int level;
+    private float avgLatencyNanos = -1f;
+    private int warmupRemaining;
+    private int stepDownFrames;
+    private int stepUpFrames;
+
+    public AnalysisResolutionController(long frameBudgetNanos) {
+        this(DEFAULT_WIDTHS, DEFAULT_HEIGHTS, DEFAULT_LEVEL, frameBudgetNanos, DEFAULT_HOLD_FRAMES, DEFAULT_WARMUP_FRAMES);
+    }
+
+    /**
+     * @param widths           Ladder widths, smallest first.
+     * @param heights          Ladder heights, same length as {@code widths}.
+     * @param initialLevel     Index into the ladder to start from.
+     * @param frameBudgetNanos Target time per analyzed frame.
+     * @param holdFrames       Consecutive frames a step condition must hold before stepping.
+     * @param warmupFrames     Frames ignored after each step.
+     */
+    public AnalysisResolutionController(int[] widths, int[] heights, int initialLevel, long frameBudgetNanos,
+                                        int holdFrames, int warmupFrames) {
+        if (widths.length == 0 || widths.length != heights.length) {
+            throw new IllegalArgumentException("Invalid resolution ladder");
+        }
+        if (initialLevel < 0 || initialLevel >= widths.length) {
+            throw new IllegalArgumentException("Initial level out of range: " + initialLevel);
+        }
+        this.widths = widths.clone();
+        this.heights = heights.clone();
+        this.level = initialLevel;
+        this.frameBudgetNanos = frameBudgetNanos;
+        this.holdFrames = Math.max(1, holdFrames);
+        this.warmupFrames = warmupFrames;
+        this.warmupRemaining = warmupFrames;
+    }
+
+    /**
+     * Reports one analyzed frame at the current level. Returns true if the level changed, in which
+     * case the caller should reconfigure the analysis at {@link #getWidth()} x {@link #getHeight()}.
+     *
+     * @param latencyNanos          Time from frame arrival until its results were published.
+     * @param smallestFaceFraction  Width of the smallest detected face relative to the shorter side
+     *                              of the analysis image, or a negative value if there was none.
+     */
+    public boolean onFrame(long latencyNanos, float smallestFaceFraction) {
+        if (warmupRemaining > 0) {
+            warmupRemaining--;
+            return false;
+        }
+        avgLatencyNanos = avgLatencyNanos < 0 ? latencyNanos
+                : avgLatencyNanos + LATENCY_SMOOTHING * (latencyNanos - avgLatencyNanos);
+
+        boolean tooSlow = avgLatencyNanos > frameBudgetNanos * STEP_DOWN_LATENCY_RATIO;
+        boolean facesLarge = smallestFaceFraction >= LARGE_FACE_FRACTION;
+        boolean facesSmall = smallestFaceFraction < SMALL_FACE_FRACTION;
+        boolean nextFits = level + 1 < widths.length
+                && avgLatencyNanos * pixelRatio(level + 1, level) < frameBudgetNanos * STEP_UP_LATENCY_RATIO;
+
+        stepDownFrames = level > 0 && (tooSlow || facesLarge) ? stepDownFrames + 1 : 0;
+        stepUpFrames = !tooSlow && facesSmall && nextFits ? stepUpFrames + 1 : 0;
+        if (stepDownFrames >= holdFrames) {
+            setLevel(level - 1);
+            return true;
+        }
+        if (stepUpFrames >= holdFrames) {
+            setLevel(level + 1);
+            return true;
+        }
+        return false;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getLevelCount() {
+        return widths.length;
+    }
+
+    public int getWidth() {
+        return widths[level];
+    }
+
+    public int getHeight() {
+        return heights[level];
+    }
+
+    /** Average frame latency at the current level in milliseconds, 0 before the first sample. */
+    public float getAverageLatencyMillis() {
+        return avgLatencyNanos < 0 ? 0f : avgLatencyNanos / 1_000_000f;
+    }
+
+    /**
+     * Minimum face size for the detector (fraction of the upright image width) that keeps the
+     * smallest reported face at about the same number of pixels at every level.
+     */
+    public float getMinFaceSize() {
+        float fraction = MIN_FACE_SIZE_PX / Math.min(widths[level], heights[level]);
+        return Math.max(MIN_FACE_SIZE_LIMIT, Math.min(MAX_FACE_SIZE_LIMIT, fraction));
+    }
+
+    private float pixelRatio(int to, int from) {
+        return (float) widths[to] * heights[to] / ((float) widths[from] * heights[from]);
+    }
+
+    private void setLevel(int newLevel) {
+        level = newLevel;
+        avgLatencyNanos = -1f;
+        warmupRemaining = warmupFrames;
+        stepDownFrames = 0;
+        stepUpFrames = 0;
+    }
+}
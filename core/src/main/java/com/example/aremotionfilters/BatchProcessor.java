@@ -0,0 +1,327 @@
+package com.example.aremotionfilters;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the still-image version of the live pipeline over a list of image files: decode, detect,
+ * classify emotions and gestures, and write the image with its effects composited.
+ *
+ * Images are processed in parallel on the given executor. At most {@code maxInFlight} images are
+ * queued or being processed at once: the calling thread blocks before submitting the next one,
+ * so a folder of thousands of photos never holds more than that many decoded images in memory.
+ * Each image's outcome is written to the results file as one tab-separated line as soon as it is
+ * done, so lines come in completion order; the first column is the image's index in the input.
+ *
+ * Classification is the same as for live frames without history: {@link EmotionClassifier} per
+ * face and the peace and thumbs-up {@link GestureRule}s on the pose. A wave needs motion over time
+ * and is never reported for a still image.
+ */
+public class BatchProcessor<I> {
+
+    /** Image decoding and output for one image type, e.g. Android Bitmaps. Must be thread-safe. */
+    public interface ImageIo<I> {
+        /** Decodes an upright image; returns null if the file is not a supported image. */
+        I decode(File input) throws IOException;
+
+        int getWidth(I image);
+
+        int getHeight(I image);
+
+        /**
+         * Draws the effects in {@code effects} (placed in image pixels, see {@link DetectionSnapshot})
+         * over {@code image} and writes the result to {@code output}.
+         */
+        void writeFiltered(I image, DetectionSnapshot effects, File output) throws IOException;
+
+        /** Extension of the written files, without the dot. */
+        String getOutputExtension();
+
+        /** Frees the decoded image; called once per decoded image, also after a failure. */
+        void release(I image);
+    }
+
+    public static final String RESULTS_HEADER =
+            "index\tfile\tstatus\twidth\theight\tdecode_ms\tdetect_ms\tclassify_ms\tcomposite_ms\ttotal_ms\teffects";
+
+    static final String STATUS_OK = "ok";
+    static final String STATUS_UNDECODABLE = "undecodable";
+    static final String STATUS_FAILED = "failed";
+
+    /** Totals of one run. Stage latencies are per image, in {@link LatencyHistogram}s. */
+    public static final class Summary {
+        public final LatencyHistogram decode = new LatencyHistogram();
+        public final LatencyHistogram detect = new LatencyHistogram();
+        public final LatencyHistogram classify = new LatencyHistogram();
+        public final LatencyHistogram composite = new LatencyHistogram();
+        private final AtomicInteger images = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicLong faces = new AtomicLong();
+        private final AtomicLong gestures = new AtomicLong();
+        private long elapsedNanos;
+
+        /** Images processed, including failed ones. */
+        public int getImages() {
+            return images.get();
+        }
+
+        public int getFailed() {
+            return failed.get();
+        }
+
+        public long getFaces() {
+            return faces.get();
+        }
+
+        public long getGestures() {
+            return gestures.get();
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /** Wall-clock throughput of the whole run, from the first submit to the last result. */
+        public double getImagesPerSecond() {
+            return elapsedNanos > 0 ? images.get() * 1e9 / elapsedNanos : 0.0;
+        }
+
+        public String format() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.US, "%d images (%d failed), %d faces, %d gestures in %.2f s: %.1f images/s%n",
+                    getImages(), getFailed(), getFaces(), getGestures(), elapsedNanos / 1e9, getImagesPerSecond()));
+            sb.append(String.format(Locale.US, "%-10s %8s %8s %8s %8s%n", "stage", "mean", "p50", "p95", "max"));
+            appendStage(sb, "decode", decode);
+            appendStage(sb, "detect", detect);
+            appendStage(sb, "classify", classify);
+            appendStage(sb, "composite", composite);
+            return sb.toString();
+        }
+
+        private static void appendStage(StringBuilder sb, String name, LatencyHistogram h) {
+            sb.append(String.format(Locale.US, "%-10s %8.2f %8.2f %8.2f %8.2f%n", name, h.getMeanMillis(),
+                    h.getPercentileMillis(50), h.getPercentileMillis(95), h.getMaxMillis()));
+        }
+    }
+
+    // Per-image scratch state; recycled between images instead of one per thread
+    private static final class Worker {
+        final RawDetections detection = new RawDetections();
+        final FaceDataPool pool = new FaceDataPool(8);
+        final ArrayList<FaceData> effects = new ArrayList<>(8);
+        final PoseFeatures poseFeatures = new PoseFeatures();
+        final GestureEngine gestureEngine = new GestureEngine();
+        final DetectionSnapshot snapshot = new DetectionSnapshot();
+        final StringBuilder line = new StringBuilder(256);
+
+        Worker() {
+            // A still image has no history to debounce against
+            gestureEngine.register(GestureClassifier.peaceRule(), 0L, 0L);
+            gestureEngine.register(GestureClassifier.thumbsUpRule(), 0L, 0L);
+        }
+    }
+
+    private final ImageIo<I> io;
+    private final StillImageDetector<I> detector;
+    private final Executor executor;
+    private final int maxInFlight;
+    private final ConcurrentLinkedQueue<Worker> workers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param executor    Runs the images; its thread count is the batch's parallelism.
+     * @param maxInFlight Images queued or in progress at once; at least the executor's thread
+     *                    count to keep every thread busy.
+     */
+    public BatchProcessor(ImageIo<I> io, StillImageDetector<I> detector, Executor executor, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Need at least one image in flight: " + maxInFlight);
+        }
+        this.io = io;
+        this.detector = detector;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Processes every file in {@code inputs}, writing filtered images into {@code outputDir} and
+     * one line per image to {@code results} after {@link #RESULTS_HEADER}. Returns once every
+     * image is done; {@code results} is flushed but left open.
+     *
+     * @throws IOException if writing the results failed; images already submitted still finish.
+     */
+    public Summary process(List<File> inputs, File outputDir, Writer results) throws IOException, InterruptedException {
+        Summary summary = new Summary();
+        Semaphore slots = new Semaphore(maxInFlight);
+        IOException[] writeError = new IOException[1]; // Guarded by results
+        results.write(RESULTS_HEADER);
+        results.write('\n');
+        long startNanos = System.nanoTime();
+        try {
+            for (int i = 0; i < inputs.size(); i++) {
+                final int index = i;
+                final File input = inputs.get(i);
+                slots.acquire(); // Backpressure: wait for an image to finish
+                try {
+                    executor.execute(() -> {
+                        try {
+                            processImage(index, input, outputDir, results, summary, writeError);
+                        } finally {
+                            slots.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    slots.release();
+                    throw e;
+                }
+            }
+        } finally {
+            slots.acquireUninterruptibly(maxInFlight); // Every submitted image has finished
+            summary.elapsedNanos = System.nanoTime() - startNanos;
+        }
+        synchronized (results) {
+            if (writeError[0] != null) {
+                throw writeError[0];
+            }
+            results.flush();
+        }
+        return summary;
+    }
+
+    private void processImage(int index, File input, File outputDir, Writer results, Summary summary,
+                              IOException[] writeError) {
+        Worker worker = workers.poll();
+        if (worker == null) {
+            worker = new Worker();
+        }
+        long startNanos = System.nanoTime();
+        long decodeNanos = -1L;
+        long detectNanos = -1L;
+        long classifyNanos = -1L;
+        long compositeNanos = -1L;
+        int width = 0;
+        int height = 0;
+        String status = STATUS_OK;
+        worker.pool.releaseAll(worker.effects);
+        I image = null;
+        try {
+            image = io.decode(input);
+            long decodedNanos = System.nanoTime();
+            decodeNanos = decodedNanos - startNanos;
+            summary.decode.recordNanos(decodeNanos);
+            if (image == null) {
+                status = STATUS_UNDECODABLE;
+            } else {
+                width = io.getWidth(image);
+                height = io.getHeight(image);
+
+                worker.detection.clear();
+                detector.detect(index, image, width, height, worker.detection);
+                long detectedNanos = System.nanoTime();
+                detectNanos = detectedNanos - decodedNanos;
+                summary.detect.recordNanos(detectNanos);
+
+                worker.detection.collectFaces(worker.pool, worker.effects);
+                worker.detection.applyPose(worker.poseFeatures);
+                worker.gestureEngine.reset();
+                worker.gestureEngine.evaluate(worker.poseFeatures, 0L);
+                int gestures = worker.gestureEngine.collect(worker.pool, worker.effects);
+                long classifiedNanos = System.nanoTime();
+                classifyNanos = classifiedNanos - detectedNanos;
+                summary.classify.recordNanos(classifyNanos);
+                summary.faces.addAndGet(worker.detection.getFaceCount());
+                summary.gestures.addAndGet(gestures);
+
+                worker.snapshot.set(worker.effects, width, height, false);
+                io.writeFiltered(image, worker.snapshot, new File(outputDir, outputName(index, input)));
+                compositeNanos = System.nanoTime() - classifiedNanos;
+                summary.composite.recordNanos(compositeNanos);
+            }
+        } catch (Exception e) {
+            status = STATUS_FAILED + ":" + e.getClass().getSimpleName();
+        } finally {
+            if (image != null) {
+                io.release(image);
+            }
+        }
+        long totalNanos = System.nanoTime() - startNanos;
+        summary.images.incrementAndGet();
+        if (!STATUS_OK.equals(status)) {
+            summary.failed.incrementAndGet();
+        }
+
+        StringBuilder line = worker.line;
+        line.setLength(0);
+        line.append(index).append('\t').append(input.getName()).append('\t').append(status)
+                .append('\t').append(width).append('\t').append(height);
+        appendMillis(line, decodeNanos);
+        appendMillis(line, detectNanos);
+        appendMillis(line, classifyNanos);
+        appendMillis(line, compositeNanos);
+        appendMillis(line, totalNanos);
+        line.append('\t');
+        appendEffects(line, STATUS_OK.equals(status) ? worker.effects : null);
+        line.append('\n');
+        synchronized (results) {
+            if (writeError[0] == null) {
+                try {
+                    results.append(line);
+                } catch (IOException e) {
+                    writeError[0] = e;
+                }
+            }
+        }
+        workers.offer(worker);
+    }
+
+    /**
+     * Output file name for {@code input}: its name without extension, its index and "_filtered".
+     * The index keeps a.jpg and a.png, or same-named files from different folders, apart.
+     */
+    String outputName(int index, File input) {
+        String name = input.getName();
+        int dot = name.lastIndexOf('.');
+        return (dot > 0 ? name.substring(0, dot) : name) + "_" + index + "_filtered." + io.getOutputExtension();
+    }
+
+    private static void appendMillis(StringBuilder sb, long nanos) {
+        sb.append('\t');
+        if (nanos < 0) {
+            sb.append('-');
+        } else {
+            sb.append(String.format(Locale.US, "%.2f", nanos / 1_000_000.0));
+        }
+    }
+
+    // SMILING[left,top,right,bottom] per face, GESTURE_PEACE@x,y per gesture, separated by ';'; '-' if none
+    static void appendEffects(StringBuilder sb, List<FaceData> effects) {
+        if (effects == null || effects.isEmpty()) {
+            sb.append('-');
+            return;
+        }
+        for (int i = 0; i < effects.size(); i++) {
+            FaceData effect = effects.get(i);
+            if (i > 0) {
+                sb.append(';');
+            }
+            sb.append(FaceData.codeName(effect.getEmotion()));
+            if (effect.hasBoundingBox()) {
+                sb.append('[').append(Math.round(effect.getBoxLeft())).append(',').append(Math.round(effect.getBoxTop()))
+                        .append(',').append(Math.round(effect.getBoxRight())).append(',')
+                        .append(Math.round(effect.getBoxBottom())).append(']');
+            } else if (effect.hasGestureAnchor()) {
+                sb.append('@').append(Math.round(effect.getGestureAnchorX())).append(',')
+                        .append(Math.round(effect.getGestureAnchorY()));
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.aremotionfilters;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Face and pose detection for live frames of image type {@code I}, so the analyzer does not
+ * depend on one detector implementation: ML Kit on the device, or {@link SyntheticDetectionBackend}
+ * for stress tests and benchmarks on a plain JVM.
+ *
+ * Detection is asynchronous. The backend writes its results into the caller's
+ * {@link RawDetections} (faces and pose may be written from different threads) and reports each
+ * requested part through the {@link Callback}, then calls {@link Callback#onComplete()} exactly
+ * once. Implementations must accept frames from one submitting thread while earlier frames are
+ * still in progress.
+ *
+ * A caller with a fixed set of frame slots, like the analyzer's job ring, keeps one {@link Frame}
+ * per slot from {@link #newFrame} and submits through it, so a frame allocates no counter or
+ * completion listeners of its own.
+ */
+public interface DetectionBackend<I> {
+
+    /** Called on the backend's threads; keep implementations short and non-blocking. */
+    interface Callback {
+        /** Face detection finished; on success the faces are in the frame's {@link RawDetections}. */
+        void onFacesDone(boolean success);
+
+        /** Pose detection finished; on success the pose (if any was found) is in {@link RawDetections}. */
+        void onPoseDone(boolean success);
+
+        /** Called once after every requested part has reported, also if nothing was requested. */
+        void onComplete();
+    }
+
+    /**
+     * One slot for frames that write into the same {@link RawDetections} and report to the same
+     * {@link Callback}: the pending part count and whatever completion listeners the backend needs
+     * are created once and reused. Holds one frame at a time; the next frame may be submitted once
+     * the previous one reported {@link Callback#onComplete()}.
+     */
+    abstract class Frame<I> {
+        protected final RawDetections out;
+        protected final Callback callback;
+        private final AtomicInteger pending = new AtomicInteger();
+
+        protected Frame(RawDetections out, Callback callback) {
+            this.out = out;
+            this.callback = callback;
+        }
+
+        /**
+         * Starts detection on one frame. {@code out} must be cleared by the caller and is not
+         * touched after {@link Callback#onComplete()}.
+         *
+         * @param width          Upright width of the frame, as the detections' coordinates use.
+         * @param height         Upright height of the frame.
+         * @param timestampNanos Capture time of the frame.
+         */
+        public abstract void process(I image, int width, int height, long timestampNanos, boolean detectFaces,
+                                     boolean detectPose);
+
+        /**
+         * Arms the pending count for the requested parts. Returns false, after reporting
+         * completion, if nothing was requested.
+         */
+        protected final boolean begin(boolean detectFaces, boolean detectPose) {
+            int parts = (detectFaces ? 1 : 0) + (detectPose ? 1 : 0);
+            pending.set(parts);
+            if (parts == 0) {
+                callback.onComplete();
+                return false;
+            }
+            return true;
+        }
+
+        /** Called after a part's own callback; reports completion after the last one. */
+        protected final void partDone() {
+            if (pending.decrementAndGet() == 0) {
+                callback.onComplete();
+            }
+        }
+    }
+
+    /** Creates a reusable slot writing into {@code out} and reporting to {@code callback}. */
+    Frame<I> newFrame(RawDetections out, Callback callback);
+
+    /**
+     * Starts detection on one frame through a slot of its own, for one-off frames and tests; callers
+     * submitting a stream of frames keep a {@link Frame} per slot instead.
+     *
+     * @see Frame#process
+     */
+    default void process(I image, int width, int height, long timestampNanos, boolean detectFaces, boolean detectPose,
+                         RawDetections out, Callback callback) {
+        newFrame(out, callback).process(image, width, height, timestampNanos, detectFaces, detectPose);
+    }
+
+    /** Frees the backend's detectors; frames must no longer be submitted. */
+    void close();
+}
@@ -0,0 +1,160 @@
+package com.example.aremotionfilters;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Fixed-size ring of the most recent detection results, indexed by the sensor timestamp of the
+ * analysis frame they came from, so a capture can be drawn with the faces of the frame closest to
+ * its own sensor timestamp rather than with whatever was analyzed last.
+ *
+ * One writer thread records results; it never waits and does not allocate once every slot has
+ * seen the largest face count. Each slot is guarded by a sequence counter (odd while the writer is
+ * filling it): a reader copies the slot and retries if the counter moved in the meantime. Only one
+ * reader thread at a time is supported, as lookups reuse two scratch snapshots.
+ */
+public class DetectionHistory {
+
+    // Readers give up and report a miss after this many torn reads in a row
+    private static final int MAX_READ_ATTEMPTS = 4;
+
+    private final DetectionSnapshot[] snapshots;
+    private final long[] timestamps;
+    // Per-slot sequence: 0 = never written, odd = being written, even = stable
+    private final AtomicIntegerArray sequences;
+    private int next; // Writer thread only
+
+    // Reader thread only
+    private final DetectionSnapshot before = new DetectionSnapshot();
+    private final DetectionSnapshot after = new DetectionSnapshot();
+
+    public DetectionHistory(int capacity) {
+        snapshots = new DetectionSnapshot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            snapshots[i] = new DetectionSnapshot();
+        }
+        timestamps = new long[capacity];
+        sequences = new AtomicIntegerArray(capacity);
+    }
+
+    /** Writer: records the results of the frame with sensor timestamp {@code timestampNanos}. */
+    public void record(long timestampNanos, List<FaceData> detectionData, int imageWidth, int imageHeight, boolean frontCamera) {
+        int slot = next;
+        next = (slot + 1) % snapshots.length;
+        sequences.incrementAndGet(slot);
+        timestamps[slot] = timestampNanos;
+        snapshots[slot].set(detectionData, imageWidth, imageHeight, frontCamera);
+        sequences.incrementAndGet(slot);
+    }
+
+    /**
+     * Reader: fills {@code out} with the results for sensor timestamp {@code timestampNanos}.
+     *
+     * Between two recorded frames, faces present in both (matched by tracking id) have their box
+     * and roll interpolated; everything else is taken from the nearer frame. Outside the recorded
+     * range the nearest frame is used as is. Returns false, leaving {@code out} untouched, if
+     * nothing has been recorded or the writer kept overwriting the slots being read.
+     */
+    public boolean lookup(long timestampNanos, DetectionSnapshot out) {
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            int beforeSlot = -1;
+            int afterSlot = -1;
+            long beforeTime = Long.MIN_VALUE;
+            long afterTime = Long.MAX_VALUE;
+            for (int slot = 0; slot < snapshots.length; slot++) {
+                int seq = sequences.get(slot);
+                if (seq == 0 || (seq & 1) != 0) {
+                    continue;
+                }
+                long time = timestamps[slot];
+                if (!sequences.compareAndSet(slot, seq, seq)) {
+                    continue; // Rewritten while reading the timestamp
+                }
+                if (time <= timestampNanos && time > beforeTime) {
+                    beforeSlot = slot;
+                    beforeTime = time;
+                }
+                if (time >= timestampNanos && time < afterTime) {
+                    afterSlot = slot;
+                    afterTime = time;
+                }
+            }
+            if (beforeSlot < 0 && afterSlot < 0) {
+                return false;
+            }
+            if (beforeSlot < 0 || afterSlot < 0 || beforeSlot == afterSlot) {
+                int slot = beforeSlot >= 0 ? beforeSlot : afterSlot;
+                if (copySlot(slot, beforeSlot >= 0 ? beforeTime : afterTime, out)) {
+                    return true;
+                }
+                continue;
+            }
+            if (!copySlot(beforeSlot, beforeTime, before) || !copySlot(afterSlot, afterTime, after)) {
+                continue;
+            }
+            float t = (float) ((double) (timestampNanos - beforeTime) / (afterTime - beforeTime));
+            interpolate(before, after, t, out);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Copies slot {@code slot} into {@code out}; false if it no longer holds the frame recorded at
+     * {@code expectedTime} or was rewritten during the copy.
+     */
+    private boolean copySlot(int slot, long expectedTime, DetectionSnapshot out) {
+        int seq = sequences.get(slot);
+        if ((seq & 1) != 0) {
+            return false;
+        }
+        try {
+            out.copyFrom(snapshots[slot]);
+        } catch (RuntimeException e) {
+            return false; // Snapshot grown by the writer mid-copy; the sequence check below fails too
+        }
+        boolean sameFrame = timestamps[slot] == expectedTime;
+        return sequences.compareAndSet(slot, seq, seq) && sameFrame;
+    }
+
+    /**
+     * Writes the frame at fraction {@code t} (0 = {@code from}, 1 = {@code to}) into {@code out},
+     * starting from whichever frame is nearer.
+     */
+    static void interpolate(DetectionSnapshot from, DetectionSnapshot to, float t, DetectionSnapshot out) {
+        boolean nearFrom = t <= 0.5f;
+        DetectionSnapshot base = nearFrom ? from : to;
+        DetectionSnapshot other = nearFrom ? to : from;
+        out.copyFrom(base);
+        for (int i = 0; i < out.size(); i++) {
+            FaceData face = out.get(i);
+            if (!face.hasBoundingBox() || face.getTrackingId() < 0) {
+                continue;
+            }
+            FaceData match = findTracked(other, face.getTrackingId());
+            if (match == null) {
+                continue;
+            }
+            FaceData a = nearFrom ? face : match;
+            FaceData b = nearFrom ? match : face;
+            face.setFace(lerp(a.getBoxLeft(), b.getBoxLeft(), t), lerp(a.getBoxTop(), b.getBoxTop(), t),
+                    lerp(a.getBoxRight(), b.getBoxRight(), t), lerp(a.getBoxBottom(), b.getBoxBottom(), t),
+                    face.getEmotion(), lerp(a.getHeadEulerAngleZ(), b.getHeadEulerAngleZ(), t))
+                    .setTrackingId(match.getTrackingId());
+        }
+    }
+
+    private static FaceData findTracked(DetectionSnapshot snapshot, int trackingId) {
+        for (int i = 0; i < snapshot.size(); i++) {
+            FaceData face = snapshot.get(i);
+            if (face.hasBoundingBox() && face.getTrackingId() == trackingId) {
+                return face;
+            }
+        }
+        return null;
+    }
+
+    private static float lerp(float a, float b, float t) {
+        return a + (b - a) * t;
+    }
+}
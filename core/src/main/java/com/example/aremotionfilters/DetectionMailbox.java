@@ -0,0 +1,54 @@
+package com.example.aremotionfilters;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free single-slot mailbox that hands the newest detection results from one producer thread
+ * to one consumer thread.
+ *
+ * Triple-buffered: the producer fills its own back buffer and atomically swaps it into the shared
+ * slot; the consumer swaps the slot with its front buffer when something new is there. Neither
+ * side ever waits for the other, older results that were never picked up are simply overwritten,
+ * and the atomic swap publishes the snapshot contents to the consumer. Allocation-free once the
+ * buffers have grown to the largest face count.
+ *
+ * Each side must stay on one thread at a time (or hand over through something that establishes
+ * happens-before, such as an executor).
+ */
+public class DetectionMailbox {
+
+    private static final int INDEX_MASK = 0x3;
+    private static final int FRESH = 0x4;
+
+    private final DetectionSnapshot[] buffers = {
+            new DetectionSnapshot(), new DetectionSnapshot(), new DetectionSnapshot()
+    };
+    // Index of the buffer in the shared slot, plus FRESH if the consumer has not taken it yet
+    private final AtomicInteger slot = new AtomicInteger(1);
+    private int producerIndex = 0; // Producer thread only
+    private int consumerIndex = 2; // Consumer thread only
+
+    /** Producer: copies {@code detectionData} and makes it the newest snapshot. */
+    public void publish(List<FaceData> detectionData, int imageWidth, int imageHeight, boolean frontCamera) {
+        buffers[producerIndex].set(detectionData, imageWidth, imageHeight, frontCamera);
+        producerIndex = slot.getAndSet(producerIndex | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Consumer: makes the newest published snapshot {@link #current()}. Returns false (and keeps
+     * the current snapshot) if nothing was published since the last call.
+     */
+    public boolean update() {
+        if ((slot.get() & FRESH) == 0) {
+            return false;
+        }
+        consumerIndex = slot.getAndSet(consumerIndex) & INDEX_MASK;
+        return true;
+    }
+
+    /** Consumer: the snapshot taken by the last successful {@link #update()}; empty before that. */
+    public DetectionSnapshot current() {
+        return buffers[consumerIndex];
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.aremotionfilters;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writes the per-frame detection stream (what the analyzer hands to the overlay) to a compact
+ * binary file that {@link DetectionReplayer} can feed back through the overlay logic offline.
+ *
+ * Format, big-endian:
+ * <pre>
+ * header: int MAGIC, short VERSION
+ * frame:  long timestampNanos, ushort imageWidth, ushort imageHeight, byte flags (FLAG_FRONT_CAMERA),
+ *         ushort faceCount, faceCount x face
+ * face:   byte code, byte flags (FACE_HAS_BOX | FACE_HAS_ANCHOR), int trackingId,
+ *         [float left, top, right, bottom, headEulerAngleZ] if FACE_HAS_BOX,
+ *         [float anchorX, anchorY, rotation] if FACE_HAS_ANCHOR
+ * </pre>
+ * A face is 6 bytes plus 20 for a box or 12 for an anchor, a frame header 15 bytes. Frames are
+ * appended as they come and buffered until {@link #flush()} or {@link #close()}; a file cut short by
+ * a crash replays up to its last whole frame, so the recording thread should flush between frames
+ * every so often to bound what a crash loses.
+ *
+ * Not thread-safe: record from one thread (the analyzer's result thread).
+ */
+public class DetectionRecorder implements Closeable {
+
+    static final int MAGIC = 0x41524454; // "ARDT"
+    static final int VERSION = 1;
+
+    static final int FLAG_FRONT_CAMERA = 1;
+    static final int FACE_HAS_BOX = 1;
+    static final int FACE_HAS_ANCHOR = 2;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_DIMENSION = 0xFFFF;
+
+    private final DataOutputStream out;
+    private int frameCount;
+
+    public DetectionRecorder(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        this.out.writeInt(MAGIC);
+        this.out.writeShort(VERSION);
+    }
+
+    /** Appends one frame; arguments as for {@code FaceOverlayView.updateFaces}. */
+    public void record(List<FaceData> faces, int imageWidth, int imageHeight, boolean frontCamera,
+                       long timestampNanos) throws IOException {
+        if (imageWidth < 0 || imageWidth > MAX_DIMENSION || imageHeight < 0 || imageHeight > MAX_DIMENSION) {
+            throw new IllegalArgumentException("Image size out of range: " + imageWidth + "x" + imageHeight);
+        }
+        int count = Math.min(faces.size(), MAX_DIMENSION);
+        out.writeLong(timestampNanos);
+        out.writeShort(imageWidth);
+        out.writeShort(imageHeight);
+        out.writeByte(frontCamera ? FLAG_FRONT_CAMERA : 0);
+        out.writeShort(count);
+        for (int i = 0; i < count; i++) {
+            FaceData face = faces.get(i);
+            out.writeByte(face.getEmotion());
+            out.writeByte((face.hasBoundingBox() ? FACE_HAS_BOX : 0) | (face.hasGestureAnchor() ? FACE_HAS_ANCHOR : 0));
+            out.writeInt(face.getTrackingId());
+            if (face.hasBoundingBox()) {
+                out.writeFloat(face.getBoxLeft());
+                out.writeFloat(face.getBoxTop());
+                out.writeFloat(face.getBoxRight());
+                out.writeFloat(face.getBoxBottom());
+                out.writeFloat(face.getHeadEulerAngleZ());
+            }
+            if (face.hasGestureAnchor()) {
+                out.writeFloat(face.getGestureAnchorX());
+                out.writeFloat(face.getGestureAnchorY());
+                out.writeFloat(face.getGestureRotation());
+            }
+        }
+        frameCount++;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /** Bytes written so far, header included. */
+    public int getSizeBytes() {
+        return out.size();
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.aremotionfilters;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a detection stream written by {@link DetectionRecorder}, either frame by frame with
+ * {@link #next()} or pushed into a {@link Sink} at recorded or maximum speed.
+ *
+ * The faces of the current frame come from a pool and are reused for the next frame, so a sink
+ * must copy whatever it keeps (as the overlay does). A file that ends in the middle of a frame,
+ * e.g. because the app was killed while recording, ends the replay at the last whole frame and
+ * sets {@link #isTruncated()}.
+ *
+ * Not thread-safe.
+ */
+public class DetectionReplayer implements Closeable {
+
+    /** Receives replayed frames; arguments as for {@code FaceOverlayView.updateFaces}. */
+    public interface Sink {
+        void onFrame(List<FaceData> faces, int imageWidth, int imageHeight, boolean frontCamera, long timestampNanos);
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DataInputStream in;
+    private final FaceDataPool pool = new FaceDataPool(8);
+    private final ArrayList<FaceData> faces = new ArrayList<>();
+    private final byte[] timestampBytes = new byte[8];
+    private long timestampNanos;
+    private int imageWidth;
+    private int imageHeight;
+    private boolean frontCamera;
+    private int frameCount;
+    private boolean truncated;
+
+    /** @throws IOException if the stream is not a detection recording of a supported version. */
+    public DetectionReplayer(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+        int magic;
+        int version;
+        try {
+            magic = this.in.readInt();
+            version = this.in.readUnsignedShort();
+        } catch (EOFException e) {
+            throw new IOException("Not a detection recording: too short", e);
+        }
+        if (magic != DetectionRecorder.MAGIC) {
+            throw new IOException("Not a detection recording: magic " + Integer.toHexString(magic));
+        }
+        if (version != DetectionRecorder.VERSION) {
+            throw new IOException("Unsupported detection recording version " + version);
+        }
+    }
+
+    /** Reads the next frame; returns false at the end of the recording. */
+    public boolean next() throws IOException {
+        pool.releaseAll(faces);
+        if (truncated) {
+            return false;
+        }
+        int firstByte = in.read();
+        if (firstByte < 0) {
+            return false; // Clean end: nothing after the last frame
+        }
+        long timestamp;
+        try {
+            // Anything after the first byte belongs to this frame, the rest of the timestamp included
+            timestampBytes[0] = (byte) firstByte;
+            in.readFully(timestampBytes, 1, timestampBytes.length - 1);
+            timestamp = 0L;
+            for (byte b : timestampBytes) {
+                timestamp = (timestamp << 8) | (b & 0xFF);
+            }
+            imageWidth = in.readUnsignedShort();
+            imageHeight = in.readUnsignedShort();
+            frontCamera = (in.readByte() & DetectionRecorder.FLAG_FRONT_CAMERA) != 0;
+            int count = in.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                faces.add(readFace(pool.acquire()));
+            }
+        } catch (EOFException e) {
+            pool.releaseAll(faces);
+            truncated = true;
+            return false;
+        }
+        timestampNanos = timestamp;
+        frameCount++;
+        return true;
+    }
+
+    /**
+     * Pushes the remaining frames into {@code sink}. At recorded speed the calling thread sleeps so
+     * frames are delivered with their original spacing; otherwise as fast as the sink takes them.
+     * Returns the number of frames delivered.
+     */
+    public int replay(Sink sink, boolean recordedSpeed) throws IOException, InterruptedException {
+        int delivered = 0;
+        long firstTimestampNanos = 0L;
+        long startNanos = 0L;
+        while (next()) {
+            if (recordedSpeed) {
+                if (delivered == 0) {
+                    firstTimestampNanos = timestampNanos;
+                    startNanos = System.nanoTime();
+                } else {
+                    long waitNanos = (timestampNanos - firstTimestampNanos) - (System.nanoTime() - startNanos);
+                    if (waitNanos > 0) {
+                        Thread.sleep(waitNanos / 1_000_000L, (int) (waitNanos % 1_000_000L));
+                    }
+                }
+            } else if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            sink.onFrame(faces, imageWidth, imageHeight, frontCamera, timestampNanos);
+            delivered++;
+        }
+        return delivered;
+    }
+
+    /** Faces of the current frame; valid until the next call to {@link #next()}. */
+    public List<FaceData> getFaces() {
+        return faces;
+    }
+
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    public int getImageWidth() {
+        return imageWidth;
+    }
+
+    public int getImageHeight() {
+        return imageHeight;
+    }
+
+    public boolean isFrontCamera() {
+        return frontCamera;
+    }
+
+    /** Whole frames read so far. */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /** Whether the recording ended in the middle of a frame. */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private FaceData readFace(FaceData face) throws IOException {
+        int code = in.readUnsignedByte();
+        int flags = in.readUnsignedByte();
+        int trackingId = in.readInt();
+        if ((flags & DetectionRecorder.FACE_HAS_BOX) != 0) {
+            face.setFace(in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat(), code, in.readFloat());
+        }
+        if ((flags & DetectionRecorder.FACE_HAS_ANCHOR) != 0) {
+            float anchorX = in.readFloat();
+            float anchorY = in.readFloat();
+            float rotation = in.readFloat();
+            if ((flags & DetectionRecorder.FACE_HAS_BOX) == 0) {
+                face.setGesture(code, anchorX, anchorY, rotation);
+            }
+        }
+        if ((flags & (DetectionRecorder.FACE_HAS_BOX | DetectionRecorder.FACE_HAS_ANCHOR)) == 0) {
+            face.setCode(code);
+        }
+        return face.setTrackingId(trackingId);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.aremotionfilters;
+
+import java.util.List;
+
+/**
+ * Turns the raw detections of one live frame into the effects to draw: faces go through the
+ * {@link FaceTracker} (detection frames update it, the frames in between are tracked on the luma
+ * plane), the pose through {@link PoseFeatures} and the wave, peace and thumbs-up rules.
+ *
+ * Frames must be processed in capture order on one thread at a time. Frames without a pose run
+ * reuse the last pose while the {@link PoseScheduler} considers it fresh.
+ */
+public class DetectionResultProcessor {
+
+    /** The part was not requested for this frame. */
+    public static final int STATUS_NOT_RUN = 0;
+    public static final int STATUS_OK = 1;
+    public static final int STATUS_FAILED = 2;
+
+    private final FaceTracker faceTracker;
+    private final PoseScheduler poseScheduler;
+    private final PoseFeatures poseFeatures = new PoseFeatures();
+    private final GestureEngine gestureEngine = new GestureEngine();
+
+    // Last pose that was detected, reused on frames without a pose run
+    private final RawDetections lastPose = new RawDetections();
+    private long lastPoseTimestampNanos;
+
+    public DetectionResultProcessor(FaceTracker faceTracker, PoseScheduler poseScheduler) {
+        this.faceTracker = faceTracker;
+        this.poseScheduler = poseScheduler;
+        // Registration order = priority when one hand matches several gestures
+        gestureEngine.register(GestureClassifier.waveRule());
+        gestureEngine.register(GestureClassifier.peaceRule());
+        gestureEngine.register(GestureClassifier.thumbsUpRule());
+    }
+
+    public FaceTracker getFaceTracker() {
+        return faceTracker;
+    }
+
+    /**
+     * Processes one frame and appends the faces and gestures to report to {@code out}.
+     *
+     * @param faceStatus     {@code STATUS_*} of the face detection; {@link #STATUS_NOT_RUN} frames
+     *                       are tracked on {@code luma}, failed ones make the next frame a
+     *                       detection frame.
+     * @param luma           Luma plane of the frame, for template capture and tracking; may be
+     *                       invalid, which leaves tracked faces where they were last detected.
+     * @param poseEnabled    False if pose is off at the current quality tier; gestures then end.
+     * @param poseStatus     {@code STATUS_*} of the pose detection.
+     * @param timestampNanos Capture time of the frame.
+     * @return Time spent tracking in nanoseconds, or -1 if this was not a tracking frame.
+     */
+    public long process(RawDetections detections, int faceStatus, LumaFrame luma, boolean poseEnabled, int poseStatus,
+                        long timestampNanos, FaceDataPool pool, List<FaceData> out) {
+        long trackingNanos = -1L;
+        if (faceStatus == STATUS_OK) {
+            detections.addFacesTo(faceTracker, luma.getUprightWidth(), luma.getUprightHeight());
+            faceTracker.endDetections(luma);
+        } else if (faceStatus == STATUS_FAILED) {
+            faceTracker.requestDetection();
+        } else {
+            long startNanos = System.nanoTime();
+            faceTracker.track(luma);
+            trackingNanos = System.nanoTime() - startNanos;
+        }
+        faceTracker.collectResults(pool, out);
+
+        // Features of both hands are computed once and every rule is evaluated on the same vector;
+        // without a pose, active gestures end
+        if (poseStatus == STATUS_OK) {
+            lastPose.copyPoseFrom(detections);
+            lastPoseTimestampNanos = timestampNanos;
+        } else if (poseStatus == STATUS_FAILED) {
+            lastPose.clearPose();
+        }
+        if (poseEnabled && lastPose.hasPose() && poseScheduler.isPoseFresh(lastPoseTimestampNanos, timestampNanos)) {
+            lastPose.applyPose(poseFeatures);
+        } else {
+            poseFeatures.clear();
+            poseFeatures.compute();
+        }
+        gestureEngine.evaluate(poseFeatures, timestampNanos);
+        gestureEngine.collect(pool, out);
+        return trackingNanos;
+    }
+}
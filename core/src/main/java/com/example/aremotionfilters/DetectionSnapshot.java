@@ -0,0 +1,97 @@
+package com.example.aremotionfilters;
+
+import java.util.List;
+
+/**
+ * Value copy of one frame's detection results together with the analysis image size and camera
+ * facing they refer to.
+ *
+ * A snapshot owns its {@link FaceData} instances and only grows them, so copying results into an
+ * existing snapshot does not allocate once it has seen the largest face count. Iterate with
+ * {@link #size()} / {@link #get(int)} rather than an Iterator to keep draw loops allocation-free.
+ */
+public class DetectionSnapshot {
+
+    private FaceData[] faces;
+    private int size;
+    private int imageWidth;
+    private int imageHeight;
+    private boolean frontCamera;
+
+    public DetectionSnapshot() {
+        this(8);
+    }
+
+    public DetectionSnapshot(int initialCapacity) {
+        faces = new FaceData[Math.max(1, initialCapacity)];
+        for (int i = 0; i < faces.length; i++) {
+            faces[i] = new FaceData();
+        }
+    }
+
+    public void set(List<FaceData> detectionData, int imageWidth, int imageHeight, boolean frontCamera) {
+        int count = detectionData.size();
+        ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            faces[i].set(detectionData.get(i));
+        }
+        this.size = count;
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        this.frontCamera = frontCamera;
+    }
+
+    public void copyFrom(DetectionSnapshot other) {
+        ensureCapacity(other.size);
+        for (int i = 0; i < other.size; i++) {
+            faces[i].set(other.faces[i]);
+        }
+        this.size = other.size;
+        this.imageWidth = other.imageWidth;
+        this.imageHeight = other.imageHeight;
+        this.frontCamera = other.frontCamera;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public FaceData get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return faces[index];
+    }
+
+    public int getImageWidth() {
+        return imageWidth;
+    }
+
+    public int getImageHeight() {
+        return imageHeight;
+    }
+
+    public boolean isFrontCamera() {
+        return frontCamera;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= faces.length) {
+            return;
+        }
+        FaceData[] grown = new FaceData[Math.max(capacity, faces.length * 2)];
+        System.arraycopy(faces, 0, grown, 0, faces.length);
+        for (int i = faces.length; i < grown.length; i++) {
+            grown[i] = new FaceData();
+        }
+        faces = grown;
+    }
+}
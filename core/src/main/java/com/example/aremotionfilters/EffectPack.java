@@ -0,0 +1,205 @@
+package com.example.aremotionfilters;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A set of effect sprites shipped as one data file instead of drawable resources.
+ *
+ * The file is memory-mapped and only its manifest is parsed when it is opened, so opening a pack
+ * costs the same small amount of time and heap however large its images are. Each sprite is stored
+ * as a series of pre-downscaled mip levels; a caller picks the level for the size it is about to
+ * draw ({@link #selectLevel(int, float)}) and decodes just that level from a view of the mapping
+ * ({@link #getLevelData(int, int)}). Effects are looked up in a code-indexed table resolved from the
+ * manifest's effect names once, at open.
+ *
+ * Format, big-endian (written by {@link EffectPackWriter}):
+ * <pre>
+ * header:  int MAGIC, short VERSION, ushort spriteCount, ushort mappingCount,
+ *          spriteCount x sprite, mappingCount x mapping, then the level data
+ * sprite:  ushort frameWidth, ushort frameHeight, ushort gutter, ushort frameCount (0 = static),
+ *          frameCount x ushort frameMillis, ubyte levelCount,
+ *          levelCount x (ushort width, ushort height, int offset, int length)
+ * mapping: ubyte nameLength, ASCII FaceData code name, ushort sprite
+ * </pre>
+ * Frame sizes and the atlas layout are in level-0 pixels; smaller levels scale the whole sprite.
+ *
+ * Immutable and thread-safe once opened.
+ */
+public final class EffectPack {
+
+    static final int MAGIC = 0x41524550; // "AREP"
+    static final int VERSION = 1;
+
+    private final String name;
+    private final ByteBuffer data;
+    private final int[] spriteForEffect = new int[FaceData.CODE_COUNT];
+    private final int[] frameWidths;
+    private final int[] frameHeights;
+    private final SpriteAnimation[] animations;
+    // Per sprite, per level
+    private final int[][] levelWidths;
+    private final int[][] levelHeights;
+    private final int[][] levelOffsets;
+    private final int[][] levelLengths;
+
+    /** Maps {@code file} read-only and parses its manifest. */
+    public static EffectPack open(File file) throws IOException {
+        // The mapping stays valid after the channel is closed
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            return new EffectPack(file.getName(), channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Parses a pack held in {@code data} (from position 0), e.g. a mapped file.
+     *
+     * @throws IOException if the data is not a valid pack of a supported version.
+     */
+    public EffectPack(String name, ByteBuffer data) throws IOException {
+        this.name = name;
+        this.data = data.duplicate();
+        ByteBuffer in = data.duplicate();
+        in.position(0);
+        Arrays.fill(spriteForEffect, -1);
+        try {
+            int magic = in.getInt();
+            if (magic != MAGIC) {
+                throw new IOException("Not an effect pack: magic " + Integer.toHexString(magic));
+            }
+            int version = in.getShort() & 0xFFFF;
+            if (version != VERSION) {
+                throw new IOException("Unsupported effect pack version " + version);
+            }
+            int spriteCount = in.getShort() & 0xFFFF;
+            int mappingCount = in.getShort() & 0xFFFF;
+            frameWidths = new int[spriteCount];
+            frameHeights = new int[spriteCount];
+            animations = new SpriteAnimation[spriteCount];
+            levelWidths = new int[spriteCount][];
+            levelHeights = new int[spriteCount][];
+            levelOffsets = new int[spriteCount][];
+            levelLengths = new int[spriteCount][];
+            for (int s = 0; s < spriteCount; s++) {
+                readSprite(in, s);
+            }
+            for (int m = 0; m < mappingCount; m++) {
+                byte[] effectName = new byte[in.get() & 0xFF];
+                in.get(effectName);
+                int sprite = in.getShort() & 0xFFFF;
+                int effect = FaceData.codeOf(new String(effectName, StandardCharsets.US_ASCII));
+                if (sprite >= spriteCount) {
+                    throw new IOException("Effect pack maps to missing sprite " + sprite);
+                }
+                if (effect >= 0) { // Effects this version does not know are skipped
+                    spriteForEffect[effect] = sprite;
+                }
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Corrupt effect pack " + name, e);
+        }
+    }
+
+    private void readSprite(ByteBuffer in, int s) throws IOException {
+        frameWidths[s] = in.getShort() & 0xFFFF;
+        frameHeights[s] = in.getShort() & 0xFFFF;
+        int gutter = in.getShort() & 0xFFFF;
+        int frameCount = in.getShort() & 0xFFFF;
+        if (frameCount > 0) {
+            int[] frameMillis = new int[frameCount];
+            for (int f = 0; f < frameCount; f++) {
+                frameMillis[f] = in.getShort() & 0xFFFF;
+            }
+            animations[s] = new SpriteAnimation(frameWidths[s], frameHeights[s], gutter, frameMillis);
+        }
+        int levelCount = in.get() & 0xFF;
+        if (levelCount == 0) {
+            throw new IOException("Sprite " + s + " has no levels");
+        }
+        levelWidths[s] = new int[levelCount];
+        levelHeights[s] = new int[levelCount];
+        levelOffsets[s] = new int[levelCount];
+        levelLengths[s] = new int[levelCount];
+        for (int l = 0; l < levelCount; l++) {
+            levelWidths[s][l] = in.getShort() & 0xFFFF;
+            levelHeights[s][l] = in.getShort() & 0xFFFF;
+            levelOffsets[s][l] = in.getInt();
+            levelLengths[s][l] = in.getInt();
+            if (levelWidths[s][l] == 0 || levelHeights[s][l] == 0 || levelOffsets[s][l] < 0 || levelLengths[s][l] < 0
+                    || (long) levelOffsets[s][l] + levelLengths[s][l] > data.limit()) {
+                throw new IOException("Sprite " + s + " level " + l + " lies outside the pack");
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSpriteCount() {
+        return frameWidths.length;
+    }
+
+    /** Sprite drawn for an effect code, or -1 if this pack has none for it. */
+    public int spriteFor(int effect) {
+        return effect >= 0 && effect < spriteForEffect.length ? spriteForEffect[effect] : -1;
+    }
+
+    /** Width of what one draw shows (the sprite, or one atlas frame) at level 0. */
+    public int getFrameWidth(int sprite) {
+        return frameWidths[sprite];
+    }
+
+    public int getFrameHeight(int sprite) {
+        return frameHeights[sprite];
+    }
+
+    /** Frame table in level-0 pixels if the sprite is an atlas, otherwise null. */
+    public SpriteAnimation getAnimation(int sprite) {
+        return animations[sprite];
+    }
+
+    public int getLevelCount(int sprite) {
+        return levelWidths[sprite].length;
+    }
+
+    public int getLevelWidth(int sprite, int level) {
+        return levelWidths[sprite][level];
+    }
+
+    public int getLevelHeight(int sprite, int level) {
+        return levelHeights[sprite][level];
+    }
+
+    /**
+     * Smallest level whose frames are at least {@code frameSize} pixels on their longer side, or
+     * level 0 if even that is smaller.
+     */
+    public int selectLevel(int sprite, float frameSize) {
+        int fullSize = Math.max(frameWidths[sprite], frameHeights[sprite]);
+        int[] widths = levelWidths[sprite];
+        int level = 0;
+        for (int l = 1; l < widths.length; l++) {
+            float levelFrameSize = (float) fullSize * widths[l] / widths[0];
+            if (levelFrameSize < frameSize) {
+                break;
+            }
+            level = l;
+        }
+        return level;
+    }
+
+    /** Encoded image of one level, as a read-only view of the mapping; nothing is copied. */
+    public ByteBuffer getLevelData(int sprite, int level) {
+        ByteBuffer view = data.duplicate();
+        view.limit(levelOffsets[sprite][level] + levelLengths[sprite][level]);
+        view.position(levelOffsets[sprite][level]);
+        return view.slice().asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.aremotionfilters;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds an effect pack file that {@link EffectPack} maps and reads.
+ *
+ * Sprites are added with their mip levels already encoded (PNG or WebP, largest first, each level
+ * typically half the size of the previous one), then effect codes are mapped to sprites. The pack
+ * stores effects by {@link FaceData#codeName(int)}, so packs stay valid if codes are renumbered.
+ */
+public class EffectPackWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_DIMENSION = 0xFFFF;
+
+    private static final class Sprite {
+        final SpriteAnimation animation;
+        final int[] widths;
+        final int[] heights;
+        final byte[][] levels;
+
+        Sprite(SpriteAnimation animation, int[] widths, int[] heights, byte[][] levels) {
+            this.animation = animation;
+            this.widths = widths;
+            this.heights = heights;
+            this.levels = levels;
+        }
+    }
+
+    private final List<Sprite> sprites = new ArrayList<>();
+    private final List<String> mappedEffects = new ArrayList<>();
+    private final List<Integer> mappedSprites = new ArrayList<>();
+
+    /**
+     * Adds a sprite and returns its index.
+     *
+     * @param animation Frame table in level-0 pixels if the sprite is an atlas, otherwise null.
+     * @param widths    Pixel width of each level, largest first.
+     * @param heights   Pixel height of each level.
+     * @param levels    Encoded image of each level.
+     */
+    public int addSprite(SpriteAnimation animation, int[] widths, int[] heights, byte[][] levels) {
+        if (levels.length == 0 || levels.length > 0xFF || widths.length != levels.length || heights.length != levels.length) {
+            throw new IllegalArgumentException("Need 1-255 levels with a size each, got " + levels.length);
+        }
+        for (int i = 0; i < levels.length; i++) {
+            if (widths[i] <= 0 || widths[i] > MAX_DIMENSION || heights[i] <= 0 || heights[i] > MAX_DIMENSION) {
+                throw new IllegalArgumentException("Level " + i + " size out of range: " + widths[i] + "x" + heights[i]);
+            }
+            if (i > 0 && (widths[i] > widths[i - 1] || heights[i] > heights[i - 1])) {
+                throw new IllegalArgumentException("Level " + i + " is larger than level " + (i - 1));
+            }
+        }
+        if (animation != null && (animation.getAtlasWidth() != widths[0] || animation.getAtlasHeight() != heights[0])) {
+            throw new IllegalArgumentException("Atlas layout " + animation.getAtlasWidth() + "x" + animation.getAtlasHeight()
+                    + " does not match level 0 " + widths[0] + "x" + heights[0]);
+        }
+        sprites.add(new Sprite(animation, widths.clone(), heights.clone(), levels.clone()));
+        return sprites.size() - 1;
+    }
+
+    /** Draws {@code sprite} for faces or gestures with {@code effect} code. */
+    public void map(int effect, int sprite) {
+        if (effect < 0 || effect >= FaceData.CODE_COUNT || sprite < 0 || sprite >= sprites.size()) {
+            throw new IllegalArgumentException("Cannot map effect " + effect + " to sprite " + sprite);
+        }
+        mappedEffects.add(FaceData.codeName(effect));
+        mappedSprites.add(sprite);
+    }
+
+    /** Writes the manifest followed by every level's data; the stream is left open. */
+    public void write(OutputStream stream) throws IOException {
+        int manifestSize = 4 + 2 + 2 + 2;
+        for (Sprite sprite : sprites) {
+            manifestSize += 2 * 4 + (sprite.animation != null ? 2 * sprite.animation.getFrameCount() : 0)
+                    + 1 + sprite.levels.length * (2 + 2 + 4 + 4);
+        }
+        for (String name : mappedEffects) {
+            manifestSize += 1 + name.length() + 2;
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE));
+        out.writeInt(EffectPack.MAGIC);
+        out.writeShort(EffectPack.VERSION);
+        out.writeShort(sprites.size());
+        out.writeShort(mappedEffects.size());
+        long offset = manifestSize;
+        for (Sprite sprite : sprites) {
+            SpriteAnimation animation = sprite.animation;
+            out.writeShort(animation != null ? animation.getFrameWidth() : sprite.widths[0]);
+            out.writeShort(animation != null ? animation.getFrameHeight() : sprite.heights[0]);
+            out.writeShort(animation != null ? animation.getGutter() : 0);
+            out.writeShort(animation != null ? animation.getFrameCount() : 0);
+            for (int i = 0; animation != null && i < animation.getFrameCount(); i++) {
+                out.writeShort(animation.getFrameMillis(i));
+            }
+            out.writeByte(sprite.levels.length);
+            for (int i = 0; i < sprite.levels.length; i++) {
+                if (offset + sprite.levels[i].length > Integer.MAX_VALUE) {
+                    throw new IOException("Effect pack larger than 2 GB");
+                }
+                out.writeShort(sprite.widths[i]);
+                out.writeShort(sprite.heights[i]);
+                out.writeInt((int) offset);
+                out.writeInt(sprite.levels[i].length);
+                offset += sprite.levels[i].length;
+            }
+        }
+        for (int i = 0; i < mappedEffects.size(); i++) {
+            String name = mappedEffects.get(i);
+            out.writeByte(name.length());
+            out.writeBytes(name); // Code names are ASCII
+            out.writeShort(mappedSprites.get(i));
+        }
+        if (out.size() != manifestSize) {
+            throw new IllegalStateException("Manifest is " + out.size() + " bytes, expected " + manifestSize);
+        }
+        for (Sprite sprite : sprites) {
+            for (byte[] level : sprite.levels) {
+                out.write(level);
+            }
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.aremotionfilters;
+
+/**
+ * Maps ML Kit classification probabilities to a {@link FaceData} emotion code.
+ *
+ * When the face's previous emotion is known, the thresholds are relaxed by {@link #HYSTERESIS} in
+ * favour of that emotion, so probabilities hovering around a threshold do not make the effect
+ * flicker on and off between frames. Missing probabilities are passed as {@link Float#NaN}.
+ */
+public final class EmotionClassifier {
+
+    // Ambang batas untuk klasifikasi wajah
+    public static final float SMILING_THRESHOLD = 0.7f;
+    public static final float EYE_OPEN_THRESHOLD = 0.6f;
+    public static final float EYE_CLOSED_THRESHOLD = 0.4f;
+    public static final float HYSTERESIS = 0.1f;
+
+    private EmotionClassifier() {
+    }
+
+    /** Classifies a face seen for the first time. */
+    public static int classify(float smilingProb, float leftEyeOpenProb, float rightEyeOpenProb) {
+        return classify(-1, smilingProb, leftEyeOpenProb, rightEyeOpenProb);
+    }
+
+    /**
+     * Classifies a face whose emotion on the previous detection was {@code previousEmotion}
+     * (or -1 if unknown). NaN comparisons are always false, so a missing probability never
+     * satisfies a rule, exactly like the null checks this replaces.
+     */
+    public static int classify(int previousEmotion, float smilingProb, float leftEyeOpenProb, float rightEyeOpenProb) {
+        boolean wasSmiling = previousEmotion == FaceData.EMOTION_SMILING;
+        boolean leftWasClosed = previousEmotion == FaceData.EMOTION_EYES_CLOSED || previousEmotion == FaceData.EMOTION_LEFT_WINK;
+        boolean rightWasClosed = previousEmotion == FaceData.EMOTION_EYES_CLOSED || previousEmotion == FaceData.EMOTION_RIGHT_WINK;
+        boolean leftWasOpen = previousEmotion == FaceData.EMOTION_RIGHT_WINK;
+        boolean rightWasOpen = previousEmotion == FaceData.EMOTION_LEFT_WINK;
+
+        float smilingThreshold = wasSmiling ? SMILING_THRESHOLD - HYSTERESIS : SMILING_THRESHOLD;
+        float leftClosedThreshold = leftWasClosed ? EYE_CLOSED_THRESHOLD + HYSTERESIS : EYE_CLOSED_THRESHOLD;
+        float rightClosedThreshold = rightWasClosed ? EYE_CLOSED_THRESHOLD + HYSTERESIS : EYE_CLOSED_THRESHOLD;
+        float leftOpenThreshold = leftWasOpen ? EYE_OPEN_THRESHOLD - HYSTERESIS : EYE_OPEN_THRESHOLD;
+        float rightOpenThreshold = rightWasOpen ? EYE_OPEN_THRESHOLD - HYSTERESIS : EYE_OPEN_THRESHOLD;
+
+        boolean isSmiling = smilingProb > smilingThreshold;
+        boolean isLeftEyeLikelyOpen = leftEyeOpenProb > leftOpenThreshold;
+        boolean isLeftEyeLikelyClosed = leftEyeOpenProb < leftClosedThreshold;
+        boolean isRightEyeLikelyOpen = rightEyeOpenProb > rightOpenThreshold;
+        boolean isRightEyeLikelyClosed = rightEyeOpenProb < rightClosedThreshold;
+
+        if (isSmiling) {
+            return FaceData.EMOTION_SMILING;
+        } else if (isLeftEyeLikelyClosed && isRightEyeLikelyClosed) {
+            return FaceData.EMOTION_EYES_CLOSED;
+        } else if (isLeftEyeLikelyClosed && isRightEyeLikelyOpen) {
+            return FaceData.EMOTION_LEFT_WINK;
+        } else if (isRightEyeLikelyClosed && isLeftEyeLikelyOpen) {
+            return FaceData.EMOTION_RIGHT_WINK;
+        }
+        return FaceData.EMOTION_NEUTRAL;
+    }
+
+    /** Converts a nullable ML Kit probability to the NaN convention used by {@link #classify}. */
+    public static float probability(Float value) {
+        return value != null ? value : Float.NaN;
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.aremotionfilters;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+/**
+ * Ordered list of encoded (e.g. JPEG) captures that keeps at most a configurable number of bytes
+ * in memory and spills the rest to files in a cache directory.
+ *
+ * When an added capture pushes the in-memory total over budget, the oldest in-memory captures are
+ * written out first. {@link #spillAll()} moves everything to disk, e.g. when the system asks the
+ * app to trim memory. Once {@link #close()}d the store deletes its files and ignores further adds,
+ * so captures that finish after a reset do not leak files. Thread-safe.
+ */
+public class EncodedCaptureStore {
+
+    private static final class Entry {
+        byte[] bytes; // null once spilled
+        File file;    // null while in memory
+        int length;
+    }
+
+    private final File spillDirectory;
+    private final ArrayList<Entry> entries = new ArrayList<>();
+    private long memoryBudgetBytes;
+    private long memoryBytes;
+    private long spilledBytes;
+    private boolean closed;
+
+    public EncodedCaptureStore(File spillDirectory, long memoryBudgetBytes) {
+        this.spillDirectory = spillDirectory;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    /**
+     * Appends a capture and returns its index, or -1 if the store is closed. The array is kept as
+     * is, not copied.
+     *
+     * @throws IOException if spilling to make room failed; the capture is then not added, while
+     *                     older captures already spilled stay on disk.
+     */
+    public synchronized int add(byte[] encoded) throws IOException {
+        if (closed) {
+            return -1;
+        }
+        Entry entry = new Entry();
+        entry.bytes = encoded;
+        entry.length = encoded.length;
+        entries.add(entry);
+        memoryBytes += entry.length;
+        try {
+            trimToBudget();
+        } catch (IOException | RuntimeException e) {
+            // Roll back, so callers keeping parallel lists (thumbnails) stay in step with the indices
+            entries.remove(entries.size() - 1);
+            if (entry.bytes != null) {
+                memoryBytes -= entry.length;
+            } else {
+                spilledBytes -= entry.length;
+                //noinspection ResultOfMethodCallIgnored
+                entry.file.delete();
+            }
+            throw e;
+        }
+        return entries.size() - 1;
+    }
+
+    /** Returns the encoded bytes of capture {@code index}, reading them back from disk if spilled. */
+    public synchronized byte[] read(int index) throws IOException {
+        Entry entry = entries.get(index);
+        if (entry.bytes != null) {
+            return entry.bytes;
+        }
+        byte[] bytes = new byte[entry.length];
+        try (InputStream in = new FileInputStream(entry.file)) {
+            int offset = 0;
+            while (offset < bytes.length) {
+                int n = in.read(bytes, offset, bytes.length - offset);
+                if (n < 0) {
+                    throw new IOException("Spilled capture truncated: " + entry.file);
+                }
+                offset += n;
+            }
+        }
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized boolean isInMemory(int index) {
+        return entries.get(index).bytes != null;
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public synchronized long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    public synchronized void setMemoryBudgetBytes(long memoryBudgetBytes) throws IOException {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        trimToBudget();
+    }
+
+    /** Writes every in-memory capture to disk. */
+    public synchronized void spillAll() throws IOException {
+        for (int i = 0; i < entries.size(); i++) {
+            spill(entries.get(i));
+        }
+    }
+
+    /** Deletes all captures and spill files; later adds are ignored. */
+    public synchronized void close() {
+        closed = true;
+        for (int i = 0; i < entries.size(); i++) {
+            File file = entries.get(i).file;
+            if (file != null) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        entries.clear();
+        memoryBytes = 0;
+        spilledBytes = 0;
+    }
+
+    private void trimToBudget() throws IOException {
+        for (int i = 0; i < entries.size() && memoryBytes > memoryBudgetBytes; i++) {
+            spill(entries.get(i));
+        }
+    }
+
+    private void spill(Entry entry) throws IOException {
+        if (entry.bytes == null) {
+            return;
+        }
+        if (!spillDirectory.isDirectory() && !spillDirectory.mkdirs()) {
+            throw new IOException("Cannot create " + spillDirectory);
+        }
+        File file = File.createTempFile("capture", ".jpg", spillDirectory);
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(entry.bytes, 0, entry.length);
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            throw e;
+        }
+        entry.file = file;
+        entry.bytes = null;
+        memoryBytes -= entry.length;
+        spilledBytes += entry.length;
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.aremotionfilters; // Ganti dengan nama paket Anda yang sebenarnya
+
+/**
+ * Satu hasil deteksi (wajah atau gestur) dalam koordinat gambar ImageAnalysis.
+ *
+ * Objek ini mutable dan dipakai ulang lewat {@link FaceDataPool}, sehingga jalur hasil deteksi
+ * tidak mengalokasikan objek baru per frame. Semua nilai disimpan sebagai primitif.
+ */
+public class FaceData {
+
+    // Kode emosi/gestur (dulu String) agar perbandingan cukup dengan ==
+    public static final int EMOTION_NEUTRAL = 0;
+    public static final int EMOTION_SMILING = 1;
+    public static final int EMOTION_EYES_CLOSED = 2;
+    public static final int EMOTION_LEFT_WINK = 3;
+    public static final int EMOTION_RIGHT_WINK = 4;
+    public static final int GESTURE_THUMBS_UP = 5;
+    public static final int GESTURE_PEACE = 6;
+    public static final int GESTURE_WAVE = 7;
+    public static final int CODE_COUNT = 8;
+
+    private static final String[] CODE_NAMES = {
+            "NEUTRAL", "SMILING", "EYES_CLOSED", "LEFT_WINK", "RIGHT_WINK", "GESTURE_THUMBS_UP",
+            "GESTURE_PEACE", "GESTURE_WAVE"
+    };
+
+    private int emotion;
+    // ID stabil dari FaceTracker, -1 jika tidak ada
+    private int trackingId;
+
+    // Bounding box wajah; tidak ada jika ini adalah data gestur murni
+    private boolean hasBoundingBox;
+    private float boxLeft;
+    private float boxTop;
+    private float boxRight;
+    private float boxBottom;
+    private float headEulerAngleZ;
+
+    // Titik acuan untuk gestur, misal posisi pergelangan tangan
+    private boolean hasGestureAnchor;
+    private float gestureAnchorX;
+    private float gestureAnchorY;
+    private float gestureRotation;
+
+    public FaceData() {
+        reset();
+    }
+
+    // Isi sebagai hasil deteksi wajah
+    public FaceData setFace(float left, float top, float right, float bottom, int emotion, float headEulerAngleZ) {
+        reset();
+        this.emotion = emotion;
+        this.hasBoundingBox = true;
+        this.boxLeft = left;
+        this.boxTop = top;
+        this.boxRight = right;
+        this.boxBottom = bottom;
+        this.headEulerAngleZ = headEulerAngleZ;
+        return this;
+    }
+
+    // Isi sebagai hasil deteksi gestur
+    public FaceData setGesture(int gesture, float anchorX, float anchorY, float gestureRotation) {
+        reset();
+        this.emotion = gesture;
+        this.hasGestureAnchor = true;
+        this.gestureAnchorX = anchorX;
+        this.gestureAnchorY = anchorY;
+        this.gestureRotation = gestureRotation;
+        return this;
+    }
+
+    // Kode saja, tanpa box maupun titik acuan
+    public FaceData setCode(int code) {
+        reset();
+        this.emotion = code;
+        return this;
+    }
+
+    public FaceData setTrackingId(int trackingId) {
+        this.trackingId = trackingId;
+        return this;
+    }
+
+    public void set(FaceData other) {
+        this.emotion = other.emotion;
+        this.trackingId = other.trackingId;
+        this.hasBoundingBox = other.hasBoundingBox;
+        this.boxLeft = other.boxLeft;
+        this.boxTop = other.boxTop;
+        this.boxRight = other.boxRight;
+        this.boxBottom = other.boxBottom;
+        this.headEulerAngleZ = other.headEulerAngleZ;
+        this.hasGestureAnchor = other.hasGestureAnchor;
+        this.gestureAnchorX = other.gestureAnchorX;
+        this.gestureAnchorY = other.gestureAnchorY;
+        this.gestureRotation = other.gestureRotation;
+    }
+
+    public void reset() {
+        emotion = EMOTION_NEUTRAL;
+        trackingId = -1;
+        hasBoundingBox = false;
+        boxLeft = boxTop = boxRight = boxBottom = 0f;
+        headEulerAngleZ = 0f;
+        hasGestureAnchor = false;
+        gestureAnchorX = gestureAnchorY = 0f;
+        gestureRotation = 0f;
+    }
+
+    public int getEmotion() { // Nama metode tetap sama untuk kompatibilitas
+        return emotion;
+    }
+
+    public int getTrackingId() {
+        return trackingId;
+    }
+
+    public boolean hasBoundingBox() {
+        return hasBoundingBox;
+    }
+
+    public float getBoxLeft() {
+        return boxLeft;
+    }
+
+    public float getBoxTop() {
+        return boxTop;
+    }
+
+    public float getBoxRight() {
+        return boxRight;
+    }
+
+    public float getBoxBottom() {
+        return boxBottom;
+    }
+
+    public float getHeadEulerAngleZ() {
+        return headEulerAngleZ;
+    }
+
+    public boolean hasGestureAnchor() {
+        return hasGestureAnchor;
+    }
+
+    public float getGestureAnchorX() {
+        return gestureAnchorX;
+    }
+
+    public float getGestureAnchorY() {
+        return gestureAnchorY;
+    }
+
+    public float getGestureRotation() { return gestureRotation; }
+
+    public static boolean isGesture(int code) {
+        return code >= GESTURE_THUMBS_UP && code < CODE_COUNT;
+    }
+
+    public static String codeName(int code) {
+        return code >= 0 && code < CODE_COUNT ? CODE_NAMES[code] : "UNKNOWN(" + code + ")";
+    }
+
+    /** Code whose {@link #codeName(int)} is {@code name}, or -1. */
+    public static int codeOf(String name) {
+        for (int code = 0; code < CODE_COUNT; code++) {
+            if (CODE_NAMES[code].equals(name)) {
+                return code;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.aremotionfilters;
+
+import java.util.List;
+
+/**
+ * Free list of {@link FaceData} instances for the analysis result path.
+ *
+ * The pool only allocates while it warms up (more faces than ever seen before); in steady state
+ * {@link #acquire()} and {@link #release(FaceData)} are allocation-free. Not thread-safe: use one
+ * pool per producing thread.
+ */
+public class FaceDataPool {
+
+    private FaceData[] free;
+    private int freeCount;
+
+    public FaceDataPool(int initialCapacity) {
+        free = new FaceData[Math.max(1, initialCapacity)];
+        for (int i = 0; i < initialCapacity; i++) {
+            free[freeCount++] = new FaceData();
+        }
+    }
+
+    public FaceData acquire() {
+        if (freeCount == 0) {
+            return new FaceData();
+        }
+        FaceData data = free[--freeCount];
+        free[freeCount] = null;
+        return data;
+    }
+
+    public void release(FaceData data) {
+        data.reset();
+        if (freeCount == free.length) {
+            FaceData[] grown = new FaceData[free.length * 2];
+            System.arraycopy(free, 0, grown, 0, freeCount);
+            free = grown;
+        }
+        free[freeCount++] = data;
+    }
+
+    /** Returns every element of {@code list} to the pool and clears the list. */
+    public void releaseAll(List<FaceData> list) {
+        for (int i = list.size() - 1; i >= 0; i--) {
+            release(list.get(i));
+        }
+        list.clear();
+    }
+
+    public int getFreeCount() {
+        return freeCount;
+    }
+}
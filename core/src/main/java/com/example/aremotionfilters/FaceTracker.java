@@ -0,0 +1,448 @@
+package com.example.aremotionfilters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Detect-then-track state for faces.
+ *
+ * The full ML Kit detector only runs on every {@code detectionInterval}-th frame. Detections are
+ * matched to existing tracks (by ML Kit tracking id, falling back to box overlap) so every face
+ * keeps a stable id and its previous emotion, which is fed back into {@link EmotionClassifier} as
+ * hysteresis. On the frames in between, each track is moved by matching a small luminance
+ * template of the face against the new frame's Y plane.
+ *
+ * Crowd mode bounds the per-frame cost when many faces are in view. After every detection the
+ * tracks are ranked by size and closeness to the image center (the faces already selected get a
+ * bonus, so the selection does not flicker between similar faces), and only the top
+ * {@code maxFaces} are primary: classified, template-tracked and reported. The others are still
+ * matched, so their ids survive, but cost nothing else until they rank high enough. Template
+ * tracking additionally stops, lowest rank first, once the tracking budget of a frame is spent;
+ * the skipped tracks keep their last box as if the match had been lost.
+ *
+ * Detections, tracking and result collection ({@link #beginDetections}, {@link #endDetections},
+ * {@link #track(LumaFrame)}, {@link #collectResults}) all run on the single result thread, in
+ * frame order. Methods are still synchronized because {@link #onFrame()} runs on the camera
+ * thread when a frame is submitted, while {@link #requestDetection()} resets the same frame count
+ * from the result thread after a failed detection; the lock is uncontended otherwise.
+ */
+public class FaceTracker {
+
+    // Template sampled from the central part of the face box
+    private static final int TEMPLATE_SIZE = 16;
+    private static final int TEMPLATE_PIXELS = TEMPLATE_SIZE * TEMPLATE_SIZE;
+    private static final float TEMPLATE_REGION = 0.6f;
+    // Coarse search covers +-SEARCH_CELLS template cells, followed by a half-cell refinement
+    private static final int SEARCH_CELLS = 4;
+    // Above this mean absolute luminance difference the match is considered lost
+    private static final float MAX_MEAN_ABS_DIFF = 40f;
+    private static final float MIN_MATCH_IOU = 0.3f;
+    private static final int DETECTION_STRIDE = 8; // l, t, r, b, smile, leftEye, rightEye, angleZ
+    // Ranking: a face at the corner scores this much less than the same face at the center
+    private static final float CENTER_WEIGHT = 0.5f;
+    // Score multiplier for tracks that were primary after the previous detection
+    private static final float PRIMARY_STICKINESS = 1.25f;
+
+    /** No limit on primary faces or tracking time. */
+    public static final int UNLIMITED = 0;
+
+    private static final class Track {
+        int id;
+        int detectorId;
+        float left, top, right, bottom;
+        int emotion;
+        float headEulerAngleZ;
+        boolean matched;
+        int detection; // Index of the matched detection during endDetections
+        boolean primary;
+        float rank;
+        boolean hasTemplate;
+        final byte[] template = new byte[TEMPLATE_PIXELS];
+    }
+
+    private final int detectionInterval;
+    private int framesSinceDetection;
+    private int nextTrackId = 1;
+
+    private int maxFaces = UNLIMITED;
+    private long trackingBudgetNanos = UNLIMITED;
+    private int imageWidth;
+    private int imageHeight;
+    private int skippedTrackCount;
+
+    private final ArrayList<Track> tracks = new ArrayList<>();
+    private final ArrayList<Track> freeTracks = new ArrayList<>();
+
+    // Detections of the current detection frame, stored as parallel primitive arrays
+    private int detectionCount;
+    private int[] detectionIds = new int[8];
+    private float[] detectionValues = new float[8 * DETECTION_STRIDE];
+
+    /**
+     * @param detectionInterval Run the detector on one frame out of this many; 1 disables tracking
+     *                          but keeps stable ids and emotion hysteresis.
+     */
+    public FaceTracker(int detectionInterval) {
+        if (detectionInterval < 1) {
+            throw new IllegalArgumentException("detectionInterval must be >= 1: " + detectionInterval);
+        }
+        this.detectionInterval = detectionInterval;
+        this.framesSinceDetection = detectionInterval;
+    }
+
+    /** Called once per frame; returns true if the full detector should run on this frame. */
+    public synchronized boolean onFrame() {
+        if (++framesSinceDetection >= detectionInterval) {
+            framesSinceDetection = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /** Forces the next frame to run the detector, e.g. after a failed detection. */
+    public synchronized void requestDetection() {
+        framesSinceDetection = detectionInterval;
+    }
+
+    public int getDetectionInterval() {
+        return detectionInterval;
+    }
+
+    /**
+     * Enables crowd mode.
+     *
+     * @param maxFaces            Faces that are classified, tracked and reported; {@link #UNLIMITED}
+     *                            for all.
+     * @param trackingBudgetNanos Time {@link #track(LumaFrame)} may spend per frame;
+     *                            {@link #UNLIMITED} for no limit.
+     */
+    public synchronized void setCrowdLimits(int maxFaces, long trackingBudgetNanos) {
+        if (maxFaces < 0 || trackingBudgetNanos < 0) {
+            throw new IllegalArgumentException("Crowd limits must be >= 0");
+        }
+        this.maxFaces = maxFaces;
+        this.trackingBudgetNanos = trackingBudgetNanos;
+    }
+
+    /** Tracks that were not primary after the last detection or ran out of tracking budget since. */
+    public synchronized int getSkippedTrackCount() {
+        return skippedTrackCount;
+    }
+
+    public synchronized int getTrackCount() {
+        return tracks.size();
+    }
+
+    public synchronized void beginDetections() {
+        beginDetections(0, 0);
+    }
+
+    /**
+     * Starts a detection frame of an upright image of the given size, which centers the ranking;
+     * with a zero size faces are ranked by size alone.
+     */
+    public synchronized void beginDetections(int imageWidth, int imageHeight) {
+        detectionCount = 0;
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+    }
+
+    /**
+     * Adds one detector result. {@code detectorId} is ML Kit's tracking id or -1; probabilities
+     * use NaN for "not available".
+     */
+    public synchronized void addDetection(int detectorId, float left, float top, float right, float bottom,
+                                          float smilingProb, float leftEyeOpenProb, float rightEyeOpenProb,
+                                          float headEulerAngleZ) {
+        if (detectionCount == detectionIds.length) {
+            int[] ids = new int[detectionIds.length * 2];
+            System.arraycopy(detectionIds, 0, ids, 0, detectionCount);
+            detectionIds = ids;
+            float[] values = new float[ids.length * DETECTION_STRIDE];
+            System.arraycopy(detectionValues, 0, values, 0, detectionCount * DETECTION_STRIDE);
+            detectionValues = values;
+        }
+        int o = detectionCount * DETECTION_STRIDE;
+        detectionIds[detectionCount] = detectorId;
+        detectionValues[o] = left;
+        detectionValues[o + 1] = top;
+        detectionValues[o + 2] = right;
+        detectionValues[o + 3] = bottom;
+        detectionValues[o + 4] = smilingProb;
+        detectionValues[o + 5] = leftEyeOpenProb;
+        detectionValues[o + 6] = rightEyeOpenProb;
+        detectionValues[o + 7] = headEulerAngleZ;
+        detectionCount++;
+    }
+
+    /**
+     * Matches the detections added since {@link #beginDetections()} to the existing tracks,
+     * reclassifies emotions with the previous emotion as hysteresis, drops tracks the detector no
+     * longer sees, ranks the rest and captures fresh templates of the primary ones from
+     * {@code frame} (if valid).
+     */
+    public synchronized void endDetections(LumaFrame frame) {
+        for (int i = 0, n = tracks.size(); i < n; i++) {
+            tracks.get(i).matched = false;
+        }
+        for (int d = 0; d < detectionCount; d++) {
+            int o = d * DETECTION_STRIDE;
+            Track track = findMatch(detectionIds[d], detectionValues[o], detectionValues[o + 1],
+                    detectionValues[o + 2], detectionValues[o + 3]);
+            if (track == null) {
+                track = obtainTrack();
+                track.id = nextTrackId++;
+                track.emotion = -1;
+                track.primary = false;
+                tracks.add(track);
+            }
+            track.matched = true;
+            track.detection = d;
+            track.detectorId = detectionIds[d];
+            track.left = detectionValues[o];
+            track.top = detectionValues[o + 1];
+            track.right = detectionValues[o + 2];
+            track.bottom = detectionValues[o + 3];
+            track.headEulerAngleZ = detectionValues[o + 7];
+            track.rank = rank(track);
+        }
+        for (int i = tracks.size() - 1; i >= 0; i--) {
+            Track track = tracks.get(i);
+            if (!track.matched) {
+                tracks.remove(i);
+                freeTracks.add(track);
+            }
+        }
+        if (maxFaces != UNLIMITED || trackingBudgetNanos != UNLIMITED) {
+            sortByRank(); // Without crowd limits the detector's order is kept
+        }
+        skippedTrackCount = 0;
+        for (int i = 0, n = tracks.size(); i < n; i++) {
+            Track track = tracks.get(i);
+            track.primary = maxFaces == UNLIMITED || i < maxFaces;
+            if (!track.primary) {
+                // Emotion starts over when the face is selected again
+                track.emotion = -1;
+                track.hasTemplate = false;
+                skippedTrackCount++;
+                continue;
+            }
+            int o = track.detection * DETECTION_STRIDE;
+            track.emotion = EmotionClassifier.classify(track.emotion,
+                    detectionValues[o + 4], detectionValues[o + 5], detectionValues[o + 6]);
+            if (frame != null && frame.isValid()) {
+                captureTemplate(track, frame);
+            } else {
+                track.hasTemplate = false;
+            }
+        }
+        detectionCount = 0;
+    }
+
+    /**
+     * Moves every primary track to its best template match in {@code frame}, highest rank first,
+     * until the tracking budget is spent.
+     */
+    public synchronized void track(LumaFrame frame) {
+        if (!frame.isValid()) {
+            return;
+        }
+        long deadline = trackingBudgetNanos == UNLIMITED ? 0L : System.nanoTime() + trackingBudgetNanos;
+        for (int i = 0, n = tracks.size(); i < n; i++) {
+            Track track = tracks.get(i);
+            if (!track.hasTemplate) {
+                continue;
+            }
+            if (deadline != 0L && System.nanoTime() - deadline > 0) {
+                skippedTrackCount++;
+                continue;
+            }
+            trackOne(track, frame);
+        }
+    }
+
+    /**
+     * Appends one pooled {@link FaceData} per primary track to {@code out}; highest rank first when
+     * crowd limits are set.
+     */
+    public synchronized void collectResults(FaceDataPool pool, List<FaceData> out) {
+        for (int i = 0, n = tracks.size(); i < n; i++) {
+            Track track = tracks.get(i);
+            if (!track.primary) {
+                continue;
+            }
+            int emotion = track.emotion < 0 ? FaceData.EMOTION_NEUTRAL : track.emotion;
+            out.add(pool.acquire()
+                    .setFace(track.left, track.top, track.right, track.bottom, emotion, track.headEulerAngleZ)
+                    .setTrackingId(track.id));
+        }
+    }
+
+    public synchronized void clear() {
+        freeTracks.addAll(tracks);
+        tracks.clear();
+        framesSinceDetection = detectionInterval;
+    }
+
+    private Track findMatch(int detectorId, float left, float top, float right, float bottom) {
+        if (detectorId >= 0) {
+            for (int i = 0, n = tracks.size(); i < n; i++) {
+                Track track = tracks.get(i);
+                if (!track.matched && track.detectorId == detectorId) {
+                    return track;
+                }
+            }
+        }
+        Track best = null;
+        float bestIou = MIN_MATCH_IOU;
+        for (int i = 0, n = tracks.size(); i < n; i++) {
+            Track track = tracks.get(i);
+            if (track.matched) {
+                continue;
+            }
+            float iou = iou(track.left, track.top, track.right, track.bottom, left, top, right, bottom);
+            if (iou >= bestIou) {
+                bestIou = iou;
+                best = track;
+            }
+        }
+        return best;
+    }
+
+    // Larger and more central faces rank higher; the previous selection gets a bonus
+    private float rank(Track track) {
+        float width = track.right - track.left;
+        float score = width;
+        if (imageWidth > 0 && imageHeight > 0) {
+            float halfW = imageWidth * 0.5f;
+            float halfH = imageHeight * 0.5f;
+            float dx = ((track.left + track.right) * 0.5f - halfW) / halfW;
+            float dy = ((track.top + track.bottom) * 0.5f - halfH) / halfH;
+            float distance = Math.min(1f, (float) Math.sqrt((dx * dx + dy * dy) * 0.5f));
+            score = width / Math.min(imageWidth, imageHeight) * (1f - CENTER_WEIGHT * distance);
+        }
+        return track.primary ? score * PRIMARY_STICKINESS : score;
+    }
+
+    // Insertion sort, stable and allocation-free; the order barely changes between detections
+    private void sortByRank() {
+        for (int i = 1, n = tracks.size(); i < n; i++) {
+            Track track = tracks.get(i);
+            int j = i - 1;
+            while (j >= 0 && tracks.get(j).rank < track.rank) {
+                tracks.set(j + 1, tracks.get(j));
+                j--;
+            }
+            tracks.set(j + 1, track);
+        }
+    }
+
+    private Track obtainTrack() {
+        int n = freeTracks.size();
+        return n > 0 ? freeTracks.remove(n - 1) : new Track();
+    }
+
+    private void captureTemplate(Track track, LumaFrame frame) {
+        float cellW = (track.right - track.left) * TEMPLATE_REGION / TEMPLATE_SIZE;
+        float cellH = (track.bottom - track.top) * TEMPLATE_REGION / TEMPLATE_SIZE;
+        if (cellW <= 0f || cellH <= 0f) {
+            track.hasTemplate = false;
+            return;
+        }
+        float x0 = templateOriginX(track, cellW);
+        float y0 = templateOriginY(track, cellH);
+        for (int j = 0; j < TEMPLATE_SIZE; j++) {
+            float y = y0 + (j + 0.5f) * cellH;
+            for (int i = 0; i < TEMPLATE_SIZE; i++) {
+                track.template[j * TEMPLATE_SIZE + i] = (byte) frame.sample(x0 + (i + 0.5f) * cellW, y);
+            }
+        }
+        track.hasTemplate = true;
+    }
+
+    private void trackOne(Track track, LumaFrame frame) {
+        float cellW = (track.right - track.left) * TEMPLATE_REGION / TEMPLATE_SIZE;
+        float cellH = (track.bottom - track.top) * TEMPLATE_REGION / TEMPLATE_SIZE;
+        float x0 = templateOriginX(track, cellW);
+        float y0 = templateOriginY(track, cellH);
+
+        int bestSad = Integer.MAX_VALUE;
+        float bestDx = 0f;
+        float bestDy = 0f;
+        // Coarse search on a whole-cell grid
+        for (int sy = -SEARCH_CELLS; sy <= SEARCH_CELLS; sy++) {
+            for (int sx = -SEARCH_CELLS; sx <= SEARCH_CELLS; sx++) {
+                float dx = sx * cellW;
+                float dy = sy * cellH;
+                int sad = sad(track, frame, x0 + dx, y0 + dy, cellW, cellH, bestSad);
+                if (sad < bestSad) {
+                    bestSad = sad;
+                    bestDx = dx;
+                    bestDy = dy;
+                }
+            }
+        }
+        // Refine around the best coarse match with half-cell steps
+        float coarseDx = bestDx;
+        float coarseDy = bestDy;
+        for (int sy = -1; sy <= 1; sy++) {
+            for (int sx = -1; sx <= 1; sx++) {
+                if (sx == 0 && sy == 0) {
+                    continue;
+                }
+                float dx = coarseDx + sx * cellW * 0.5f;
+                float dy = coarseDy + sy * cellH * 0.5f;
+                int sad = sad(track, frame, x0 + dx, y0 + dy, cellW, cellH, bestSad);
+                if (sad < bestSad) {
+                    bestSad = sad;
+                    bestDx = dx;
+                    bestDy = dy;
+                }
+            }
+        }
+        if ((float) bestSad / TEMPLATE_PIXELS > MAX_MEAN_ABS_DIFF) {
+            // Lost (occlusion, fast motion): keep the last box until the next detection frame
+            return;
+        }
+        track.left += bestDx;
+        track.right += bestDx;
+        track.top += bestDy;
+        track.bottom += bestDy;
+        captureTemplate(track, frame);
+    }
+
+    private static int sad(Track track, LumaFrame frame, float x0, float y0, float cellW, float cellH, int limit) {
+        int sum = 0;
+        for (int j = 0; j < TEMPLATE_SIZE; j++) {
+            float y = y0 + (j + 0.5f) * cellH;
+            int row = j * TEMPLATE_SIZE;
+            for (int i = 0; i < TEMPLATE_SIZE; i++) {
+                int diff = frame.sample(x0 + (i + 0.5f) * cellW, y) - (track.template[row + i] & 0xFF);
+                sum += diff < 0 ? -diff : diff;
+            }
+            if (sum >= limit) {
+                return sum; // Early exit: already worse than the best candidate
+            }
+        }
+        return sum;
+    }
+
+    private static float templateOriginX(Track track, float cellW) {
+        return (track.left + track.right) * 0.5f - cellW * TEMPLATE_SIZE * 0.5f;
+    }
+
+    private static float templateOriginY(Track track, float cellH) {
+        return (track.top + track.bottom) * 0.5f - cellH * TEMPLATE_SIZE * 0.5f;
+    }
+
+    static float iou(float l1, float t1, float r1, float b1, float l2, float t2, float r2, float b2) {
+        float iw = Math.min(r1, r2) - Math.max(l1, l2);
+        float ih = Math.min(b1, b2) - Math.max(t1, t2);
+        if (iw <= 0f || ih <= 0f) {
+            return 0f;
+        }
+        float intersection = iw * ih;
+        float union = (r1 - l1) * (b1 - t1) + (r2 - l2) * (b2 - t2) - intersection;
+        return union <= 0f ? 0f : intersection / union;
+    }
+}
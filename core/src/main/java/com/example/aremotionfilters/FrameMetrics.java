@@ -0,0 +1,325 @@
+package com.example.aremotionfilters;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-stage latency histograms and frame-drop counters for the analysis pipeline.
+ *
+ * One instance is shared by {@link FaceEmotionAnalyzer} and {@link FaceOverlayView}. Recording is
+ * allocation-free; formatting ({@link #formatHudLines(String[], int)}, {@link #dump(File, String)}) is
+ * not and should only be used for debugging.
+ */
+public class FrameMetrics {
+
+    public static final int STAGE_FACE_DETECTION = 0;
+    public static final int STAGE_FACE_TRACKING = 1;
+    public static final int STAGE_POSE_DETECTION = 2;
+    public static final int STAGE_RESULT_PROCESSING = 3;
+    public static final int STAGE_OVERLAY_UPDATE = 4;
+    public static final int STAGE_DRAW = 5;
+    public static final int STAGE_IMAGE_CLOSE = 6;
+    public static final int STAGE_FRAME_TOTAL = 7;
+    // Photo capture: decode, transform and filter drawing of one shot (not per analyzed frame)
+    public static final int STAGE_CAPTURE_COMPOSE = 8;
+    // Time a frame's finished detector results waited for the result thread (including for
+    // earlier frames still in flight) before being processed
+    public static final int STAGE_QUEUE_DELAY = 9;
+    public static final int STAGE_COUNT = 10;
+
+    private static final String[] STAGE_NAMES = {
+            "face_detection", "face_tracking", "pose_detection", "result_processing", "overlay_update", "draw",
+            "image_close", "frame_total", "capture_compose", "queue_delay"
+    };
+
+    // A gap between two analyzed frames counts as dropped frames once it exceeds this many sensor periods
+    private static final float DROP_GAP_FACTOR = 1.5f;
+    // The sensor frame period is re-estimated from the smallest gap seen in each window of this many frames
+    private static final int PERIOD_WINDOW_FRAMES = 120;
+
+    private final LatencyHistogram[] stages = new LatencyHistogram[STAGE_COUNT];
+
+    private final AtomicLong analyzedFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong throttledFrames = new AtomicLong();
+    // Analyzed frames that made the overlay redraw, and those whose results looked unchanged
+    private final AtomicLong overlayRedraws = new AtomicLong();
+    private final AtomicLong overlayRedrawsSkipped = new AtomicLong();
+
+    // Quality governor state; the current tier is kept across reset()
+    private final AtomicInteger qualityTier = new AtomicInteger(QualityGovernor.TIER_FULL);
+    private final AtomicLong qualityTierChanges = new AtomicLong();
+
+    // One-shot startup measurements; kept across reset()
+    private final AtomicLong effectAssetDecodeNanos = new AtomicLong(-1L);
+    private final AtomicLong effectAssetBytes = new AtomicLong(-1L);
+    private final AtomicLong timeToFirstPreviewNanos = new AtomicLong(-1L);
+    private final AtomicLong timeToFirstEffectNanos = new AtomicLong(-1L);
+    private final AtomicLong detectorWarmUpNanos = new AtomicLong(-1L);
+    // Latest bind of the analysis use case to its first published result; kept across reset()
+    private final AtomicLong bindToFirstResultNanos = new AtomicLong(-1L);
+
+    private final AtomicLong capturePeakBytes = new AtomicLong();
+
+    // Only touched from the analyzer thread through onFrameTimestamp()
+    private long lastFrameTimestampNanos = -1L;
+    private long framePeriodNanos = Long.MAX_VALUE;
+    private long windowMinGapNanos = Long.MAX_VALUE;
+    private int framesInWindow;
+
+    public FrameMetrics() {
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            stages[i] = new LatencyHistogram();
+        }
+    }
+
+    public void record(int stage, long nanos) {
+        stages[stage].recordNanos(nanos);
+    }
+
+    public LatencyHistogram getStage(int stage) {
+        return stages[stage];
+    }
+
+    public static String getStageName(int stage) {
+        return STAGE_NAMES[stage];
+    }
+
+    /**
+     * Called from the analyzer with the sensor timestamp ({@code ImageInfo.getTimestamp()}) of every
+     * frame it receives. Frames the camera produced in between were dropped by the backpressure
+     * strategy; their number is derived from the gap and the estimated sensor frame period.
+     */
+    public void onFrameTimestamp(long timestampNanos) {
+        analyzedFrames.incrementAndGet();
+        trackFrameGap(timestampNanos);
+    }
+
+    /**
+     * Called from the analyzer instead of {@link #onFrameTimestamp(long)} for a frame it skipped to
+     * stay under the quality tier's frame-rate cap, so the skip is not counted as a drop.
+     */
+    public void onFrameThrottled(long timestampNanos) {
+        throttledFrames.incrementAndGet();
+        trackFrameGap(timestampNanos);
+    }
+
+    private void trackFrameGap(long timestampNanos) {
+        long previous = lastFrameTimestampNanos;
+        lastFrameTimestampNanos = timestampNanos;
+        if (previous < 0) {
+            return;
+        }
+        long gap = timestampNanos - previous;
+        if (gap <= 0) {
+            return;
+        }
+        windowMinGapNanos = Math.min(windowMinGapNanos, gap);
+        framePeriodNanos = Math.min(framePeriodNanos, gap);
+        if (++framesInWindow >= PERIOD_WINDOW_FRAMES) {
+            // Let the estimate follow the camera when it lowers its frame rate (e.g. in low light)
+            framePeriodNanos = windowMinGapNanos;
+            windowMinGapNanos = Long.MAX_VALUE;
+            framesInWindow = 0;
+        }
+        if (gap > framePeriodNanos * DROP_GAP_FACTOR) {
+            droppedFrames.addAndGet(Math.round((double) gap / framePeriodNanos) - 1);
+        }
+    }
+
+    public long getAnalyzedFrames() {
+        return analyzedFrames.get();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    public long getThrottledFrames() {
+        return throttledFrames.get();
+    }
+
+    /** Records that an analyzed frame's results changed the overlay and it was redrawn. */
+    public void onOverlayRedraw() {
+        overlayRedraws.incrementAndGet();
+    }
+
+    /** Records that an analyzed frame's results looked the same as those drawn, so no redraw was requested. */
+    public void onOverlayRedrawSkipped() {
+        overlayRedrawsSkipped.incrementAndGet();
+    }
+
+    public long getOverlayRedraws() {
+        return overlayRedraws.get();
+    }
+
+    public long getOverlayRedrawsSkipped() {
+        return overlayRedrawsSkipped.get();
+    }
+
+    /** Records a quality governor decision ({@code QualityGovernor.TIER_*}). */
+    public void recordQualityTier(int tier) {
+        if (qualityTier.getAndSet(tier) != tier) {
+            qualityTierChanges.incrementAndGet();
+        }
+    }
+
+    public int getQualityTier() {
+        return qualityTier.get();
+    }
+
+    public long getQualityTierChanges() {
+        return qualityTierChanges.get();
+    }
+
+    /** Records how long decoding the effect sprites took and how much memory they occupy. */
+    public void recordEffectAssetLoad(long decodeNanos, long bytes) {
+        effectAssetDecodeNanos.set(decodeNanos);
+        effectAssetBytes.set(bytes);
+    }
+
+    /** Records the time from activity creation until the camera preview started streaming. */
+    public void recordTimeToFirstPreview(long nanos) {
+        timeToFirstPreviewNanos.set(nanos);
+    }
+
+    /**
+     * Records the time from activity creation until the first analyzed frame with a face to draw
+     * an effect on. Only the first call counts.
+     */
+    public void recordTimeToFirstEffect(long nanos) {
+        timeToFirstEffectNanos.compareAndSet(-1L, nanos);
+    }
+
+    /** Records how long creating and warming up the detectors on a synthetic frame took. */
+    public void recordDetectorWarmUp(long nanos) {
+        detectorWarmUpNanos.set(nanos);
+    }
+
+    /**
+     * Records the time from binding an analysis use case until its first result was published;
+     * the report shows the latest bind.
+     */
+    public void recordBindToFirstResult(long nanos) {
+        bindToFirstResultNanos.set(nanos);
+    }
+
+    /** Effect sprite decode time in nanoseconds, or -1 if the sprites have not been loaded yet. */
+    public long getEffectAssetDecodeNanos() {
+        return effectAssetDecodeNanos.get();
+    }
+
+    /** Total bytes of the decoded effect sprites, or -1 if they have not been loaded yet. */
+    public long getEffectAssetBytes() {
+        return effectAssetBytes.get();
+    }
+
+    /** Time to first preview frame in nanoseconds, or -1 if the preview has not started yet. */
+    public long getTimeToFirstPreviewNanos() {
+        return timeToFirstPreviewNanos.get();
+    }
+
+    /** Time to the first frame with a face in nanoseconds, or -1 if there has been none yet. */
+    public long getTimeToFirstEffectNanos() {
+        return timeToFirstEffectNanos.get();
+    }
+
+    /** Detector warm-up time in nanoseconds, or -1 if the warm-up has not finished. */
+    public long getDetectorWarmUpNanos() {
+        return detectorWarmUpNanos.get();
+    }
+
+    /** Latest bind-to-first-result time in nanoseconds, or -1 if no analysis result was published yet. */
+    public long getBindToFirstResultNanos() {
+        return bindToFirstResultNanos.get();
+    }
+
+    /** Records the peak bitmap and buffer memory one capture needed; the report keeps the maximum. */
+    public void recordCapturePeakBytes(long bytes) {
+        capturePeakBytes.accumulateAndGet(bytes, Math::max);
+    }
+
+    public long getCapturePeakBytes() {
+        return capturePeakBytes.get();
+    }
+
+    public void reset() {
+        for (LatencyHistogram stage : stages) {
+            stage.reset();
+        }
+        analyzedFrames.set(0L);
+        droppedFrames.set(0L);
+        throttledFrames.set(0L);
+        overlayRedraws.set(0L);
+        overlayRedrawsSkipped.set(0L);
+        qualityTierChanges.set(0L);
+        capturePeakBytes.set(0L);
+    }
+
+    /**
+     * Fills {@code lines}, starting at {@code offset}, with one short line per stage (p50/p95/p99 in
+     * ms) followed by the frame and redraw counters, and returns the number of lines written.
+     */
+    public int formatHudLines(String[] lines, int offset) {
+        int n = offset;
+        for (int i = 0; i < STAGE_COUNT && n < lines.length; i++) {
+            LatencyHistogram h = stages[i];
+            lines[n++] = String.format(Locale.US, "%-17s %6.1f %6.1f %6.1f",
+                    STAGE_NAMES[i], h.getPercentileMillis(50), h.getPercentileMillis(95), h.getPercentileMillis(99));
+        }
+        if (n < lines.length) {
+            lines[n++] = String.format(Locale.US, "frames %d  dropped %d  throttled %d  tier %s", getAnalyzedFrames(),
+                    getDroppedFrames(), getThrottledFrames(), QualityGovernor.tierName(getQualityTier()));
+        }
+        if (n < lines.length) {
+            lines[n++] = String.format(Locale.US, "redraws %d  skipped %d", getOverlayRedraws(), getOverlayRedrawsSkipped());
+        }
+        return n - offset;
+    }
+
+    /** Writes a plain-text report that can be diffed between builds. */
+    public void dump(File file, String header) throws IOException {
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(formatReport(header));
+        }
+    }
+
+    public String formatReport(String header) {
+        StringBuilder sb = new StringBuilder();
+        if (header != null) {
+            sb.append("# ").append(header).append('\n');
+        }
+        sb.append(String.format(Locale.US, "%-17s %8s %8s %8s %8s %8s %8s%n",
+                "stage", "count", "mean", "p50", "p95", "p99", "max"));
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            LatencyHistogram h = stages[i];
+            sb.append(String.format(Locale.US, "%-17s %8d %8.2f %8.2f %8.2f %8.2f %8.2f%n",
+                    STAGE_NAMES[i], h.getCount(), h.getMeanMillis(), h.getPercentileMillis(50),
+                    h.getPercentileMillis(95), h.getPercentileMillis(99), h.getMaxMillis()));
+        }
+        sb.append("analyzed_frames ").append(getAnalyzedFrames()).append('\n');
+        sb.append("dropped_frames ").append(getDroppedFrames()).append('\n');
+        sb.append("throttled_frames ").append(getThrottledFrames()).append('\n');
+        sb.append("overlay_redraws ").append(getOverlayRedraws()).append('\n');
+        sb.append("overlay_redraws_skipped ").append(getOverlayRedrawsSkipped()).append('\n');
+        sb.append("quality_tier ").append(QualityGovernor.tierName(getQualityTier())).append('\n');
+        sb.append("quality_tier_changes ").append(getQualityTierChanges()).append('\n');
+        sb.append("capture_peak_bytes ").append(getCapturePeakBytes()).append('\n');
+        sb.append("effect_asset_decode_ms ").append(formatMillis(getEffectAssetDecodeNanos())).append('\n');
+        sb.append("effect_asset_bytes ").append(getEffectAssetBytes()).append('\n');
+        sb.append("time_to_first_preview_ms ").append(formatMillis(getTimeToFirstPreviewNanos())).append('\n');
+        sb.append("time_to_first_effect_ms ").append(formatMillis(getTimeToFirstEffectNanos())).append('\n');
+        sb.append("detector_warmup_ms ").append(formatMillis(getDetectorWarmUpNanos())).append('\n');
+        sb.append("bind_to_first_result_ms ").append(formatMillis(getBindToFirstResultNanos())).append('\n');
+        return sb.toString();
+    }
+
+    private static String formatMillis(long nanos) {
+        return nanos < 0 ? "-1" : String.format(Locale.US, "%.2f", nanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.aremotionfilters;
+
+/**
+ * Hand gesture rules as {@link GestureRule}s on the normalized {@link PoseFeatures} of either
+ * hand, plus the forearm rotation that gesture effects follow (analysis image pixels, Y grows
+ * downwards; missing landmarks are passed as {@link Float#NaN}).
+ *
+ * Pose landmarks only give the thumb, index and pinky tips of each hand, so the peace sign is
+ * approximated as a raised hand with the index finger up and thumb and pinky folded.
+ */
+public final class GestureClassifier {
+
+    // Ambang fitur ternormalisasi (satuan: panjang lengan bawah)
+    static final float MIN_HAND_LIKELIHOOD = 0.5f;
+    // Jempol di atas pergelangan; 50 px pada lengan bawah sekitar 160 px di 640x480
+    static final float THUMBS_UP_MIN_THUMB_RISE = 0.3f;
+    static final float PEACE_MIN_INDEX_RISE = 0.35f;
+    static final float PEACE_MAX_FOLDED_RISE = 0.15f;
+    static final float RAISED_MIN_WRIST_ABOVE_ELBOW = 0.5f;
+    // Lambaian: pergelangan berpindah sisi terhadap siku sekian kali dalam jendela waktu
+    static final float WAVE_SIDE_THRESHOLD = 0.2f;
+    static final int WAVE_MIN_SWINGS = 3;
+    static final long WAVE_WINDOW_NANOS = 1_500_000_000L;
+
+    private GestureClassifier() {
+    }
+
+    /**
+     * Thumb clearly above the wrist, elbow not above the wrist. Like the pixel rule it replaces it
+     * looks at the thumb and wrist only; the elbow is needed to normalize by the forearm.
+     */
+    public static GestureRule thumbsUpRule() {
+        return new GestureRule() {
+            @Override
+            public int gesture() {
+                return FaceData.GESTURE_THUMBS_UP;
+            }
+
+            @Override
+            public boolean matches(PoseFeatures f, int hand, long timestampNanos) {
+                // NaN (thumb or forearm missing) fails both comparisons
+                return f.get(hand, PoseFeatures.THUMB_RISE) > THUMBS_UP_MIN_THUMB_RISE
+                        && f.get(hand, PoseFeatures.WRIST_ABOVE_ELBOW) >= 0f;
+            }
+        };
+    }
+
+    /** Raised hand with the index finger up and the thumb and pinky folded towards the wrist. */
+    public static GestureRule peaceRule() {
+        return new GestureRule() {
+            @Override
+            public int gesture() {
+                return FaceData.GESTURE_PEACE;
+            }
+
+            @Override
+            public boolean matches(PoseFeatures f, int hand, long timestampNanos) {
+                if (!f.isHandVisible(hand, MIN_HAND_LIKELIHOOD)) {
+                    return false;
+                }
+                return f.get(hand, PoseFeatures.WRIST_ABOVE_ELBOW) > RAISED_MIN_WRIST_ABOVE_ELBOW
+                        && f.get(hand, PoseFeatures.INDEX_RISE) > PEACE_MIN_INDEX_RISE
+                        && f.get(hand, PoseFeatures.THUMB_RISE) < PEACE_MAX_FOLDED_RISE
+                        && f.get(hand, PoseFeatures.PINKY_RISE) < PEACE_MAX_FOLDED_RISE;
+            }
+        };
+    }
+
+    /**
+     * Raised hand whose wrist swung from one side of the elbow to the other at least
+     * {@value #WAVE_MIN_SWINGS} times within the last 1.5 s. Keeps per-hand state; use one instance
+     * per engine.
+     */
+    public static GestureRule waveRule() {
+        return new WaveRule();
+    }
+
+    private static final class WaveRule implements GestureRule {
+        private final int[] lastSide = new int[PoseFeatures.HAND_COUNT];
+        // Waktu perpindahan sisi terakhir per tangan, ring berukuran WAVE_MIN_SWINGS
+        private final long[] swingNanos = new long[PoseFeatures.HAND_COUNT * WAVE_MIN_SWINGS];
+        private final int[] swingCount = new int[PoseFeatures.HAND_COUNT];
+
+        @Override
+        public int gesture() {
+            return FaceData.GESTURE_WAVE;
+        }
+
+        @Override
+        public boolean matches(PoseFeatures f, int hand, long timestampNanos) {
+            if (!f.isHandVisible(hand, MIN_HAND_LIKELIHOOD)
+                    || !(f.get(hand, PoseFeatures.WRIST_ABOVE_ELBOW) > RAISED_MIN_WRIST_ABOVE_ELBOW)) {
+                lastSide[hand] = 0;
+                swingCount[hand] = 0;
+                return false;
+            }
+            float offset = f.get(hand, PoseFeatures.WRIST_SIDE);
+            int side = offset > WAVE_SIDE_THRESHOLD ? 1 : offset < -WAVE_SIDE_THRESHOLD ? -1 : 0;
+            if (side != 0 && side != lastSide[hand]) {
+                if (lastSide[hand] != 0) {
+                    swingNanos[hand * WAVE_MIN_SWINGS + swingCount[hand] % WAVE_MIN_SWINGS] = timestampNanos;
+                    swingCount[hand]++;
+                }
+                lastSide[hand] = side;
+            }
+            if (swingCount[hand] < WAVE_MIN_SWINGS) {
+                return false;
+            }
+            // Perpindahan tertua di ring harus masih di dalam jendela
+            long oldest = swingNanos[hand * WAVE_MIN_SWINGS + swingCount[hand] % WAVE_MIN_SWINGS];
+            return timestampNanos - oldest <= WAVE_WINDOW_NANOS;
+        }
+    }
+
+    /**
+     * Rotation (degrees) for a gesture effect anchored at the wrist so that it follows the forearm;
+     * 0 if the elbow is unknown.
+     */
+    public static float forearmRotationDegrees(float wristX, float wristY, float elbowX, float elbowY) {
+        if (Float.isNaN(wristX) || Float.isNaN(elbowX)) {
+            return 0f;
+        }
+        float rotation = (float) Math.toDegrees(Math.atan2(wristY - elbowY, wristX - elbowX));
+        return rotation + 90; // Sesuaikan orientasi
+    }
+}
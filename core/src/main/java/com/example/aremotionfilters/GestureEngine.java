@@ -0,0 +1,114 @@
+package com.example.aremotionfilters;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Evaluates registered {@link GestureRule}s for both hands against one shared
+ * {@link PoseFeatures} vector per frame and debounces each gesture over time.
+ *
+ * A gesture turns on once its rule has matched continuously for the rule's on-delay and off once
+ * it has failed continuously for the off-delay, so single-frame pose jitter neither triggers nor
+ * interrupts an effect. While a gesture is held through a miss it keeps its last anchor. Each hand
+ * reports at most one gesture: the active one registered first.
+ *
+ * Registration allocates; {@link #evaluate} and {@link #collect} do not. Not thread-safe.
+ */
+public class GestureEngine {
+
+    public static final long DEFAULT_ON_NANOS = 100_000_000L;
+    public static final long DEFAULT_OFF_NANOS = 250_000_000L;
+
+    private static final int HANDS = PoseFeatures.HAND_COUNT;
+
+    private GestureRule[] rules = new GestureRule[0];
+    private long[] onNanos = new long[0];
+    private long[] offNanos = new long[0];
+
+    // Per rule and hand, at [rule * HANDS + hand]
+    private boolean[] active = new boolean[0];
+    private long[] pendingSinceNanos = new long[0]; // When the raw result started to differ; -1 if it does not
+    private float[] anchorX = new float[0];
+    private float[] anchorY = new float[0];
+    private float[] rotation = new float[0];
+
+    public int register(GestureRule rule) {
+        return register(rule, DEFAULT_ON_NANOS, DEFAULT_OFF_NANOS);
+    }
+
+    /** Adds {@code rule} with its debounce delays and returns its index. */
+    public int register(GestureRule rule, long onDelayNanos, long offDelayNanos) {
+        int index = rules.length;
+        rules = Arrays.copyOf(rules, index + 1);
+        rules[index] = rule;
+        onNanos = Arrays.copyOf(onNanos, index + 1);
+        onNanos[index] = onDelayNanos;
+        offNanos = Arrays.copyOf(offNanos, index + 1);
+        offNanos[index] = offDelayNanos;
+        int slots = (index + 1) * HANDS;
+        active = Arrays.copyOf(active, slots);
+        pendingSinceNanos = Arrays.copyOf(pendingSinceNanos, slots);
+        Arrays.fill(pendingSinceNanos, index * HANDS, slots, -1L);
+        anchorX = Arrays.copyOf(anchorX, slots);
+        anchorY = Arrays.copyOf(anchorY, slots);
+        rotation = Arrays.copyOf(rotation, slots);
+        return index;
+    }
+
+    public int getRuleCount() {
+        return rules.length;
+    }
+
+    /** Runs every rule for both hands on this frame's features. */
+    public void evaluate(PoseFeatures features, long timestampNanos) {
+        for (int r = 0; r < rules.length; r++) {
+            GestureRule rule = rules[r];
+            for (int hand = 0; hand < HANDS; hand++) {
+                int slot = r * HANDS + hand;
+                boolean matched = rule.matches(features, hand, timestampNanos);
+                if (matched) {
+                    anchorX[slot] = features.get(hand, PoseFeatures.WRIST_X);
+                    anchorY[slot] = features.get(hand, PoseFeatures.WRIST_Y);
+                    rotation[slot] = features.get(hand, PoseFeatures.FOREARM_ROTATION);
+                }
+                if (matched == active[slot]) {
+                    pendingSinceNanos[slot] = -1L;
+                    continue;
+                }
+                if (pendingSinceNanos[slot] < 0) {
+                    pendingSinceNanos[slot] = timestampNanos;
+                }
+                if (timestampNanos - pendingSinceNanos[slot] >= (matched ? onNanos[r] : offNanos[r])) {
+                    active[slot] = matched;
+                    pendingSinceNanos[slot] = -1L;
+                }
+            }
+        }
+    }
+
+    public boolean isActive(int rule, int hand) {
+        return active[rule * HANDS + hand];
+    }
+
+    /** Adds one FaceData per hand with an active gesture to {@code out}; returns how many. */
+    public int collect(FaceDataPool pool, List<FaceData> out) {
+        int added = 0;
+        for (int hand = 0; hand < HANDS; hand++) {
+            for (int r = 0; r < rules.length; r++) {
+                int slot = r * HANDS + hand;
+                if (active[slot]) {
+                    out.add(pool.acquire().setGesture(rules[r].gesture(), anchorX[slot], anchorY[slot], rotation[slot]));
+                    added++;
+                    break;
+                }
+            }
+        }
+        return added;
+    }
+
+    /** Turns every gesture off, e.g. when the camera is switched. */
+    public void reset() {
+        Arrays.fill(active, false);
+        Arrays.fill(pendingSinceNanos, -1L);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.aremotionfilters;
+
+/**
+ * One gesture, evaluated by {@link GestureEngine} for each hand against the shared
+ * {@link PoseFeatures} of a frame.
+ *
+ * Rules should only compare precomputed features, so adding a rule costs a few comparisons per
+ * hand and frame. Rules that need motion over time (e.g. a wave) may keep per-hand state in
+ * primitive fields; they are called once per hand per frame, in timestamp order.
+ */
+public interface GestureRule {
+
+    /** FaceData gesture code reported while the rule matches. */
+    int gesture();
+
+    /** Whether {@code hand} shows the gesture in the frame with sensor time {@code timestampNanos}. */
+    boolean matches(PoseFeatures features, int hand, long timestampNanos);
+}
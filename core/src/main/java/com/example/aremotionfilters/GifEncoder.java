@@ -0,0 +1,228 @@
+package com.example.aremotionfilters;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Streaming animated GIF (GIF89a) encoder.
+ *
+ * Each frame is quantized to its own local palette by a {@link PaletteQuantizer}, LZW-compressed
+ * and written to the output stream before {@link #addFrame} returns, so the encoder holds one
+ * frame's palette indices and a fixed-size code table regardless of how many frames are added.
+ * Nothing is buffered beyond one 255-byte data sub-block; wrap the stream in a
+ * {@code BufferedOutputStream} if it is unbuffered.
+ *
+ * Not thread-safe: add frames from one thread.
+ */
+public class GifEncoder {
+
+    /** Loop count for {@link #GifEncoder}: repeat forever. */
+    public static final int LOOP_FOREVER = 0;
+
+    private static final int MAX_CODE_BITS = 12;
+    private static final int MAX_CODES = 1 << MAX_CODE_BITS;
+    // Open-addressing table for the LZW dictionary: a prime comfortably above MAX_CODES
+    private static final int HASH_SIZE = 5003;
+    private static final int MAX_BLOCK = 255;
+
+    private final OutputStream out;
+    private final int width;
+    private final int height;
+    private final PaletteQuantizer quantizer;
+    private final byte[] indices;
+    private final int[] palette = new int[PaletteQuantizer.MAX_COLORS];
+    private final int[] hashKeys = new int[HASH_SIZE];
+    private final int[] hashCodes = new int[HASH_SIZE];
+    private final byte[] block = new byte[MAX_BLOCK + 1];
+    private int blockSize;
+    private int bitBuffer;
+    private int bitCount;
+
+    private int frameCount;
+    private long quantizeNanos;
+    private long compressNanos;
+    private boolean finished;
+
+    /**
+     * Writes the GIF header right away.
+     *
+     * @param loopCount How often the animation repeats after the first pass; {@link #LOOP_FOREVER}.
+     */
+    public GifEncoder(OutputStream out, int width, int height, int loopCount, PaletteQuantizer quantizer) throws IOException {
+        if (width <= 0 || height <= 0 || width > 0xFFFF || height > 0xFFFF) {
+            throw new IllegalArgumentException("Invalid GIF size " + width + "x" + height);
+        }
+        this.out = out;
+        this.width = width;
+        this.height = height;
+        this.quantizer = quantizer;
+        this.indices = new byte[width * height];
+
+        out.write(new byte[]{'G', 'I', 'F', '8', '9', 'a'});
+        writeShort(width);
+        writeShort(height);
+        out.write(0x70); // No global color table, 8 bits of color resolution
+        out.write(0); // Background color index
+        out.write(0); // No pixel aspect ratio
+        // NETSCAPE2.0 application extension: loop count
+        out.write(new byte[]{0x21, (byte) 0xFF, 11, 'N', 'E', 'T', 'S', 'C', 'A', 'P', 'E', '2', '.', '0', 3, 1});
+        writeShort(loopCount);
+        out.write(0);
+    }
+
+    /**
+     * Quantizes, compresses and writes one frame.
+     *
+     * @param argb        {@code width * height} pixels, row-major; alpha is ignored.
+     * @param delayMillis How long the frame is shown; GIF stores hundredths of a second.
+     */
+    public void addFrame(int[] argb, int delayMillis) throws IOException, InterruptedException {
+        if (finished) {
+            throw new IllegalStateException("GIF already finished");
+        }
+        if (argb.length < indices.length) {
+            throw new IllegalArgumentException("Frame has " + argb.length + " pixels, expected " + indices.length);
+        }
+        long start = System.nanoTime();
+        int colors = quantizer.quantize(argb, indices.length, indices, palette);
+        long quantized = System.nanoTime();
+        quantizeNanos += quantized - start;
+
+        int tableBits = 1;
+        while ((1 << tableBits) < colors) {
+            tableBits++;
+        }
+        // Graphic control extension: delay, no transparency, leave the frame in place
+        out.write(new byte[]{0x21, (byte) 0xF9, 4, 0x04});
+        writeShort(Math.max(0, Math.min(0xFFFF, (delayMillis + 5) / 10)));
+        out.write(0);
+        out.write(0);
+        // Image descriptor with a local color table
+        out.write(0x2C);
+        writeShort(0);
+        writeShort(0);
+        writeShort(width);
+        writeShort(height);
+        out.write(0x80 | (tableBits - 1));
+        for (int i = 0; i < 1 << tableBits; i++) {
+            int color = i < colors ? palette[i] : 0;
+            out.write(color >> 16);
+            out.write(color >> 8);
+            out.write(color);
+        }
+        compress(Math.max(2, tableBits));
+        compressNanos += System.nanoTime() - quantized;
+        frameCount++;
+    }
+
+    /** Writes the trailer; the output stream is left open. */
+    public void finish() throws IOException {
+        if (!finished) {
+            finished = true;
+            out.write(0x3B);
+            out.flush();
+        }
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public long getQuantizeNanos() {
+        return quantizeNanos;
+    }
+
+    public long getCompressNanos() {
+        return compressNanos;
+    }
+
+    /** Bytes of working memory held by the encoder and its quantizer, independent of frame count. */
+    public long getWorkingBytes() {
+        return indices.length + palette.length * 4L + HASH_SIZE * 8L + block.length + quantizer.getWorkingBytes();
+    }
+
+    private void compress(int minCodeSize) throws IOException {
+        out.write(minCodeSize);
+        int clearCode = 1 << minCodeSize;
+        int endCode = clearCode + 1;
+        int codeBits = minCodeSize + 1;
+        int nextCode = endCode + 1;
+        Arrays.fill(hashKeys, -1);
+        blockSize = 0;
+        bitBuffer = 0;
+        bitCount = 0;
+
+        writeCode(clearCode, codeBits);
+        int prefix = indices[0] & 0xFF;
+        for (int i = 1, n = indices.length; i < n; i++) {
+            int c = indices[i] & 0xFF;
+            int key = (c << MAX_CODE_BITS) | prefix;
+            int slot = (c << 4 ^ prefix) % HASH_SIZE;
+            int step = slot == 0 ? 1 : HASH_SIZE - slot;
+            while (hashKeys[slot] >= 0 && hashKeys[slot] != key) {
+                slot -= step;
+                if (slot < 0) {
+                    slot += HASH_SIZE;
+                }
+            }
+            if (hashKeys[slot] == key) {
+                prefix = hashCodes[slot]; // Known string: extend it
+                continue;
+            }
+            writeCode(prefix, codeBits);
+            if (nextCode < MAX_CODES) {
+                hashKeys[slot] = key;
+                hashCodes[slot] = nextCode++;
+                // The decoder adds its entry one code later, so it widens once nextCode passes the limit
+                if (nextCode > 1 << codeBits && codeBits < MAX_CODE_BITS) {
+                    codeBits++;
+                }
+            } else {
+                // Dictionary full: start over
+                writeCode(clearCode, codeBits);
+                Arrays.fill(hashKeys, -1);
+                codeBits = minCodeSize + 1;
+                nextCode = endCode + 1;
+            }
+            prefix = c;
+        }
+        writeCode(prefix, codeBits);
+        writeCode(endCode, codeBits);
+        if (bitCount > 0) {
+            writeByte(bitBuffer & 0xFF);
+        }
+        flushBlock();
+        out.write(0); // Block terminator
+    }
+
+    private void writeCode(int code, int bits) throws IOException {
+        bitBuffer |= code << bitCount;
+        bitCount += bits;
+        while (bitCount >= 8) {
+            writeByte(bitBuffer & 0xFF);
+            bitBuffer >>>= 8;
+            bitCount -= 8;
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        block[1 + blockSize++] = (byte) b;
+        if (blockSize == MAX_BLOCK) {
+            flushBlock();
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (blockSize > 0) {
+            block[0] = (byte) blockSize;
+            out.write(block, 0, blockSize + 1);
+            blockSize = 0;
+        }
+    }
+
+    private void writeShort(int value) throws IOException {
+        out.write(value & 0xFF);
+        out.write((value >> 8) & 0xFF);
+    }
+}
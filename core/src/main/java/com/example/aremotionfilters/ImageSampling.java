@@ -0,0 +1,35 @@
+package com.example.aremotionfilters;
+
+/**
+ * Size arithmetic for decoding images no larger than they are needed.
+ */
+public final class ImageSampling {
+
+    private ImageSampling() {
+    }
+
+    /**
+     * Largest power of two that keeps {@code sourceSize / inSampleSize >= targetSize}, i.e. the
+     * {@code BitmapFactory.Options.inSampleSize} that decodes as little as possible without going
+     * below the target. 1 if the target is not positive.
+     */
+    public static int inSampleSize(int sourceSize, int targetSize) {
+        int inSampleSize = 1;
+        if (targetSize <= 0) {
+            return inSampleSize;
+        }
+        while (sourceSize / (inSampleSize * 2) >= targetSize) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    /** Scale (at most 1) that fits the longer side of a {@code width x height} image into {@code maxSize}. */
+    public static float downscaleToFit(int width, int height, int maxSize) {
+        int longerSide = Math.max(width, height);
+        if (maxSize <= 0 || longerSide <= maxSize) {
+            return 1f;
+        }
+        return (float) maxSize / longerSide;
+    }
+}
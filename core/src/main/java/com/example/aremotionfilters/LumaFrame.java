@@ -0,0 +1,75 @@
+package com.example.aremotionfilters;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Read-only view of the Y (luminance) plane of a camera frame, addressed in upright image
+ * coordinates, i.e. the coordinate space ML Kit reports bounding boxes in after applying the
+ * frame's rotation. The instance is reused across frames; the buffer is only valid until the
+ * underlying ImageProxy is closed.
+ */
+public class LumaFrame {
+
+    private ByteBuffer buffer;
+    private int width; // Sensor (unrotated) width
+    private int height; // Sensor (unrotated) height
+    private int rowStride;
+    private int pixelStride;
+    private int rotationDegrees;
+
+    public void set(ByteBuffer buffer, int width, int height, int rowStride, int pixelStride, int rotationDegrees) {
+        this.buffer = buffer;
+        this.width = width;
+        this.height = height;
+        this.rowStride = rowStride;
+        this.pixelStride = pixelStride;
+        this.rotationDegrees = ((rotationDegrees % 360) + 360) % 360;
+    }
+
+    public void clear() {
+        buffer = null;
+    }
+
+    public boolean isValid() {
+        return buffer != null;
+    }
+
+    public int getUprightWidth() {
+        return rotationDegrees == 90 || rotationDegrees == 270 ? height : width;
+    }
+
+    public int getUprightHeight() {
+        return rotationDegrees == 90 || rotationDegrees == 270 ? width : height;
+    }
+
+    /** Luminance (0..255) of the pixel nearest to upright coordinate (x, y), clamped to the frame. */
+    public int sample(float x, float y) {
+        int ux = clamp((int) x, getUprightWidth() - 1);
+        int uy = clamp((int) y, getUprightHeight() - 1);
+        int sx;
+        int sy;
+        switch (rotationDegrees) {
+            case 90:
+                sx = uy;
+                sy = height - 1 - ux;
+                break;
+            case 180:
+                sx = width - 1 - ux;
+                sy = height - 1 - uy;
+                break;
+            case 270:
+                sx = width - 1 - uy;
+                sy = ux;
+                break;
+            default:
+                sx = ux;
+                sy = uy;
+                break;
+        }
+        return buffer.get(sy * rowStride + sx * pixelStride) & 0xFF;
+    }
+
+    private static int clamp(int value, int max) {
+        return value < 0 ? 0 : (value > max ? max : value);
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.aremotionfilters;
+
+import java.util.Arrays;
+
+/**
+ * Decides whether a new set of placed effects looks different from the set last drawn, so the
+ * overlay can skip redraws that would not visibly change anything.
+ *
+ * For every analyzed frame the caller adds the effects it would draw ({@link #begin()},
+ * {@link #add}, {@link #commit()}), in target canvas pixels. Two effects match when they are at the
+ * same position in the list with the same code and tracking ID, no edge moved by more than the
+ * position tolerance and the rotation changed by no more than the rotation tolerance. Only when
+ * something does not match does the new set become the drawn set, as the whole overlay is then
+ * redrawn; small jitter is compared against the last drawn placement, so slow drift still
+ * triggers a redraw once it adds up.
+ *
+ * Allocation-free once it has seen the largest effect count. Use from one thread; the
+ * tolerances may be set from any thread.
+ */
+public class OverlayChangeDetector {
+
+    public static final float DEFAULT_POSITION_TOLERANCE_PX = 2f;
+    public static final float DEFAULT_ROTATION_TOLERANCE_DEGREES = 2f;
+
+    private volatile float positionTolerancePx = DEFAULT_POSITION_TOLERANCE_PX;
+    private volatile float rotationToleranceDegrees = DEFAULT_ROTATION_TOLERANCE_DEGREES;
+
+    // Last drawn set, and the set being added; swapped on a visible change
+    private Effects drawn = new Effects();
+    private Effects pending = new Effects();
+
+    private static final class Effects {
+        int count;
+        int[] codes = new int[4];
+        int[] trackingIds = new int[4];
+        float[] rects = new float[16]; // left, top, right, bottom per effect
+        float[] rotations = new float[4];
+
+        void grow() {
+            int capacity = codes.length * 2;
+            codes = Arrays.copyOf(codes, capacity);
+            trackingIds = Arrays.copyOf(trackingIds, capacity);
+            rects = Arrays.copyOf(rects, capacity * 4);
+            rotations = Arrays.copyOf(rotations, capacity);
+        }
+    }
+
+    /** Sets how far an effect may move, in target pixels, or turn before it counts as changed. */
+    public void setTolerance(float positionPx, float rotationDegrees) {
+        this.positionTolerancePx = Math.max(0f, positionPx);
+        this.rotationToleranceDegrees = Math.max(0f, rotationDegrees);
+    }
+
+    /** Starts a new set of effects. */
+    public void begin() {
+        pending.count = 0;
+    }
+
+    /** Adds one placed effect to the set started by {@link #begin()}. */
+    public void add(int code, int trackingId, float left, float top, float right, float bottom, float rotationDegrees) {
+        Effects e = pending;
+        if (e.count == e.codes.length) {
+            e.grow();
+        }
+        int i = e.count++;
+        e.codes[i] = code;
+        e.trackingIds[i] = trackingId;
+        e.rects[4 * i] = left;
+        e.rects[4 * i + 1] = top;
+        e.rects[4 * i + 2] = right;
+        e.rects[4 * i + 3] = bottom;
+        e.rotations[i] = rotationDegrees;
+    }
+
+    /**
+     * Compares the added set with the drawn one. On a visible change the added set becomes the
+     * drawn set and true is returned; otherwise nothing changes.
+     */
+    public boolean commit() {
+        if (!changed(positionTolerancePx, rotationToleranceDegrees)) {
+            return false;
+        }
+        Effects previous = drawn;
+        drawn = pending;
+        pending = previous;
+        return true;
+    }
+
+    private boolean changed(float positionTolerance, float rotationTolerance) {
+        if (drawn.count != pending.count) {
+            return true; // Effects appeared or disappeared
+        }
+        for (int i = 0; i < pending.count; i++) {
+            if (!matches(i, positionTolerance, rotationTolerance)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Forgets the drawn set, e.g. after the whole overlay was redrawn for another reason. */
+    public void reset() {
+        drawn.count = 0;
+    }
+
+    /** Number of effects in the drawn set. */
+    public int getDrawnCount() {
+        return drawn.count;
+    }
+
+    private boolean matches(int i, float positionTolerance, float rotationTolerance) {
+        if (drawn.codes[i] != pending.codes[i] || drawn.trackingIds[i] != pending.trackingIds[i]) {
+            return false;
+        }
+        for (int edge = 4 * i; edge < 4 * i + 4; edge++) {
+            if (Math.abs(drawn.rects[edge] - pending.rects[edge]) > positionTolerance) {
+                return false;
+            }
+        }
+        return Math.abs(drawn.rotations[i] - pending.rotations[i]) <= rotationTolerance;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.aremotionfilters;
+
+/**
+ * Placement math for effect sprites, shared by the live overlay and the captured photo.
+ *
+ * All methods work on primitives and write their result into a caller-owned {@code float[4]}
+ * ({@code left, top, right, bottom} in target canvas pixels), so they never allocate. Inputs are
+ * in ImageAnalysis coordinates; {@code scaleX}/{@code scaleY} map them to the target canvas and
+ * {@code frontCamera} mirrors them horizontally.
+ */
+public final class OverlayGeometry {
+
+    public static final int LEFT = 0;
+    public static final int TOP = 1;
+    public static final int RIGHT = 2;
+    public static final int BOTTOM = 3;
+
+    public static final float FACE_EFFECT_WIDTH_PERCENTAGE_OF_FACE = 0.9f;
+    public static final float FACE_EFFECT_HORIZONTAL_OFFSET_FACTOR = 0.1f;
+    public static final float FACE_EFFECT_VERTICAL_OFFSET_FACTOR = 0.6f;
+    public static final float GESTURE_EFFECT_HEIGHT_PERCENTAGE_OF_VIEW = 0.15f;
+    public static final float GESTURE_EFFECT_VERTICAL_OFFSET_PIXELS = -20;
+
+    private OverlayGeometry() {
+    }
+
+    /** Maps a face box from ImageAnalysis coordinates to target canvas coordinates. */
+    public static void mapBox(float left, float top, float right, float bottom,
+                              float scaleX, float scaleY, int targetWidth, boolean frontCamera, float[] out) {
+        if (frontCamera) {
+            out[LEFT] = targetWidth - (right * scaleX);
+            out[RIGHT] = targetWidth - (left * scaleX);
+        } else {
+            out[LEFT] = left * scaleX;
+            out[RIGHT] = right * scaleX;
+        }
+        out[TOP] = top * scaleY;
+        out[BOTTOM] = bottom * scaleY;
+    }
+
+    /**
+     * Places a face effect above and to the right of the (mapped) face box.
+     *
+     * @param effectAspect Sprite height divided by sprite width.
+     * @return false if the face or effect would be empty and nothing should be drawn.
+     */
+    public static boolean placeFaceEffect(float left, float top, float right, float bottom,
+                                          float scaleX, float scaleY, int targetWidth, boolean frontCamera,
+                                          float effectAspect, float[] out) {
+        mapBox(left, top, right, bottom, scaleX, scaleY, targetWidth, frontCamera, out);
+        float faceWidth = out[RIGHT] - out[LEFT];
+        if (faceWidth <= 0) {
+            return false;
+        }
+        float desiredEffectWidth = faceWidth * FACE_EFFECT_WIDTH_PERCENTAGE_OF_FACE;
+        float desiredEffectHeight = desiredEffectWidth * effectAspect;
+        if (desiredEffectWidth <= 0 || desiredEffectHeight <= 0) {
+            return false;
+        }
+        // Example: to the right of and above the face
+        float effectCenterX = out[RIGHT] + (faceWidth * FACE_EFFECT_HORIZONTAL_OFFSET_FACTOR);
+        float effectCenterY = out[TOP] - (desiredEffectHeight * FACE_EFFECT_VERTICAL_OFFSET_FACTOR);
+        out[LEFT] = effectCenterX - (desiredEffectWidth / 2f);
+        out[TOP] = effectCenterY - (desiredEffectHeight / 2f);
+        out[RIGHT] = out[LEFT] + desiredEffectWidth;
+        out[BOTTOM] = out[TOP] + desiredEffectHeight;
+        return true;
+    }
+
+    /**
+     * Places a gesture effect centred above the anchor, sized relative to the target height.
+     *
+     * @param effectAspect Sprite width divided by sprite height.
+     * @return false if the effect would be empty and nothing should be drawn.
+     */
+    public static boolean placeGestureEffect(float anchorX, float anchorY, float scaleX, float scaleY,
+                                             int targetWidth, int targetHeight, boolean frontCamera,
+                                             float effectAspect, float[] out) {
+        float anchorXInView = frontCamera ? targetWidth - (anchorX * scaleX) : anchorX * scaleX;
+        float anchorYInView = anchorY * scaleY;
+        float desiredEffectHeight = targetHeight * GESTURE_EFFECT_HEIGHT_PERCENTAGE_OF_VIEW;
+        float desiredEffectWidth = desiredEffectHeight * effectAspect;
+        if (desiredEffectWidth <= 0 || desiredEffectHeight <= 0) {
+            return false;
+        }
+        out[LEFT] = anchorXInView - (desiredEffectWidth / 2f);
+        out[TOP] = anchorYInView - desiredEffectHeight + GESTURE_EFFECT_VERTICAL_OFFSET_PIXELS;
+        out[RIGHT] = out[LEFT] + desiredEffectWidth;
+        out[BOTTOM] = out[TOP] + desiredEffectHeight;
+        return true;
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.aremotionfilters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Reduces an ARGB frame to an indexed image with a palette of at most 256 colors, for GIF.
+ *
+ * Colors are first binned to RGB555 (32768 bins). The palette is then found by median cut over the
+ * occupied bins, weighted by pixel count, and every pixel is mapped through a bin-to-palette lookup
+ * table. Frames with at most {@link #MAX_COLORS} distinct bins keep every bin as its own color.
+ *
+ * The two passes over the pixels (histogram and mapping) and the nearest-color search for the
+ * lookup table are split into bands that run on the given executor, each band with its own
+ * histogram that is merged afterwards; the median cut itself only touches the occupied bins and
+ * runs on the calling thread. All working memory is allocated once per quantizer, so quantizing a
+ * frame does not allocate beyond the task objects handed to the executor.
+ *
+ * Not thread-safe: one frame at a time.
+ */
+public class PaletteQuantizer {
+
+    public static final int MAX_COLORS = 256;
+
+    private static final int BIN_COUNT = 1 << 15;
+    // Below this many pixels per band the work is not worth handing to another thread
+    private static final int MIN_PIXELS_PER_BAND = 16 * 1024;
+
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final int[][] bandHistograms;
+    private final int[] histogram = new int[BIN_COUNT];
+    private final int[] lookup = new int[BIN_COUNT];
+    // Occupied bins, reordered by the median cut so every box is a contiguous range
+    private final int[] bins = new int[BIN_COUNT];
+    private final long[] sortKeys = new long[BIN_COUNT];
+    private final int[] boxStart = new int[MAX_COLORS];
+    private final int[] boxEnd = new int[MAX_COLORS];
+    private final long[] boxPixels = new long[MAX_COLORS];
+    private final int[] paletteBins = new int[MAX_COLORS]; // Palette colors as RGB555, for the lookup search
+    private final List<Callable<Void>> tasks = new ArrayList<>();
+
+    /**
+     * @param executor    Runs the bands; null to do all work on the calling thread.
+     * @param parallelism Bands per pass, at most the executor's thread count.
+     */
+    public PaletteQuantizer(ExecutorService executor, int parallelism) {
+        this.executor = executor;
+        this.parallelism = executor == null ? 1 : Math.max(1, parallelism);
+        this.bandHistograms = new int[this.parallelism][BIN_COUNT];
+    }
+
+    /** Bytes of working memory held by this quantizer. */
+    public long getWorkingBytes() {
+        return (long) parallelism * BIN_COUNT * 4 + BIN_COUNT * (4L * 3 + 8) + MAX_COLORS * (4L * 3 + 8);
+    }
+
+    /**
+     * Quantizes the first {@code pixelCount} pixels of {@code argb} (alpha is ignored).
+     *
+     * @param indices Receives one palette index per pixel.
+     * @param palette Receives the palette as 0xRRGGBB, at least {@link #MAX_COLORS} long.
+     * @return The number of palette entries used, 1..256.
+     */
+    public int quantize(int[] argb, int pixelCount, byte[] indices, int[] palette) throws InterruptedException {
+        int bands = Math.max(1, Math.min(parallelism, pixelCount / MIN_PIXELS_PER_BAND));
+
+        // Histogram per band, then merged
+        tasks.clear();
+        for (int b = 0; b < bands; b++) {
+            int band = b;
+            int from = (int) ((long) pixelCount * b / bands);
+            int to = (int) ((long) pixelCount * (b + 1) / bands);
+            tasks.add(() -> {
+                int[] counts = bandHistograms[band];
+                Arrays.fill(counts, 0);
+                for (int i = from; i < to; i++) {
+                    counts[rgb555(argb[i])]++;
+                }
+                return null;
+            });
+        }
+        run(tasks);
+        Arrays.fill(histogram, 0);
+        int occupied = 0;
+        for (int bin = 0; bin < BIN_COUNT; bin++) {
+            int count = 0;
+            for (int b = 0; b < bands; b++) {
+                count += bandHistograms[b][bin];
+            }
+            histogram[bin] = count;
+            if (count > 0) {
+                bins[occupied++] = bin;
+            }
+        }
+
+        int colors = medianCut(occupied, palette);
+        buildLookup(occupied, colors);
+
+        // Pixels through the lookup table
+        tasks.clear();
+        for (int b = 0; b < bands; b++) {
+            int from = (int) ((long) pixelCount * b / bands);
+            int to = (int) ((long) pixelCount * (b + 1) / bands);
+            tasks.add(() -> {
+                for (int i = from; i < to; i++) {
+                    indices[i] = (byte) lookup[rgb555(argb[i])];
+                }
+                return null;
+            });
+        }
+        run(tasks);
+        return colors;
+    }
+
+    private int medianCut(int occupied, int[] palette) {
+        if (occupied == 0) {
+            palette[0] = 0;
+            paletteBins[0] = 0;
+            return 1;
+        }
+        int boxes = 1;
+        boxStart[0] = 0;
+        boxEnd[0] = occupied;
+        boxPixels[0] = pixelsIn(0, occupied);
+        while (boxes < MAX_COLORS) {
+            // Split the box with the most pixels that still has more than one bin
+            int split = -1;
+            for (int i = 0; i < boxes; i++) {
+                if (boxEnd[i] - boxStart[i] > 1 && (split < 0 || boxPixels[i] > boxPixels[split])) {
+                    split = i;
+                }
+            }
+            if (split < 0) {
+                break; // Every occupied bin is its own color
+            }
+            int start = boxStart[split];
+            int end = boxEnd[split];
+            sortByWidestChannel(start, end);
+            // Median by pixel count, keeping at least one bin on each side
+            long half = boxPixels[split] / 2;
+            long seen = 0;
+            int cut = start + 1;
+            for (int i = start; i < end - 1; i++) {
+                seen += histogram[bins[i]];
+                cut = i + 1;
+                if (seen >= half) {
+                    break;
+                }
+            }
+            boxEnd[split] = cut;
+            boxPixels[split] = pixelsIn(start, cut);
+            boxStart[boxes] = cut;
+            boxEnd[boxes] = end;
+            boxPixels[boxes] = pixelsIn(cut, end);
+            boxes++;
+        }
+        for (int i = 0; i < boxes; i++) {
+            long r = 0;
+            long g = 0;
+            long b = 0;
+            long n = 0;
+            for (int j = boxStart[i]; j < boxEnd[i]; j++) {
+                int bin = bins[j];
+                int count = histogram[bin];
+                r += (long) (bin >> 10) * count;
+                g += (long) ((bin >> 5) & 31) * count;
+                b += (long) (bin & 31) * count;
+                n += count;
+            }
+            int r5 = (int) ((r + n / 2) / n);
+            int g5 = (int) ((g + n / 2) / n);
+            int b5 = (int) ((b + n / 2) / n);
+            paletteBins[i] = (r5 << 10) | (g5 << 5) | b5;
+            palette[i] = (expand(r5) << 16) | (expand(g5) << 8) | expand(b5);
+        }
+        return boxes;
+    }
+
+    // Nearest palette color for every occupied bin
+    private void buildLookup(int occupied, int colors) throws InterruptedException {
+        int bands = Math.max(1, Math.min(parallelism, occupied * colors / (MIN_PIXELS_PER_BAND * 4)));
+        tasks.clear();
+        for (int b = 0; b < bands; b++) {
+            int from = (int) ((long) occupied * b / bands);
+            int to = (int) ((long) occupied * (b + 1) / bands);
+            tasks.add(() -> {
+                for (int i = from; i < to; i++) {
+                    int bin = bins[i];
+                    int best = 0;
+                    int bestDistance = Integer.MAX_VALUE;
+                    for (int c = 0; c < colors && bestDistance > 0; c++) {
+                        int d = distance(bin, paletteBins[c]);
+                        if (d < bestDistance) {
+                            bestDistance = d;
+                            best = c;
+                        }
+                    }
+                    lookup[bin] = best;
+                }
+                return null;
+            });
+        }
+        run(tasks);
+    }
+
+    private void sortByWidestChannel(int start, int end) {
+        int minR = 31, minG = 31, minB = 31, maxR = 0, maxG = 0, maxB = 0;
+        for (int i = start; i < end; i++) {
+            int bin = bins[i];
+            int r = bin >> 10;
+            int g = (bin >> 5) & 31;
+            int b = bin & 31;
+            minR = Math.min(minR, r);
+            maxR = Math.max(maxR, r);
+            minG = Math.min(minG, g);
+            maxG = Math.max(maxG, g);
+            minB = Math.min(minB, b);
+            maxB = Math.max(maxB, b);
+        }
+        int rangeR = maxR - minR;
+        int rangeG = maxG - minG;
+        int rangeB = maxB - minB;
+        int shift = rangeG >= rangeR && rangeG >= rangeB ? 5 : rangeR >= rangeB ? 10 : 0;
+        for (int i = start; i < end; i++) {
+            int bin = bins[i];
+            sortKeys[i] = ((long) ((bin >> shift) & 31) << 15) | bin;
+        }
+        Arrays.sort(sortKeys, start, end);
+        for (int i = start; i < end; i++) {
+            bins[i] = (int) (sortKeys[i] & (BIN_COUNT - 1));
+        }
+    }
+
+    private long pixelsIn(int start, int end) {
+        long pixels = 0;
+        for (int i = start; i < end; i++) {
+            pixels += histogram[bins[i]];
+        }
+        return pixels;
+    }
+
+    private void run(List<Callable<Void>> work) throws InterruptedException {
+        if (executor == null || work.size() == 1) {
+            for (int i = 0, n = work.size(); i < n; i++) {
+                call(work.get(i));
+            }
+            return;
+        }
+        List<Future<Void>> futures = executor.invokeAll(work);
+        for (int i = 0, n = futures.size(); i < n; i++) {
+            try {
+                futures.get(i).get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Quantizer band failed", e.getCause());
+            }
+        }
+    }
+
+    private static void call(Callable<Void> task) {
+        try {
+            task.call();
+        } catch (Exception e) {
+            throw new IllegalStateException("Quantizer band failed", e);
+        }
+    }
+
+    static int rgb555(int argb) {
+        return ((argb >> 9) & 0x7C00) | ((argb >> 6) & 0x3E0) | ((argb >> 3) & 0x1F);
+    }
+
+    private static int expand(int five) {
+        return (five << 3) | (five >> 2);
+    }
+
+    // Squared distance of two RGB555 colors, green weighted as the eye is most sensitive to it
+    private static int distance(int a, int b) {
+        int dr = (a >> 10) - (b >> 10);
+        int dg = ((a >> 5) & 31) - ((b >> 5) & 31);
+        int db = (a & 31) - (b & 31);
+        return 3 * dr * dr + 4 * dg * dg + 2 * db * db;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.aremotionfilters;
+
+import java.util.Arrays;
+
+/**
+ * Per-frame feature vector of both hands, computed once from the pose landmarks and shared by
+ * every gesture rule.
+ *
+ * Landmarks are set by ML Kit {@code PoseLandmark} type (image pixels, Y grows downwards, plus the
+ * in-frame likelihood). {@link #compute()} then derives, for each hand, joint angles and distances
+ * that are normalized by the length of that forearm, so rules work the same at every analysis
+ * resolution and distance from the camera. Everything lives in primitive arrays that are reused
+ * from frame to frame. Features that cannot be computed (landmark missing) are {@link Float#NaN},
+ * which fails every comparison a rule makes.
+ *
+ * Not thread-safe.
+ */
+public class PoseFeatures {
+
+    // ML Kit PoseLandmark types
+    public static final int LANDMARK_COUNT = 33;
+    public static final int LEFT_SHOULDER = 11;
+    public static final int RIGHT_SHOULDER = 12;
+    public static final int LEFT_ELBOW = 13;
+    public static final int RIGHT_ELBOW = 14;
+    public static final int LEFT_WRIST = 15;
+    public static final int RIGHT_WRIST = 16;
+    public static final int LEFT_PINKY = 17;
+    public static final int RIGHT_PINKY = 18;
+    public static final int LEFT_INDEX = 19;
+    public static final int RIGHT_INDEX = 20;
+    public static final int LEFT_THUMB = 21;
+    public static final int RIGHT_THUMB = 22;
+
+    // Hands, as seen by the person (ML Kit's LEFT/RIGHT)
+    public static final int HAND_LEFT = 0;
+    public static final int HAND_RIGHT = 1;
+    public static final int HAND_COUNT = 2;
+
+    /** Lowest in-frame likelihood of the wrist, elbow and finger landmarks. */
+    public static final int LIKELIHOOD = 0;
+    /** Shoulder-elbow-wrist angle in degrees; 180 is a straight arm. */
+    public static final int ELBOW_ANGLE = 1;
+    /** Effect rotation that follows the forearm, as {@link GestureClassifier#forearmRotationDegrees}. */
+    public static final int FOREARM_ROTATION = 2;
+    /** How far the thumb tip is above the wrist, in forearm lengths. */
+    public static final int THUMB_RISE = 3;
+    /** How far the index finger tip is above the wrist, in forearm lengths. */
+    public static final int INDEX_RISE = 4;
+    /** How far the pinky tip is above the wrist, in forearm lengths. */
+    public static final int PINKY_RISE = 5;
+    /** Distance between thumb and index tips, in forearm lengths. */
+    public static final int THUMB_INDEX_SPREAD = 6;
+    /** How far the wrist is above the elbow, in forearm lengths (1 = forearm pointing straight up). */
+    public static final int WRIST_ABOVE_ELBOW = 7;
+    /** How far the wrist is above the shoulder, in forearm lengths. */
+    public static final int WRIST_ABOVE_SHOULDER = 8;
+    /** Horizontal wrist offset from the elbow, in forearm lengths (positive = image right). */
+    public static final int WRIST_SIDE = 9;
+    /** Wrist position in image pixels, used as the effect anchor. */
+    public static final int WRIST_X = 10;
+    public static final int WRIST_Y = 11;
+    public static final int FEATURE_COUNT = 12;
+
+    private static final int[] SHOULDER = {LEFT_SHOULDER, RIGHT_SHOULDER};
+    private static final int[] ELBOW = {LEFT_ELBOW, RIGHT_ELBOW};
+    private static final int[] WRIST = {LEFT_WRIST, RIGHT_WRIST};
+    private static final int[] THUMB = {LEFT_THUMB, RIGHT_THUMB};
+    private static final int[] INDEX = {LEFT_INDEX, RIGHT_INDEX};
+    private static final int[] PINKY = {LEFT_PINKY, RIGHT_PINKY};
+
+    private final float[] landmarkX = new float[LANDMARK_COUNT];
+    private final float[] landmarkY = new float[LANDMARK_COUNT];
+    private final float[] likelihood = new float[LANDMARK_COUNT];
+    private final float[] features = new float[HAND_COUNT * FEATURE_COUNT];
+
+    public PoseFeatures() {
+        clear();
+    }
+
+    /** Forgets all landmarks; call before setting the landmarks of a new frame. */
+    public void clear() {
+        Arrays.fill(landmarkX, Float.NaN);
+        Arrays.fill(landmarkY, Float.NaN);
+        Arrays.fill(likelihood, 0f);
+        Arrays.fill(features, Float.NaN);
+    }
+
+    public void setLandmark(int type, float x, float y, float inFrameLikelihood) {
+        if (type < 0 || type >= LANDMARK_COUNT) {
+            return;
+        }
+        landmarkX[type] = x;
+        landmarkY[type] = y;
+        likelihood[type] = inFrameLikelihood;
+    }
+
+    /** Derives the features of both hands from the landmarks set since {@link #clear()}. */
+    public void compute() {
+        for (int hand = 0; hand < HAND_COUNT; hand++) {
+            computeHand(hand);
+        }
+    }
+
+    /** Feature {@code feature} of {@code hand}; NaN if it could not be computed. */
+    public float get(int hand, int feature) {
+        return features[hand * FEATURE_COUNT + feature];
+    }
+
+    /** Whether the hand's landmarks were found with at least {@code minLikelihood}. */
+    public boolean isHandVisible(int hand, float minLikelihood) {
+        return get(hand, LIKELIHOOD) >= minLikelihood;
+    }
+
+    private void computeHand(int hand) {
+        int base = hand * FEATURE_COUNT;
+        int shoulder = SHOULDER[hand];
+        int elbow = ELBOW[hand];
+        int wrist = WRIST[hand];
+        float wx = landmarkX[wrist];
+        float wy = landmarkY[wrist];
+        float forearm = distance(elbow, wrist);
+        if (Float.isNaN(wx) || !(forearm > 0f)) {
+            Arrays.fill(features, base, base + FEATURE_COUNT, Float.NaN);
+            return; // Without a forearm there is nothing to normalize by
+        }
+        features[base + LIKELIHOOD] = Math.min(Math.min(likelihood[wrist], likelihood[elbow]),
+                Math.min(likelihood[THUMB[hand]], Math.min(likelihood[INDEX[hand]], likelihood[PINKY[hand]])));
+        features[base + ELBOW_ANGLE] = angleDegrees(shoulder, elbow, wrist);
+        features[base + FOREARM_ROTATION] = GestureClassifier.forearmRotationDegrees(wx, wy, landmarkX[elbow], landmarkY[elbow]);
+        features[base + THUMB_RISE] = (wy - landmarkY[THUMB[hand]]) / forearm;
+        features[base + INDEX_RISE] = (wy - landmarkY[INDEX[hand]]) / forearm;
+        features[base + PINKY_RISE] = (wy - landmarkY[PINKY[hand]]) / forearm;
+        features[base + THUMB_INDEX_SPREAD] = distance(THUMB[hand], INDEX[hand]) / forearm;
+        features[base + WRIST_ABOVE_ELBOW] = (landmarkY[elbow] - wy) / forearm;
+        features[base + WRIST_ABOVE_SHOULDER] = (landmarkY[shoulder] - wy) / forearm;
+        features[base + WRIST_SIDE] = (wx - landmarkX[elbow]) / forearm;
+        features[base + WRIST_X] = wx;
+        features[base + WRIST_Y] = wy;
+    }
+
+    private float distance(int a, int b) {
+        float dx = landmarkX[a] - landmarkX[b];
+        float dy = landmarkY[a] - landmarkY[b];
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+
+    // Angle at joint b between the segments to a and c
+    private float angleDegrees(int a, int b, int c) {
+        double ab = Math.atan2(landmarkY[a] - landmarkY[b], landmarkX[a] - landmarkX[b]);
+        double cb = Math.atan2(landmarkY[c] - landmarkY[b], landmarkX[c] - landmarkX[b]);
+        double angle = Math.abs(Math.toDegrees(ab - cb));
+        return (float) (angle > 180 ? 360 - angle : angle);
+    }
+}
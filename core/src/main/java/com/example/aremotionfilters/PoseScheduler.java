@@ -0,0 +1,122 @@
+package com.example.aremotionfilters;
+
+/**
+ * Decides on which analysis frames the (slow) pose detector should run.
+ *
+ * Face detection runs on every frame. Pose detection runs once every {@code poseInterval}
+ * frames, where the interval is tuned from the measured latency of both detectors so that the
+ * pose cost, amortized over the interval, fits inside the target frame budget. Between pose
+ * runs the analyzer reuses the last pose result as long as it is not older than
+ * {@link #getMaxPoseAgeNanos()}.
+ *
+ * All methods are synchronized: frames are scheduled on the camera executor while latencies are
+ * reported from ML Kit completion callbacks.
+ */
+public class PoseScheduler {
+
+    // Weight of a new sample in the exponentially weighted latency averages
+    private static final float LATENCY_SMOOTHING = 0.2f;
+
+    private final long frameBudgetNanos;
+    private final int minInterval;
+    private final int maxInterval;
+    private final long maxPoseAgeNanos;
+
+    private float avgFaceLatencyNanos = -1f;
+    private float avgPoseLatencyNanos = -1f;
+    private int poseInterval;
+    private int framesSinceLastPose;
+    private boolean poseInFlight;
+
+    /**
+     * @param frameBudgetNanos Target time per analyzed frame (e.g. 33ms for 30 fps).
+     * @param minInterval Smallest allowed interval; 1 means pose may run on every frame.
+     * @param maxInterval Largest allowed interval between two pose runs.
+     * @param maxPoseAgeNanos How long a pose result may be reused before it is considered stale.
+     */
+    public PoseScheduler(long frameBudgetNanos, int minInterval, int maxInterval, long maxPoseAgeNanos) {
+        if (minInterval < 1 || maxInterval < minInterval) {
+            throw new IllegalArgumentException("Invalid pose interval range: " + minInterval + ".." + maxInterval);
+        }
+        this.frameBudgetNanos = frameBudgetNanos;
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.maxPoseAgeNanos = maxPoseAgeNanos;
+        // Until we have measurements, start conservatively in the middle of the range
+        this.poseInterval = (minInterval + maxInterval) / 2;
+        // Make sure the very first frame gets a pose
+        this.framesSinceLastPose = maxInterval;
+    }
+
+    /**
+     * Called once per analyzed frame. Returns true if pose detection should run on this frame,
+     * in which case the caller must later report {@link #onPoseLatency(long)} or {@link #onPoseFailed()}.
+     */
+    public synchronized boolean shouldRunPose() {
+        framesSinceLastPose++;
+        if (poseInFlight || framesSinceLastPose < poseInterval) {
+            return false;
+        }
+        framesSinceLastPose = 0;
+        poseInFlight = true;
+        return true;
+    }
+
+    public synchronized void onFaceLatency(long latencyNanos) {
+        avgFaceLatencyNanos = smooth(avgFaceLatencyNanos, latencyNanos);
+        retune();
+    }
+
+    public synchronized void onPoseLatency(long latencyNanos) {
+        poseInFlight = false;
+        avgPoseLatencyNanos = smooth(avgPoseLatencyNanos, latencyNanos);
+        retune();
+    }
+
+    public synchronized void onPoseFailed() {
+        poseInFlight = false;
+    }
+
+    /** Whether a pose captured at {@code poseTimestampNanos} may still be reused at {@code nowNanos}. */
+    public boolean isPoseFresh(long poseTimestampNanos, long nowNanos) {
+        return nowNanos - poseTimestampNanos <= maxPoseAgeNanos;
+    }
+
+    public synchronized int getPoseInterval() {
+        return poseInterval;
+    }
+
+    public synchronized float getAverageFaceLatencyMillis() {
+        return avgFaceLatencyNanos < 0 ? 0f : avgFaceLatencyNanos / 1_000_000f;
+    }
+
+    public synchronized float getAveragePoseLatencyMillis() {
+        return avgPoseLatencyNanos < 0 ? 0f : avgPoseLatencyNanos / 1_000_000f;
+    }
+
+    public long getMaxPoseAgeNanos() {
+        return maxPoseAgeNanos;
+    }
+
+    private static float smooth(float average, long sample) {
+        return average < 0 ? sample : average + LATENCY_SMOOTHING * (sample - average);
+    }
+
+    private void retune() {
+        if (avgFaceLatencyNanos < 0 || avgPoseLatencyNanos < 0) {
+            return;
+        }
+        // Time left in each frame once face detection has run. The extra time a pose frame takes
+        // has to be paid back by the face-only frames that follow it:
+        // (pose + (N - 1) * face) / N <= budget  =>  N >= (pose - face) / (budget - face)
+        float headroom = frameBudgetNanos - avgFaceLatencyNanos;
+        float poseOverhead = Math.max(0f, avgPoseLatencyNanos - avgFaceLatencyNanos);
+        int interval;
+        if (headroom <= 0f) {
+            interval = maxInterval;
+        } else {
+            interval = Math.max(1, (int) Math.ceil(poseOverhead / headroom));
+        }
+        poseInterval = Math.max(minInterval, Math.min(maxInterval, interval));
+    }
+}
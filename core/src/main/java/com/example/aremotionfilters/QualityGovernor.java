@@ -0,0 +1,161 @@
+package com.example.aremotionfilters;
+
+/**
+ * Chooses the quality tier of the camera/ML pipeline from the device's thermal and battery state,
+ * so that a hot or nearly empty device sheds work gradually instead of having its analysis frame
+ * rate collapse under throttling.
+ *
+ * Tiers, from best to cheapest:
+ * <ol>
+ *     <li>{@link #TIER_FULL}: everything on, analysis at camera rate.</li>
+ *     <li>{@link #TIER_REDUCED_RATE}: analysis frame rate capped.</li>
+ *     <li>{@link #TIER_NO_POSE}: lower cap, pose detection (and with it gestures) off.</li>
+ *     <li>{@link #TIER_MINIMAL}: lowest cap, face detector only looks for larger faces.</li>
+ * </ol>
+ *
+ * Worse conditions take effect on the next {@link #update}. Better ones only restore one tier at a
+ * time, each after the conditions have allowed it for {@code recoveryNanos}, and battery thresholds
+ * must be cleared by a margin, so a device hovering at a threshold does not flip between tiers.
+ *
+ * Thermal status values are those of {@code PowerManager.THERMAL_STATUS_*}. Not thread-safe.
+ */
+public class QualityGovernor {
+
+    public static final int TIER_FULL = 0;
+    public static final int TIER_REDUCED_RATE = 1;
+    public static final int TIER_NO_POSE = 2;
+    public static final int TIER_MINIMAL = 3;
+    public static final int TIER_COUNT = 4;
+
+    private static final String[] TIER_NAMES = {"full", "reduced_rate", "no_pose", "minimal"};
+    // Analysis frames per second per tier; 0 = no cap
+    private static final int[] TIER_MAX_FPS = {0, 15, 10, 5};
+    // Multiplier for the detector's minimum face size per tier
+    private static final float[] TIER_MIN_FACE_SIZE_SCALE = {1f, 1f, 1f, 1.5f};
+
+    // PowerManager.THERMAL_STATUS_* (API 29)
+    public static final int THERMAL_STATUS_NONE = 0;
+    public static final int THERMAL_STATUS_LIGHT = 1;
+    public static final int THERMAL_STATUS_MODERATE = 2;
+    public static final int THERMAL_STATUS_SEVERE = 3;
+    public static final int THERMAL_STATUS_CRITICAL = 4;
+
+    // Battery percentage (while not charging) at or below which a tier is required
+    private static final int LOW_BATTERY_PERCENT = 15;
+    private static final int CRITICAL_BATTERY_PERCENT = 5;
+    // Extra percentage the battery must be above a threshold before the tier is restored
+    private static final int BATTERY_RECOVERY_MARGIN_PERCENT = 5;
+
+    public static final long DEFAULT_RECOVERY_NANOS = 30_000_000_000L;
+
+    private final long recoveryNanos;
+
+    private int tier = TIER_FULL;
+    private long lastChangeNanos;
+    // Since when conditions have allowed a better tier than the current one; -1 if they do not
+    private long betterSinceNanos = -1L;
+    private String reason = "initial";
+
+    public QualityGovernor() {
+        this(DEFAULT_RECOVERY_NANOS);
+    }
+
+    public QualityGovernor(long recoveryNanos) {
+        this.recoveryNanos = recoveryNanos;
+    }
+
+    /**
+     * Re-evaluates the tier. Call whenever a condition changes and periodically, so recovery is
+     * noticed without a new event. Returns true if the tier changed.
+     *
+     * @param nowNanos       Monotonic time.
+     * @param thermalStatus  {@code PowerManager.getCurrentThermalStatus()}, or
+     *                       {@link #THERMAL_STATUS_NONE} where unsupported.
+     * @param batteryPercent Battery level 0..100, or negative if unknown.
+     * @param charging       Whether the device is charging.
+     * @param powerSave      Whether battery saver is on.
+     */
+    public boolean update(long nowNanos, int thermalStatus, int batteryPercent, boolean charging, boolean powerSave) {
+        int required = requiredTier(thermalStatus, batteryPercent, charging, powerSave, 0);
+        if (required > tier) {
+            setTier(required, nowNanos, describe(thermalStatus, batteryPercent, charging, powerSave));
+            return true;
+        }
+        int allowed = requiredTier(thermalStatus, batteryPercent, charging, powerSave, BATTERY_RECOVERY_MARGIN_PERCENT);
+        if (allowed >= tier) {
+            betterSinceNanos = -1L;
+            return false;
+        }
+        if (betterSinceNanos < 0) {
+            betterSinceNanos = nowNanos;
+        }
+        if (nowNanos - betterSinceNanos < recoveryNanos || nowNanos - lastChangeNanos < recoveryNanos) {
+            return false;
+        }
+        setTier(tier - 1, nowNanos, "recovered: " + describe(thermalStatus, batteryPercent, charging, powerSave));
+        betterSinceNanos = nowNanos; // The next tier up needs another full recovery period
+        return true;
+    }
+
+    public int getTier() {
+        return tier;
+    }
+
+    /** Why the tier last changed, for logs. */
+    public String getReason() {
+        return reason;
+    }
+
+    public static String tierName(int tier) {
+        return TIER_NAMES[tier];
+    }
+
+    /** Analysis frames per second allowed in {@code tier}; 0 if not capped. */
+    public static int maxAnalysisFps(int tier) {
+        return TIER_MAX_FPS[tier];
+    }
+
+    public static boolean isPoseEnabled(int tier) {
+        return tier < TIER_NO_POSE;
+    }
+
+    /** Factor for the face detector's minimum face size in {@code tier}. */
+    public static float minFaceSizeScale(int tier) {
+        return TIER_MIN_FACE_SIZE_SCALE[tier];
+    }
+
+    private static int requiredTier(int thermalStatus, int batteryPercent, boolean charging, boolean powerSave,
+                                    int batteryMargin) {
+        int required = TIER_FULL;
+        if (thermalStatus >= THERMAL_STATUS_CRITICAL) {
+            required = TIER_MINIMAL;
+        } else if (thermalStatus == THERMAL_STATUS_SEVERE) {
+            required = TIER_NO_POSE;
+        } else if (thermalStatus == THERMAL_STATUS_MODERATE) {
+            required = TIER_REDUCED_RATE;
+        }
+        if (powerSave) {
+            required = Math.max(required, TIER_REDUCED_RATE);
+        }
+        if (!charging && batteryPercent >= 0) {
+            if (batteryPercent <= CRITICAL_BATTERY_PERCENT + batteryMargin) {
+                required = Math.max(required, TIER_MINIMAL);
+            } else if (batteryPercent <= LOW_BATTERY_PERCENT + batteryMargin) {
+                required = Math.max(required, TIER_NO_POSE);
+            }
+        }
+        return required;
+    }
+
+    private static String describe(int thermalStatus, int batteryPercent, boolean charging, boolean powerSave) {
+        return "thermal " + thermalStatus + ", battery " + batteryPercent + "%" + (charging ? " charging" : "")
+                + (powerSave ? ", power save" : "");
+    }
+
+    private void setTier(int newTier, long nowNanos, String reason) {
+        tier = newTier;
+        lastChangeNanos = nowNanos;
+        betterSinceNanos = -1L;
+        this.reason = reason;
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.aremotionfilters;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Raw detector output for one image or camera frame: face boxes with their detector tracking ID
+ * and classification probabilities, and the pose landmarks if a pose was found. Coordinates are
+ * upright image pixels. Missing probabilities are {@link Float#NaN}, as in
+ * {@link EmotionClassifier}; a missing tracking ID is -1.
+ *
+ * Reused between frames. Not thread-safe, except that the faces and the pose may be written by
+ * two different threads at once, as a {@link DetectionBackend} completing them separately does.
+ */
+public class RawDetections {
+
+    private int faceCount;
+    private int[] detectorIds = new int[4];
+    private float[] boxes = new float[4 * 4]; // left, top, right, bottom per face
+    private float[] probabilities = new float[3 * 4]; // smiling, left eye open, right eye open per face
+    private float[] headEulerAnglesZ = new float[4];
+    private final float[] landmarks = new float[3 * PoseFeatures.LANDMARK_COUNT]; // x, y, in-frame likelihood
+    private boolean hasPose;
+
+    public void clear() {
+        clearFaces();
+        clearPose();
+    }
+
+    public void clearFaces() {
+        faceCount = 0;
+    }
+
+    public void clearPose() {
+        hasPose = false;
+    }
+
+    public void addFace(float left, float top, float right, float bottom,
+                        float smilingProb, float leftEyeOpenProb, float rightEyeOpenProb, float headEulerAngleZ) {
+        addFace(-1, left, top, right, bottom, smilingProb, leftEyeOpenProb, rightEyeOpenProb, headEulerAngleZ);
+    }
+
+    public void addFace(int detectorId, float left, float top, float right, float bottom,
+                        float smilingProb, float leftEyeOpenProb, float rightEyeOpenProb, float headEulerAngleZ) {
+        if (faceCount == headEulerAnglesZ.length) {
+            int capacity = faceCount * 2;
+            detectorIds = Arrays.copyOf(detectorIds, capacity);
+            boxes = Arrays.copyOf(boxes, 4 * capacity);
+            probabilities = Arrays.copyOf(probabilities, 3 * capacity);
+            headEulerAnglesZ = Arrays.copyOf(headEulerAnglesZ, capacity);
+        }
+        int i = faceCount++;
+        detectorIds[i] = detectorId;
+        boxes[4 * i] = left;
+        boxes[4 * i + 1] = top;
+        boxes[4 * i + 2] = right;
+        boxes[4 * i + 3] = bottom;
+        probabilities[3 * i] = smilingProb;
+        probabilities[3 * i + 1] = leftEyeOpenProb;
+        probabilities[3 * i + 2] = rightEyeOpenProb;
+        headEulerAnglesZ[i] = headEulerAngleZ;
+    }
+
+    /** Sets one pose landmark ({@code PoseFeatures} landmark type); marks the image as having a pose. */
+    public void setLandmark(int type, float x, float y, float inFrameLikelihood) {
+        if (type < 0 || type >= PoseFeatures.LANDMARK_COUNT) {
+            return;
+        }
+        if (!hasPose) {
+            Arrays.fill(landmarks, Float.NaN);
+            hasPose = true;
+        }
+        landmarks[3 * type] = x;
+        landmarks[3 * type + 1] = y;
+        landmarks[3 * type + 2] = inFrameLikelihood;
+    }
+
+    /** Replaces this pose with the pose of {@code other}; the faces are left alone. */
+    public void copyPoseFrom(RawDetections other) {
+        hasPose = other.hasPose;
+        System.arraycopy(other.landmarks, 0, landmarks, 0, landmarks.length);
+    }
+
+    public int getFaceCount() {
+        return faceCount;
+    }
+
+    public boolean hasPose() {
+        return hasPose;
+    }
+
+    /**
+     * Hands every face to {@code tracker} as the detections of a new detection frame of
+     * {@code imageWidth} x {@code imageHeight}; the caller ends the frame.
+     */
+    public void addFacesTo(FaceTracker tracker, int imageWidth, int imageHeight) {
+        tracker.beginDetections(imageWidth, imageHeight);
+        for (int i = 0; i < faceCount; i++) {
+            tracker.addDetection(detectorIds[i], boxes[4 * i], boxes[4 * i + 1], boxes[4 * i + 2], boxes[4 * i + 3],
+                    probabilities[3 * i], probabilities[3 * i + 1], probabilities[3 * i + 2], headEulerAnglesZ[i]);
+        }
+    }
+
+    /**
+     * Classifies every face on its own, without history, and adds one FaceData per face to
+     * {@code out}, tracking ID = index in this detection.
+     */
+    public void collectFaces(FaceDataPool pool, List<FaceData> out) {
+        for (int i = 0; i < faceCount; i++) {
+            int emotion = EmotionClassifier.classify(probabilities[3 * i], probabilities[3 * i + 1], probabilities[3 * i + 2]);
+            out.add(pool.acquire()
+                    .setFace(boxes[4 * i], boxes[4 * i + 1], boxes[4 * i + 2], boxes[4 * i + 3], emotion, headEulerAnglesZ[i])
+                    .setTrackingId(i));
+        }
+    }
+
+    /** Loads the pose into {@code features} and computes them; leaves them empty without a pose. */
+    public void applyPose(PoseFeatures features) {
+        features.clear();
+        if (hasPose) {
+            for (int type = 0; type < PoseFeatures.LANDMARK_COUNT; type++) {
+                if (Float.isNaN(landmarks[3 * type])) {
+                    continue; // Not reported by the detector
+                }
+                features.setLandmark(type, landmarks[3 * type], landmarks[3 * type + 1], landmarks[3 * type + 2]);
+            }
+        }
+        features.compute();
+    }
+}
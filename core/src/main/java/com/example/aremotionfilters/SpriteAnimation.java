@@ -0,0 +1,115 @@
+package com.example.aremotionfilters;
+
+import java.util.Arrays;
+
+/**
+ * Frame table of an animated effect whose frames are packed into one atlas bitmap.
+ *
+ * Frames all have the same size and sit row by row in a near-square grid. Each cell has a
+ * transparent gutter of {@link #getGutter()} pixels on every side, so filtering a frame (when the
+ * atlas is pre-scaled or the frame is drawn scaled) does not pick up its neighbours. Playback is by
+ * elapsed time: {@link #frameAt(long)} maps any timestamp to the frame that is shown then, looping
+ * over the total duration, so the animation runs at the same speed however often it is drawn.
+ * Immutable and allocation-free after construction.
+ */
+public final class SpriteAnimation {
+
+    private final int frameWidth;
+    private final int frameHeight;
+    private final int gutter;
+    private final int columns;
+    private final int rows;
+    // End of each frame, relative to the start of the loop
+    private final long[] frameEndNanos;
+    private final long durationNanos;
+
+    /**
+     * @param frameWidth  Width of one frame in the atlas, without gutter.
+     * @param frameHeight Height of one frame in the atlas, without gutter.
+     * @param gutter      Transparent pixels around each frame.
+     * @param frameMillis How long each frame is shown; its length is the frame count.
+     */
+    public SpriteAnimation(int frameWidth, int frameHeight, int gutter, int[] frameMillis) {
+        if (frameWidth <= 0 || frameHeight <= 0 || gutter < 0) {
+            throw new IllegalArgumentException("Invalid frame size " + frameWidth + "x" + frameHeight + " gutter " + gutter);
+        }
+        if (frameMillis.length == 0) {
+            throw new IllegalArgumentException("Animation needs at least one frame");
+        }
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+        this.gutter = gutter;
+        this.columns = (int) Math.ceil(Math.sqrt(frameMillis.length));
+        this.rows = (frameMillis.length + columns - 1) / columns;
+        this.frameEndNanos = new long[frameMillis.length];
+        long end = 0L;
+        for (int i = 0; i < frameMillis.length; i++) {
+            if (frameMillis[i] <= 0) {
+                throw new IllegalArgumentException("Frame " + i + " has duration " + frameMillis[i] + " ms");
+            }
+            end += frameMillis[i] * 1_000_000L;
+            frameEndNanos[i] = end;
+        }
+        this.durationNanos = end;
+    }
+
+    /** Frame shown at {@code timeNanos}, for a loop that started at time 0. Any time base works. */
+    public int frameAt(long timeNanos) {
+        long t = Math.floorMod(timeNanos, durationNanos);
+        int frame = Arrays.binarySearch(frameEndNanos, t);
+        // Exact hit: t is the end of that frame, i.e. the start of the next one
+        return frame >= 0 ? frame + 1 : -frame - 1;
+    }
+
+    public int getFrameCount() {
+        return frameEndNanos.length;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /** How long {@code frame} is shown, in milliseconds. */
+    public int getFrameMillis(int frame) {
+        long start = frame == 0 ? 0L : frameEndNanos[frame - 1];
+        return (int) ((frameEndNanos[frame] - start) / 1_000_000L);
+    }
+
+    /** Left edge of {@code frame} in the atlas, inside its gutter. */
+    public int getFrameLeft(int frame) {
+        return (frame % columns) * (frameWidth + 2 * gutter) + gutter;
+    }
+
+    /** Top edge of {@code frame} in the atlas, inside its gutter. */
+    public int getFrameTop(int frame) {
+        return (frame / columns) * (frameHeight + 2 * gutter) + gutter;
+    }
+
+    public int getFrameWidth() {
+        return frameWidth;
+    }
+
+    public int getFrameHeight() {
+        return frameHeight;
+    }
+
+    public int getGutter() {
+        return gutter;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getAtlasWidth() {
+        return columns * (frameWidth + 2 * gutter);
+    }
+
+    public int getAtlasHeight() {
+        return rows * (frameHeight + 2 * gutter);
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.aremotionfilters;
+
+/**
+ * LRU cache of pre-scaled sprite variants keyed by effect and quantized target size, bounded by a
+ * byte budget.
+ *
+ * Target sizes are rounded up to quarter-octave buckets ({@link #bucketSize(int)}), so a cached
+ * variant is never more than ~19% larger than the rectangle it is drawn into and the draw itself
+ * is a near 1:1 blit. The key space ({@code effectCount * BUCKET_COUNT}) is small and fixed, so
+ * entries live in flat arrays and {@link #get(int)} does not allocate. The cache only does the
+ * bookkeeping; creating variants is up to the caller, typically on a background thread:
+ * {@link #request(int)} says whether a variant still needs to be generated and {@link #put} hands
+ * it over. Thread-safe.
+ *
+ * @param <V> Variant type (a Bitmap on Android).
+ */
+public class SpriteVariantCache<V> {
+
+    /** Called for every variant that is evicted or cleared. */
+    public interface EvictionListener<V> {
+        void onEvicted(V value);
+    }
+
+    public static final int MIN_BUCKET_SIZE = 16;
+    public static final int BUCKETS_PER_OCTAVE = 4;
+    // 16 px .. 4096 px
+    public static final int BUCKET_COUNT = 8 * BUCKETS_PER_OCTAVE + 1;
+
+    private final int effectCount;
+    private final Object[] values;
+    private final long[] bytes;
+    private final long[] lastUsed;
+    private final boolean[] pending;
+    private final EvictionListener<V> evictionListener;
+    private long maxBytes;
+    private long sizeBytes;
+    private long useCounter;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public SpriteVariantCache(int effectCount, long maxBytes, EvictionListener<V> evictionListener) {
+        this.effectCount = effectCount;
+        this.maxBytes = maxBytes;
+        this.evictionListener = evictionListener;
+        int keyCount = effectCount * BUCKET_COUNT;
+        values = new Object[keyCount];
+        bytes = new long[keyCount];
+        lastUsed = new long[keyCount];
+        pending = new boolean[keyCount];
+    }
+
+    /** Smallest bucket whose size is at least {@code size} pixels. */
+    public static int sizeBucket(float size) {
+        if (!(size > MIN_BUCKET_SIZE)) {
+            return 0;
+        }
+        double octaves = Math.log(size / MIN_BUCKET_SIZE) / Math.log(2);
+        int bucket = (int) Math.ceil(octaves * BUCKETS_PER_OCTAVE - 1e-6);
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    /** Pixel size (longer sprite side) that variants in {@code bucket} are scaled to. */
+    public static int bucketSize(int bucket) {
+        return (int) Math.round(MIN_BUCKET_SIZE * Math.pow(2, (double) bucket / BUCKETS_PER_OCTAVE));
+    }
+
+    public int key(int effect, int bucket) {
+        if (effect < 0 || effect >= effectCount) {
+            throw new IllegalArgumentException("effect out of range: " + effect);
+        }
+        return effect * BUCKET_COUNT + bucket;
+    }
+
+    public static int effectOf(int key) {
+        return key / BUCKET_COUNT;
+    }
+
+    public static int bucketOf(int key) {
+        return key % BUCKET_COUNT;
+    }
+
+    /** Returns the cached variant and marks it most recently used, or null on a miss. */
+    @SuppressWarnings("unchecked")
+    public synchronized V get(int key) {
+        Object value = values[key];
+        if (value == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        lastUsed[key] = ++useCounter;
+        return (V) value;
+    }
+
+    /**
+     * Cached variant of {@code effect} closest to {@code bucket}: the smallest larger one, else the
+     * largest smaller one; null if there is none. Meant as a stand-in while the exact variant is
+     * generated, so it neither counts as a hit nor marks the variant as used.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V getNearest(int effect, int bucket) {
+        int first = key(effect, 0);
+        for (int b = bucket; b < BUCKET_COUNT; b++) {
+            if (values[first + b] != null) {
+                return (V) values[first + b];
+            }
+        }
+        for (int b = bucket - 1; b >= 0; b--) {
+            if (values[first + b] != null) {
+                return (V) values[first + b];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Marks {@code key} as being generated. Returns false if the variant is already cached or
+     * another request for it is in flight, so each variant is generated at most once.
+     */
+    public synchronized boolean request(int key) {
+        if (values[key] != null || pending[key]) {
+            return false;
+        }
+        pending[key] = true;
+        return true;
+    }
+
+    /** Clears the in-flight mark of a request that could not be completed. */
+    public synchronized void cancel(int key) {
+        pending[key] = false;
+    }
+
+    /**
+     * Stores a generated variant and evicts least recently used variants until the cache fits its
+     * budget again. A variant larger than the whole budget is not kept.
+     */
+    public void put(int key, V value, long valueBytes) {
+        Object evictedSameKey;
+        long budget;
+        synchronized (this) {
+            pending[key] = false;
+            evictedSameKey = values[key];
+            if (evictedSameKey != null) {
+                sizeBytes -= bytes[key];
+            }
+            values[key] = value;
+            bytes[key] = valueBytes;
+            lastUsed[key] = ++useCounter;
+            sizeBytes += valueBytes;
+            budget = maxBytes;
+        }
+        if (evictedSameKey != null && evictedSameKey != value) {
+            notifyEvicted(evictedSameKey);
+        }
+        trimToSize(budget);
+    }
+
+    /** Evicts least recently used variants until at most {@code targetBytes} are cached. */
+    public void trimToSize(long targetBytes) {
+        while (true) {
+            Object evicted;
+            synchronized (this) {
+                if (sizeBytes <= targetBytes && targetBytes >= 0) {
+                    return;
+                }
+                int victim = -1;
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != null && (victim < 0 || lastUsed[i] < lastUsed[victim])) {
+                        victim = i;
+                    }
+                }
+                if (victim < 0) {
+                    return;
+                }
+                evicted = values[victim];
+                values[victim] = null;
+                sizeBytes -= bytes[victim];
+                bytes[victim] = 0;
+                evictionCount++;
+            }
+            notifyEvicted(evicted);
+        }
+    }
+
+    /** Evicts every cached variant. */
+    public void clear() {
+        trimToSize(-1);
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        synchronized (this) {
+            this.maxBytes = maxBytes;
+        }
+        trimToSize(maxBytes);
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void notifyEvicted(Object value) {
+        if (evictionListener != null) {
+            evictionListener.onEvicted((V) value);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.aremotionfilters;
+
+/**
+ * Face and pose detection for one still image, as used by {@link BatchProcessor}. The image type
+ * is up to the implementation, e.g. an Android Bitmap for ML Kit or anything at all for
+ * {@link SyntheticStillDetector} on a plain JVM.
+ *
+ * Called from several batch workers at once; implementations must be thread-safe.
+ */
+public interface StillImageDetector<I> {
+
+    /**
+     * Detects faces and the pose in {@code image}, {@code width} x {@code height} upright pixels,
+     * and adds them to {@code out}, which is already cleared.
+     *
+     * @param index Position of the image in the batch input.
+     *
+     * @throws Exception if detection failed; the image is reported as failed and the batch goes on.
+     */
+    void detect(int index, I image, int width, int height, RawDetections out) throws Exception;
+}
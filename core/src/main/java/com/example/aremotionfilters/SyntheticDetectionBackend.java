@@ -0,0 +1,320 @@
+package com.example.aremotionfilters;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Deterministic load generator standing in for ML Kit, so the live result path can be stress
+ * tested and benchmarked on a plain JVM with any number of faces.
+ *
+ * What a frame contains depends only on the seed, the settings and the frame's timestamp, never on
+ * the image, the thread or which frames were skipped:
+ * <ul>
+ * <li>0 to {@value #MAX_FACES} faces on a grid over the frame, each moving around its cell in one
+ *     of the {@code MOTION_*} patterns with its own phase, and keeping its detector tracking ID;</li>
+ * <li>each face's emotion changes {@code emotionChangesPerSecond} times a second on average, to
+ *     a random emotion (possibly the same), with clear-cut classification probabilities;</li>
+ * <li>a pose with both arms resting, except during gesture bursts: every {@code burstPeriodNanos}
+ *     one hand shows a peace sign, a thumbs up or a wave (in that rotation) for
+ *     {@code burstDurationNanos}.</li>
+ * </ul>
+ * Detection runs on the calling thread, or on an executor after a simulated latency, faces and
+ * pose in parallel as ML Kit runs them. Settings may be changed between frames.
+ */
+public class SyntheticDetectionBackend<I> implements DetectionBackend<I> {
+
+    public static final int MAX_FACES = 100;
+
+    public static final int MOTION_STATIC = 0;
+    /** Back and forth horizontally, at constant speed. */
+    public static final int MOTION_DRIFT = 1;
+    /** Circles around the cell center. */
+    public static final int MOTION_ORBIT = 2;
+    /** A new random offset every frame, as a shaky detector would report. */
+    public static final int MOTION_JITTER = 3;
+
+    private static final int[] EMOTIONS = {
+            FaceData.EMOTION_NEUTRAL, FaceData.EMOTION_SMILING, FaceData.EMOTION_EYES_CLOSED,
+            FaceData.EMOTION_LEFT_WINK, FaceData.EMOTION_RIGHT_WINK
+    };
+    private static final int[] BURST_GESTURES = {
+            FaceData.GESTURE_PEACE, FaceData.GESTURE_THUMBS_UP, FaceData.GESTURE_WAVE
+    };
+    private static final float PROBABILITY_HIGH = 0.95f;
+    private static final float PROBABILITY_LOW = 0.05f;
+    private static final float LANDMARK_LIKELIHOOD = 0.9f;
+    // Wave: the forearm swings up to 0.6 rad either side of vertical, twice a second
+    private static final double WAVE_MAX_ANGLE = 0.6;
+    private static final double WAVE_FREQUENCY_HZ = 2.0;
+
+    private final long seed;
+    private volatile int faceCount;
+    private volatile int motion = MOTION_STATIC;
+    private volatile float motionAmplitudePx;
+    private volatile long motionPeriodNanos = 1_000_000_000L;
+    private volatile float emotionChangesPerSecond;
+    private volatile long burstPeriodNanos;
+    private volatile long burstDurationNanos;
+    private volatile Executor executor;
+    private volatile long latencyNanos;
+
+    public SyntheticDetectionBackend(long seed) {
+        this.seed = seed;
+    }
+
+    public void setFaceCount(int faceCount) {
+        if (faceCount < 0 || faceCount > MAX_FACES) {
+            throw new IllegalArgumentException("Face count must be 0.." + MAX_FACES + ": " + faceCount);
+        }
+        this.faceCount = faceCount;
+    }
+
+    public int getFaceCount() {
+        return faceCount;
+    }
+
+    /**
+     * @param motion       {@code MOTION_*} pattern.
+     * @param amplitudePx  Largest offset from the cell center, in frame pixels.
+     * @param periodNanos  Duration of one drift or orbit cycle; ignored by the other patterns.
+     */
+    public void setMotion(int motion, float amplitudePx, long periodNanos) {
+        if (motion < MOTION_STATIC || motion > MOTION_JITTER || amplitudePx < 0f || periodNanos <= 0) {
+            throw new IllegalArgumentException("Invalid motion " + motion + ", amplitude " + amplitudePx
+                    + ", period " + periodNanos);
+        }
+        this.motion = motion;
+        this.motionAmplitudePx = amplitudePx;
+        this.motionPeriodNanos = periodNanos;
+    }
+
+    /** Average emotion changes per face and second; 0 keeps every face's emotion fixed. */
+    public void setEmotionChangeRate(float changesPerSecond) {
+        if (!(changesPerSecond >= 0f)) {
+            throw new IllegalArgumentException("Invalid emotion change rate: " + changesPerSecond);
+        }
+        this.emotionChangesPerSecond = changesPerSecond;
+    }
+
+    /** A gesture for {@code durationNanos} every {@code periodNanos}; a period of 0 turns bursts off. */
+    public void setGestureBursts(long periodNanos, long durationNanos) {
+        if (periodNanos < 0 || durationNanos < 0 || durationNanos > periodNanos) {
+            throw new IllegalArgumentException("Invalid gesture bursts: " + durationNanos + " every " + periodNanos);
+        }
+        this.burstPeriodNanos = periodNanos;
+        this.burstDurationNanos = durationNanos;
+    }
+
+    /**
+     * Runs detection on {@code executor} after parking its thread for {@code latencyNanos}, like a
+     * detector waiting on its accelerator; a null executor runs it on the submitting thread.
+     */
+    public void setExecutor(Executor executor, long latencyNanos) {
+        if (latencyNanos < 0) {
+            throw new IllegalArgumentException("Negative latency: " + latencyNanos);
+        }
+        this.executor = executor;
+        this.latencyNanos = latencyNanos;
+    }
+
+    @Override
+    public Frame<I> newFrame(RawDetections out, Callback callback) {
+        return new SyntheticFrame(out, callback);
+    }
+
+    // The frame in progress lives in fields, so both tasks are created once per slot
+    private final class SyntheticFrame extends Frame<I> {
+        private int width;
+        private int height;
+        private long timestampNanos;
+        private long latency;
+        private final Runnable faceTask = () -> {
+            park(latency);
+            addFaces(width, height, timestampNanos, out);
+            callback.onFacesDone(true);
+            partDone();
+        };
+        private final Runnable poseTask = () -> {
+            park(latency);
+            addPose(width, height, timestampNanos, out);
+            callback.onPoseDone(true);
+            partDone();
+        };
+
+        SyntheticFrame(RawDetections out, Callback callback) {
+            super(out, callback);
+        }
+
+        @Override
+        public void process(I image, int width, int height, long timestampNanos, boolean detectFaces,
+                            boolean detectPose) {
+            Executor executor = SyntheticDetectionBackend.this.executor;
+            if (executor == null) {
+                if (detectFaces) {
+                    addFaces(width, height, timestampNanos, out);
+                    callback.onFacesDone(true);
+                }
+                if (detectPose) {
+                    addPose(width, height, timestampNanos, out);
+                    callback.onPoseDone(true);
+                }
+                callback.onComplete();
+                return;
+            }
+            // Handed to the tasks through the executor, which publishes them
+            this.width = width;
+            this.height = height;
+            this.timestampNanos = timestampNanos;
+            this.latency = latencyNanos;
+            if (!begin(detectFaces, detectPose)) {
+                return;
+            }
+            if (detectFaces) {
+                executor.execute(faceTask);
+            }
+            if (detectPose) {
+                executor.execute(poseTask);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        // Nothing to free; the executor belongs to the caller
+    }
+
+    /** Emotion code of face {@code face} at {@code timestampNanos}. */
+    public int emotionAt(int face, long timestampNanos) {
+        float rate = emotionChangesPerSecond;
+        if (rate == 0f) {
+            return EMOTIONS[(int) (mix(seed, face, 0L) >>> 33) % EMOTIONS.length];
+        }
+        // Faces change at the same rate but not in step
+        double phase = unit(mix(seed, face, -1L));
+        long epoch = (long) Math.floor(timestampNanos / 1e9 * rate + phase);
+        return EMOTIONS[(int) (mix(seed, face, epoch) >>> 33) % EMOTIONS.length];
+    }
+
+    /** Gesture code shown at {@code timestampNanos}, or -1 outside gesture bursts. */
+    public int gestureAt(long timestampNanos) {
+        long period = burstPeriodNanos;
+        if (period == 0 || Math.floorMod(timestampNanos, period) >= burstDurationNanos) {
+            return -1;
+        }
+        return BURST_GESTURES[(int) Math.floorMod(Math.floorDiv(timestampNanos, period), (long) BURST_GESTURES.length)];
+    }
+
+    private void addFaces(int width, int height, long timestampNanos, RawDetections out) {
+        int count = faceCount;
+        if (count == 0) {
+            return;
+        }
+        int columns = Math.max(1, (int) Math.ceil(Math.sqrt(count * (double) width / height)));
+        int rows = (count + columns - 1) / columns;
+        float cellWidth = (float) width / columns;
+        float cellHeight = (float) height / rows;
+        float size = 0.6f * Math.min(cellWidth, cellHeight);
+        for (int i = 0; i < count; i++) {
+            float centerX = (i % columns + 0.5f) * cellWidth;
+            float centerY = (i / columns + 0.5f) * cellHeight;
+            float dx = 0f;
+            float dy = 0f;
+            float amplitude = motionAmplitudePx;
+            double phase = unit(mix(seed, i, -2L));
+            switch (motion) {
+                case MOTION_DRIFT: {
+                    double t = timestampNanos / (double) motionPeriodNanos + phase;
+                    double triangle = 4 * Math.abs(t - Math.floor(t + 0.5)) - 1; // -1..1
+                    dx = (float) (amplitude * triangle);
+                    break;
+                }
+                case MOTION_ORBIT: {
+                    double angle = 2 * Math.PI * (timestampNanos / (double) motionPeriodNanos + phase);
+                    dx = (float) (amplitude * Math.cos(angle));
+                    dy = (float) (amplitude * Math.sin(angle));
+                    break;
+                }
+                case MOTION_JITTER: {
+                    long h = mix(seed, i, timestampNanos);
+                    dx = amplitude * (2f * unit(h) - 1f);
+                    dy = amplitude * (2f * unit(mix(h, i, 1L)) - 1f);
+                    break;
+                }
+                default:
+                    break;
+            }
+            float left = centerX + dx - size / 2;
+            float top = centerY + dy - size / 2;
+            int emotion = emotionAt(i, timestampNanos);
+            boolean leftClosed = emotion == FaceData.EMOTION_EYES_CLOSED || emotion == FaceData.EMOTION_LEFT_WINK;
+            boolean rightClosed = emotion == FaceData.EMOTION_EYES_CLOSED || emotion == FaceData.EMOTION_RIGHT_WINK;
+            out.addFace(i, left, top, left + size, top + size * 1.2f,
+                    emotion == FaceData.EMOTION_SMILING ? PROBABILITY_HIGH : PROBABILITY_LOW,
+                    leftClosed ? PROBABILITY_LOW : PROBABILITY_HIGH,
+                    rightClosed ? PROBABILITY_LOW : PROBABILITY_HIGH,
+                    20f * (2f * unit(mix(seed, i, -3L)) - 1f));
+        }
+    }
+
+    // Both arms resting at the bottom center of the frame; one raised during a gesture burst
+    private void addPose(int width, int height, long timestampNanos, RawDetections out) {
+        float forearm = Math.min(width, height) * 0.15f;
+        float elbowY = height * 0.75f;
+        int gesture = gestureAt(timestampNanos);
+        int raisedHand = gesture < 0 ? -1
+                : (int) Math.floorMod(Math.floorDiv(timestampNanos, burstPeriodNanos) / BURST_GESTURES.length,
+                (long) PoseFeatures.HAND_COUNT);
+        for (int hand = 0; hand < PoseFeatures.HAND_COUNT; hand++) {
+            // The subject faces the camera, so their left hand is on the image right
+            float elbowX = width * (hand == PoseFeatures.HAND_LEFT ? 0.65f : 0.35f);
+            if (hand != raisedHand) {
+                setArm(out, hand, elbowX, elbowY, forearm, Math.PI, -0.3f, -0.3f, -0.3f);
+            } else if (gesture == FaceData.GESTURE_PEACE) {
+                setArm(out, hand, elbowX, elbowY, forearm, 0.0, 0.05f, 0.5f, 0.05f);
+            } else if (gesture == FaceData.GESTURE_THUMBS_UP) {
+                setArm(out, hand, elbowX, elbowY, forearm, 0.0, 0.5f, 0.1f, 0.05f);
+            } else {
+                double angle = WAVE_MAX_ANGLE * Math.sin(2 * Math.PI * WAVE_FREQUENCY_HZ * timestampNanos / 1e9);
+                setArm(out, hand, elbowX, elbowY, forearm, angle, 0.25f, 0.25f, 0.25f);
+            }
+        }
+    }
+
+    // Forearm at angle radians from pointing straight up (positive = image right); finger tips
+    // rise the given forearm lengths above the wrist (see GestureClassifier)
+    private static void setArm(RawDetections out, int hand, float elbowX, float elbowY, float forearm, double angle,
+                               float thumbRise, float indexRise, float pinkyRise) {
+        boolean left = hand == PoseFeatures.HAND_LEFT;
+        float wristX = elbowX + (float) (forearm * Math.sin(angle));
+        float wristY = elbowY - (float) (forearm * Math.cos(angle));
+        out.setLandmark(left ? PoseFeatures.LEFT_SHOULDER : PoseFeatures.RIGHT_SHOULDER,
+                elbowX + (left ? -0.5f : 0.5f) * forearm, elbowY - 1.2f * forearm, LANDMARK_LIKELIHOOD);
+        out.setLandmark(left ? PoseFeatures.LEFT_ELBOW : PoseFeatures.RIGHT_ELBOW, elbowX, elbowY, LANDMARK_LIKELIHOOD);
+        out.setLandmark(left ? PoseFeatures.LEFT_WRIST : PoseFeatures.RIGHT_WRIST, wristX, wristY, LANDMARK_LIKELIHOOD);
+        out.setLandmark(left ? PoseFeatures.LEFT_THUMB : PoseFeatures.RIGHT_THUMB,
+                wristX - 0.1f * forearm, wristY - thumbRise * forearm, LANDMARK_LIKELIHOOD);
+        out.setLandmark(left ? PoseFeatures.LEFT_INDEX : PoseFeatures.RIGHT_INDEX,
+                wristX, wristY - indexRise * forearm, LANDMARK_LIKELIHOOD);
+        out.setLandmark(left ? PoseFeatures.LEFT_PINKY : PoseFeatures.RIGHT_PINKY,
+                wristX + 0.1f * forearm, wristY - pinkyRise * forearm, LANDMARK_LIKELIHOOD);
+    }
+
+    private static void park(long nanos) {
+        if (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+        }
+    }
+
+    // SplitMix64 finalizer over the inputs: a stateless random number per (seed, a, b)
+    private static long mix(long seed, long a, long b) {
+        long z = seed + 0x9E3779B97F4A7C15L * (a + 1) + 0xC2B2AE3D27D4EB4FL * (b + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Uniform in [0, 1)
+    private static float unit(long hash) {
+        return (hash >>> 40) / (float) (1L << 24);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.aremotionfilters;
+
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Deterministic stand-in for ML Kit in batch runs, so the batch path can be tested and its
+ * throughput measured on a plain JVM.
+ *
+ * The faces and pose of an image depend only on the seed, the image's index in the batch and its
+ * size, never on the image type, the thread or the order images are processed in: 0 to
+ * {@code maxFaces} faces with random boxes, classification probabilities and head tilt, and with
+ * probability {@code gestureRate} a raised hand showing the peace sign or a thumbs up. An optional
+ * simulated latency parks the calling worker like a detector waiting on its accelerator would.
+ */
+public class SyntheticStillDetector<I> implements StillImageDetector<I> {
+
+    private static final float LANDMARK_LIKELIHOOD = 0.9f;
+
+    private final long seed;
+    private final int maxFaces;
+    private final float gestureRate;
+    private final long simulatedLatencyNanos;
+
+    public SyntheticStillDetector(long seed, int maxFaces, float gestureRate, long simulatedLatencyNanos) {
+        if (maxFaces < 0 || gestureRate < 0f || gestureRate > 1f || simulatedLatencyNanos < 0) {
+            throw new IllegalArgumentException("Invalid synthetic detector: " + maxFaces + " faces, gesture rate "
+                    + gestureRate + ", latency " + simulatedLatencyNanos);
+        }
+        this.seed = seed;
+        this.maxFaces = maxFaces;
+        this.gestureRate = gestureRate;
+        this.simulatedLatencyNanos = simulatedLatencyNanos;
+    }
+
+    @Override
+    public void detect(int index, I image, int width, int height, RawDetections out) {
+        if (simulatedLatencyNanos > 0) {
+            LockSupport.parkNanos(simulatedLatencyNanos);
+        }
+        Random random = new Random((seed * 31 + index) * 31 + ((long) width << 20) + height);
+        int shortSide = Math.min(width, height);
+        int faces = random.nextInt(maxFaces + 1);
+        for (int i = 0; i < faces; i++) {
+            float size = shortSide * (0.1f + 0.2f * random.nextFloat());
+            float left = random.nextFloat() * (width - size);
+            float top = random.nextFloat() * (height - size);
+            out.addFace(left, top, left + size, top + size * 1.2f,
+                    random.nextFloat(), random.nextFloat(), random.nextFloat(), 40f * random.nextFloat() - 20f);
+        }
+        if (random.nextFloat() < gestureRate) {
+            int hand = random.nextInt(PoseFeatures.HAND_COUNT);
+            addRaisedHand(out, hand, random.nextBoolean(), width * (hand == PoseFeatures.HAND_LEFT ? 0.7f : 0.3f),
+                    height * 0.6f, shortSide * 0.2f);
+        }
+    }
+
+    // Vertical forearm of length forearm with the elbow at (x, elbowY); peace sign or thumbs up
+    private static void addRaisedHand(RawDetections out, int hand, boolean peace, float x, float elbowY, float forearm) {
+        boolean left = hand == PoseFeatures.HAND_LEFT;
+        float wristY = elbowY - forearm;
+        out.setLandmark(left ? PoseFeatures.LEFT_SHOULDER : PoseFeatures.RIGHT_SHOULDER,
+                x + (left ? -0.5f : 0.5f) * forearm, elbowY - 0.2f * forearm, LANDMARK_LIKELIHOOD);
+        out.setLandmark(left ? PoseFeatures.LEFT_ELBOW : PoseFeatures.RIGHT_ELBOW, x, elbowY, LANDMARK_LIKELIHOOD);
+        out.setLandmark(left ? PoseFeatures.LEFT_WRIST : PoseFeatures.RIGHT_WRIST, x, wristY, LANDMARK_LIKELIHOOD);
+        // Rises relative to the wrist, in forearm lengths (see GestureClassifier)
+        out.setLandmark(left ? PoseFeatures.LEFT_THUMB : PoseFeatures.RIGHT_THUMB,
+                x - 0.1f * forearm, wristY - (peace ? 0.05f : 0.5f) * forearm, LANDMARK_LIKELIHOOD);
+        out.setLandmark(left ? PoseFeatures.LEFT_INDEX : PoseFeatures.RIGHT_INDEX,
+                x, wristY - (peace ? 0.5f : 0.1f) * forearm, LANDMARK_LIKELIHOOD);
+        out.setLandmark(left ? PoseFeatures.LEFT_PINKY : PoseFeatures.RIGHT_PINKY,
+                x + 0.1f * forearm, wristY - 0.05f * forearm, LANDMARK_LIKELIHOOD);
+    }
+}
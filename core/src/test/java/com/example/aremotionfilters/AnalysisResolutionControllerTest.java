@@ -0,0 +1,89 @@
+package com.example.aremotionfilters;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AnalysisResolutionControllerTest {
+
+    private static final long MS = 1_000_000L;
+
+    private static AnalysisResolutionController controller(int initialLevel) {
+        return new AnalysisResolutionController(AnalysisResolutionController.DEFAULT_WIDTHS,
+                AnalysisResolutionController.DEFAULT_HEIGHTS, initialLevel, 33 * MS, 5, 3);
+    }
+
+    @Test
+    public void startsAtDefaultLevel() {
+        AnalysisResolutionController controller = new AnalysisResolutionController(33 * MS);
+        assertEquals(640, controller.getWidth());
+        assertEquals(480, controller.getHeight());
+        assertEquals(0.15f, controller.getMinFaceSize(), 1e-4f);
+    }
+
+    @Test
+    public void stepsDownWhenTooSlowForHoldFrames() {
+        AnalysisResolutionController controller = controller(2);
+        int frames = 0;
+        while (!controller.onFrame(50 * MS, 0.3f)) {
+            frames++;
+            assertTrue("Never stepped down", frames < 100);
+        }
+        assertEquals(3 + 4, frames); // Warm-up frames, then the fifth slow frame steps
+        assertEquals(480, controller.getWidth());
+        assertEquals(0.2f, controller.getMinFaceSize(), 1e-4f);
+    }
+
+    @Test
+    public void singleSlowFrameDoesNotStep() {
+        AnalysisResolutionController controller = controller(2);
+        for (int i = 0; i < 50; i++) {
+            assertFalse(controller.onFrame(i == 20 ? 80 * MS : 10 * MS, 0.3f));
+        }
+        assertEquals(2, controller.getLevel());
+    }
+
+    @Test
+    public void stepsUpForSmallFacesOnlyIfNextLevelFits() {
+        AnalysisResolutionController fast = controller(2);
+        boolean stepped = false;
+        for (int i = 0; i < 20 && !stepped; i++) {
+            stepped = fast.onFrame(8 * MS, 0.1f);
+        }
+        assertTrue(stepped);
+        assertEquals(960, fast.getWidth());
+
+        // 15 ms * 2.25 (960x720 / 640x480) = 34 ms, over 0.7 of the budget
+        AnalysisResolutionController busy = controller(2);
+        for (int i = 0; i < 100; i++) {
+            assertFalse(busy.onFrame(15 * MS, 0.1f));
+        }
+    }
+
+    @Test
+    public void stepsDownForLargeFacesAndHoldsBetweenThresholds() {
+        AnalysisResolutionController controller = controller(2);
+        boolean stepped = false;
+        for (int i = 0; i < 20 && !stepped; i++) {
+            stepped = controller.onFrame(10 * MS, 0.5f);
+        }
+        assertTrue(stepped);
+        assertEquals(1, controller.getLevel());
+        // A face between the small and large thresholds keeps the level
+        for (int i = 0; i < 100; i++) {
+            assertFalse(controller.onFrame(10 * MS, 0.3f));
+        }
+    }
+
+    @Test
+    public void staysWithinLadder() {
+        AnalysisResolutionController bottom = controller(0);
+        for (int i = 0; i < 100; i++) {
+            assertFalse(bottom.onFrame(100 * MS, 0.5f));
+        }
+        AnalysisResolutionController top = controller(3);
+        for (int i = 0; i < 100; i++) {
+            assertFalse(top.onFrame(1 * MS, -1f));
+        }
+    }
+}
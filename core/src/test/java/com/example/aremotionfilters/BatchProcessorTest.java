@@ -0,0 +1,230 @@
+package com.example.aremotionfilters;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BatchProcessorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // "Images" are text files holding "width height"; the filtered output lists the effects
+    private static final class TextImageIo implements BatchProcessor.ImageIo<int[]> {
+        final AtomicInteger decoded = new AtomicInteger();
+        final AtomicInteger maxDecoded = new AtomicInteger();
+
+        @Override
+        public int[] decode(File input) throws IOException {
+            String[] size = new String(Files.readAllBytes(input.toPath()), StandardCharsets.US_ASCII).trim().split(" ");
+            if (size.length != 2) {
+                return null;
+            }
+            maxDecoded.accumulateAndGet(decoded.incrementAndGet(), Math::max);
+            return new int[]{Integer.parseInt(size[0]), Integer.parseInt(size[1])};
+        }
+
+        @Override
+        public int getWidth(int[] image) {
+            return image[0];
+        }
+
+        @Override
+        public int getHeight(int[] image) {
+            return image[1];
+        }
+
+        @Override
+        public void writeFiltered(int[] image, DetectionSnapshot effects, File output) throws IOException {
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.US_ASCII)) {
+                for (int i = 0; i < effects.size(); i++) {
+                    out.write(FaceData.codeName(effects.get(i).getEmotion()) + "\n");
+                }
+            }
+        }
+
+        @Override
+        public String getOutputExtension() {
+            return "txt";
+        }
+
+        @Override
+        public void release(int[] image) {
+            decoded.decrementAndGet();
+        }
+    }
+
+    private List<File> writeImages(int count) throws IOException {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            File file = folder.newFile(String.format("img%03d.jpg", i));
+            String content = i == 3 ? "not an image" : (320 + 16 * i) + " " + (240 + 8 * i);
+            Files.write(file.toPath(), content.getBytes(StandardCharsets.US_ASCII));
+            files.add(file);
+        }
+        return files;
+    }
+
+    // Results lines by index, without the timing columns
+    private static TreeMap<Integer, String> resultsWithoutTimings(String results) {
+        String[] lines = results.split("\n");
+        assertEquals(BatchProcessor.RESULTS_HEADER, lines[0]);
+        TreeMap<Integer, String> byIndex = new TreeMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            String[] columns = lines[i].split("\t");
+            assertEquals(11, columns.length);
+            byIndex.put(Integer.parseInt(columns[0]),
+                    columns[1] + " " + columns[2] + " " + columns[3] + "x" + columns[4] + " " + columns[10]);
+        }
+        return byIndex;
+    }
+
+    private String run(List<File> inputs, int threads, int maxInFlight, TextImageIo io,
+                       BatchProcessor.Summary[] summaryOut) throws Exception {
+        File outputDir = folder.newFolder();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            BatchProcessor<int[]> processor = new BatchProcessor<>(io,
+                    new SyntheticStillDetector<int[]>(42L, 4, 0.5f, 2_000_000L), executor, maxInFlight);
+            StringWriter results = new StringWriter();
+            summaryOut[0] = processor.process(inputs, outputDir, results);
+            assertTrue(new File(outputDir, "img000_0_filtered.txt").exists());
+            assertFalse(new File(outputDir, "img003_3_filtered.txt").exists());
+            return results.toString();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void processesEveryImageAndReportsFailures() throws Exception {
+        List<File> inputs = writeImages(12);
+        BatchProcessor.Summary[] summary = new BatchProcessor.Summary[1];
+        TextImageIo io = new TextImageIo();
+        TreeMap<Integer, String> results = resultsWithoutTimings(run(inputs, 4, 6, io, summary));
+
+        assertEquals(12, results.size());
+        assertEquals(0, (int) results.firstKey());
+        assertEquals(11, (int) results.lastKey());
+        assertEquals("img003.jpg undecodable 0x0 -", results.get(3));
+        assertTrue(results.get(0), results.get(0).startsWith("img000.jpg ok 320x240 "));
+        assertEquals(12, summary[0].getImages());
+        assertEquals(1, summary[0].getFailed());
+        assertEquals(11, summary[0].detect.getCount());
+        assertTrue(summary[0].getImagesPerSecond() > 0);
+        assertEquals(0, io.decoded.get()); // Every decoded image was released
+    }
+
+    @Test
+    public void resultsDoNotDependOnParallelism() throws Exception {
+        List<File> inputs = writeImages(10);
+        BatchProcessor.Summary[] summary = new BatchProcessor.Summary[1];
+        String serial = run(inputs, 1, 1, new TextImageIo(), summary);
+        long faces = summary[0].getFaces();
+        String parallel = run(inputs, 4, 8, new TextImageIo(), summary);
+        assertEquals(resultsWithoutTimings(serial), resultsWithoutTimings(parallel));
+        assertEquals(faces, summary[0].getFaces());
+    }
+
+    @Test
+    public void boundsImagesInFlight() throws Exception {
+        List<File> inputs = writeImages(20);
+        TextImageIo io = new TextImageIo();
+        run(inputs, 4, 3, io, new BatchProcessor.Summary[1]);
+        assertTrue("max decoded " + io.maxDecoded.get(), io.maxDecoded.get() <= 3);
+    }
+
+    @Test
+    public void classifiesSyntheticGestures() throws Exception {
+        SyntheticStillDetector<Object> detector = new SyntheticStillDetector<>(7L, 0, 1f, 0L);
+        RawDetections detection = new RawDetections();
+        PoseFeatures features = new PoseFeatures();
+        GestureEngine engine = new GestureEngine();
+        engine.register(GestureClassifier.peaceRule(), 0L, 0L);
+        engine.register(GestureClassifier.thumbsUpRule(), 0L, 0L);
+        FaceDataPool pool = new FaceDataPool(2);
+        List<FaceData> effects = new ArrayList<>();
+        for (int width = 400; width < 420; width++) {
+            detection.clear();
+            detector.detect(width - 400, null, width, 600, detection);
+            assertEquals(0, detection.getFaceCount());
+            assertTrue(detection.hasPose());
+            detection.applyPose(features);
+            engine.reset();
+            engine.evaluate(features, 0L);
+            pool.releaseAll(effects);
+            assertEquals(1, engine.collect(pool, effects));
+            int gesture = effects.get(0).getEmotion();
+            assertTrue(FaceData.codeName(gesture),
+                    gesture == FaceData.GESTURE_PEACE || gesture == FaceData.GESTURE_THUMBS_UP);
+        }
+    }
+
+    @Test
+    public void sameSizedImagesGetDifferentDetections() {
+        SyntheticStillDetector<Object> detector = new SyntheticStillDetector<>(42L, 4, 0.5f, 0L);
+        RawDetections detection = new RawDetections();
+        FaceDataPool pool = new FaceDataPool(4);
+        List<FaceData> faces = new ArrayList<>();
+        Set<String> distinct = new HashSet<>();
+        for (int index = 0; index < 8; index++) {
+            detection.clear();
+            detector.detect(index, null, 640, 480, detection);
+            pool.releaseAll(faces);
+            detection.collectFaces(pool, faces);
+            StringBuilder sb = new StringBuilder();
+            BatchProcessor.appendEffects(sb, faces);
+            distinct.add(detection.getFaceCount() + ":" + sb);
+        }
+        assertTrue(distinct.toString(), distinct.size() > 1);
+    }
+
+    @Test
+    public void sameBaseNamesGetSeparateOutputs() throws Exception {
+        File a = folder.newFile("a.jpg");
+        File b = folder.newFile("a.png");
+        Files.write(a.toPath(), "320 240".getBytes(StandardCharsets.US_ASCII));
+        Files.write(b.toPath(), "320 240".getBytes(StandardCharsets.US_ASCII));
+        File outputDir = folder.newFolder();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            BatchProcessor<int[]> processor = new BatchProcessor<>(new TextImageIo(),
+                    new SyntheticStillDetector<int[]>(42L, 4, 0.5f, 0L), executor, 2);
+            processor.process(Arrays.asList(a, b), outputDir, new StringWriter());
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(new File(outputDir, "a_0_filtered.txt").exists());
+        assertTrue(new File(outputDir, "a_1_filtered.txt").exists());
+    }
+
+    @Test
+    public void formatsEffects() {
+        List<FaceData> effects = new ArrayList<>();
+        effects.add(new FaceData().setFace(10.4f, 20f, 110f, 139.6f, FaceData.EMOTION_SMILING, 0f));
+        effects.add(new FaceData().setGesture(FaceData.GESTURE_PEACE, 300f, 200f, 0f));
+        StringBuilder sb = new StringBuilder();
+        BatchProcessor.appendEffects(sb, effects);
+        assertEquals("SMILING[10,20,110,140];GESTURE_PEACE@300,200", sb.toString());
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.aremotionfilters;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class DetectionHistoryTest {
+
+    @Test
+    public void emptyHistoryMisses() {
+        DetectionHistory history = new DetectionHistory(4);
+        DetectionSnapshot out = new DetectionSnapshot();
+        assertFalse(history.lookup(100L, out));
+    }
+
+    @Test
+    public void outsideRecordedRangeUsesNearestFrame() {
+        DetectionHistory history = new DetectionHistory(4);
+        history.record(100L, faces(face(1, 0f)), 640, 480, true);
+        history.record(200L, faces(face(1, 10f)), 640, 480, true);
+        DetectionSnapshot out = new DetectionSnapshot();
+
+        assertTrue(history.lookup(50L, out));
+        assertEquals(0f, out.get(0).getBoxLeft(), 0f);
+        assertTrue(out.isFrontCamera());
+        assertEquals(640, out.getImageWidth());
+
+        assertTrue(history.lookup(500L, out));
+        assertEquals(10f, out.get(0).getBoxLeft(), 0f);
+    }
+
+    @Test
+    public void trackedFacesAreInterpolatedBetweenNeighbours() {
+        DetectionHistory history = new DetectionHistory(4);
+        history.record(100L, faces(face(7, 0f)), 640, 480, false);
+        history.record(200L, faces(face(7, 100f)), 640, 480, false);
+        DetectionSnapshot out = new DetectionSnapshot();
+
+        assertTrue(history.lookup(125L, out));
+        assertEquals(1, out.size());
+        assertEquals(25f, out.get(0).getBoxLeft(), 1e-3f);
+        assertEquals(75f, out.get(0).getBoxRight(), 1e-3f);
+        assertEquals(7, out.get(0).getTrackingId());
+        assertEquals(FaceData.EMOTION_SMILING, out.get(0).getEmotion());
+    }
+
+    @Test
+    public void exactTimestampReturnsThatFrame() {
+        DetectionHistory history = new DetectionHistory(4);
+        history.record(100L, faces(face(1, 0f)), 640, 480, false);
+        history.record(200L, faces(face(1, 40f)), 640, 480, false);
+        history.record(300L, faces(face(1, 80f)), 640, 480, false);
+        DetectionSnapshot out = new DetectionSnapshot();
+        assertTrue(history.lookup(200L, out));
+        assertEquals(40f, out.get(0).getBoxLeft(), 0f);
+    }
+
+    @Test
+    public void unmatchedFacesComeFromNearerFrame() {
+        DetectionHistory history = new DetectionHistory(4);
+        FaceData gesture = new FaceData().setGesture(FaceData.GESTURE_THUMBS_UP, 5f, 6f, 0f);
+        history.record(100L, faces(face(-1, 0f), gesture), 640, 480, false);
+        history.record(200L, faces(face(-1, 100f)), 640, 480, false);
+        DetectionSnapshot out = new DetectionSnapshot();
+
+        assertTrue(history.lookup(140L, out));
+        assertEquals(2, out.size());
+        assertEquals(0f, out.get(0).getBoxLeft(), 0f);
+        assertEquals(FaceData.GESTURE_THUMBS_UP, out.get(1).getEmotion());
+
+        assertTrue(history.lookup(160L, out));
+        assertEquals(1, out.size());
+        assertEquals(100f, out.get(0).getBoxLeft(), 0f);
+    }
+
+    @Test
+    public void oldestFramesAreOverwritten() {
+        DetectionHistory history = new DetectionHistory(2);
+        history.record(100L, faces(face(1, 0f)), 640, 480, false);
+        history.record(200L, faces(face(1, 10f)), 640, 480, false);
+        history.record(300L, faces(face(1, 20f)), 640, 480, false);
+        DetectionSnapshot out = new DetectionSnapshot();
+        assertTrue(history.lookup(100L, out));
+        assertEquals(10f, out.get(0).getBoxLeft(), 0f); // Frame 100 is gone; 200 is the nearest left
+    }
+
+    @Test
+    public void readerNeverSeesTornFrames() throws InterruptedException {
+        DetectionHistory history = new DetectionHistory(4);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            List<FaceData> frame = new ArrayList<>();
+            for (int n = 1; n <= 200_000; n++) {
+                frame.clear();
+                // Every face of frame n has its box at n, and the face count varies so snapshots grow
+                for (int i = 0; i <= n % 5; i++) {
+                    frame.add(new FaceData().setFace(n, n, n + 1, n + 1, FaceData.EMOTION_NEUTRAL, 0f));
+                }
+                history.record(n, frame, n, n, false);
+            }
+            done.set(true);
+        });
+        writer.start();
+        DetectionSnapshot out = new DetectionSnapshot();
+        while (!done.get() && failure.get() == null) {
+            if (!history.lookup(Long.MAX_VALUE, out)) {
+                continue;
+            }
+            int frame = out.getImageWidth();
+            if (out.size() != frame % 5 + 1) {
+                failure.set("Frame " + frame + " has " + out.size() + " faces");
+            }
+            for (int i = 0; i < out.size(); i++) {
+                if (out.get(i).getBoxLeft() != frame) {
+                    failure.set("Frame " + frame + " has a face from frame " + out.get(i).getBoxLeft());
+                }
+            }
+        }
+        writer.join();
+        assertNull(failure.get());
+    }
+
+    private static FaceData face(int trackingId, float left) {
+        return new FaceData().setFace(left, 10f, left + 50f, 60f, FaceData.EMOTION_SMILING, 0f).setTrackingId(trackingId);
+    }
+
+    private static List<FaceData> faces(FaceData... faces) {
+        List<FaceData> list = new ArrayList<>();
+        Collections.addAll(list, faces);
+        return list;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.aremotionfilters;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class DetectionMailboxTest {
+
+    @Test
+    public void consumerSeesNewestSnapshotOnly() {
+        DetectionMailbox mailbox = new DetectionMailbox();
+        assertFalse(mailbox.update());
+        assertTrue(mailbox.current().isEmpty());
+
+        mailbox.publish(frame(1, 1), 640, 480, true);
+        mailbox.publish(frame(2, 3), 320, 240, false);
+        assertTrue(mailbox.update());
+        DetectionSnapshot snapshot = mailbox.current();
+        assertEquals(3, snapshot.size());
+        assertEquals(2f, snapshot.get(0).getBoxLeft(), 0f);
+        assertEquals(320, snapshot.getImageWidth());
+        assertFalse(snapshot.isFrontCamera());
+
+        // Nothing new: the current snapshot stays
+        assertFalse(mailbox.update());
+        assertSame(snapshot, mailbox.current());
+    }
+
+    /**
+     * Producer and consumer run flat out on two threads; every snapshot the consumer sees must be
+     * complete (all faces from the same frame) and frames must never go backwards.
+     */
+    @Test
+    public void concurrentSnapshotsAreConsistentAndMonotonic() throws InterruptedException {
+        DetectionMailbox mailbox = new DetectionMailbox();
+        int frames = 200_000;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            ArrayList<FaceData> results = new ArrayList<>();
+            for (int i = 1; i <= frames; i++) {
+                results.clear();
+                int count = 1 + i % 5;
+                for (int f = 0; f < count; f++) {
+                    results.add(new FaceData().setFace(i, i, i + 1, i + 1, FaceData.EMOTION_SMILING, 0f));
+                }
+                mailbox.publish(results, i, count, false);
+            }
+        });
+        Thread consumer = new Thread(() -> {
+            try {
+                int last = 0;
+                while (last < frames) {
+                    if (!mailbox.update()) {
+                        continue;
+                    }
+                    DetectionSnapshot snapshot = mailbox.current();
+                    int frame = snapshot.getImageWidth();
+                    assertTrue("went back from " + last + " to " + frame, frame > last);
+                    assertEquals(snapshot.getImageHeight(), snapshot.size());
+                    for (int f = 0; f < snapshot.size(); f++) {
+                        assertEquals(frame, (int) snapshot.get(f).getBoxLeft());
+                    }
+                    last = frame;
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        consumer.start();
+        producer.start();
+        producer.join();
+        consumer.join(10_000);
+        assertFalse("consumer did not see the last frame", consumer.isAlive());
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    private static ArrayList<FaceData> frame(float value, int count) {
+        ArrayList<FaceData> results = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            results.add(new FaceData().setFace(value, value, value + 10, value + 10, FaceData.EMOTION_SMILING, 0f));
+        }
+        return results;
+    }
+}
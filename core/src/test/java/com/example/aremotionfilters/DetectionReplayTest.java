@@ -0,0 +1,167 @@
+package com.example.aremotionfilters;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DetectionReplayTest {
+
+    private static final long FRAME_NANOS = 33_000_000L;
+
+    // One face moving right by 10 px per frame, plus a thumbs up on every other frame
+    private static byte[] recordSession(int frames) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        FaceDataPool pool = new FaceDataPool(4);
+        List<FaceData> faces = new ArrayList<>();
+        try (DetectionRecorder recorder = new DetectionRecorder(bytes)) {
+            for (int i = 0; i < frames; i++) {
+                pool.releaseAll(faces);
+                faces.add(pool.acquire().setFace(100 + 10 * i, 80, 160 + 10 * i, 140,
+                        FaceData.EMOTION_SMILING, 5f).setTrackingId(3));
+                if (i % 2 == 1) {
+                    faces.add(pool.acquire().setGesture(FaceData.GESTURE_THUMBS_UP, 300, 200, 15f));
+                }
+                recorder.record(faces, 480, 640, true, 1_000_000_000L + i * FRAME_NANOS);
+            }
+            assertEquals(frames, recorder.getFrameCount());
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void replaysRecordedStreamExactly() throws IOException {
+        byte[] recording = recordSession(4);
+        // Header, 4 frame headers, 4 faces with a box and 2 gestures
+        assertEquals(6 + 4 * 15 + 4 * 26 + 2 * 18, recording.length);
+
+        try (DetectionReplayer replayer = new DetectionReplayer(new ByteArrayInputStream(recording))) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(replayer.next());
+                assertEquals(1_000_000_000L + i * FRAME_NANOS, replayer.getTimestampNanos());
+                assertEquals(480, replayer.getImageWidth());
+                assertEquals(640, replayer.getImageHeight());
+                assertTrue(replayer.isFrontCamera());
+                List<FaceData> faces = replayer.getFaces();
+                assertEquals(i % 2 == 1 ? 2 : 1, faces.size());
+                FaceData face = faces.get(0);
+                assertTrue(face.hasBoundingBox());
+                assertEquals(FaceData.EMOTION_SMILING, face.getEmotion());
+                assertEquals(3, face.getTrackingId());
+                assertEquals(100f + 10 * i, face.getBoxLeft(), 0f);
+                assertEquals(5f, face.getHeadEulerAngleZ(), 0f);
+                if (i % 2 == 1) {
+                    FaceData gesture = faces.get(1);
+                    assertTrue(gesture.hasGestureAnchor());
+                    assertFalse(gesture.hasBoundingBox());
+                    assertEquals(FaceData.GESTURE_THUMBS_UP, gesture.getEmotion());
+                    assertEquals(15f, gesture.getGestureRotation(), 0f);
+                }
+            }
+            assertFalse(replayer.next());
+            assertFalse(replayer.isTruncated());
+        }
+    }
+
+    @Test
+    public void truncatedRecordingEndsAtLastWholeFrame() throws IOException {
+        byte[] recording = recordSession(3);
+        byte[] cut = Arrays.copyOf(recording, recording.length - 5);
+        try (DetectionReplayer replayer = new DetectionReplayer(new ByteArrayInputStream(cut))) {
+            assertTrue(replayer.next());
+            assertTrue(replayer.next());
+            assertFalse(replayer.next());
+            assertTrue(replayer.isTruncated());
+            assertEquals(2, replayer.getFrameCount());
+        }
+    }
+
+    @Test
+    public void recordingCutInsideTimestampIsTruncated() throws IOException {
+        byte[] recording = recordSession(2);
+        // Second frame: 15-byte header and one face with a box, plus a gesture; keep 3 timestamp bytes
+        int secondFrame = recording.length - (15 + 26 + 18);
+        byte[] cut = Arrays.copyOf(recording, secondFrame + 3);
+        try (DetectionReplayer replayer = new DetectionReplayer(new ByteArrayInputStream(cut))) {
+            assertTrue(replayer.next());
+            assertFalse(replayer.next());
+            assertTrue(replayer.isTruncated());
+            assertEquals(1, replayer.getFrameCount());
+        }
+    }
+
+    @Test
+    public void faceWithoutBoxOrAnchorKeepsItsCode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DetectionRecorder recorder = new DetectionRecorder(bytes)) {
+            List<FaceData> faces = new ArrayList<>();
+            faces.add(new FaceData().setCode(FaceData.EMOTION_LEFT_WINK).setTrackingId(7));
+            recorder.record(faces, 480, 640, false, 5L);
+        }
+        try (DetectionReplayer replayer = new DetectionReplayer(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertTrue(replayer.next());
+            FaceData face = replayer.getFaces().get(0);
+            assertEquals(FaceData.EMOTION_LEFT_WINK, face.getEmotion());
+            assertEquals(7, face.getTrackingId());
+            assertFalse(face.hasBoundingBox());
+            assertFalse(face.hasGestureAnchor());
+            assertEquals(5L, replayer.getTimestampNanos());
+        }
+    }
+
+    @Test
+    public void flushedFramesReplayWithoutClose() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DetectionRecorder recorder = new DetectionRecorder(bytes);
+        List<FaceData> faces = new ArrayList<>();
+        faces.add(new FaceData().setFace(10, 20, 60, 80, FaceData.EMOTION_SMILING, 0f).setTrackingId(1));
+        recorder.record(faces, 480, 640, true, 1L);
+        recorder.record(faces, 480, 640, true, 2L);
+        recorder.flush();
+        recorder.record(faces, 480, 640, true, 3L); // Still buffered when the process dies
+        try (DetectionReplayer replayer = new DetectionReplayer(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(2, replayer.replay((f, width, height, front, timestampNanos) -> { }, false));
+            assertFalse(replayer.isTruncated());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        new DetectionReplayer(new ByteArrayInputStream("\u0089PNG\r\n\u001a\n".getBytes("ISO-8859-1")));
+    }
+
+    @Test
+    public void replayDrivesOverlaySmoothingAndPlacement() throws Exception {
+        DetectionHistory history = new DetectionHistory(16);
+        DetectionReplayer replayer = new DetectionReplayer(new ByteArrayInputStream(recordSession(10)));
+        int frames = replayer.replay((faces, width, height, front, timestampNanos) ->
+                history.record(timestampNanos, faces, width, height, front), false);
+        assertEquals(10, frames);
+
+        // Halfway between frames 6 and 7 the face is interpolated, as for a capture taken then
+        DetectionSnapshot snapshot = new DetectionSnapshot();
+        assertTrue(history.lookup(1_000_000_000L + 6 * FRAME_NANOS + FRAME_NANOS / 2, snapshot));
+        FaceData face = snapshot.get(0);
+        assertEquals(165f, face.getBoxLeft(), 0.01f);
+
+        float[] placement = new float[4];
+        assertTrue(OverlayGeometry.placeFaceEffect(face.getBoxLeft(), face.getBoxTop(), face.getBoxRight(),
+                face.getBoxBottom(), 1080f / 480, 1920f / 640, 1080, snapshot.isFrontCamera(), 1.2f, placement));
+    }
+
+    @Test
+    public void recordedSpeedKeepsFrameSpacing() throws Exception {
+        DetectionReplayer replayer = new DetectionReplayer(new ByteArrayInputStream(recordSession(4)));
+        long[] arrivals = new long[4];
+        int[] count = new int[1];
+        replayer.replay((faces, width, height, front, timestampNanos) -> arrivals[count[0]++] = System.nanoTime(), true);
+        assertEquals(4, count[0]);
+        assertTrue(arrivals[3] - arrivals[0] >= 3 * FRAME_NANOS);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.aremotionfilters;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class EffectPackTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Stand-in for an encoded image: the pack only stores and slices the bytes
+    private static byte[] level(int seed, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (seed * 31 + i);
+        }
+        return bytes;
+    }
+
+    private static EffectPackWriter twoSpritePack() {
+        EffectPackWriter writer = new EffectPackWriter();
+        int stars = writer.addSprite(null, new int[]{800, 400, 200, 100}, new int[]{600, 300, 150, 75},
+                new byte[][]{level(1, 5000), level(2, 1300), level(3, 400), level(4, 120)});
+        SpriteAnimation pulse = new SpriteAnimation(96, 64, 2, new int[]{80, 80, 120, 80});
+        int burst = writer.addSprite(pulse, new int[]{200, 100}, new int[]{136, 68},
+                new byte[][]{level(5, 900), level(6, 300)});
+        writer.map(FaceData.EMOTION_SMILING, stars);
+        writer.map(FaceData.GESTURE_PEACE, stars);
+        writer.map(FaceData.GESTURE_WAVE, burst);
+        return writer;
+    }
+
+    @Test
+    public void opensMappedFileAndSlicesLevels() throws IOException {
+        File file = folder.newFile("stars.arep");
+        try (OutputStream out = new FileOutputStream(file)) {
+            twoSpritePack().write(out);
+        }
+        EffectPack pack = EffectPack.open(file);
+        assertEquals("stars.arep", pack.getName());
+        assertEquals(2, pack.getSpriteCount());
+
+        // Table lookup by effect code
+        assertEquals(0, pack.spriteFor(FaceData.EMOTION_SMILING));
+        assertEquals(0, pack.spriteFor(FaceData.GESTURE_PEACE));
+        assertEquals(1, pack.spriteFor(FaceData.GESTURE_WAVE));
+        assertEquals(-1, pack.spriteFor(FaceData.EMOTION_EYES_CLOSED));
+        assertEquals(-1, pack.spriteFor(FaceData.EMOTION_NEUTRAL));
+
+        assertEquals(800, pack.getFrameWidth(0));
+        assertNull(pack.getAnimation(0));
+        assertEquals(4, pack.getLevelCount(0));
+        assertEquals(200, pack.getLevelWidth(0, 2));
+        assertEquals(150, pack.getLevelHeight(0, 2));
+
+        ByteBuffer data = pack.getLevelData(0, 2);
+        assertTrue(data.isReadOnly());
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        assertArrayEquals(level(3, 400), bytes);
+        bytes = new byte[pack.getLevelData(1, 1).remaining()];
+        pack.getLevelData(1, 1).get(bytes);
+        assertArrayEquals(level(6, 300), bytes);
+    }
+
+    @Test
+    public void keepsAtlasFrameTable() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        twoSpritePack().write(out);
+        EffectPack pack = new EffectPack("memory", ByteBuffer.wrap(out.toByteArray()));
+        SpriteAnimation animation = pack.getAnimation(1);
+        assertNotNull(animation);
+        assertEquals(96, animation.getFrameWidth());
+        assertEquals(64, animation.getFrameHeight());
+        assertEquals(2, animation.getGutter());
+        assertEquals(4, animation.getFrameCount());
+        assertEquals(120, animation.getFrameMillis(2));
+        assertEquals(360_000_000L, animation.getDurationNanos());
+        assertEquals(96, pack.getFrameWidth(1));
+    }
+
+    @Test
+    public void selectsSmallestLevelCoveringTheDrawSize() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        twoSpritePack().write(out);
+        EffectPack pack = new EffectPack("memory", ByteBuffer.wrap(out.toByteArray()));
+        assertEquals(0, pack.selectLevel(0, 1200f)); // Larger than any level
+        assertEquals(0, pack.selectLevel(0, 800f));
+        assertEquals(0, pack.selectLevel(0, 401f));
+        assertEquals(1, pack.selectLevel(0, 400f));
+        assertEquals(2, pack.selectLevel(0, 150f));
+        assertEquals(3, pack.selectLevel(0, 100f));
+        assertEquals(3, pack.selectLevel(0, 10f));
+        // Atlas: sizes are per frame, 96 px at level 0 and 48 px at level 1
+        assertEquals(0, pack.selectLevel(1, 60f));
+        assertEquals(1, pack.selectLevel(1, 48f));
+    }
+
+    @Test
+    public void rejectsTruncatedOrForeignFiles() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        twoSpritePack().write(out);
+        byte[] pack = out.toByteArray();
+        try {
+            // Cuts off the last level's data
+            new EffectPack("cut", ByteBuffer.wrap(Arrays.copyOf(pack, pack.length - 10)));
+            fail("truncated pack accepted");
+        } catch (IOException expected) {
+        }
+        try {
+            // Cuts off the manifest
+            new EffectPack("cut", ByteBuffer.wrap(Arrays.copyOf(pack, 20)));
+            fail("truncated manifest accepted");
+        } catch (IOException expected) {
+        }
+        try {
+            new EffectPack("png", ByteBuffer.wrap("\u0089PNG\r\n\u001a\n".getBytes("ISO-8859-1")));
+            fail("PNG accepted");
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.aremotionfilters;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EmotionClassifierTest {
+
+    private static final float NaN = Float.NaN;
+
+    @Test
+    public void classifiesLikeTheOriginalRules() {
+        assertEquals(FaceData.EMOTION_SMILING, EmotionClassifier.classify(0.9f, 0.1f, 0.1f));
+        assertEquals(FaceData.EMOTION_EYES_CLOSED, EmotionClassifier.classify(0.1f, 0.1f, 0.1f));
+        assertEquals(FaceData.EMOTION_LEFT_WINK, EmotionClassifier.classify(0.1f, 0.1f, 0.9f));
+        assertEquals(FaceData.EMOTION_RIGHT_WINK, EmotionClassifier.classify(0.1f, 0.9f, 0.1f));
+        assertEquals(FaceData.EMOTION_NEUTRAL, EmotionClassifier.classify(0.5f, 0.5f, 0.5f));
+    }
+
+    @Test
+    public void missingProbabilitiesNeverMatch() {
+        assertEquals(FaceData.EMOTION_NEUTRAL, EmotionClassifier.classify(NaN, NaN, NaN));
+        assertEquals(FaceData.EMOTION_NEUTRAL, EmotionClassifier.classify(NaN, 0.1f, NaN));
+        assertTrue(Float.isNaN(EmotionClassifier.probability(null)));
+    }
+
+    @Test
+    public void hysteresisKeepsPreviousEmotionNearThreshold() {
+        // 0.65 is below the smiling threshold for a new face but keeps an already smiling face smiling
+        assertEquals(FaceData.EMOTION_NEUTRAL, EmotionClassifier.classify(FaceData.EMOTION_NEUTRAL, 0.65f, 0.5f, 0.5f));
+        assertEquals(FaceData.EMOTION_SMILING, EmotionClassifier.classify(FaceData.EMOTION_SMILING, 0.65f, 0.5f, 0.5f));
+        assertEquals(FaceData.EMOTION_NEUTRAL, EmotionClassifier.classify(FaceData.EMOTION_SMILING, 0.55f, 0.5f, 0.5f));
+
+        assertEquals(FaceData.EMOTION_EYES_CLOSED, EmotionClassifier.classify(FaceData.EMOTION_EYES_CLOSED, 0.1f, 0.45f, 0.45f));
+        assertEquals(FaceData.EMOTION_NEUTRAL, EmotionClassifier.classify(FaceData.EMOTION_NEUTRAL, 0.1f, 0.45f, 0.45f));
+
+        assertEquals(FaceData.EMOTION_LEFT_WINK, EmotionClassifier.classify(FaceData.EMOTION_LEFT_WINK, 0.1f, 0.45f, 0.55f));
+        assertEquals(FaceData.EMOTION_NEUTRAL, EmotionClassifier.classify(-1, 0.1f, 0.45f, 0.55f));
+    }
+}
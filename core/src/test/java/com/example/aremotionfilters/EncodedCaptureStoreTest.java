@@ -0,0 +1,90 @@
+package com.example.aremotionfilters;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class EncodedCaptureStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void oldestCapturesSpillWhenOverBudget() throws IOException {
+        File dir = new File(folder.getRoot(), "captures");
+        EncodedCaptureStore store = new EncodedCaptureStore(dir, 250);
+        byte[] first = filled(100, 1);
+        byte[] second = filled(100, 2);
+        byte[] third = filled(100, 3);
+        assertEquals(0, store.add(first));
+        assertEquals(1, store.add(second));
+        assertEquals(0, store.getSpilledBytes());
+
+        assertEquals(2, store.add(third));
+        assertFalse(store.isInMemory(0));
+        assertTrue(store.isInMemory(1));
+        assertTrue(store.isInMemory(2));
+        assertEquals(200, store.getMemoryBytes());
+        assertEquals(100, store.getSpilledBytes());
+        assertArrayEquals(first, store.read(0));
+        assertArrayEquals(third, store.read(2));
+    }
+
+    @Test
+    public void spillAllMovesEverythingToDisk() throws IOException {
+        EncodedCaptureStore store = new EncodedCaptureStore(folder.getRoot(), 1000);
+        store.add(filled(10, 7));
+        store.add(filled(20, 8));
+        store.spillAll();
+        assertEquals(0, store.getMemoryBytes());
+        assertEquals(30, store.getSpilledBytes());
+        assertEquals(2, folder.getRoot().listFiles().length);
+        assertArrayEquals(filled(20, 8), store.read(1));
+    }
+
+    @Test
+    public void closeDeletesFilesAndIgnoresLateAdds() throws IOException {
+        EncodedCaptureStore store = new EncodedCaptureStore(folder.getRoot(), 0);
+        store.add(filled(10, 1));
+        assertEquals(1, folder.getRoot().listFiles().length);
+        store.close();
+        assertEquals(0, folder.getRoot().listFiles().length);
+        assertEquals(-1, store.add(filled(10, 2)));
+        assertEquals(0, store.size());
+        assertEquals(0, folder.getRoot().listFiles().length);
+    }
+
+    @Test
+    public void failedSpillDoesNotAddTheCapture() throws IOException {
+        // A regular file where the spill directory's parent should be: mkdirs fails
+        File dir = new File(folder.newFile("not_a_directory"), "captures");
+        EncodedCaptureStore store = new EncodedCaptureStore(dir, 150);
+        assertEquals(0, store.add(filled(100, 1)));
+        try {
+            store.add(filled(100, 2));
+            fail("Spill into " + dir + " should fail");
+        } catch (IOException expected) {
+        }
+        assertEquals(1, store.size());
+        assertEquals(100, store.getMemoryBytes());
+        assertEquals(0, store.getSpilledBytes());
+        assertArrayEquals(filled(100, 1), store.read(0));
+
+        // Once there is room again, the next capture gets the next index
+        store.setMemoryBudgetBytes(1000);
+        assertEquals(1, store.add(filled(100, 3)));
+        assertArrayEquals(filled(100, 3), store.read(1));
+    }
+
+    private static byte[] filled(int length, int value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.aremotionfilters;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class FaceDataPoolTest {
+
+    @Test
+    public void releasedInstancesAreResetAndReused() {
+        FaceDataPool pool = new FaceDataPool(1);
+        FaceData data = pool.acquire().setFace(1, 2, 3, 4, FaceData.EMOTION_SMILING, 10f);
+        assertEquals(0, pool.getFreeCount());
+        pool.release(data);
+        assertEquals(1, pool.getFreeCount());
+
+        FaceData reused = pool.acquire();
+        assertSame(data, reused);
+        assertEquals(FaceData.EMOTION_NEUTRAL, reused.getEmotion());
+        assertFalse(reused.hasBoundingBox());
+    }
+
+    @Test
+    public void snapshotCopiesValuesNotReferences() {
+        FaceDataPool pool = new FaceDataPool(2);
+        ArrayList<FaceData> results = new ArrayList<>();
+        results.add(pool.acquire().setFace(10, 20, 30, 40, FaceData.EMOTION_LEFT_WINK, 5f));
+        results.add(pool.acquire().setGesture(FaceData.GESTURE_THUMBS_UP, 50, 60, 90f));
+
+        DetectionSnapshot snapshot = new DetectionSnapshot(1);
+        snapshot.set(results, 640, 480, true);
+        pool.releaseAll(results);
+
+        assertEquals(2, snapshot.size());
+        assertEquals(FaceData.EMOTION_LEFT_WINK, snapshot.get(0).getEmotion());
+        assertEquals(30f, snapshot.get(0).getBoxRight(), 0f);
+        assertTrue(snapshot.get(1).hasGestureAnchor());
+        assertEquals(60f, snapshot.get(1).getGestureAnchorY(), 0f);
+        assertEquals(640, snapshot.getImageWidth());
+        assertTrue(snapshot.isFrontCamera());
+    }
+
+    /**
+     * Runs the analyzer-to-overlay result path (recycle, fill, copy, iterate) for many frames and
+     * checks that, once warmed up, it allocates nothing on the Java heap.
+     */
+    @Test
+    public void steadyStateResultPathDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        FaceDataPool pool = new FaceDataPool(4);
+        ArrayList<FaceData> frameResults = new ArrayList<>(4);
+        DetectionSnapshot drawn = new DetectionSnapshot(4);
+
+        // Warm up with the largest face count so the pool, list and snapshot reach their final size
+        float checksum = runFrames(pool, frameResults, drawn, 20_000);
+
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        checksum += runFrames(pool, frameResults, drawn, 10_000);
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(checksum != 0f);
+        // Allow for the few bytes the measurement call itself may allocate
+        assertTrue("Result path allocated " + allocated + " bytes", allocated < 1_024);
+    }
+
+    private static float runFrames(FaceDataPool pool, ArrayList<FaceData> frameResults, DetectionSnapshot drawn, int frames) {
+        float checksum = 0f;
+        for (int frame = 0; frame < frames; frame++) {
+            pool.releaseAll(frameResults);
+            int faces = 1 + frame % 6;
+            for (int i = 0; i < faces; i++) {
+                float x = (frame + i * 37) % 600;
+                frameResults.add(pool.acquire().setFace(x, 40, x + 80, 120, i % FaceData.GESTURE_THUMBS_UP, i));
+            }
+            frameResults.add(pool.acquire().setGesture(FaceData.GESTURE_THUMBS_UP, 300, 200 + frame % 10, 90f));
+            drawn.set(frameResults, 640, 480, true);
+            for (int i = 0, n = drawn.size(); i < n; i++) {
+                FaceData data = drawn.get(i);
+                checksum += data.hasBoundingBox() ? data.getBoxRight() - data.getBoxLeft() : data.getGestureAnchorY();
+            }
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.aremotionfilters;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class FaceTrackerTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+
+    @Test
+    public void detectsOnlyEveryIntervalFrames() {
+        FaceTracker tracker = new FaceTracker(3);
+        assertTrue(tracker.onFrame());
+        assertFalse(tracker.onFrame());
+        assertFalse(tracker.onFrame());
+        assertTrue(tracker.onFrame());
+        tracker.requestDetection();
+        assertTrue(tracker.onFrame());
+    }
+
+    @Test
+    public void keepsIdsAndEmotionAcrossDetections() {
+        FaceTracker tracker = new FaceTracker(1);
+        tracker.beginDetections();
+        tracker.addDetection(-1, 10, 10, 60, 60, 0.9f, 0.5f, 0.5f, 0f);
+        tracker.addDetection(-1, 200, 100, 260, 160, 0.1f, 0.5f, 0.5f, 0f);
+        tracker.endDetections(null);
+        ArrayList<FaceData> results = collect(tracker);
+        int smilingId = results.get(0).getTrackingId();
+        assertEquals(FaceData.EMOTION_SMILING, results.get(0).getEmotion());
+
+        // Slightly moved, smile probability dipped just below the threshold: same id, still smiling
+        tracker.beginDetections();
+        tracker.addDetection(-1, 204, 102, 264, 162, 0.1f, 0.5f, 0.5f, 0f);
+        tracker.addDetection(-1, 14, 12, 64, 62, 0.65f, 0.5f, 0.5f, 0f);
+        tracker.endDetections(null);
+        results = collect(tracker);
+        assertEquals(2, results.size());
+        FaceData smiling = findById(results, smilingId);
+        assertNotNull(smiling);
+        assertEquals(FaceData.EMOTION_SMILING, smiling.getEmotion());
+        assertEquals(14f, smiling.getBoxLeft(), 0f);
+    }
+
+    @Test
+    public void dropsTracksTheDetectorNoLongerSees() {
+        FaceTracker tracker = new FaceTracker(1);
+        tracker.beginDetections();
+        tracker.addDetection(7, 10, 10, 60, 60, 0.1f, 0.5f, 0.5f, 0f);
+        tracker.endDetections(null);
+        assertEquals(1, tracker.getTrackCount());
+        tracker.beginDetections();
+        tracker.endDetections(null);
+        assertEquals(0, tracker.getTrackCount());
+    }
+
+    @Test
+    public void followsMovingFaceOnLumaPlane() {
+        for (int rotation : new int[]{0, 90, 180, 270}) {
+            FaceTracker tracker = new FaceTracker(5);
+            LumaFrame frame = new LumaFrame();
+
+            ByteBuffer first = renderFace(rotation, 100, 80);
+            frame.set(first, WIDTH, HEIGHT, WIDTH, 1, rotation);
+            tracker.beginDetections();
+            tracker.addDetection(-1, 100, 80, 160, 140, 0.1f, 0.5f, 0.5f, 0f);
+            tracker.endDetections(frame);
+
+            ByteBuffer moved = renderFace(rotation, 109, 74);
+            frame.set(moved, WIDTH, HEIGHT, WIDTH, 1, rotation);
+            tracker.track(frame);
+
+            FaceData face = collect(tracker).get(0);
+            assertEquals("rotation " + rotation, 109f, face.getBoxLeft(), 2.5f);
+            assertEquals("rotation " + rotation, 74f, face.getBoxTop(), 2.5f);
+        }
+    }
+
+    @Test
+    public void crowdModeReportsOnlyLargestCentralFaces() {
+        FaceTracker tracker = new FaceTracker(1);
+        tracker.setCrowdLimits(2, FaceTracker.UNLIMITED);
+        tracker.beginDetections(WIDTH, HEIGHT);
+        tracker.addDetection(1, 0, 0, 40, 40, 0.9f, 0.5f, 0.5f, 0f);      // Small, in the corner
+        tracker.addDetection(2, 130, 90, 190, 150, 0.1f, 0.5f, 0.5f, 0f); // Centered
+        tracker.addDetection(3, 250, 170, 320, 240, 0.1f, 0.5f, 0.5f, 0f); // Largest, in the corner
+        tracker.addDetection(4, 10, 180, 50, 220, 0.9f, 0.5f, 0.5f, 0f);  // Small, at the edge
+        tracker.endDetections(null);
+
+        ArrayList<FaceData> results = collect(tracker);
+        assertEquals(2, results.size());
+        assertEquals(130f, results.get(0).getBoxLeft(), 0f);
+        assertEquals(250f, results.get(1).getBoxLeft(), 0f);
+        assertEquals(4, tracker.getTrackCount()); // Skipped faces keep their tracks
+        assertEquals(2, tracker.getSkippedTrackCount());
+    }
+
+    @Test
+    public void crowdSelectionIsSticky() {
+        FaceTracker tracker = new FaceTracker(1);
+        tracker.setCrowdLimits(1, FaceTracker.UNLIMITED);
+        tracker.beginDetections(WIDTH, HEIGHT);
+        tracker.addDetection(1, 50, 90, 110, 150, 0.9f, 0.5f, 0.5f, 0f);
+        tracker.addDetection(2, 210, 90, 268, 148, 0.1f, 0.5f, 0.5f, 0f);
+        tracker.endDetections(null);
+        int selected = collect(tracker).get(0).getTrackingId();
+
+        // The other face grows slightly larger, but not enough to take over
+        tracker.beginDetections(WIDTH, HEIGHT);
+        tracker.addDetection(1, 50, 90, 110, 150, 0.9f, 0.5f, 0.5f, 0f);
+        tracker.addDetection(2, 208, 88, 270, 150, 0.1f, 0.5f, 0.5f, 0f);
+        tracker.endDetections(null);
+        ArrayList<FaceData> results = collect(tracker);
+        assertEquals(selected, results.get(0).getTrackingId());
+        assertEquals(FaceData.EMOTION_SMILING, results.get(0).getEmotion());
+
+        // Clearly larger: it is selected and classified from scratch
+        tracker.beginDetections(WIDTH, HEIGHT);
+        tracker.addDetection(1, 50, 90, 110, 150, 0.9f, 0.5f, 0.5f, 0f);
+        tracker.addDetection(2, 180, 60, 300, 180, 0.1f, 0.5f, 0.5f, 0f);
+        tracker.endDetections(null);
+        results = collect(tracker);
+        assertNotEquals(selected, results.get(0).getTrackingId());
+        assertEquals(FaceData.EMOTION_NEUTRAL, results.get(0).getEmotion());
+    }
+
+    /**
+     * Renders a textured 60x60 "face" at upright position (x, y) and stores it in sensor
+     * orientation for the given rotation.
+     */
+    private static ByteBuffer renderFace(int rotation, int x, int y) {
+        boolean swap = rotation == 90 || rotation == 270;
+        int uprightWidth = swap ? HEIGHT : WIDTH;
+        int uprightHeight = swap ? WIDTH : HEIGHT;
+        byte[] upright = new byte[uprightWidth * uprightHeight];
+        for (int j = 0; j < uprightHeight; j++) {
+            for (int i = 0; i < uprightWidth; i++) {
+                int value = 40;
+                if (i >= x && i < x + 60 && j >= y && j < y + 60) {
+                    int u = i - x;
+                    int v = j - y;
+                    value = 80 + (u * 3 + v * 2) % 120 + ((u / 6 + v / 6) % 2) * 50;
+                }
+                upright[j * uprightWidth + i] = (byte) value;
+            }
+        }
+        byte[] sensor = new byte[WIDTH * HEIGHT];
+        for (int sy = 0; sy < HEIGHT; sy++) {
+            for (int sx = 0; sx < WIDTH; sx++) {
+                int ux;
+                int uy;
+                switch (rotation) {
+                    case 90: ux = HEIGHT - 1 - sy; uy = sx; break;
+                    case 180: ux = WIDTH - 1 - sx; uy = HEIGHT - 1 - sy; break;
+                    case 270: ux = sy; uy = WIDTH - 1 - sx; break;
+                    default: ux = sx; uy = sy; break;
+                }
+                sensor[sy * WIDTH + sx] = upright[uy * uprightWidth + ux];
+            }
+        }
+        return ByteBuffer.wrap(sensor);
+    }
+
+    private static ArrayList<FaceData> collect(FaceTracker tracker) {
+        ArrayList<FaceData> results = new ArrayList<>();
+        tracker.collectResults(new FaceDataPool(4), results);
+        return results;
+    }
+
+    private static FaceData findById(ArrayList<FaceData> results, int id) {
+        for (FaceData data : results) {
+            if (data.getTrackingId() == id) {
+                return data;
+            }
+        }
+        return null;
+    }
+}
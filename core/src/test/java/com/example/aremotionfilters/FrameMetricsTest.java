@@ -0,0 +1,125 @@
+package com.example.aremotionfilters;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameMetricsTest {
+
+    private static final long FRAME_NANOS = 33_333_333L;
+
+    @Test
+    public void countsFramesSkippedBetweenAnalyzedTimestamps() {
+        FrameMetrics metrics = new FrameMetrics();
+        long t = 1_000_000_000L;
+        metrics.onFrameTimestamp(t);
+        metrics.onFrameTimestamp(t += FRAME_NANOS);
+        metrics.onFrameTimestamp(t += FRAME_NANOS);
+        assertEquals(0, metrics.getDroppedFrames());
+
+        metrics.onFrameTimestamp(t += 3 * FRAME_NANOS); // two frames dropped
+        metrics.onFrameTimestamp(t += 2 * FRAME_NANOS); // one frame dropped
+        assertEquals(3, metrics.getDroppedFrames());
+        assertEquals(5, metrics.getAnalyzedFrames());
+    }
+
+    @Test
+    public void reportContainsEveryStage() {
+        FrameMetrics metrics = new FrameMetrics();
+        metrics.record(FrameMetrics.STAGE_FACE_DETECTION, 12_000_000L);
+        String report = metrics.formatReport("test");
+        for (int i = 0; i < FrameMetrics.STAGE_COUNT; i++) {
+            assertTrue(report.contains(FrameMetrics.getStageName(i)));
+        }
+        String[] lines = new String[FrameMetrics.STAGE_COUNT + 3];
+        assertEquals(FrameMetrics.STAGE_COUNT + 2, metrics.formatHudLines(lines, 1));
+        assertNull(lines[0]);
+    }
+
+    @Test
+    public void countsSkippedOverlayRedraws() {
+        FrameMetrics metrics = new FrameMetrics();
+        metrics.onOverlayRedraw();
+        metrics.onOverlayRedrawSkipped();
+        metrics.onOverlayRedrawSkipped();
+        assertEquals(1, metrics.getOverlayRedraws());
+        assertEquals(2, metrics.getOverlayRedrawsSkipped());
+        String report = metrics.formatReport(null);
+        assertTrue(report.contains("overlay_redraws 1\n"));
+        assertTrue(report.contains("overlay_redraws_skipped 2\n"));
+        metrics.reset();
+        assertEquals(0, metrics.getOverlayRedrawsSkipped());
+    }
+
+    @Test
+    public void startupMeasurementsSurviveReset() {
+        FrameMetrics metrics = new FrameMetrics();
+        assertEquals(-1L, metrics.getEffectAssetBytes());
+        assertTrue(metrics.formatReport(null).contains("time_to_first_preview_ms -1\n"));
+
+        metrics.recordEffectAssetLoad(4_500_000L, 2048L);
+        metrics.recordTimeToFirstPreview(350_000_000L);
+        metrics.reset();
+
+        String report = metrics.formatReport(null);
+        assertTrue(report.contains("effect_asset_decode_ms 4.50\n"));
+        assertTrue(report.contains("effect_asset_bytes 2048\n"));
+        assertTrue(report.contains("time_to_first_preview_ms 350.00\n"));
+    }
+
+    @Test
+    public void firstEffectKeepsFirstAndBindKeepsLatest() {
+        FrameMetrics metrics = new FrameMetrics();
+        assertTrue(metrics.formatReport(null).contains("time_to_first_effect_ms -1\n"));
+        metrics.recordTimeToFirstEffect(900_000_000L);
+        metrics.recordTimeToFirstEffect(1_200_000_000L); // A later face, after a camera switch
+        metrics.recordDetectorWarmUp(180_000_000L);
+        metrics.recordBindToFirstResult(400_000_000L);
+        metrics.recordBindToFirstResult(60_000_000L);
+        metrics.reset();
+
+        assertEquals(900_000_000L, metrics.getTimeToFirstEffectNanos());
+        String report = metrics.formatReport(null);
+        assertTrue(report.contains("time_to_first_effect_ms 900.00\n"));
+        assertTrue(report.contains("detector_warmup_ms 180.00\n"));
+        assertTrue(report.contains("bind_to_first_result_ms 60.00\n"));
+    }
+
+    @Test
+    public void capturePeakKeepsMaximum() {
+        FrameMetrics metrics = new FrameMetrics();
+        metrics.recordCapturePeakBytes(3000L);
+        metrics.recordCapturePeakBytes(1000L);
+        assertEquals(3000L, metrics.getCapturePeakBytes());
+        assertTrue(metrics.formatReport(null).contains("capture_peak_bytes 3000\n"));
+    }
+
+    @Test
+    public void throttledFramesAreNotCountedAsDropped() {
+        FrameMetrics metrics = new FrameMetrics();
+        long period = 33_000_000L;
+        for (int i = 0; i < 10; i++) {
+            if (i % 2 == 0) {
+                metrics.onFrameTimestamp(i * period);
+            } else {
+                metrics.onFrameThrottled(i * period);
+            }
+        }
+        assertEquals(5, metrics.getAnalyzedFrames());
+        assertEquals(5, metrics.getThrottledFrames());
+        assertEquals(0, metrics.getDroppedFrames());
+    }
+
+    @Test
+    public void qualityTierChangesAreCounted() {
+        FrameMetrics metrics = new FrameMetrics();
+        metrics.recordQualityTier(QualityGovernor.TIER_FULL);
+        metrics.recordQualityTier(QualityGovernor.TIER_NO_POSE);
+        metrics.recordQualityTier(QualityGovernor.TIER_NO_POSE);
+        assertEquals(QualityGovernor.TIER_NO_POSE, metrics.getQualityTier());
+        assertEquals(1, metrics.getQualityTierChanges());
+        String report = metrics.formatReport(null);
+        assertTrue(report.contains("quality_tier no_pose\n"));
+        assertTrue(report.contains("quality_tier_changes 1\n"));
+    }
+}
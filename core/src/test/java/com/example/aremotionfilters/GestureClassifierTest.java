@@ -0,0 +1,18 @@
+package com.example.aremotionfilters;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GestureClassifierTest {
+
+    private static final float NAN = Float.NaN;
+
+    @Test
+    public void forearmRotationFollowsElbowToWrist() {
+        // Upright forearm (elbow straight below the wrist) keeps the sprite upright
+        assertEquals(0f, GestureClassifier.forearmRotationDegrees(100, 200, 100, 300), 0.001f);
+        assertEquals(90f, GestureClassifier.forearmRotationDegrees(200, 200, 100, 200), 0.001f);
+        assertEquals(0f, GestureClassifier.forearmRotationDegrees(100, 200, NAN, NAN), 0.001f);
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.aremotionfilters;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GestureEngineTest {
+
+    private static final long MS = 1_000_000L;
+
+    // Matches whichever hands are currently switched on
+    private static final class FixedRule implements GestureRule {
+        private final int gesture;
+        final boolean[] matching = new boolean[PoseFeatures.HAND_COUNT];
+
+        FixedRule(int gesture) {
+            this.gesture = gesture;
+        }
+
+        @Override
+        public int gesture() {
+            return gesture;
+        }
+
+        @Override
+        public boolean matches(PoseFeatures features, int hand, long timestampNanos) {
+            return matching[hand];
+        }
+    }
+
+    private static PoseFeatures rightHand() {
+        PoseFeatures f = new PoseFeatures();
+        PoseFeaturesTest.setRightHand(f, 1f, 0.5f, 0.2f, 0.1f);
+        f.compute();
+        return f;
+    }
+
+    @Test
+    public void turnsOnAfterOnDelayAndOffAfterOffDelay() {
+        GestureEngine engine = new GestureEngine();
+        FixedRule rule = new FixedRule(FaceData.GESTURE_PEACE);
+        int index = engine.register(rule, 100 * MS, 250 * MS);
+        PoseFeatures features = rightHand();
+
+        rule.matching[PoseFeatures.HAND_RIGHT] = true;
+        engine.evaluate(features, 0);
+        engine.evaluate(features, 66 * MS);
+        assertFalse(engine.isActive(index, PoseFeatures.HAND_RIGHT));
+        engine.evaluate(features, 100 * MS);
+        assertTrue(engine.isActive(index, PoseFeatures.HAND_RIGHT));
+        assertFalse(engine.isActive(index, PoseFeatures.HAND_LEFT));
+
+        // A single miss is bridged
+        rule.matching[PoseFeatures.HAND_RIGHT] = false;
+        engine.evaluate(features, 133 * MS);
+        rule.matching[PoseFeatures.HAND_RIGHT] = true;
+        engine.evaluate(features, 166 * MS);
+        rule.matching[PoseFeatures.HAND_RIGHT] = false;
+        engine.evaluate(features, 200 * MS);
+        engine.evaluate(features, 400 * MS);
+        assertTrue(engine.isActive(index, PoseFeatures.HAND_RIGHT));
+        engine.evaluate(features, 450 * MS);
+        assertFalse(engine.isActive(index, PoseFeatures.HAND_RIGHT));
+    }
+
+    @Test
+    public void collectsOneGesturePerHandInRegistrationOrder() {
+        GestureEngine engine = new GestureEngine();
+        FixedRule first = new FixedRule(FaceData.GESTURE_WAVE);
+        FixedRule second = new FixedRule(FaceData.GESTURE_THUMBS_UP);
+        engine.register(first, 0, 0);
+        engine.register(second, 0, 0);
+        PoseFeatures features = rightHand();
+
+        first.matching[PoseFeatures.HAND_RIGHT] = true;
+        second.matching[PoseFeatures.HAND_RIGHT] = true;
+        second.matching[PoseFeatures.HAND_LEFT] = true;
+        engine.evaluate(features, 0);
+
+        FaceDataPool pool = new FaceDataPool(4);
+        List<FaceData> out = new ArrayList<>();
+        assertEquals(2, engine.collect(pool, out));
+        assertEquals(FaceData.GESTURE_THUMBS_UP, out.get(0).getEmotion()); // Left hand
+        assertEquals(FaceData.GESTURE_WAVE, out.get(1).getEmotion()); // Right hand
+        assertEquals(200f, out.get(1).getGestureAnchorX(), 1e-4f);
+        assertEquals(200f, out.get(1).getGestureAnchorY(), 1e-4f);
+
+        engine.reset();
+        out.clear();
+        assertEquals(0, engine.collect(pool, out));
+    }
+
+    @Test
+    public void classifierRulesRecognizeHandShapes() {
+        PoseFeatures thumbsUp = rightHand();
+        PoseFeatures peace = new PoseFeatures();
+        PoseFeaturesTest.setRightHand(peace, 1f, 0.05f, 0.6f, 0.05f);
+        peace.compute();
+
+        GestureRule thumbsRule = GestureClassifier.thumbsUpRule();
+        GestureRule peaceRule = GestureClassifier.peaceRule();
+        assertTrue(thumbsRule.matches(thumbsUp, PoseFeatures.HAND_RIGHT, 0));
+        assertFalse(peaceRule.matches(thumbsUp, PoseFeatures.HAND_RIGHT, 0));
+        assertTrue(peaceRule.matches(peace, PoseFeatures.HAND_RIGHT, 0));
+        assertFalse(thumbsRule.matches(peace, PoseFeatures.HAND_RIGHT, 0));
+        assertFalse(thumbsRule.matches(thumbsUp, PoseFeatures.HAND_LEFT, 0));
+    }
+
+    @Test
+    public void thumbsUpLooksAtThumbAndWristOnly() {
+        // Open hand and fingers the detector is unsure of: the thumb alone decides, as it did in pixels
+        PoseFeatures open = new PoseFeatures();
+        PoseFeaturesTest.setRightHand(open, 1f, 0.5f, 0.8f, 0.6f);
+        open.setLandmark(PoseFeatures.RIGHT_PINKY, 210, 140, 0.1f);
+        open.compute();
+        GestureRule thumbsRule = GestureClassifier.thumbsUpRule();
+        assertTrue(thumbsRule.matches(open, PoseFeatures.HAND_RIGHT, 0));
+
+        // Missing thumb, or the elbow above the wrist, is still not a thumbs up
+        PoseFeatures noThumb = new PoseFeatures();
+        PoseFeaturesTest.setRightHand(noThumb, 1f, 0.5f, 0.2f, 0.1f);
+        noThumb.setLandmark(PoseFeatures.RIGHT_THUMB, Float.NaN, Float.NaN, 0f);
+        noThumb.compute();
+        assertFalse(thumbsRule.matches(noThumb, PoseFeatures.HAND_RIGHT, 0));
+        PoseFeatures hanging = new PoseFeatures();
+        PoseFeaturesTest.setRightHand(hanging, 1f, 0.5f, 0.2f, 0.1f);
+        hanging.setLandmark(PoseFeatures.RIGHT_ELBOW, 200, 100, 0.9f);
+        hanging.compute();
+        assertFalse(thumbsRule.matches(hanging, PoseFeatures.HAND_RIGHT, 0));
+    }
+
+    @Test
+    public void waveNeedsSwingsWithinWindow() {
+        GestureRule wave = GestureClassifier.waveRule();
+        PoseFeatures f = new PoseFeatures();
+        float[] wristX = {200, 250, 150, 250, 150};
+        boolean matched = false;
+        for (int i = 0; i < wristX.length; i++) {
+            setSwing(f, wristX[i]);
+            matched = wave.matches(f, PoseFeatures.HAND_RIGHT, i * 200 * MS);
+            assertEquals("frame " + i, i >= 4, matched);
+        }
+        // Swinging too slowly does not count
+        GestureRule slow = GestureClassifier.waveRule();
+        for (int i = 0; i < wristX.length; i++) {
+            setSwing(f, wristX[i]);
+            matched = slow.matches(f, PoseFeatures.HAND_RIGHT, i * 1000 * MS);
+        }
+        assertFalse(matched);
+    }
+
+    private static void setSwing(PoseFeatures f, float wristX) {
+        f.clear();
+        PoseFeaturesTest.setRightHand(f, 1f, 0.05f, 0.3f, 0.1f);
+        f.setLandmark(PoseFeatures.RIGHT_WRIST, wristX, 220, 0.9f);
+        f.compute();
+    }
+}
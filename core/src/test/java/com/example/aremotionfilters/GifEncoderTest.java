@@ -0,0 +1,152 @@
+package com.example.aremotionfilters;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import static org.junit.Assert.*;
+
+public class GifEncoderTest {
+
+    private static final int WIDTH = 150;
+    private static final int HEIGHT = 200;
+
+    // Smooth gradient with a moving block: many colors, long runs and noisy areas
+    private static int[] frame(int index, Random random) {
+        int[] argb = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int r = x * 255 / WIDTH;
+                int g = y * 255 / HEIGHT;
+                int b = (index * 60) & 0xFF;
+                if (x > 20 + index * 10 && x < 60 + index * 10 && y > 50 && y < 90) {
+                    r = g = b = random.nextInt(256);
+                }
+                argb[y * WIDTH + x] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+        return argb;
+    }
+
+    private static BufferedImage[] decode(byte[] gif) throws Exception {
+        ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(gif))) {
+            reader.setInput(in);
+            int count = reader.getNumImages(true);
+            BufferedImage[] images = new BufferedImage[count];
+            for (int i = 0; i < count; i++) {
+                images[i] = reader.read(i);
+            }
+            return images;
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private static int maxChannelError(int expected, int actual) {
+        int error = 0;
+        for (int shift = 0; shift <= 16; shift += 8) {
+            error = Math.max(error, Math.abs(((expected >> shift) & 0xFF) - ((actual >> shift) & 0xFF)));
+        }
+        return error;
+    }
+
+    @Test
+    public void writesAnimationStandardDecodersRead() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Random random = new Random(1);
+        int[][] frames = new int[4][];
+        GifEncoder encoder = new GifEncoder(out, WIDTH, HEIGHT, GifEncoder.LOOP_FOREVER, new PaletteQuantizer(null, 1));
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = frame(i, random);
+            encoder.addFrame(frames[i], 500);
+        }
+        encoder.finish();
+        assertEquals(4, encoder.getFrameCount());
+
+        BufferedImage[] images = decode(out.toByteArray());
+        assertEquals(4, images.length);
+        for (int i = 0; i < images.length; i++) {
+            assertEquals(WIDTH, images[i].getWidth());
+            assertEquals(HEIGHT, images[i].getHeight());
+            // Median cut keeps the per-pixel error of the gradient and the noise block small
+            long totalError = 0;
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    totalError += maxChannelError(frames[i][y * WIDTH + x], images[i].getRGB(x, y));
+                }
+            }
+            assertTrue("frame " + i + " mean error " + totalError / (WIDTH * HEIGHT),
+                    totalError / (WIDTH * HEIGHT) < 16);
+        }
+    }
+
+    @Test
+    public void fewColorsAreKeptExactly() throws Exception {
+        // Values an RGB555 bin expands back to exactly (v5 << 3 | v5 >> 2)
+        int[] colors = {0xFF000000, 0xFFFFFFFF, 0xFFFF0000, 0xFF008400, 0xFF3929FF};
+        int[] argb = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = colors[(i / 7) % colors.length];
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GifEncoder encoder = new GifEncoder(out, WIDTH, HEIGHT, 1, new PaletteQuantizer(null, 1));
+        encoder.addFrame(argb, 100);
+        encoder.finish();
+        BufferedImage image = decode(out.toByteArray())[0];
+        for (int i = 0; i < argb.length; i++) {
+            assertEquals(argb[i], image.getRGB(i % WIDTH, i / WIDTH));
+        }
+    }
+
+    @Test
+    public void parallelQuantizationMatchesSerial() throws Exception {
+        int size = 400 * 300;
+        int[] argb = new int[size];
+        Random random = new Random(7);
+        for (int i = 0; i < size; i++) {
+            argb[i] = random.nextInt();
+        }
+        byte[] serialIndices = new byte[size];
+        int[] serialPalette = new int[PaletteQuantizer.MAX_COLORS];
+        int serialColors = new PaletteQuantizer(null, 1).quantize(argb, size, serialIndices, serialPalette);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            PaletteQuantizer parallel = new PaletteQuantizer(executor, 4);
+            byte[] indices = new byte[size];
+            int[] palette = new int[PaletteQuantizer.MAX_COLORS];
+            for (int run = 0; run < 2; run++) { // Reused buffers must not leak between frames
+                assertEquals(serialColors, parallel.quantize(argb, size, indices, palette));
+                assertArrayEquals(serialPalette, palette);
+                assertArrayEquals(serialIndices, indices);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(PaletteQuantizer.MAX_COLORS, serialColors);
+    }
+
+    @Test
+    public void workingMemoryDoesNotGrowWithFrames() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GifEncoder encoder = new GifEncoder(out, WIDTH, HEIGHT, GifEncoder.LOOP_FOREVER, new PaletteQuantizer(null, 1));
+        long before = encoder.getWorkingBytes();
+        Random random = new Random(3);
+        for (int i = 0; i < 6; i++) {
+            int written = out.size();
+            encoder.addFrame(frame(i, random), 200);
+            assertTrue("frame " + i + " was not streamed", out.size() > written);
+        }
+        assertEquals(before, encoder.getWorkingBytes());
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.aremotionfilters;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ImageSamplingTest {
+
+    @Test
+    public void sampleSizeNeverGoesBelowTarget() {
+        assertEquals(1, ImageSampling.inSampleSize(1000, 1000));
+        assertEquals(1, ImageSampling.inSampleSize(1000, 600));
+        assertEquals(2, ImageSampling.inSampleSize(1000, 500));
+        assertEquals(2, ImageSampling.inSampleSize(4000, 1080));
+        assertEquals(4, ImageSampling.inSampleSize(4000, 1000));
+        assertEquals(1, ImageSampling.inSampleSize(500, 1000));
+        assertEquals(1, ImageSampling.inSampleSize(4000, 0));
+    }
+
+    @Test
+    public void downscaleOnlyShrinks() {
+        assertEquals(1f, ImageSampling.downscaleToFit(640, 480, 2048), 0f);
+        assertEquals(0.5f, ImageSampling.downscaleToFit(3000, 4096, 2048), 1e-6f);
+        assertEquals(1f, ImageSampling.downscaleToFit(3000, 4096, 0), 0f);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.aremotionfilters;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void bucketsAreContiguousAndMonotonic() {
+        long previousUpper = -1;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long upper = LatencyHistogram.bucketUpperBoundMicros(i);
+            assertTrue(upper > previousUpper);
+            assertEquals(i, LatencyHistogram.bucketIndex(upper));
+            assertEquals(i, LatencyHistogram.bucketIndex(previousUpper + 1));
+            previousUpper = upper;
+        }
+    }
+
+    @Test
+    public void percentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.recordNanos(i * MS);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50f, histogram.getPercentileMillis(50), 50f * 0.125f);
+        assertEquals(95f, histogram.getPercentileMillis(95), 95f * 0.125f);
+        assertEquals(99f, histogram.getPercentileMillis(99), 99f * 0.125f);
+        assertEquals(100f, histogram.getMaxMillis(), 0.001f);
+        assertEquals(50.5f, histogram.getMeanMillis(), 0.001f);
+    }
+
+    @Test
+    public void hugeValuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(Long.MAX_VALUE / 2);
+        assertEquals(1, histogram.getCount());
+        assertTrue(histogram.getPercentileMillis(99) > 0f);
+    }
+
+    @Test
+    public void emptyAndResetHistogramReportZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0f, histogram.getPercentileMillis(50), 0f);
+        histogram.recordNanos(5 * MS);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0f, histogram.getPercentileMillis(99), 0f);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.aremotionfilters;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OverlayChangeDetectorTest {
+
+    private static boolean frame(OverlayChangeDetector detector, float... effects) {
+        detector.begin();
+        // code, left, top, right, bottom, rotation per effect; tracking ID = code
+        for (int i = 0; i < effects.length; i += 6) {
+            detector.add((int) effects[i], (int) effects[i], effects[i + 1], effects[i + 2], effects[i + 3],
+                    effects[i + 4], effects[i + 5]);
+        }
+        return detector.commit();
+    }
+
+    @Test
+    public void jitterWithinToleranceIsSkipped() {
+        OverlayChangeDetector detector = new OverlayChangeDetector();
+        assertTrue(frame(detector, 1, 100, 100, 200, 150, 0));
+        assertEquals(1, detector.getDrawnCount());
+        assertFalse(frame(detector, 1, 101, 99, 201.5f, 150, 1.5f));
+        assertFalse(frame(detector, 1, 98, 101, 199, 151, -1f));
+        // Compared against the drawn placement, so drift adds up to a redraw
+        assertFalse(frame(detector, 1, 102, 100, 202, 150, 0));
+        assertTrue(frame(detector, 1, 103, 100, 203, 150, 0));
+    }
+
+    @Test
+    public void emptyFramesAfterEmptyFramesAreSkipped() {
+        OverlayChangeDetector detector = new OverlayChangeDetector();
+        assertFalse(frame(detector));
+        assertTrue(frame(detector, 2, 0, 0, 10, 10, 0));
+        assertTrue(frame(detector)); // Effect disappeared
+        assertFalse(frame(detector));
+    }
+
+    @Test
+    public void codeOrRotationChangeIsVisible() {
+        OverlayChangeDetector detector = new OverlayChangeDetector();
+        frame(detector, 1, 100, 100, 200, 150, 0);
+        assertTrue(frame(detector, 3, 100, 100, 200, 150, 0));
+        assertTrue(frame(detector, 3, 100, 100, 200, 150, 10));
+        detector.setTolerance(2f, 15f);
+        assertFalse(frame(detector, 3, 100, 100, 200, 150, 20));
+    }
+
+    @Test
+    public void redrawMakesEveryEffectTheDrawnBaseline() {
+        OverlayChangeDetector detector = new OverlayChangeDetector();
+        assertTrue(frame(detector, 1, 100, 100, 200, 150, 0, 2, 500, 500, 600, 550, 0));
+        // First effect moves, second drifts by 1 px: the whole set is redrawn and becomes the baseline
+        assertTrue(frame(detector, 1, 103, 100, 203, 150, 0, 2, 501, 500, 601, 550, 0));
+        assertEquals(2, detector.getDrawnCount());
+        // Second effect is now compared against where it was last drawn, not where it started
+        assertFalse(frame(detector, 1, 103, 100, 203, 150, 0, 2, 499, 500, 599, 550, 0));
+        assertTrue(frame(detector, 1, 103, 100, 203, 150, 0, 2, 503.5f, 500, 603.5f, 550, 0));
+        // Effect gone
+        assertTrue(frame(detector, 1, 103, 100, 203, 150, 0));
+        assertEquals(1, detector.getDrawnCount());
+    }
+
+    @Test
+    public void resetForcesNextRedraw() {
+        OverlayChangeDetector detector = new OverlayChangeDetector();
+        frame(detector, 1, 100, 100, 200, 150, 0);
+        detector.reset();
+        assertTrue(frame(detector, 1, 100, 100, 200, 150, 0));
+    }
+
+    @Test
+    public void growsBeyondInitialCapacity() {
+        OverlayChangeDetector detector = new OverlayChangeDetector();
+        float[] effects = new float[6 * 10];
+        for (int i = 0; i < 10; i++) {
+            effects[6 * i] = i;
+            effects[6 * i + 1] = 10 * i;
+            effects[6 * i + 3] = 10 * i + 5;
+            effects[6 * i + 4] = 5;
+        }
+        assertTrue(frame(detector, effects));
+        assertEquals(10, detector.getDrawnCount());
+        assertFalse(frame(detector, effects));
+    }
+}
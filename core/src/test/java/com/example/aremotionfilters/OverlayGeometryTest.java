@@ -0,0 +1,43 @@
+package com.example.aremotionfilters;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OverlayGeometryTest {
+
+    private final float[] out = new float[4];
+
+    @Test
+    public void mapBoxMirrorsForFrontCamera() {
+        OverlayGeometry.mapBox(10, 20, 110, 120, 2f, 3f, 1000, false, out);
+        assertArrayEquals(new float[]{20, 60, 220, 360}, out, 0.001f);
+        OverlayGeometry.mapBox(10, 20, 110, 120, 2f, 3f, 1000, true, out);
+        assertArrayEquals(new float[]{780, 60, 980, 360}, out, 0.001f);
+    }
+
+    @Test
+    public void faceEffectSitsAboveRightOfFace() {
+        assertTrue(OverlayGeometry.placeFaceEffect(100, 100, 200, 200, 1f, 1f, 640, false, 0.5f, out));
+        float width = out[OverlayGeometry.RIGHT] - out[OverlayGeometry.LEFT];
+        float height = out[OverlayGeometry.BOTTOM] - out[OverlayGeometry.TOP];
+        assertEquals(90f, width, 0.001f);
+        assertEquals(45f, height, 0.001f);
+        // Centre: right edge + 10% of face width, top - 60% of effect height
+        assertEquals(210f, out[OverlayGeometry.LEFT] + width / 2f, 0.001f);
+        assertEquals(100f - 27f, out[OverlayGeometry.TOP] + height / 2f, 0.001f);
+    }
+
+    @Test
+    public void emptyFaceIsNotPlaced() {
+        assertFalse(OverlayGeometry.placeFaceEffect(100, 100, 100, 200, 1f, 1f, 640, false, 1f, out));
+    }
+
+    @Test
+    public void gestureEffectIsSizedFromTargetHeight() {
+        assertTrue(OverlayGeometry.placeGestureEffect(320, 400, 1f, 1f, 640, 480, false, 1f, out));
+        assertEquals(72f, out[OverlayGeometry.BOTTOM] - out[OverlayGeometry.TOP], 0.001f);
+        assertEquals(400f - 20f, out[OverlayGeometry.BOTTOM], 0.001f);
+        assertEquals(320f, (out[OverlayGeometry.LEFT] + out[OverlayGeometry.RIGHT]) / 2f, 0.001f);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.aremotionfilters;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PoseFeaturesTest {
+
+    // Right forearm pointing straight up, 100 px long, thumb 50 px above the wrist
+    static void setRightHand(PoseFeatures f, float scale, float thumbRise, float indexRise, float pinkyRise) {
+        f.setLandmark(PoseFeatures.RIGHT_SHOULDER, 100 * scale, 250 * scale, 0.9f);
+        f.setLandmark(PoseFeatures.RIGHT_ELBOW, 200 * scale, 300 * scale, 0.9f);
+        f.setLandmark(PoseFeatures.RIGHT_WRIST, 200 * scale, 200 * scale, 0.9f);
+        f.setLandmark(PoseFeatures.RIGHT_THUMB, 190 * scale, (200 - thumbRise * 100) * scale, 0.9f);
+        f.setLandmark(PoseFeatures.RIGHT_INDEX, 200 * scale, (200 - indexRise * 100) * scale, 0.9f);
+        f.setLandmark(PoseFeatures.RIGHT_PINKY, 210 * scale, (200 - pinkyRise * 100) * scale, 0.9f);
+    }
+
+    @Test
+    public void featuresAreNormalizedByForearmLength() {
+        PoseFeatures small = new PoseFeatures();
+        setRightHand(small, 1f, 0.5f, 0.2f, 0.1f);
+        small.compute();
+        PoseFeatures large = new PoseFeatures();
+        setRightHand(large, 2.5f, 0.5f, 0.2f, 0.1f);
+        large.compute();
+
+        int[] normalized = {PoseFeatures.THUMB_RISE, PoseFeatures.INDEX_RISE, PoseFeatures.PINKY_RISE,
+                PoseFeatures.WRIST_ABOVE_ELBOW, PoseFeatures.WRIST_SIDE, PoseFeatures.ELBOW_ANGLE,
+                PoseFeatures.FOREARM_ROTATION};
+        for (int feature : normalized) {
+            assertEquals(small.get(PoseFeatures.HAND_RIGHT, feature),
+                    large.get(PoseFeatures.HAND_RIGHT, feature), 1e-4f);
+        }
+        assertEquals(0.5f, small.get(PoseFeatures.HAND_RIGHT, PoseFeatures.THUMB_RISE), 1e-4f);
+        assertEquals(1f, small.get(PoseFeatures.HAND_RIGHT, PoseFeatures.WRIST_ABOVE_ELBOW), 1e-4f);
+        assertEquals(0f, small.get(PoseFeatures.HAND_RIGHT, PoseFeatures.FOREARM_ROTATION), 1e-4f);
+        assertEquals(500f, large.get(PoseFeatures.HAND_RIGHT, PoseFeatures.WRIST_X), 1e-4f);
+    }
+
+    @Test
+    public void missingForearmLeavesHandUnknown() {
+        PoseFeatures f = new PoseFeatures();
+        setRightHand(f, 1f, 0.5f, 0.2f, 0.1f);
+        f.compute();
+        assertTrue(f.isHandVisible(PoseFeatures.HAND_RIGHT, 0.5f));
+        assertFalse(f.isHandVisible(PoseFeatures.HAND_LEFT, 0.01f));
+        assertTrue(Float.isNaN(f.get(PoseFeatures.HAND_LEFT, PoseFeatures.THUMB_RISE)));
+
+        f.clear();
+        f.compute();
+        assertFalse(f.isHandVisible(PoseFeatures.HAND_RIGHT, 0.01f));
+    }
+
+    @Test
+    public void likelihoodIsWeakestHandLandmark() {
+        PoseFeatures f = new PoseFeatures();
+        setRightHand(f, 1f, 0.5f, 0.2f, 0.1f);
+        f.setLandmark(PoseFeatures.RIGHT_PINKY, 210, 190, 0.3f);
+        f.setLandmark(99, 0, 0, 1f); // Unknown landmark types are ignored
+        f.compute();
+        assertEquals(0.3f, f.get(PoseFeatures.HAND_RIGHT, PoseFeatures.LIKELIHOOD), 1e-6f);
+        assertFalse(f.isHandVisible(PoseFeatures.HAND_RIGHT, 0.5f));
+    }
+}
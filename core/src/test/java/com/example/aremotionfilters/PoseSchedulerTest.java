@@ -0,0 +1,72 @@
+package com.example.aremotionfilters;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PoseSchedulerTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void firstFrameRunsPose() {
+        PoseScheduler scheduler = new PoseScheduler(33 * MS, 1, 8, 500 * MS);
+        assertTrue(scheduler.shouldRunPose());
+    }
+
+    @Test
+    public void poseIsNotScheduledWhileInFlight() {
+        PoseScheduler scheduler = new PoseScheduler(33 * MS, 1, 1, 500 * MS);
+        assertTrue(scheduler.shouldRunPose());
+        assertFalse(scheduler.shouldRunPose());
+        scheduler.onPoseFailed();
+        assertTrue(scheduler.shouldRunPose());
+    }
+
+    @Test
+    public void intervalGrowsWithPoseLatency() {
+        PoseScheduler scheduler = new PoseScheduler(33 * MS, 1, 8, 500 * MS);
+        scheduler.onFaceLatency(10 * MS);
+        scheduler.onPoseLatency(20 * MS);
+        assertEquals(1, scheduler.getPoseInterval());
+
+        PoseScheduler slowPose = new PoseScheduler(33 * MS, 1, 8, 500 * MS);
+        slowPose.onFaceLatency(10 * MS);
+        slowPose.onPoseLatency(100 * MS);
+        // (100 - 10) / (33 - 10) = 3.9 -> every 4th frame
+        assertEquals(4, slowPose.getPoseInterval());
+    }
+
+    @Test
+    public void intervalIsClampedWhenFaceAloneExceedsBudget() {
+        PoseScheduler scheduler = new PoseScheduler(33 * MS, 2, 6, 500 * MS);
+        scheduler.onFaceLatency(40 * MS);
+        scheduler.onPoseLatency(120 * MS);
+        assertEquals(6, scheduler.getPoseInterval());
+    }
+
+    @Test
+    public void poseRunsEveryIntervalFrames() {
+        PoseScheduler scheduler = new PoseScheduler(33 * MS, 1, 8, 500 * MS);
+        scheduler.onFaceLatency(10 * MS);
+        scheduler.onPoseLatency(100 * MS); // interval 4
+
+        assertTrue(scheduler.shouldRunPose());
+        scheduler.onPoseLatency(100 * MS);
+        int runs = 0;
+        for (int i = 0; i < 12; i++) {
+            if (scheduler.shouldRunPose()) {
+                runs++;
+                scheduler.onPoseLatency(100 * MS);
+            }
+        }
+        assertEquals(3, runs);
+    }
+
+    @Test
+    public void stalePoseIsNotReused() {
+        PoseScheduler scheduler = new PoseScheduler(33 * MS, 1, 8, 500 * MS);
+        assertTrue(scheduler.isPoseFresh(0, 400 * MS));
+        assertFalse(scheduler.isPoseFresh(0, 600 * MS));
+    }
+}
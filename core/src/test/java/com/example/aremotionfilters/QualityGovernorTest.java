@@ -0,0 +1,73 @@
+package com.example.aremotionfilters;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class QualityGovernorTest {
+
+    private static final long S = 1_000_000_000L;
+
+    @Test
+    public void worseConditionsTakeEffectImmediately() {
+        QualityGovernor governor = new QualityGovernor(30 * S);
+        assertFalse(governor.update(0, QualityGovernor.THERMAL_STATUS_NONE, 80, false, false));
+        assertEquals(QualityGovernor.TIER_FULL, governor.getTier());
+
+        assertTrue(governor.update(1 * S, QualityGovernor.THERMAL_STATUS_SEVERE, 80, false, false));
+        assertEquals(QualityGovernor.TIER_NO_POSE, governor.getTier());
+        assertFalse(QualityGovernor.isPoseEnabled(governor.getTier()));
+
+        assertTrue(governor.update(2 * S, QualityGovernor.THERMAL_STATUS_CRITICAL, 80, false, false));
+        assertEquals(QualityGovernor.TIER_MINIMAL, governor.getTier());
+    }
+
+    @Test
+    public void recoveryRestoresOneTierAfterDelay() {
+        QualityGovernor governor = new QualityGovernor(30 * S);
+        governor.update(0, QualityGovernor.THERMAL_STATUS_CRITICAL, -1, false, false);
+        assertEquals(QualityGovernor.TIER_MINIMAL, governor.getTier());
+
+        assertFalse(governor.update(10 * S, QualityGovernor.THERMAL_STATUS_NONE, -1, false, false));
+        assertFalse(governor.update(39 * S, QualityGovernor.THERMAL_STATUS_NONE, -1, false, false));
+        assertTrue(governor.update(40 * S, QualityGovernor.THERMAL_STATUS_NONE, -1, false, false));
+        assertEquals(QualityGovernor.TIER_NO_POSE, governor.getTier());
+        // The next step waits for another full recovery period
+        assertFalse(governor.update(50 * S, QualityGovernor.THERMAL_STATUS_NONE, -1, false, false));
+        assertTrue(governor.update(70 * S, QualityGovernor.THERMAL_STATUS_NONE, -1, false, false));
+        assertEquals(QualityGovernor.TIER_REDUCED_RATE, governor.getTier());
+    }
+
+    @Test
+    public void relapseRestartsRecovery() {
+        QualityGovernor governor = new QualityGovernor(30 * S);
+        governor.update(0, QualityGovernor.THERMAL_STATUS_MODERATE, -1, false, false);
+        governor.update(40 * S, QualityGovernor.THERMAL_STATUS_NONE, -1, false, false);
+        assertFalse(governor.update(41 * S, QualityGovernor.THERMAL_STATUS_MODERATE, -1, false, false));
+        assertFalse(governor.update(60 * S, QualityGovernor.THERMAL_STATUS_NONE, -1, false, false));
+        assertTrue(governor.update(90 * S, QualityGovernor.THERMAL_STATUS_NONE, -1, false, false));
+        assertEquals(QualityGovernor.TIER_FULL, governor.getTier());
+    }
+
+    @Test
+    public void lowBatteryNeedsMarginToRecover() {
+        QualityGovernor governor = new QualityGovernor(30 * S);
+        assertTrue(governor.update(0, QualityGovernor.THERMAL_STATUS_NONE, 15, false, false));
+        assertEquals(QualityGovernor.TIER_NO_POSE, governor.getTier());
+        // Just above the threshold is not enough
+        assertFalse(governor.update(100 * S, QualityGovernor.THERMAL_STATUS_NONE, 18, false, false));
+        // Charging lifts the battery requirement
+        assertFalse(governor.update(110 * S, QualityGovernor.THERMAL_STATUS_NONE, 18, true, false));
+        assertTrue(governor.update(140 * S, QualityGovernor.THERMAL_STATUS_NONE, 18, true, false));
+        assertEquals(QualityGovernor.TIER_REDUCED_RATE, governor.getTier());
+    }
+
+    @Test
+    public void powerSaveCapsFrameRate() {
+        QualityGovernor governor = new QualityGovernor(30 * S);
+        assertTrue(governor.update(0, QualityGovernor.THERMAL_STATUS_NONE, 90, false, true));
+        assertEquals(QualityGovernor.TIER_REDUCED_RATE, governor.getTier());
+        assertTrue(QualityGovernor.maxAnalysisFps(governor.getTier()) > 0);
+        assertEquals(0, QualityGovernor.maxAnalysisFps(QualityGovernor.TIER_FULL));
+    }
+}
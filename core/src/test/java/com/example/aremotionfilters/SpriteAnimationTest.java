@@ -0,0 +1,70 @@
+package com.example.aremotionfilters;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SpriteAnimationTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void frameFollowsElapsedTimeNotDrawCount() {
+        SpriteAnimation animation = new SpriteAnimation(100, 80, 2, new int[]{100, 100, 100, 100});
+        assertEquals(400 * MS, animation.getDurationNanos());
+        assertEquals(0, animation.frameAt(0L));
+        assertEquals(0, animation.frameAt(99 * MS));
+        assertEquals(1, animation.frameAt(100 * MS));
+        assertEquals(3, animation.frameAt(399 * MS));
+        assertEquals(0, animation.frameAt(400 * MS)); // Loops
+        assertEquals(2, animation.frameAt(10 * 400 * MS + 250 * MS));
+
+        // Drawn at 60 fps or only on 7 fps detection results, each draw shows the frame due at that moment
+        for (long t = 0; t < 2000 * MS; t += 16_666_667L) {
+            assertEquals((int) ((t / (100 * MS)) % 4), animation.frameAt(t));
+        }
+        for (long t = 0; t < 2000 * MS; t += 142 * MS) {
+            assertEquals((int) ((t / (100 * MS)) % 4), animation.frameAt(t));
+        }
+    }
+
+    @Test
+    public void frameDurationsMayDiffer() {
+        SpriteAnimation animation = new SpriteAnimation(10, 10, 0, new int[]{50, 200, 50});
+        assertEquals(0, animation.frameAt(49 * MS));
+        assertEquals(1, animation.frameAt(50 * MS));
+        assertEquals(1, animation.frameAt(249 * MS));
+        assertEquals(2, animation.frameAt(250 * MS));
+        // Clock bases may start anywhere, including before the loop
+        assertEquals(2, animation.frameAt(-1L));
+        assertEquals(1, animation.frameAt(-100 * MS));
+    }
+
+    @Test
+    public void framesTileANearSquareGridWithGutters() {
+        SpriteAnimation animation = new SpriteAnimation(100, 80, 2, new int[]{90, 90, 90, 90, 90, 90});
+        assertEquals(3, animation.getColumns());
+        assertEquals(2, animation.getRows());
+        assertEquals(3 * 104, animation.getAtlasWidth());
+        assertEquals(2 * 84, animation.getAtlasHeight());
+        assertEquals(2, animation.getFrameLeft(0));
+        assertEquals(2, animation.getFrameTop(0));
+        assertEquals(2 * 104 + 2, animation.getFrameLeft(2));
+        assertEquals(104 + 2, animation.getFrameLeft(4));
+        assertEquals(84 + 2, animation.getFrameTop(4));
+        // No two frames overlap and every frame lies inside the atlas
+        for (int a = 0; a < animation.getFrameCount(); a++) {
+            assertTrue(animation.getFrameLeft(a) + animation.getFrameWidth() + animation.getGutter() <= animation.getAtlasWidth());
+            assertTrue(animation.getFrameTop(a) + animation.getFrameHeight() + animation.getGutter() <= animation.getAtlasHeight());
+            for (int b = a + 1; b < animation.getFrameCount(); b++) {
+                assertFalse(animation.getFrameLeft(a) == animation.getFrameLeft(b)
+                        && animation.getFrameTop(a) == animation.getFrameTop(b));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroDurationFrames() {
+        new SpriteAnimation(10, 10, 0, new int[]{100, 0});
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.aremotionfilters;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class SpriteVariantCacheTest {
+
+    @Test
+    public void bucketsRoundUpWithinAQuarterOctave() {
+        assertEquals(0, SpriteVariantCache.sizeBucket(1f));
+        assertEquals(0, SpriteVariantCache.sizeBucket(16f));
+        assertEquals(SpriteVariantCache.BUCKETS_PER_OCTAVE, SpriteVariantCache.sizeBucket(32f));
+        for (float size = 17f; size < 4000f; size *= 1.07f) {
+            int bucketSize = SpriteVariantCache.bucketSize(SpriteVariantCache.sizeBucket(size));
+            assertTrue("bucket too small for " + size, bucketSize >= Math.floor(size));
+            assertTrue("bucket too large for " + size, bucketSize <= size * 1.2f + 1);
+        }
+        assertEquals(SpriteVariantCache.BUCKET_COUNT - 1, SpriteVariantCache.sizeBucket(100_000f));
+    }
+
+    @Test
+    public void eachVariantIsRequestedOnce() {
+        SpriteVariantCache<String> cache = new SpriteVariantCache<>(2, 100, null);
+        int key = cache.key(1, 5);
+        assertEquals(1, SpriteVariantCache.effectOf(key));
+        assertEquals(5, SpriteVariantCache.bucketOf(key));
+
+        assertNull(cache.get(key));
+        assertTrue(cache.request(key));
+        assertFalse(cache.request(key));
+        cache.put(key, "variant", 10);
+        assertFalse(cache.request(key));
+        assertEquals("variant", cache.get(key));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        int other = cache.key(0, 5);
+        assertTrue(cache.request(other));
+        cache.cancel(other);
+        assertTrue(cache.request(other));
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvictedOverBudget() {
+        ArrayList<String> evicted = new ArrayList<>();
+        SpriteVariantCache<String> cache = new SpriteVariantCache<>(1, 30, evicted::add);
+        cache.put(cache.key(0, 1), "a", 10);
+        cache.put(cache.key(0, 2), "b", 10);
+        cache.put(cache.key(0, 3), "c", 10);
+        cache.get(cache.key(0, 1)); // "b" is now the oldest
+        cache.put(cache.key(0, 4), "d", 10);
+
+        assertEquals(1, evicted.size());
+        assertEquals("b", evicted.get(0));
+        assertNull(cache.get(cache.key(0, 2)));
+        assertEquals(30, cache.getSizeBytes());
+
+        cache.setMaxBytes(15);
+        assertEquals(10, cache.getSizeBytes());
+        assertEquals("d", cache.get(cache.key(0, 4)));
+
+        cache.clear();
+        assertEquals(0, cache.getSizeBytes());
+        assertEquals(4, cache.getEvictionCount());
+    }
+
+    @Test
+    public void nearestVariantPrefersLargerSizes() {
+        SpriteVariantCache<String> cache = new SpriteVariantCache<>(2, 100, null);
+        assertNull(cache.getNearest(0, 10));
+        cache.put(cache.key(0, 4), "small", 10);
+        cache.put(cache.key(0, 12), "large", 10);
+        cache.put(cache.key(1, 8), "other effect", 10);
+        assertEquals("large", cache.getNearest(0, 8));
+        assertEquals("large", cache.getNearest(0, 12));
+        assertEquals("large", cache.getNearest(0, 13));
+        assertEquals("small", cache.getNearest(0, 0));
+        // A stand-in does not count as a hit
+        assertEquals(0, cache.getHitCount());
+        assertEquals("other effect", cache.getNearest(1, 0));
+    }
+
+    @Test
+    public void variantLargerThanBudgetIsNotKept() {
+        SpriteVariantCache<String> cache = new SpriteVariantCache<>(1, 10, null);
+        cache.put(cache.key(0, 0), "huge", 11);
+        assertNull(cache.get(cache.key(0, 0)));
+        assertEquals(0, cache.getSizeBytes());
+    }
+}
@@ -0,0 +1,377 @@
+package com.example.aremotionfilters;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the live result path headless with synthetic loads: backend, result processor, mailbox
+ * and the overlay's change detection, frame by frame as the analyzer and overlay run them.
+ */
+public class SyntheticLoadStressTest {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final long FRAME_NANOS = 33_333_333L;
+
+    // One analyzer and overlay, synchronous: every frame is detected, processed and "drawn"
+    private static final class Pipeline implements DetectionBackend.Callback {
+        final SyntheticDetectionBackend<Object> backend;
+        final FaceTracker tracker;
+        final PoseScheduler scheduler;
+        final DetectionResultProcessor processor;
+        final LumaFrame luma = new LumaFrame();
+        final RawDetections detections = new RawDetections();
+        final FaceDataPool pool = new FaceDataPool(8);
+        final ArrayList<FaceData> results = new ArrayList<>();
+        final DetectionMailbox mailbox = new DetectionMailbox();
+        final OverlayChangeDetector changeDetector = new OverlayChangeDetector();
+        final LatencyHistogram resultPath = new LatencyHistogram();
+        int faceStatus;
+        int poseStatus;
+        int redraws;
+        long timestampNanos;
+
+        Pipeline(SyntheticDetectionBackend<Object> backend, int detectionInterval, int poseInterval) {
+            this.backend = backend;
+            this.tracker = new FaceTracker(detectionInterval);
+            this.scheduler = new PoseScheduler(FRAME_NANOS, poseInterval, poseInterval, 500_000_000L);
+            this.processor = new DetectionResultProcessor(tracker, scheduler);
+            byte[] plane = new byte[WIDTH * HEIGHT];
+            new Random(1).nextBytes(plane);
+            luma.set(ByteBuffer.wrap(plane), WIDTH, HEIGHT, WIDTH, 1, 0);
+        }
+
+        void frame() {
+            faceStatus = DetectionResultProcessor.STATUS_NOT_RUN;
+            poseStatus = DetectionResultProcessor.STATUS_NOT_RUN;
+            detections.clear();
+            backend.process(null, WIDTH, HEIGHT, timestampNanos, tracker.onFrame(), scheduler.shouldRunPose(),
+                    detections, this);
+            long startNanos = System.nanoTime();
+            pool.releaseAll(results);
+            processor.process(detections, faceStatus, luma, true, poseStatus, timestampNanos, pool, results);
+            mailbox.publish(results, WIDTH, HEIGHT, false);
+            if (mailbox.update()) {
+                DetectionSnapshot snapshot = mailbox.current();
+                changeDetector.begin();
+                for (int i = 0; i < snapshot.size(); i++) {
+                    FaceData data = snapshot.get(i);
+                    if (data.hasBoundingBox()) {
+                        changeDetector.add(data.getEmotion(), data.getTrackingId(), data.getBoxLeft(),
+                                data.getBoxTop(), data.getBoxRight(), data.getBoxBottom(), data.getHeadEulerAngleZ());
+                    } else {
+                        changeDetector.add(data.getEmotion(), -1, data.getGestureAnchorX(), data.getGestureAnchorY(),
+                                data.getGestureAnchorX(), data.getGestureAnchorY(), data.getGestureRotation());
+                    }
+                }
+                if (changeDetector.commit()) {
+                    redraws++;
+                }
+            }
+            resultPath.recordNanos(System.nanoTime() - startNanos);
+            timestampNanos += FRAME_NANOS;
+        }
+
+        int faceCount() {
+            int faces = 0;
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i).hasBoundingBox()) {
+                    faces++;
+                }
+            }
+            return faces;
+        }
+
+        int gesture() {
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i).hasGestureAnchor()) {
+                    return results.get(i).getEmotion();
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public void onFacesDone(boolean success) {
+            faceStatus = success ? DetectionResultProcessor.STATUS_OK : DetectionResultProcessor.STATUS_FAILED;
+            scheduler.onFaceLatency(5_000_000L);
+        }
+
+        @Override
+        public void onPoseDone(boolean success) {
+            poseStatus = success ? DetectionResultProcessor.STATUS_OK : DetectionResultProcessor.STATUS_FAILED;
+            scheduler.onPoseLatency(10_000_000L);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    private static SyntheticDetectionBackend<Object> backend(int faces) {
+        SyntheticDetectionBackend<Object> backend = new SyntheticDetectionBackend<>(42L);
+        backend.setFaceCount(faces);
+        return backend;
+    }
+
+    @Test
+    public void resultPathKeepsEveryFaceUpToHundred() {
+        for (int faces : new int[]{0, 1, 10, 50, 100}) {
+            SyntheticDetectionBackend<Object> backend = backend(faces);
+            backend.setMotion(SyntheticDetectionBackend.MOTION_ORBIT, 8f, 2_000_000_000L);
+            backend.setEmotionChangeRate(1f);
+            backend.setGestureBursts(2_000_000_000L, 1_000_000_000L);
+            Pipeline pipeline = new Pipeline(backend, 3, 2);
+            for (int frame = 0; frame < 90; frame++) {
+                pipeline.frame();
+                assertEquals("faces at frame " + frame, faces, pipeline.faceCount());
+            }
+            assertEquals(faces, pipeline.tracker.getTrackCount());
+            assertEquals(90, pipeline.resultPath.getCount());
+            assertTrue(pipeline.redraws > 0);
+        }
+    }
+
+    @Test
+    public void loadDependsOnlyOnSeedAndTimestamp() {
+        SyntheticDetectionBackend<Object> a = backend(20);
+        SyntheticDetectionBackend<Object> b = backend(20);
+        for (SyntheticDetectionBackend<Object> backend : Arrays.asList(a, b)) {
+            backend.setMotion(SyntheticDetectionBackend.MOTION_JITTER, 5f, 1_000_000_000L);
+            backend.setEmotionChangeRate(3f);
+            backend.setGestureBursts(1_000_000_000L, 500_000_000L);
+        }
+        FaceDataPool pool = new FaceDataPool(32);
+        List<FaceData> fromA = new ArrayList<>();
+        List<FaceData> fromB = new ArrayList<>();
+        PoseFeatures poseA = new PoseFeatures();
+        PoseFeatures poseB = new PoseFeatures();
+        RawDetections detections = new RawDetections();
+        DetectionBackend.Callback ignore = new DetectionBackend.Callback() {
+            @Override
+            public void onFacesDone(boolean success) {
+            }
+
+            @Override
+            public void onPoseDone(boolean success) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        };
+        // Out of order and with gaps: what a frame holds depends on its timestamp alone
+        for (long frame = 60; frame >= 0; frame -= 3) {
+            long t = 1_000_000_000L + frame * FRAME_NANOS;
+            detections.clear();
+            a.process(null, WIDTH, HEIGHT, t, true, true, detections, ignore);
+            pool.releaseAll(fromA);
+            detections.collectFaces(pool, fromA);
+            detections.applyPose(poseA);
+            detections.clear();
+            b.process(null, WIDTH, HEIGHT, t, true, true, detections, ignore);
+            pool.releaseAll(fromB);
+            detections.collectFaces(pool, fromB);
+            detections.applyPose(poseB);
+
+            assertEquals(20, fromA.size());
+            for (int i = 0; i < fromA.size(); i++) {
+                assertEquals(fromA.get(i).getEmotion(), fromB.get(i).getEmotion());
+                assertEquals(a.emotionAt(i, t), fromA.get(i).getEmotion());
+                assertEquals(fromA.get(i).getBoxLeft(), fromB.get(i).getBoxLeft(), 0f);
+                assertEquals(fromA.get(i).getBoxBottom(), fromB.get(i).getBoxBottom(), 0f);
+            }
+            for (int hand = 0; hand < PoseFeatures.HAND_COUNT; hand++) {
+                assertEquals(poseA.get(hand, PoseFeatures.WRIST_SIDE), poseB.get(hand, PoseFeatures.WRIST_SIDE), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void trackerFollowsEmotionChanges() {
+        SyntheticDetectionBackend<Object> backend = backend(5);
+        backend.setEmotionChangeRate(2f);
+        Pipeline pipeline = new Pipeline(backend, 1, 1);
+        int generatedChanges = 0;
+        int reportedChanges = 0;
+        int[] previous = {-1, -1, -1, -1, -1};
+        for (int frame = 0; frame < 300; frame++) {
+            long t = pipeline.timestampNanos;
+            pipeline.frame();
+            // Static grid: tracks are created in detection order, so result i is face i
+            for (int face = 0; face < 5; face++) {
+                int expected = backend.emotionAt(face, t);
+                int reported = pipeline.results.get(face).getEmotion();
+                assertEquals("face " + face + " at frame " + frame, expected, reported);
+                if (previous[face] >= 0 && previous[face] != reported) {
+                    reportedChanges++;
+                }
+                if (frame > 0 && backend.emotionAt(face, t - FRAME_NANOS) != expected) {
+                    generatedChanges++;
+                }
+                previous[face] = reported;
+            }
+        }
+        // About 2 changes per face and second over 10 s, 4 in 5 to a different emotion
+        assertEquals(generatedChanges, reportedChanges);
+        assertTrue("changes " + generatedChanges, generatedChanges > 40 && generatedChanges < 120);
+    }
+
+    @Test
+    public void gestureBurstsAreRecognizedAndDebounced() {
+        SyntheticDetectionBackend<Object> backend = backend(0);
+        long period = 3_000_000_000L;
+        long duration = 1_500_000_000L;
+        backend.setGestureBursts(period, duration);
+        Pipeline pipeline = new Pipeline(backend, 1, 1);
+        Set<Integer> seen = new HashSet<>();
+        for (int frame = 0; frame < 12 * 30; frame++) {
+            long t = pipeline.timestampNanos;
+            pipeline.frame();
+            int gesture = pipeline.gesture();
+            if (gesture < 0) {
+                continue;
+            }
+            seen.add(gesture);
+            long sinceBurst = Math.floorMod(t, period);
+            // Recognized only after the on delay, and gone once the off delay after the burst passed
+            assertTrue("gesture at " + sinceBurst, sinceBurst >= GestureEngine.DEFAULT_ON_NANOS
+                    && sinceBurst <= duration + GestureEngine.DEFAULT_OFF_NANOS + FRAME_NANOS);
+            assertEquals(backend.gestureAt(t - sinceBurst), gesture);
+        }
+        Set<Integer> expected = new HashSet<>(Arrays.asList(
+                FaceData.GESTURE_PEACE, FaceData.GESTURE_THUMBS_UP, FaceData.GESTURE_WAVE));
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    public void staticLoadIsNotRedrawn() {
+        SyntheticDetectionBackend<Object> backend = backend(50);
+        Pipeline pipeline = new Pipeline(backend, 1, 1);
+        for (int frame = 0; frame < 60; frame++) {
+            pipeline.frame();
+        }
+        assertEquals(1, pipeline.redraws);
+        assertEquals(50, pipeline.changeDetector.getDrawnCount());
+
+        // Jitter well beyond the tolerance redraws (nearly) every frame
+        backend.setMotion(SyntheticDetectionBackend.MOTION_JITTER, 10f, 1_000_000_000L);
+        for (int frame = 0; frame < 60; frame++) {
+            pipeline.frame();
+        }
+        assertTrue("redraws " + pipeline.redraws, pipeline.redraws > 55);
+    }
+
+    @Test
+    public void asynchronousBackendCompletesEveryFrameOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            SyntheticDetectionBackend<Object> backend = backend(100);
+            backend.setExecutor(executor, 1_000_000L);
+            int frames = 50;
+            CountDownLatch done = new CountDownLatch(frames);
+            int[] completions = new int[frames];
+            RawDetections[] outputs = new RawDetections[frames];
+            for (int frame = 0; frame < frames; frame++) {
+                final int index = frame;
+                outputs[frame] = new RawDetections();
+                boolean faces = frame % 2 == 0;
+                boolean pose = frame % 3 == 0;
+                backend.process(null, WIDTH, HEIGHT, frame * FRAME_NANOS, faces, pose, outputs[frame],
+                        new DetectionBackend.Callback() {
+                            @Override
+                            public void onFacesDone(boolean success) {
+                                assertTrue(faces);
+                            }
+
+                            @Override
+                            public void onPoseDone(boolean success) {
+                                assertTrue(pose);
+                            }
+
+                            @Override
+                            public void onComplete() {
+                                synchronized (completions) {
+                                    completions[index]++;
+                                }
+                                done.countDown();
+                            }
+                        });
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            synchronized (completions) {
+                for (int frame = 0; frame < frames; frame++) {
+                    assertEquals(1, completions[frame]);
+                    assertEquals(frame % 2 == 0 ? 100 : 0, outputs[frame].getFaceCount());
+                    assertEquals(frame % 3 == 0, outputs[frame].hasPose());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void reusedFrameSlotReportsEachFrameOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            SyntheticDetectionBackend<Object> backend = backend(10);
+            backend.setExecutor(executor, 100_000L);
+            RawDetections detections = new RawDetections();
+            int[] parts = new int[1];
+            CountDownLatch[] done = new CountDownLatch[1];
+            DetectionBackend.Frame<Object> slot = backend.newFrame(detections, new DetectionBackend.Callback() {
+                @Override
+                public void onFacesDone(boolean success) {
+                    synchronized (parts) {
+                        parts[0]++;
+                    }
+                }
+
+                @Override
+                public void onPoseDone(boolean success) {
+                    synchronized (parts) {
+                        parts[0]++;
+                    }
+                }
+
+                @Override
+                public void onComplete() {
+                    done[0].countDown();
+                }
+            });
+            // As the analyzer's job ring does: the next frame only after the previous one completed
+            for (int frame = 0; frame < 20; frame++) {
+                boolean faces = frame % 2 == 0;
+                boolean pose = frame % 3 == 0;
+                detections.clear();
+                synchronized (parts) {
+                    parts[0] = 0;
+                }
+                done[0] = new CountDownLatch(1);
+                slot.process(null, WIDTH, HEIGHT, frame * FRAME_NANOS, faces, pose);
+                assertTrue(done[0].await(10, TimeUnit.SECONDS));
+                synchronized (parts) {
+                    assertEquals((faces ? 1 : 0) + (pose ? 1 : 0), parts[0]);
+                }
+                assertEquals(faces ? 10 : 0, detections.getFaceCount());
+                assertEquals(pose, detections.hasPose());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}